@@ -42,7 +42,6 @@ import com.ickstream.controller.service.*;
 import com.ickstream.protocol.common.NetworkAddressHelper;
 import com.ickstream.protocol.service.core.*;
 
-import java.io.UnsupportedEncodingException;
 import java.util.*;
 
 public class IckStreamController implements MessageListener {
@@ -415,45 +414,28 @@ public class IckStreamController implements MessageListener {
     @Override
     public void onMessage(String sourceDeviceId, ServiceType sourceServiceType, String targetDeviceId, ServiceType targetServiceType, byte[] message) {
         LocalServiceController localServiceController = localServiceControllers.get(sourceDeviceId);
-        if (localServiceController != null) {
-            try {
-                JsonNode jsonMessage = jsonHelper.stringToObject(new String(message, "UTF-8"), JsonNode.class);
-                if (jsonMessage != null) {
-                    String jsonMessageString = jsonHelper.objectToString(jsonMessage);
-                    if (messageLogger != null) {
-                        messageLogger.onIncomingMessage(sourceDeviceId, jsonMessageString);
-                    }
-                    if (!jsonMessage.has("method")) {
-                        localServiceController.onResponse(jsonHelper.jsonToObject(jsonMessage, JsonRpcResponse.class));
-                    }
-                } else {
-                    System.err.println("Unable to parse incoming message from " + sourceDeviceId + "(" + sourceServiceType + "): " + new String(message, "UTF-8"));
-                }
-            } catch (UnsupportedEncodingException e) {
-                // Just ignore, all platforms we support should support UTF-8
-                e.printStackTrace();
-            }
-        }
         PlayerDeviceController playerDeviceController = playerDeviceControllers.get(sourceDeviceId);
-        if (playerDeviceController != null) {
-            try {
-                JsonNode jsonMessage = jsonHelper.stringToObject(new String(message, "UTF-8"), JsonNode.class);
-                if (jsonMessage != null) {
-                    String jsonMessageString = jsonHelper.objectToString(jsonMessage);
-                    if (messageLogger != null) {
-                        messageLogger.onIncomingMessage(sourceDeviceId, jsonMessageString);
-                    }
-                    if (jsonMessage.has("method")) {
-                        playerDeviceController.onRequest(jsonHelper.jsonToObject(jsonMessage, JsonRpcRequest.class));
-                    } else {
-                        playerDeviceController.onResponse(jsonHelper.jsonToObject(jsonMessage, JsonRpcResponse.class));
-                    }
-                } else {
-                    System.err.println("Unable to parse incoming message from " + sourceDeviceId + "(" + sourceServiceType + "): " + new String(message, "UTF-8"));
-                }
-            } catch (UnsupportedEncodingException e) {
-                // Just ignore, all platforms we support should support UTF-8
-                e.printStackTrace();
+        if (localServiceController == null && playerDeviceController == null) {
+            return;
+        }
+        // Decode the UTF-8 data once directly into a JSON structure shared by all receivers
+        JsonNode jsonMessage = jsonHelper.bytesToObject(message, JsonNode.class);
+        if (jsonMessage == null) {
+            System.err.println("Unable to parse incoming message from " + sourceDeviceId + "(" + sourceServiceType + "): " + LazyMessage.fromBytes(message).getMessage());
+            return;
+        }
+        MessageLogging.logIncoming(messageLogger, sourceDeviceId, message);
+        if (jsonMessage.has("method")) {
+            if (playerDeviceController != null) {
+                playerDeviceController.onRequest(jsonHelper.jsonToObject(jsonMessage, JsonRpcRequest.class));
+            }
+        } else {
+            JsonRpcResponse response = jsonHelper.jsonToObject(jsonMessage, JsonRpcResponse.class);
+            if (localServiceController != null) {
+                localServiceController.onResponse(response);
+            }
+            if (playerDeviceController != null) {
+                playerDeviceController.onResponse(response);
             }
         }
     }
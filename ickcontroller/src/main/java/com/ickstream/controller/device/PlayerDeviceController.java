@@ -218,6 +218,8 @@ public class PlayerDeviceController implements Observer, JsonRpcResponseHandler,
     public void start() {
         if (device.getConnectionState() == Device.ConnectionState.CONNECTED) {
             device.setConnectionState(Device.ConnectionState.INITIALIZING);
+            // Let the player service select the most efficient message encoding the player supports
+            playerService.getProtocolVersions(new MessageHandlerAdapter<ProtocolVersionsResponse>());
             playerService.getPlayerConfiguration(new MessageHandlerAdapter<PlayerConfigurationResponse>() {
                 @Override
                 public void onMessage(PlayerConfigurationResponse message) {
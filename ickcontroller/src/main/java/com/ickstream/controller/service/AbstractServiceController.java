@@ -60,6 +60,11 @@ public class AbstractServiceController implements ServiceController, JsonRpcResp
         return service.getServiceUrl();
     }
 
+    @Override
+    public boolean isAvailable() {
+        return service.isAvailable();
+    }
+
     @Override
     @Deprecated
     public void getProtocolDescription(GetProtocolDescriptionRequest request, MessageHandler<GetProtocolDescriptionResponse> messageHandler) {
@@ -37,6 +37,9 @@ public class CloudServiceController extends AbstractServiceController {
     public CloudServiceController(final Service service, String accessToken, MessageLogger messageLogger) {
         super(new HttpContentService(service.getId(), service.getUrl(), accessToken), service);
         contentService.setMessageLogger(messageLogger);
+        if (service.getCircuitBreaker() != null) {
+            ((HttpContentService) contentService).setCircuitBreaker(service.getCircuitBreaker());
+        }
         this.service = service;
     }
 
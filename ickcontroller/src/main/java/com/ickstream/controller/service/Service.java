@@ -28,6 +28,7 @@
 
 package com.ickstream.controller.service;
 
+import com.ickstream.common.jsonrpc.CircuitBreaker;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
@@ -36,6 +37,7 @@ public class Service {
     private String name;
     private String url;
     private String serviceUrl;
+    private CircuitBreaker circuitBreaker;
 
     public Service(String id, String name, String url) {
         this.id = id;
@@ -80,6 +82,23 @@ public class Service {
         this.serviceUrl = serviceUrl;
     }
 
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Get if the service can currently be used, a cloud service is unavailable while its circuit breaker is open
+     *
+     * @return true if the service is available
+     */
+    public boolean isAvailable() {
+        return circuitBreaker == null || circuitBreaker.isAvailable();
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -41,6 +41,8 @@ public interface ServiceController {
 
     String getServiceUrl();
 
+    boolean isAvailable();
+
     void getPreferredMenus(GetPreferredMenusRequest request, MessageHandler<GetPreferredMenusResponse> messageHandler);
 
     void getPreferredMenus(GetPreferredMenusRequest request, MessageHandler<GetPreferredMenusResponse> messageHandler, Integer timeout);
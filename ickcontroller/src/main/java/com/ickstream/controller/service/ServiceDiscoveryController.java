@@ -31,6 +31,7 @@ package com.ickstream.controller.service;
 import com.ickstream.common.ickp2p.DiscoveryAdapter;
 import com.ickstream.common.ickp2p.DiscoveryEvent;
 import com.ickstream.common.ickp2p.ServiceType;
+import com.ickstream.common.jsonrpc.CircuitBreaker;
 import com.ickstream.common.jsonrpc.MessageHandlerAdapter;
 import com.ickstream.common.jsonrpc.MessageLogger;
 import com.ickstream.controller.ObjectChangeListener;
@@ -46,6 +47,7 @@ public class ServiceDiscoveryController extends DiscoveryAdapter {
     protected final Map<String, Service> cloudServices = new HashMap<String, Service>();
     protected final Map<String, Service> networkServices = new HashMap<String, Service>();
     protected List<ObjectChangeListener<Service>> serviceListeners = new ArrayList<ObjectChangeListener<Service>>();
+    protected List<ServiceAvailabilityListener> availabilityListeners = new ArrayList<ServiceAvailabilityListener>();
     private ThreadFramework threadFramework;
 
     private enum EventSource {
@@ -70,6 +72,34 @@ public class ServiceDiscoveryController extends DiscoveryAdapter {
         serviceListeners.remove(serviceListener);
     }
 
+    public void addServiceAvailabilityListener(ServiceAvailabilityListener availabilityListener) {
+        availabilityListeners.add(availabilityListener);
+    }
+
+    public void removeServiceAvailabilityListener(ServiceAvailabilityListener availabilityListener) {
+        availabilityListeners.remove(availabilityListener);
+    }
+
+    /**
+     * Get if a discovered service can currently be used, cloud services are unavailable while requests to them are
+     * stopped by their circuit breaker
+     *
+     * @param serviceId The identity of the service
+     * @return true if the service has been discovered and is available
+     */
+    public boolean isAvailable(String serviceId) {
+        Service service;
+        synchronized (networkServices) {
+            service = networkServices.get(serviceId);
+        }
+        if (service == null) {
+            synchronized (cloudServices) {
+                service = cloudServices.get(serviceId);
+            }
+        }
+        return service != null && service.isAvailable();
+    }
+
     public void setCoreService(CoreService coreService) {
         if (this.coreService != coreService) {
             this.coreService = coreService;
@@ -152,6 +182,9 @@ public class ServiceDiscoveryController extends DiscoveryAdapter {
                 }
                 newService = false;
             } else {
+                if (eventSource == EventSource.CLOUD) {
+                    service.setCircuitBreaker(createCircuitBreaker(service));
+                }
                 services.put(serviceId, service);
             }
         }
@@ -163,6 +196,35 @@ public class ServiceDiscoveryController extends DiscoveryAdapter {
         }
     }
 
+    /**
+     * Create the circuit breaker of a cloud service, the availability listeners are notified when the circuit breaker
+     * opens and when it allows requests again
+     *
+     * @param service The cloud service
+     * @return The circuit breaker
+     */
+    protected CircuitBreaker createCircuitBreaker(final Service service) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        circuitBreaker.addListener(new CircuitBreaker.Listener() {
+            @Override
+            public void onStateChanged(CircuitBreaker circuitBreaker, final CircuitBreaker.State state) {
+                if (state == CircuitBreaker.State.CLOSED) {
+                    // Requests were already allowed in the half open state
+                    return;
+                }
+                threadFramework.invoke(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (ServiceAvailabilityListener availabilityListener : availabilityListeners) {
+                            availabilityListener.onServiceAvailabilityChanged(service, state != CircuitBreaker.State.OPEN);
+                        }
+                    }
+                });
+            }
+        });
+        return circuitBreaker;
+    }
+
     protected void removeDiscoveredServices(final String serviceId, EventSource eventSource) {
         Service service;
         if (eventSource == EventSource.NETWORK) {
@@ -48,6 +48,7 @@ public class PlayerCommandService {
     private PlayerManager player;
     private Timer volumeNotificationTimer;
     private final Object syncObject;
+    private final Boolean smileEncodingSupported;
 
     /**
      * Should only be used for testing purposes, use {@link #PlayerCommandService(String, PlayerManager, com.ickstream.player.model.PlayerStatus, Object)} in other scenarios
@@ -57,6 +58,7 @@ public class PlayerCommandService {
     public PlayerCommandService(PlayerStatus playerStatus) {
         this.playerStatus = playerStatus;
         this.syncObject = new Object();
+        this.smileEncodingSupported = false;
     }
 
     /**
@@ -66,10 +68,24 @@ public class PlayerCommandService {
      *                   don't get into each other way.
      */
     public PlayerCommandService(String apiKey, PlayerManager player, PlayerStatus playerStatus, final Object syncObject) {
+        this(apiKey, player, playerStatus, syncObject, false);
+    }
+
+    /**
+     * @param syncObject             all access to playerStatus will be synchronized against this object.
+     *                               It is assumed that a PlayerManager will do likewise based on the actual playerstate.
+     *                               By using the syncObject it can be guaranteed that remote calls and internal state changes
+     *                               don't get into each other way.
+     * @param smileEncodingSupported true if the Smile encoding should be advertised to controllers, this must only be
+     *                               enabled if received messages are passed to the JSON-RPC service as bytes, a receive
+     *                               path which converts the messages to strings can't decode Smile
+     */
+    public PlayerCommandService(String apiKey, PlayerManager player, PlayerStatus playerStatus, final Object syncObject, Boolean smileEncodingSupported) {
         this.apiKey = apiKey;
         this.playerStatus = playerStatus;
         this.player = player;
         this.syncObject = syncObject;
+        this.smileEncodingSupported = smileEncodingSupported;
     }
 
     public static List<PlaybackQueueItemInstance> createInstanceList(List<PlaybackQueueItem> items) {
@@ -183,7 +199,13 @@ public class PlayerCommandService {
 
 
     public ProtocolVersionsResponse getProtocolVersions() {
-        return new ProtocolVersionsResponse("1.0", "1.0");
+        ProtocolVersionsResponse response = new ProtocolVersionsResponse("1.0", "1.0");
+        if (smileEncodingSupported) {
+            response.setEncodings(Arrays.asList(MessageEncoding.getSupportedNames()));
+        } else {
+            response.setEncodings(Arrays.asList(MessageEncoding.JSON.getName()));
+        }
+        return response;
     }
 
     public PlayerConfigurationResponse getPlayerConfiguration() {
@@ -28,6 +28,7 @@
 
 package com.ickstream.player.service;
 
+import com.ickstream.common.jsonrpc.ByteMessageSender;
 import com.ickstream.common.jsonrpc.JsonHelper;
 import com.ickstream.common.jsonrpc.JsonRpcRequest;
 import com.ickstream.common.jsonrpc.MessageSender;
@@ -46,13 +47,22 @@ public class PlayerNotificationSender {
         JsonRpcRequest notification = new JsonRpcRequest();
         notification.setMethod("playerStatusChanged");
         notification.setParams(jsonHelper.objectToJson(status));
-        messageSender.sendMessage(jsonHelper.objectToString(notification));
+        sendNotification(notification);
     }
 
     public void playbackQueueChanged(PlaybackQueueChangedNotification playlistChanged) {
         JsonRpcRequest notification = new JsonRpcRequest();
         notification.setMethod("playbackQueueChanged");
         notification.setParams(jsonHelper.objectToJson(playlistChanged));
-        messageSender.sendMessage(jsonHelper.objectToString(notification));
+        sendNotification(notification);
+    }
+
+    private void sendNotification(JsonRpcRequest notification) {
+        if (messageSender instanceof ByteMessageSender) {
+            ByteMessageSender byteMessageSender = (ByteMessageSender) messageSender;
+            byteMessageSender.sendMessage(jsonHelper.objectToBytes(notification, byteMessageSender.getEncoding()));
+        } else {
+            messageSender.sendMessage(jsonHelper.objectToString(notification));
+        }
     }
 }
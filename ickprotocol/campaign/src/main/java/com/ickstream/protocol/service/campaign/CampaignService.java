@@ -35,6 +35,8 @@ import com.ickstream.protocol.service.AbstractService;
 import com.ickstream.protocol.service.Service;
 import org.apache.http.client.HttpClient;
 
+import java.util.concurrent.Executor;
+
 /**
  * Client class for accessing Campaign service
  * <p>
@@ -97,6 +99,28 @@ public class CampaignService extends AbstractService implements Service {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
     /**
      * Set access token to use for authorization
      *
@@ -128,6 +152,14 @@ public class CampaignService extends AbstractService implements Service {
         sendRequest("requestCampaignCode", request, CampaignCodeResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<CampaignCodeResponse> requestCampaignCodeAsync(CampaignCodeRequest request) {
+        return requestCampaignCodeAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<CampaignCodeResponse> requestCampaignCodeAsync(CampaignCodeRequest request, Integer timeout) {
+        return sendServiceRequest("requestCampaignCode", request, CampaignCodeResponse.class, timeout);
+    }
+
     public FindCampaignCodesResponse findCampaignCodes(FindCampaignCodesRequest request) throws ServiceException, ServiceTimeoutException {
         return findCampaignCodes(request, (Integer) null);
     }
@@ -150,6 +182,14 @@ public class CampaignService extends AbstractService implements Service {
         sendRequest("findCampaignCodes", request, FindCampaignCodesResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FindCampaignCodesResponse> findCampaignCodesAsync(FindCampaignCodesRequest request) {
+        return findCampaignCodesAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindCampaignCodesResponse> findCampaignCodesAsync(FindCampaignCodesRequest request, Integer timeout) {
+        return sendServiceRequest("findCampaignCodes", request, FindCampaignCodesResponse.class, timeout);
+    }
+
     public FindCampaignsResponse findCampaigns(FindCampaignsRequest request) throws ServiceException, ServiceTimeoutException {
         return findCampaigns(request, (Integer) null);
     }
@@ -171,4 +211,12 @@ public class CampaignService extends AbstractService implements Service {
     public void findCampaigns(FindCampaignsRequest request, MessageHandler<FindCampaignsResponse> messageHandler, Integer timeout) {
         sendRequest("findCampaigns", request, FindCampaignsResponse.class, messageHandler, timeout);
     }
+
+    public JsonRpcFuture<FindCampaignsResponse> findCampaignsAsync(FindCampaignsRequest request) {
+        return findCampaignsAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindCampaignsResponse> findCampaignsAsync(FindCampaignsRequest request, Integer timeout) {
+        return sendServiceRequest("findCampaigns", request, FindCampaignsResponse.class, timeout);
+    }
 }
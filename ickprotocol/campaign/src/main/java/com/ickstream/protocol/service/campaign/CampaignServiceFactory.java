@@ -56,6 +56,7 @@ public class CampaignServiceFactory extends CoreServiceFactory {
                 CampaignService campaignService = new CampaignService(new DefaultHttpClient(), response.getItems().get(0).getUrl());
                 campaignService.setAccessToken(accessToken);
                 campaignService.setMessageLogger(messageLogger);
+                campaignService.setCompression(getDefaultAcceptCompressedResponses(), getDefaultRequestCompressionThreshold());
                 return campaignService;
             }
         } catch (ServiceException e) {
@@ -81,6 +82,7 @@ public class CampaignServiceFactory extends CoreServiceFactory {
                 CampaignService campaignService = new CampaignService(new DefaultHttpClient(), response.getItems().get(0).getUrl());
                 campaignService.setAccessToken(accessToken);
                 campaignService.setMessageLogger(messageLogger);
+                campaignService.setCompression(getDefaultAcceptCompressedResponses(), getDefaultRequestCompressionThreshold());
                 return campaignService;
             }
         } catch (ServiceException e) {
@@ -30,21 +30,33 @@ package com.ickstream.protocol.common;
 
 import com.ickstream.common.ickp2p.IckP2pException;
 import com.ickstream.common.ickp2p.ServiceType;
+import com.ickstream.common.jsonrpc.ByteMessageSender;
+import com.ickstream.common.jsonrpc.MessageEncoding;
 import com.ickstream.common.jsonrpc.MessageLogger;
-import com.ickstream.common.jsonrpc.MessageSender;
+import com.ickstream.common.jsonrpc.MessageLogging;
 
 import java.io.UnsupportedEncodingException;
 
 /**
  * Message sender which communicates using ickStream P2P protocol, this message sender
  * should be used when communicating with devices or services on the local network.
+ * <p>
+ * Messages are sent as UTF-8 encoded bytes, clients that support {@link ByteMessageSender} pass the encoded message
+ * directly and string messages are encoded before they are sent.
+ * </p>
+ * <p>
+ * Messages from clients that support {@link ByteMessageSender} are encoded with the encoding set with
+ * {@link #setEncoding(com.ickstream.common.jsonrpc.MessageEncoding)}, this is text JSON unless the receiving device
+ * has advertised support for a binary encoding.
+ * </p>
  */
-public class DeviceStringMessageSender implements MessageSender {
+public class DeviceStringMessageSender implements ByteMessageSender {
     private ServiceType fromServiceType;
     private String deviceId;
     private ServiceType serviceType;
     private com.ickstream.common.ickp2p.MessageSender messageSender;
     private MessageLogger messageLogger;
+    private volatile MessageEncoding encoding = MessageEncoding.JSON;
 
     /**
      * Creates a new instance
@@ -70,6 +82,21 @@ public class DeviceStringMessageSender implements MessageSender {
         this.messageLogger = messageLogger;
     }
 
+    /**
+     * Set the encoding to use for messages sent from clients that support {@link ByteMessageSender}, this should only
+     * be set to something else than {@link MessageEncoding#JSON} if the receiving device supports it
+     *
+     * @param encoding The encoding to use
+     */
+    public void setEncoding(MessageEncoding encoding) {
+        this.encoding = encoding != null ? encoding : MessageEncoding.JSON;
+    }
+
+    @Override
+    public MessageEncoding getEncoding() {
+        return encoding;
+    }
+
     /**
      * Sends an outgoing message using the messages sender specified in the constructor
      *
@@ -77,14 +104,24 @@ public class DeviceStringMessageSender implements MessageSender {
      */
     @Override
     public void sendMessage(String message) {
-        if (messageLogger != null) {
-            messageLogger.onOutgoingMessage(deviceId, message);
-        }
         try {
-            messageSender.sendMsg(deviceId, serviceType, fromServiceType, message.getBytes("UTF-8"));
+            sendMessage(message.getBytes("UTF-8"));
         } catch (UnsupportedEncodingException e) {
             // Just ignore, all platforms we support need to support UTF-8
             e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sends an outgoing encoded message using the messages sender specified in the constructor
+     *
+     * @param message The message to send, encoded with the encoding returned by {@link #getEncoding()}
+     */
+    @Override
+    public void sendMessage(byte[] message) {
+        MessageLogging.logOutgoing(messageLogger, deviceId, message);
+        try {
+            messageSender.sendMsg(deviceId, serviceType, fromServiceType, message);
         } catch (IckP2pException e) {
             // TODO: Feels like we should handle this somehow
             e.printStackTrace();
@@ -42,6 +42,8 @@ import javax.net.ssl.SSLContext;
 
 public class ServiceFactory {
     private final static String ICKSTREAM_SERVER = "https://api.ickstream.com";
+    private static Boolean acceptCompressedResponses = false;
+    private static Integer requestCompressionThreshold;
 
     /**
      * Get URL to main ickStream server
@@ -57,6 +59,37 @@ public class ServiceFactory {
         }
     }
 
+    /**
+     * Set the HTTP compression to use in clients created by the factories, this doesn't affect already created clients.
+     * Individual clients can be configured after creation with their setCompression method.
+     *
+     * @param acceptCompressedResponses   true if gzip or deflate compressed responses should be accepted, default is false
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to send gzip compressed, null if
+     *                                    requests should never be compressed which is the default
+     */
+    public static void setDefaultCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ServiceFactory.acceptCompressedResponses = acceptCompressedResponses;
+        ServiceFactory.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * Get if clients created by the factories should accept compressed responses
+     *
+     * @return true if compressed responses should be accepted
+     */
+    public static Boolean getDefaultAcceptCompressedResponses() {
+        return acceptCompressedResponses;
+    }
+
+    /**
+     * Get the minimum size of request bodies that clients created by the factories should compress
+     *
+     * @return The minimum size in bytes or null if requests should never be compressed
+     */
+    public static Integer getDefaultRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
     public static HttpClient createHttpClient() {
         try {
             Class.forName("org.apache.http.impl.conn.PoolingClientConnectionManager");
@@ -95,6 +95,46 @@ public class AbstractService extends SyncJsonRpcClient implements Service {
         }
     }
 
+    /**
+     * Send a request asynchronously and translate any failure to the specific client side exceptions, the returned
+     * future fails with a {@link ServiceException} or {@link ServiceTimeoutException}
+     *
+     * @param method               The method to call
+     * @param params               The parameters to the method
+     * @param messageResponseClass The type of the response
+     * @param timeout              The timeout in milliseconds, if not specified the default timeout will be used
+     * @param <T>                  The type of the response
+     * @return A future which is completed with the response
+     */
+    protected <T> JsonRpcFuture<T> sendServiceRequest(String method, Object params, Class<T> messageResponseClass, Integer timeout) {
+        final JsonRpcFuture<T> request = sendRequestAsync(method, params, messageResponseClass, timeout);
+        final JsonRpcFuture<T> future = new JsonRpcFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                request.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        request.addCallback(new JsonRpcFuture.Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.setResult(result);
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                if (cause instanceof JsonRpcException) {
+                    future.setFailure(getServiceException((JsonRpcException) cause));
+                } else if (cause instanceof JsonRpcTimeoutException) {
+                    future.setFailure(new ServiceTimeoutException(cause));
+                } else {
+                    future.setFailure(cause);
+                }
+            }
+        });
+        return future;
+    }
+
     @Override
     public ProtocolVersionsResponse getProtocolVersions() throws ServiceException, ServiceTimeoutException {
         return getProtocolVersions((Integer) null);
@@ -119,6 +159,14 @@ public class AbstractService extends SyncJsonRpcClient implements Service {
         sendRequest("getProtocolVersions", null, ProtocolVersionsResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<ProtocolVersionsResponse> getProtocolVersionsAsync() {
+        return getProtocolVersionsAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<ProtocolVersionsResponse> getProtocolVersionsAsync(Integer timeout) {
+        return sendServiceRequest("getProtocolVersions", null, ProtocolVersionsResponse.class, timeout);
+    }
+
     @Override
     public ServiceInformation getServiceInformation() throws ServiceException, ServiceTimeoutException {
         return getServiceInformation((Integer) null);
@@ -142,4 +190,12 @@ public class AbstractService extends SyncJsonRpcClient implements Service {
     public void getServiceInformation(MessageHandler<ServiceInformation> messageHandler, Integer timeout) {
         sendRequest("getServiceInformation", null, ServiceInformation.class, messageHandler, timeout);
     }
+
+    public JsonRpcFuture<ServiceInformation> getServiceInformationAsync() {
+        return getServiceInformationAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<ServiceInformation> getServiceInformationAsync(Integer timeout) {
+        return sendServiceRequest("getServiceInformation", null, ServiceInformation.class, timeout);
+    }
 }
@@ -136,6 +136,14 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("getAccountInformation", null, AccountInformation.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<AccountInformation> getAccountInformationAsync() {
+        return getAccountInformationAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<AccountInformation> getAccountInformationAsync(Integer timeout) {
+        return sendServiceRequest("getAccountInformation", null, AccountInformation.class, timeout);
+    }
+
     @Deprecated
     public GetProtocolDescriptionResponse getProtocolDescription(GetProtocolDescriptionRequest request) throws ServiceException, ServiceTimeoutException {
         return getProtocolDescription(request, (Integer) null);
@@ -162,6 +170,14 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("getProtocolDescription", request, GetProtocolDescriptionResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<GetProtocolDescriptionResponse> getProtocolDescriptionAsync(GetProtocolDescriptionRequest request) {
+        return getProtocolDescriptionAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<GetProtocolDescriptionResponse> getProtocolDescriptionAsync(GetProtocolDescriptionRequest request, Integer timeout) {
+        return sendServiceRequest("getProtocolDescription", request, GetProtocolDescriptionResponse.class, timeout);
+    }
+
     public GetProtocolDescription2Response getProtocolDescription2(GetProtocolDescriptionRequest request) throws ServiceException, ServiceTimeoutException {
         return getProtocolDescription2(request, (Integer) null);
     }
@@ -184,6 +200,14 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("getProtocolDescription2", request, GetProtocolDescription2Response.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<GetProtocolDescription2Response> getProtocolDescription2Async(GetProtocolDescriptionRequest request) {
+        return getProtocolDescription2Async(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<GetProtocolDescription2Response> getProtocolDescription2Async(GetProtocolDescriptionRequest request, Integer timeout) {
+        return sendServiceRequest("getProtocolDescription2", request, GetProtocolDescription2Response.class, timeout);
+    }
+
     public GetManagementProtocolDescriptionResponse getManagementProtocolDescription(ChunkedRequest request) throws ServiceException, ServiceTimeoutException {
         return getManagementProtocolDescription(request, (Integer) null);
     }
@@ -206,6 +230,14 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("getManagementProtocolDescription", request, GetManagementProtocolDescriptionResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<GetManagementProtocolDescriptionResponse> getManagementProtocolDescriptionAsync(ChunkedRequest request) {
+        return getManagementProtocolDescriptionAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<GetManagementProtocolDescriptionResponse> getManagementProtocolDescriptionAsync(ChunkedRequest request, Integer timeout) {
+        return sendServiceRequest("getManagementProtocolDescription", request, GetManagementProtocolDescriptionResponse.class, timeout);
+    }
+
     public GetPreferredMenusResponse getPreferredMenus(GetPreferredMenusRequest request) throws ServiceException, ServiceTimeoutException {
         return getPreferredMenus(request, (Integer) null);
     }
@@ -228,6 +260,14 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("getPreferredMenus", request, GetPreferredMenusResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<GetPreferredMenusResponse> getPreferredMenusAsync(GetPreferredMenusRequest request) {
+        return getPreferredMenusAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<GetPreferredMenusResponse> getPreferredMenusAsync(GetPreferredMenusRequest request, Integer timeout) {
+        return sendServiceRequest("getPreferredMenus", request, GetPreferredMenusResponse.class, timeout);
+    }
+
     public ContentResponse findItems(ChunkedRequest request, String contextId, String language, Map<String, Object> params) throws ServiceException, ServiceTimeoutException {
         return findItems(request, contextId, language, params, (Integer) null);
     }
@@ -282,6 +322,30 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("findItems", parameters, ContentResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<ContentResponse> findItemsAsync(ChunkedRequest request, String contextId, String language, Map<String, Object> params) {
+        return findItemsAsync(request, contextId, language, params, (Integer) null);
+    }
+
+    public JsonRpcFuture<ContentResponse> findItemsAsync(ChunkedRequest request, String contextId, String language, Map<String, Object> params, Integer timeout) {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        if (request != null) {
+            if (request.getCount() != null) {
+                parameters.put("count", request.getCount());
+            }
+            if (request.getOffset() != null) {
+                parameters.put("offset", request.getOffset());
+            }
+        }
+        if (contextId != null) {
+            parameters.put("contextId", contextId);
+        }
+        if (language != null) {
+            parameters.put("language", language);
+        }
+        parameters.putAll(params);
+        return sendServiceRequest("findItems", parameters, ContentResponse.class, timeout);
+    }
+
     public ContentItem getItem(String contextId, String language, String itemId) throws ServiceException, ServiceTimeoutException {
         return getItem(contextId, language, itemId, (Integer) null);
     }
@@ -324,6 +388,24 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("getItem", parameters, ContentItem.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<ContentItem> getItemAsync(String contextId, String language, String itemId) {
+        return getItemAsync(contextId, language, itemId, (Integer) null);
+    }
+
+    public JsonRpcFuture<ContentItem> getItemAsync(String contextId, String language, String itemId, Integer timeout) {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        if (itemId != null) {
+            parameters.put("itemId", itemId);
+        }
+        if (contextId != null) {
+            parameters.put("contextId", contextId);
+        }
+        if (language != null) {
+            parameters.put("language", language);
+        }
+        return sendServiceRequest("getItem", parameters, ContentItem.class, timeout);
+    }
+
     public StreamingReference getItemStreamingRef(GetItemStreamingRefRequest request) throws ServiceException, ServiceTimeoutException {
         return getItemStreamingRef(request, (Integer) null);
     }
@@ -346,6 +428,14 @@ public abstract class ContentService extends AbstractService implements Personal
         sendRequest("getItemStreamingRef", request, StreamingReference.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<StreamingReference> getItemStreamingRefAsync(GetItemStreamingRefRequest request) {
+        return getItemStreamingRefAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<StreamingReference> getItemStreamingRefAsync(GetItemStreamingRefRequest request, Integer timeout) {
+        return sendServiceRequest("getItemStreamingRef", request, StreamingReference.class, timeout);
+    }
+
     public ContentResponse getNextDynamicPlaylistTracksRequest(GetNextDynamicPlaylistTracksRequest request) throws ServiceException, ServiceTimeoutException {
         return getNextDynamicPlaylistTracksRequest(request, (Integer) null);
     }
@@ -367,4 +457,12 @@ public abstract class ContentService extends AbstractService implements Personal
     public void getNextDynamicPlaylistTracksRequest(GetNextDynamicPlaylistTracksRequest request, MessageHandler<ContentResponse> messageHandler, Integer timeout) {
         sendRequest("getNextDynamicPlaylistTracksRequest", request, ContentResponse.class, messageHandler, timeout);
     }
+
+    public JsonRpcFuture<ContentResponse> getNextDynamicPlaylistTracksRequestAsync(GetNextDynamicPlaylistTracksRequest request) {
+        return getNextDynamicPlaylistTracksRequestAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<ContentResponse> getNextDynamicPlaylistTracksRequestAsync(GetNextDynamicPlaylistTracksRequest request, Integer timeout) {
+        return sendServiceRequest("getNextDynamicPlaylistTracksRequest", request, ContentResponse.class, timeout);
+    }
 }
@@ -81,8 +81,9 @@ public class ContentServiceFactory extends CoreServiceFactory {
                 lastRefreshedCloudServices = System.currentTimeMillis();
                 if (response != null && response.getItems().size() > 0) {
                     for (ServiceResponse serviceResponse : response.getItems()) {
-                        ContentService contentService = new HttpContentService(serviceResponse.getId(), serviceResponse.getUrl(), accessToken);
+                        HttpContentService contentService = new HttpContentService(serviceResponse.getId(), serviceResponse.getUrl(), accessToken);
                         contentService.setMessageLogger(messageLogger);
+                        contentService.setCompression(getDefaultAcceptCompressedResponses(), getDefaultRequestCompressionThreshold());
                         addContentService(contentService);
                     }
                 }
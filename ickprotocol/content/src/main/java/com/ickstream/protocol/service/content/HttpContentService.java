@@ -28,6 +28,7 @@
 
 package com.ickstream.protocol.service.content;
 
+import com.ickstream.common.jsonrpc.CircuitBreaker;
 import com.ickstream.common.jsonrpc.HttpMessageSender;
 import com.ickstream.common.jsonrpc.MessageLogger;
 import com.ickstream.protocol.common.IckStreamTrustManager;
@@ -42,6 +43,7 @@ import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 
 import javax.net.ssl.SSLContext;
+import java.util.concurrent.Executor;
 
 /**
  * A HTTP POST based client used to communicate with online content services using the Content Access protocol.
@@ -80,6 +82,46 @@ public class HttpContentService extends ContentService {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
+    /**
+     * Set the circuit breaker to use for the service endpoint, see {@link HttpMessageSender#setCircuitBreaker(CircuitBreaker)}
+     *
+     * @param circuitBreaker The circuit breaker to use or null if requests should always be sent
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        ((HttpMessageSender) getMessageSender()).setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * Get the circuit breaker used for the service endpoint
+     *
+     * @return The circuit breaker or null if no circuit breaker is used
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return ((HttpMessageSender) getMessageSender()).getCircuitBreaker();
+    }
+
     /**
      * Set the OAuth access token to use for authorization
      *
@@ -36,6 +36,8 @@ import com.ickstream.protocol.service.AbstractService;
 import com.ickstream.protocol.service.Service;
 import org.apache.http.client.HttpClient;
 
+import java.util.concurrent.Executor;
+
 /**
  * Client class for accessing Cloud Core service
  * <p>
@@ -100,6 +102,28 @@ public class CoreService extends AbstractService implements Service {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
     /**
      * Set access token to use for authorization
      *
@@ -140,6 +164,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("findDevices", request, FindDevicesResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FindDevicesResponse> findDevicesAsync(ChunkedRequest request) {
+        return findDevicesAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindDevicesResponse> findDevicesAsync(ChunkedRequest request, Integer timeout) {
+        return sendServiceRequest("findDevices", request, FindDevicesResponse.class, timeout);
+    }
+
     public DeviceResponse getDevice() throws ServiceException, ServiceTimeoutException {
         return getDevice((Integer) null);
     }
@@ -162,6 +194,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("getDevice", null, DeviceResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<DeviceResponse> getDeviceAsync() {
+        return getDeviceAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<DeviceResponse> getDeviceAsync(Integer timeout) {
+        return sendServiceRequest("getDevice", null, DeviceResponse.class, timeout);
+    }
+
     public DeviceResponse getDevice(DeviceRequest request) throws ServiceException, ServiceTimeoutException {
         return getDevice(request, (Integer) null);
     }
@@ -184,6 +224,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("getDevice", request, DeviceResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<DeviceResponse> getDeviceAsync(DeviceRequest request) {
+        return getDeviceAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<DeviceResponse> getDeviceAsync(DeviceRequest request, Integer timeout) {
+        return sendServiceRequest("getDevice", request, DeviceResponse.class, timeout);
+    }
+
     public DeviceResponse setDeviceAddress(SetDeviceAddressRequest request) throws ServiceException, ServiceTimeoutException {
         return setDeviceAddress(request, (Integer) null);
     }
@@ -206,6 +254,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("setDeviceAddress", request, DeviceResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<DeviceResponse> setDeviceAddressAsync(SetDeviceAddressRequest request) {
+        return setDeviceAddressAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<DeviceResponse> setDeviceAddressAsync(SetDeviceAddressRequest request, Integer timeout) {
+        return sendServiceRequest("setDeviceAddress", request, DeviceResponse.class, timeout);
+    }
+
     public DeviceResponse setDeviceName(SetDeviceNameRequest request) throws ServiceException, ServiceTimeoutException {
         return setDeviceName(request, (Integer) null);
     }
@@ -228,6 +284,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("setDeviceName", request, DeviceResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<DeviceResponse> setDeviceNameAsync(SetDeviceNameRequest request) {
+        return setDeviceNameAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<DeviceResponse> setDeviceNameAsync(SetDeviceNameRequest request, Integer timeout) {
+        return sendServiceRequest("setDeviceName", request, DeviceResponse.class, timeout);
+    }
+
     public AddDeviceResponse addDevice(AddDeviceRequest request) throws ServiceException, ServiceTimeoutException {
         return addDevice(request, (Integer) null);
     }
@@ -250,6 +314,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("addDevice", request, AddDeviceResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<AddDeviceResponse> addDeviceAsync(AddDeviceRequest request) {
+        return addDeviceAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<AddDeviceResponse> addDeviceAsync(AddDeviceRequest request, Integer timeout) {
+        return sendServiceRequest("addDevice", request, AddDeviceResponse.class, timeout);
+    }
+
     @Deprecated
     public AddDeviceResponse addDeviceWithHardwareId(AddDeviceWithHardwareIdRequest request) throws ServiceException, ServiceTimeoutException {
         return addDeviceWithHardwareId(request, (Integer) null);
@@ -276,6 +348,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("addDeviceWithHardwareId", request, AddDeviceResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<AddDeviceResponse> addDeviceWithHardwareIdAsync(AddDeviceWithHardwareIdRequest request) {
+        return addDeviceWithHardwareIdAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<AddDeviceResponse> addDeviceWithHardwareIdAsync(AddDeviceWithHardwareIdRequest request, Integer timeout) {
+        return sendServiceRequest("addDeviceWithHardwareId", request, AddDeviceResponse.class, timeout);
+    }
+
     public Boolean removeDevice(DeviceRequest request) throws ServiceException, ServiceTimeoutException {
         return removeDevice(request, (Integer) null);
     }
@@ -298,6 +378,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("removeDevice", request, Boolean.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<Boolean> removeDeviceAsync(DeviceRequest request) {
+        return removeDeviceAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> removeDeviceAsync(DeviceRequest request, Integer timeout) {
+        return sendServiceRequest("removeDevice", request, Boolean.class, timeout);
+    }
+
     public GetUserResponse getUser() throws ServiceException, ServiceTimeoutException {
         return getUser((Integer) null);
     }
@@ -320,6 +408,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("getUser", null, GetUserResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<GetUserResponse> getUserAsync() {
+        return getUserAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<GetUserResponse> getUserAsync(Integer timeout) {
+        return sendServiceRequest("getUser", null, GetUserResponse.class, timeout);
+    }
+
     public GetUserResponse setUserData(SetUserDataRequest request) throws ServiceException, ServiceTimeoutException {
         return setUserData(request, (Integer) null);
     }
@@ -342,6 +438,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("setUserData", request, GetUserResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<GetUserResponse> setUserDataAsync(SetUserDataRequest request) {
+        return setUserDataAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<GetUserResponse> setUserDataAsync(SetUserDataRequest request, Integer timeout) {
+        return sendServiceRequest("setUserData", request, GetUserResponse.class, timeout);
+    }
+
     public FindServicesResponse findServices(FindServicesRequest request) throws ServiceException, ServiceTimeoutException {
         return findServices(request, (Integer) null);
     }
@@ -364,6 +468,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("findServices", request, FindServicesResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FindServicesResponse> findServicesAsync(FindServicesRequest request) {
+        return findServicesAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindServicesResponse> findServicesAsync(FindServicesRequest request, Integer timeout) {
+        return sendServiceRequest("findServices", request, FindServicesResponse.class, timeout);
+    }
+
     public FindServicesResponse findAllServices(FindServicesRequest request) throws ServiceException, ServiceTimeoutException {
         return findAllServices(request, (Integer) null);
     }
@@ -386,6 +498,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("findAllServices", request, FindServicesResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FindServicesResponse> findAllServicesAsync(FindServicesRequest request) {
+        return findAllServicesAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindServicesResponse> findAllServicesAsync(FindServicesRequest request, Integer timeout) {
+        return sendServiceRequest("findAllServices", request, FindServicesResponse.class, timeout);
+    }
+
     public Boolean removeService(ServiceRequest request) throws ServiceException, ServiceTimeoutException {
         return removeService(request, (Integer) null);
     }
@@ -408,6 +528,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("removeService", request, Boolean.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<Boolean> removeServiceAsync(ServiceRequest request) {
+        return removeServiceAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> removeServiceAsync(ServiceRequest request, Integer timeout) {
+        return sendServiceRequest("removeService", request, Boolean.class, timeout);
+    }
+
     public Boolean removeUserIdentity(UserIdentityRequest request) throws ServiceException, ServiceTimeoutException {
         return removeUserIdentity(request, (Integer) null);
     }
@@ -430,6 +558,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("removeUserIdentity", request, Boolean.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<Boolean> removeUserIdentityAsync(UserIdentityRequest request) {
+        return removeUserIdentityAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> removeUserIdentityAsync(UserIdentityRequest request, Integer timeout) {
+        return sendServiceRequest("removeUserIdentity", request, Boolean.class, timeout);
+    }
+
     public String createUserCode() throws ServiceException, ServiceTimeoutException {
         return createUserCode((Integer) null);
     }
@@ -452,6 +588,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("createUserCode", null, String.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<String> createUserCodeAsync() {
+        return createUserCodeAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<String> createUserCodeAsync(Integer timeout) {
+        return sendServiceRequest("createUserCode", null, String.class, timeout);
+    }
+
     public String createDeviceRegistrationToken(CreateDeviceRegistrationTokenRequest request) throws ServiceException, ServiceTimeoutException {
         return createDeviceRegistrationToken(request, (Integer) null);
     }
@@ -474,6 +618,14 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("createDeviceRegistrationToken", request, String.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<String> createDeviceRegistrationTokenAsync(CreateDeviceRegistrationTokenRequest request) {
+        return createDeviceRegistrationTokenAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<String> createDeviceRegistrationTokenAsync(CreateDeviceRegistrationTokenRequest request, Integer timeout) {
+        return sendServiceRequest("createDeviceRegistrationToken", request, String.class, timeout);
+    }
+
     public FindAccountChangesResponse findAccountChanges(ChunkedRequest request) throws ServiceException, ServiceTimeoutException {
         return findAccountChanges(request, (Integer) null);
     }
@@ -496,4 +648,12 @@ public class CoreService extends AbstractService implements Service {
         sendRequest("findAccountChanges", request, FindAccountChangesResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FindAccountChangesResponse> findAccountChangesAsync(ChunkedRequest request) {
+        return findAccountChangesAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindAccountChangesResponse> findAccountChangesAsync(ChunkedRequest request, Integer timeout) {
+        return sendServiceRequest("findAccountChanges", request, FindAccountChangesResponse.class, timeout);
+    }
+
 }
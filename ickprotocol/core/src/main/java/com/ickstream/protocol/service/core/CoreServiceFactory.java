@@ -84,6 +84,7 @@ public class CoreServiceFactory extends ServiceFactory {
         CoreService coreService = new CoreService(createHttpClient(), cloudCoreUrl == null ? getCoreServiceEndpoint() : cloudCoreUrl);
         coreService.setAccessToken(accessToken);
         coreService.setMessageLogger(messageLogger);
+        coreService.setCompression(getDefaultAcceptCompressedResponses(), getDefaultRequestCompressionThreshold());
         return coreService;
     }
 
@@ -98,6 +99,7 @@ public class CoreServiceFactory extends ServiceFactory {
         PublicCoreService publicCoreService = new PublicCoreService(createHttpClient(), getPublicEndpoint());
         publicCoreService.setAccessToken(accessToken);
         publicCoreService.setMessageLogger(messageLogger);
+        publicCoreService.setCompression(getDefaultAcceptCompressedResponses(), getDefaultRequestCompressionThreshold());
         return publicCoreService;
     }
 
@@ -36,6 +36,8 @@ import com.ickstream.protocol.service.AbstractService;
 import com.ickstream.protocol.service.Service;
 import org.apache.http.client.HttpClient;
 
+import java.util.concurrent.Executor;
+
 /**
  * Client class for accessing Cloud Core Authentiation service
  * <p>
@@ -97,6 +99,28 @@ public class PublicCoreService extends AbstractService implements Service {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
     /**
      * Set access token to use for authorization
      *
@@ -128,4 +152,12 @@ public class PublicCoreService extends AbstractService implements Service {
         sendRequest("findAuthenticationProviders", request, FindAuthenticationProviderResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FindAuthenticationProviderResponse> findAuthenticationProvidersAsync(ChunkedRequest request) {
+        return findAuthenticationProvidersAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindAuthenticationProviderResponse> findAuthenticationProvidersAsync(ChunkedRequest request, Integer timeout) {
+        return sendServiceRequest("findAuthenticationProviders", request, FindAuthenticationProviderResponse.class, timeout);
+    }
+
 }
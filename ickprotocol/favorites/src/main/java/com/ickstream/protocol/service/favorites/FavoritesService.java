@@ -37,6 +37,7 @@ import org.apache.http.client.HttpClient;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Client class for accessing Favorites service
@@ -100,6 +101,28 @@ public class FavoritesService extends AbstractService implements Service {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
     /**
      * Set access token to use for authorization
      *
@@ -135,6 +158,16 @@ public class FavoritesService extends AbstractService implements Service {
         sendRequest("getFavorite", parameters, FavoriteItem.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FavoriteItem> getFavoriteAsync(String favoriteId) {
+        return getFavoriteAsync(favoriteId, (Integer) null);
+    }
+
+    public JsonRpcFuture<FavoriteItem> getFavoriteAsync(String favoriteId, Integer timeout) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("id", favoriteId);
+        return sendServiceRequest("getFavorite", parameters, FavoriteItem.class, timeout);
+    }
+
     public FavoriteItem saveFavorite(FavoriteItem favoriteItem) throws ServiceException, ServiceTimeoutException {
         return saveFavorite(favoriteItem, (Integer) null);
     }
@@ -158,6 +191,14 @@ public class FavoritesService extends AbstractService implements Service {
         sendRequest("saveFavorite", favoriteItem, FavoriteItem.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FavoriteItem> saveFavoriteAsync(FavoriteItem favoriteItem) {
+        return saveFavoriteAsync(favoriteItem, (Integer) null);
+    }
+
+    public JsonRpcFuture<FavoriteItem> saveFavoriteAsync(FavoriteItem favoriteItem, Integer timeout) {
+        return sendServiceRequest("saveFavorite", favoriteItem, FavoriteItem.class, timeout);
+    }
+
     public Boolean removeFavorite(String favoriteId) throws ServiceException, ServiceTimeoutException {
         return removeFavorite(favoriteId, (Integer) null);
     }
@@ -184,6 +225,16 @@ public class FavoritesService extends AbstractService implements Service {
         sendRequest("removeFavorite", parameters, Boolean.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<Boolean> removeFavoriteAsync(String favoriteId) {
+        return removeFavoriteAsync(favoriteId, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> removeFavoriteAsync(String favoriteId, Integer timeout) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("id", favoriteId);
+        return sendServiceRequest("removeFavorite", parameters, Boolean.class, timeout);
+    }
+
     public FavoriteItemResponse findFavorites(FindFavoritesRequest request) throws ServiceException, ServiceTimeoutException {
         return findFavorites(request, (Integer) null);
     }
@@ -206,5 +257,13 @@ public class FavoritesService extends AbstractService implements Service {
         sendRequest("findFavorites", request, FavoriteItemResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FavoriteItemResponse> findFavoritesAsync(FindFavoritesRequest request) {
+        return findFavoritesAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FavoriteItemResponse> findFavoritesAsync(FindFavoritesRequest request, Integer timeout) {
+        return sendServiceRequest("findFavorites", request, FavoriteItemResponse.class, timeout);
+    }
+
 
 }
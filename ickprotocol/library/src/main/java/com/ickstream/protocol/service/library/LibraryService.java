@@ -37,6 +37,7 @@ import org.apache.http.client.HttpClient;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Client class for accessing Library service
@@ -100,6 +101,28 @@ public class LibraryService extends AbstractService implements Service {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
     /**
      * Set access token to use for authorization
      *
@@ -135,6 +158,16 @@ public class LibraryService extends AbstractService implements Service {
         sendRequest("getTrack", parameters, LibraryItem.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<LibraryItem> getTrackAsync(String trackId) {
+        return getTrackAsync(trackId, (Integer) null);
+    }
+
+    public JsonRpcFuture<LibraryItem> getTrackAsync(String trackId, Integer timeout) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("trackId", trackId);
+        return sendServiceRequest("getTrack", parameters, LibraryItem.class, timeout);
+    }
+
     public Boolean saveTrack(LibraryItem libraryItem) throws ServiceException, ServiceTimeoutException {
         return saveTrack(libraryItem, (Integer) null);
     }
@@ -158,6 +191,14 @@ public class LibraryService extends AbstractService implements Service {
         sendRequest("saveTrack", libraryItem, Boolean.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<Boolean> saveTrackAsync(LibraryItem libraryItem) {
+        return saveTrackAsync(libraryItem, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> saveTrackAsync(LibraryItem libraryItem, Integer timeout) {
+        return sendServiceRequest("saveTrack", libraryItem, Boolean.class, timeout);
+    }
+
     public Boolean removeTrack(String trackId) throws ServiceException, ServiceTimeoutException {
         return removeTrack(trackId, (Integer) null);
     }
@@ -183,4 +224,14 @@ public class LibraryService extends AbstractService implements Service {
         parameters.put("trackId", trackId);
         sendRequest("removeTrack", parameters, Boolean.class, messageHandler, timeout);
     }
+
+    public JsonRpcFuture<Boolean> removeTrackAsync(String trackId) {
+        return removeTrackAsync(trackId, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> removeTrackAsync(String trackId, Integer timeout) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("trackId", trackId);
+        return sendServiceRequest("removeTrack", parameters, Boolean.class, timeout);
+    }
 }
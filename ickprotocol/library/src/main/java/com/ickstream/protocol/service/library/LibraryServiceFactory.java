@@ -68,6 +68,7 @@ public class LibraryServiceFactory extends CoreServiceFactory {
                 LibraryService libraryService = new LibraryService(new DefaultHttpClient(), response.getItems().get(0).getUrl());
                 libraryService.setAccessToken(accessToken);
                 libraryService.setMessageLogger(messageLogger);
+                libraryService.setCompression(getDefaultAcceptCompressedResponses(), getDefaultRequestCompressionThreshold());
                 return libraryService;
             }
         } catch (ServiceException e) {
@@ -107,8 +107,58 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         getProtocolVersions(messageHandler, (Integer) null);
     }
 
-    public void getProtocolVersions(MessageHandler<ProtocolVersionsResponse> messageHandler, Integer timeout) {
-        sendRequest("getProtocolVersions", null, ProtocolVersionsResponse.class, messageHandler, timeout);
+    public void getProtocolVersions(final MessageHandler<ProtocolVersionsResponse> messageHandler, Integer timeout) {
+        sendRequest("getProtocolVersions", null, ProtocolVersionsResponse.class, new MessageHandler<ProtocolVersionsResponse>() {
+            @Override
+            public void onMessage(ProtocolVersionsResponse message) {
+                negotiateEncoding(message);
+                messageHandler.onMessage(message);
+            }
+
+            @Override
+            public void onError(int code, String message, String data) {
+                messageHandler.onError(code, message, data);
+            }
+
+            @Override
+            public void onTimeout() {
+                messageHandler.onTimeout();
+            }
+
+            @Override
+            public void onFinished() {
+                messageHandler.onFinished();
+            }
+        }, timeout);
+    }
+
+    public JsonRpcFuture<ProtocolVersionsResponse> getProtocolVersionsAsync() {
+        return getProtocolVersionsAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<ProtocolVersionsResponse> getProtocolVersionsAsync(Integer timeout) {
+        return sendRequestAsync("getProtocolVersions", null, ProtocolVersionsResponse.class, timeout).addCallback(new JsonRpcFuture.Callback<ProtocolVersionsResponse>() {
+            @Override
+            public void onSuccess(ProtocolVersionsResponse result) {
+                negotiateEncoding(result);
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+            }
+        });
+    }
+
+    /**
+     * Select the message encoding to use towards the device based on the encodings it advertises in its protocol
+     * versions, devices that don't advertise any encodings are always sent text JSON
+     *
+     * @param protocolVersions The protocol versions received from the device
+     */
+    private void negotiateEncoding(ProtocolVersionsResponse protocolVersions) {
+        if (protocolVersions != null) {
+            ((DeviceStringMessageSender) getMessageSender()).setEncoding(MessageEncoding.negotiate(protocolVersions.getEncodings()));
+        }
     }
 
     public void setPlayerConfiguration(PlayerConfigurationRequest request, MessageHandler<PlayerConfigurationResponse> messageHandler) {
@@ -119,6 +169,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setPlayerConfiguration", request, PlayerConfigurationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlayerConfigurationResponse> setPlayerConfigurationAsync(PlayerConfigurationRequest request) {
+        return setPlayerConfigurationAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlayerConfigurationResponse> setPlayerConfigurationAsync(PlayerConfigurationRequest request, Integer timeout) {
+        return sendRequestAsync("setPlayerConfiguration", request, PlayerConfigurationResponse.class, timeout);
+    }
+
     public void getPlayerConfiguration(MessageHandler<PlayerConfigurationResponse> messageHandler) {
         getPlayerConfiguration(messageHandler, (Integer) null);
     }
@@ -127,6 +185,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("getPlayerConfiguration", null, PlayerConfigurationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlayerConfigurationResponse> getPlayerConfigurationAsync() {
+        return getPlayerConfigurationAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<PlayerConfigurationResponse> getPlayerConfigurationAsync(Integer timeout) {
+        return sendRequestAsync("getPlayerConfiguration", null, PlayerConfigurationResponse.class, timeout);
+    }
+
     public void getPlayerStatus(MessageHandler<PlayerStatusResponse> messageHandler) {
         getPlayerStatus(messageHandler, (Integer) null);
     }
@@ -135,6 +201,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("getPlayerStatus", null, PlayerStatusResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlayerStatusResponse> getPlayerStatusAsync() {
+        return getPlayerStatusAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<PlayerStatusResponse> getPlayerStatusAsync(Integer timeout) {
+        return sendRequestAsync("getPlayerStatus", null, PlayerStatusResponse.class, timeout);
+    }
+
     public void play(Boolean play) {
         play(play, (Integer) null);
     }
@@ -153,6 +227,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("getSeekPosition", null, SeekPosition.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<SeekPosition> getSeekPositionAsync() {
+        return getSeekPositionAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<SeekPosition> getSeekPositionAsync(Integer timeout) {
+        return sendRequestAsync("getSeekPosition", null, SeekPosition.class, timeout);
+    }
+
     public void setSeekPosition(SeekPosition request, MessageHandler<SeekPosition> messageHandler) {
         setSeekPosition(request, messageHandler, (Integer) null);
     }
@@ -161,6 +243,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setSeekPosition", request, SeekPosition.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<SeekPosition> setSeekPositionAsync(SeekPosition request) {
+        return setSeekPositionAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<SeekPosition> setSeekPositionAsync(SeekPosition request, Integer timeout) {
+        return sendRequestAsync("setSeekPosition", request, SeekPosition.class, timeout);
+    }
+
     public void getTrack(Integer playbackQueuePos, MessageHandler<TrackResponse> messageHandler) {
         getTrack(playbackQueuePos, messageHandler, (Integer) null);
     }
@@ -171,6 +261,16 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("getTrack", parameters, TrackResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<TrackResponse> getTrackAsync(Integer playbackQueuePos) {
+        return getTrackAsync(playbackQueuePos, (Integer) null);
+    }
+
+    public JsonRpcFuture<TrackResponse> getTrackAsync(Integer playbackQueuePos, Integer timeout) {
+        Map<String, Integer> parameters = new HashMap<String, Integer>();
+        parameters.put("playbackQueuePos", playbackQueuePos);
+        return sendRequestAsync("getTrack", parameters, TrackResponse.class, timeout);
+    }
+
     public void setTrack(Integer playbackQueuePos, MessageHandler<SetTrackResponse> messageHandler) {
         setTrack(playbackQueuePos, messageHandler, (Integer) null);
     }
@@ -181,6 +281,16 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setTrack", parameters, SetTrackResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<SetTrackResponse> setTrackAsync(Integer playbackQueuePos) {
+        return setTrackAsync(playbackQueuePos, (Integer) null);
+    }
+
+    public JsonRpcFuture<SetTrackResponse> setTrackAsync(Integer playbackQueuePos, Integer timeout) {
+        Map<String, Integer> parameters = new HashMap<String, Integer>();
+        parameters.put("playbackQueuePos", playbackQueuePos);
+        return sendRequestAsync("setTrack", parameters, SetTrackResponse.class, timeout);
+    }
+
     public void setTrackMetadata(TrackMetadataRequest request, MessageHandler<TrackResponse> messageHandler) {
         setTrackMetadata(request, messageHandler, (Integer) null);
     }
@@ -189,6 +299,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setTrackMetadata", request, TrackResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<TrackResponse> setTrackMetadataAsync(TrackMetadataRequest request) {
+        return setTrackMetadataAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<TrackResponse> setTrackMetadataAsync(TrackMetadataRequest request, Integer timeout) {
+        return sendRequestAsync("setTrackMetadata", request, TrackResponse.class, timeout);
+    }
+
     public void getVolume(MessageHandler<VolumeResponse> messageHandler) {
         getVolume(messageHandler, (Integer) null);
     }
@@ -197,6 +315,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("getVolume", null, VolumeResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<VolumeResponse> getVolumeAsync() {
+        return getVolumeAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<VolumeResponse> getVolumeAsync(Integer timeout) {
+        return sendRequestAsync("getVolume", null, VolumeResponse.class, timeout);
+    }
+
     public void setVolume(VolumeRequest request, MessageHandler<VolumeResponse> messageHandler) {
         setVolume(request, messageHandler, (Integer) null);
     }
@@ -205,6 +331,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setVolume", request, VolumeResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<VolumeResponse> setVolumeAsync(VolumeRequest request) {
+        return setVolumeAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<VolumeResponse> setVolumeAsync(VolumeRequest request, Integer timeout) {
+        return sendRequestAsync("setVolume", request, VolumeResponse.class, timeout);
+    }
+
     public void setPlaylistName(SetPlaylistNameRequest request, MessageHandler<SetPlaylistNameResponse> messagesHandler) {
         setPlaylistName(request, messagesHandler, (Integer) null);
     }
@@ -221,6 +355,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("getPlaybackQueue", request, PlaybackQueueResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueResponse> getPlaybackQueueAsync(PlaybackQueueRequest request) {
+        return getPlaybackQueueAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueResponse> getPlaybackQueueAsync(PlaybackQueueRequest request, Integer timeout) {
+        return sendRequestAsync("getPlaybackQueue", request, PlaybackQueueResponse.class, timeout);
+    }
+
     public void addTracks(PlaybackQueueAddTracksRequest request, MessageHandler<PlaybackQueueModificationResponse> messageHandler) {
         addTracks(request, messageHandler, (Integer) null);
     }
@@ -229,6 +371,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("addTracks", request, PlaybackQueueModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueModificationResponse> addTracksAsync(PlaybackQueueAddTracksRequest request) {
+        return addTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueModificationResponse> addTracksAsync(PlaybackQueueAddTracksRequest request, Integer timeout) {
+        return sendRequestAsync("addTracks", request, PlaybackQueueModificationResponse.class, timeout);
+    }
+
     public void removeTracks(PlaybackQueueRemoveTracksRequest request, MessageHandler<PlaybackQueueModificationResponse> messageHandler) {
         removeTracks(request, messageHandler, (Integer) null);
     }
@@ -237,6 +387,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("removeTracks", request, PlaybackQueueModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueModificationResponse> removeTracksAsync(PlaybackQueueRemoveTracksRequest request) {
+        return removeTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueModificationResponse> removeTracksAsync(PlaybackQueueRemoveTracksRequest request, Integer timeout) {
+        return sendRequestAsync("removeTracks", request, PlaybackQueueModificationResponse.class, timeout);
+    }
+
     public void moveTracks(PlaybackQueueMoveTracksRequest request, MessageHandler<PlaybackQueueModificationResponse> messageHandler) {
         moveTracks(request, messageHandler, (Integer) null);
     }
@@ -245,6 +403,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("moveTracks", request, PlaybackQueueModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueModificationResponse> moveTracksAsync(PlaybackQueueMoveTracksRequest request) {
+        return moveTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueModificationResponse> moveTracksAsync(PlaybackQueueMoveTracksRequest request, Integer timeout) {
+        return sendRequestAsync("moveTracks", request, PlaybackQueueModificationResponse.class, timeout);
+    }
+
     public void setTracks(PlaybackQueueSetTracksRequest request, MessageHandler<PlaybackQueueModificationResponse> messageHandler) {
         setTracks(request, messageHandler, (Integer) null);
     }
@@ -253,6 +419,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setTracks", request, PlaybackQueueModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueModificationResponse> setTracksAsync(PlaybackQueueSetTracksRequest request) {
+        return setTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueModificationResponse> setTracksAsync(PlaybackQueueSetTracksRequest request, Integer timeout) {
+        return sendRequestAsync("setTracks", request, PlaybackQueueModificationResponse.class, timeout);
+    }
+
     public void setPlaybackQueueMode(PlaybackQueueModeRequest request, MessageHandler<PlaybackQueueModeResponse> messageHandler) {
         setPlaybackQueueMode(request, messageHandler, (Integer) null);
     }
@@ -261,6 +435,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setPlaybackQueueMode", request, PlaybackQueueModeResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueModeResponse> setPlaybackQueueModeAsync(PlaybackQueueModeRequest request) {
+        return setPlaybackQueueModeAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueModeResponse> setPlaybackQueueModeAsync(PlaybackQueueModeRequest request, Integer timeout) {
+        return sendRequestAsync("setPlaybackQueueMode", request, PlaybackQueueModeResponse.class, timeout);
+    }
+
     public void shuffleTracks(MessageHandler<PlaybackQueueModificationResponse> messageHandler) {
         shuffleTracks(messageHandler, (Integer) null);
     }
@@ -269,6 +451,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("shuffleTracks", null, PlaybackQueueModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueModificationResponse> shuffleTracksAsync() {
+        return shuffleTracksAsync((Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueModificationResponse> shuffleTracksAsync(Integer timeout) {
+        return sendRequestAsync("shuffleTracks", null, PlaybackQueueModificationResponse.class, timeout);
+    }
+
     public void setDynamicPlaybackQueueParameters(DynamicPlaybackQueueParametersRequest request, MessageHandler<PlaybackQueueModificationResponse> messageHandler) {
         setDynamicPlaybackQueueParameters(request, messageHandler, (Integer) null);
     }
@@ -277,6 +467,14 @@ public class PlayerService extends AsyncJsonRpcClient implements JsonRpcResponse
         sendRequest("setDynamicPlaybackQueueParameters", request, PlaybackQueueModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaybackQueueModificationResponse> setDynamicPlaybackQueueParametersAsync(DynamicPlaybackQueueParametersRequest request) {
+        return setDynamicPlaybackQueueParametersAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaybackQueueModificationResponse> setDynamicPlaybackQueueParametersAsync(DynamicPlaybackQueueParametersRequest request, Integer timeout) {
+        return sendRequestAsync("setDynamicPlaybackQueueParameters", request, PlaybackQueueModificationResponse.class, timeout);
+    }
+
     public void addPlayerStatusChangedListener(MessageHandler<PlayerStatusResponse> listener) {
         addNotificationListener("playerStatusChanged", PlayerStatusResponse.class, listener);
     }
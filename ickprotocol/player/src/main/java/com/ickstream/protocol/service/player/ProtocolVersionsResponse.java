@@ -28,9 +28,12 @@
 
 package com.ickstream.protocol.service.player;
 
+import java.util.List;
+
 public class ProtocolVersionsResponse {
     private String minVersion;
     private String maxVersion;
+    private List<String> encodings;
 
     public ProtocolVersionsResponse() {
     }
@@ -55,4 +58,12 @@ public class ProtocolVersionsResponse {
     public void setMaxVersion(String maxVersion) {
         this.maxVersion = maxVersion;
     }
+
+    public List<String> getEncodings() {
+        return encodings;
+    }
+
+    public void setEncodings(List<String> encodings) {
+        this.encodings = encodings;
+    }
 }
@@ -35,6 +35,8 @@ import com.ickstream.protocol.service.AbstractService;
 import com.ickstream.protocol.service.Service;
 import org.apache.http.client.HttpClient;
 
+import java.util.concurrent.Executor;
+
 /**
  * Client class for accessing Playlists service
  * <p>
@@ -97,6 +99,28 @@ public class PlaylistsService extends AbstractService implements Service {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
     /**
      * Set access token to use for authorization
      *
@@ -128,6 +152,14 @@ public class PlaylistsService extends AbstractService implements Service {
         sendRequest("findPlaylists", request, FindPlaylistsResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<FindPlaylistsResponse> findPlaylistsAsync(FindPlaylistsRequest request) {
+        return findPlaylistsAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<FindPlaylistsResponse> findPlaylistsAsync(FindPlaylistsRequest request, Integer timeout) {
+        return sendServiceRequest("findPlaylists", request, FindPlaylistsResponse.class, timeout);
+    }
+
     public GetPlaylistResponse getPlaylist(GetPlaylistRequest request) throws ServiceException, ServiceTimeoutException {
         return getPlaylist(request, (Integer) null);
     }
@@ -150,6 +182,14 @@ public class PlaylistsService extends AbstractService implements Service {
         sendRequest("getPlaylist", request, GetPlaylistResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<GetPlaylistResponse> getPlaylistAsync(GetPlaylistRequest request) {
+        return getPlaylistAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<GetPlaylistResponse> getPlaylistAsync(GetPlaylistRequest request, Integer timeout) {
+        return sendServiceRequest("getPlaylist", request, GetPlaylistResponse.class, timeout);
+    }
+
     public Boolean removePlaylist(RemovePlaylistRequest request) throws ServiceException, ServiceTimeoutException {
         return removePlaylist(request, (Integer) null);
     }
@@ -172,6 +212,14 @@ public class PlaylistsService extends AbstractService implements Service {
         sendRequest("removePlaylist", request, Boolean.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<Boolean> removePlaylistAsync(RemovePlaylistRequest request) {
+        return removePlaylistAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> removePlaylistAsync(RemovePlaylistRequest request, Integer timeout) {
+        return sendServiceRequest("removePlaylist", request, Boolean.class, timeout);
+    }
+
     public SetPlaylistNameResponse setPlaylistName(SetPlaylistNameRequest request) throws ServiceException, ServiceTimeoutException {
         return setPlaylistName(request, (Integer) null);
     }
@@ -194,6 +242,14 @@ public class PlaylistsService extends AbstractService implements Service {
         sendRequest("setPlaylistName", request, SetPlaylistNameResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<SetPlaylistNameResponse> setPlaylistNameAsync(SetPlaylistNameRequest request) {
+        return setPlaylistNameAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<SetPlaylistNameResponse> setPlaylistNameAsync(SetPlaylistNameRequest request, Integer timeout) {
+        return sendServiceRequest("setPlaylistName", request, SetPlaylistNameResponse.class, timeout);
+    }
+
     public PlaylistModificationResponse setTracks(PlaylistSetTracksRequest request) throws ServiceException, ServiceTimeoutException {
         return setTracks(request, (Integer) null);
     }
@@ -216,6 +272,14 @@ public class PlaylistsService extends AbstractService implements Service {
         sendRequest("setTracks", request, PlaylistModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaylistModificationResponse> setTracksAsync(PlaylistSetTracksRequest request) {
+        return setTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaylistModificationResponse> setTracksAsync(PlaylistSetTracksRequest request, Integer timeout) {
+        return sendServiceRequest("setTracks", request, PlaylistModificationResponse.class, timeout);
+    }
+
     public PlaylistModificationResponse addTracks(PlaylistAddTracksRequest request) throws ServiceException, ServiceTimeoutException {
         return addTracks(request, (Integer) null);
     }
@@ -238,6 +302,14 @@ public class PlaylistsService extends AbstractService implements Service {
         sendRequest("addTracks", request, PlaylistModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaylistModificationResponse> addTracksAsync(PlaylistAddTracksRequest request) {
+        return addTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaylistModificationResponse> addTracksAsync(PlaylistAddTracksRequest request, Integer timeout) {
+        return sendServiceRequest("addTracks", request, PlaylistModificationResponse.class, timeout);
+    }
+
     public PlaylistModificationResponse removeTracks(PlaylistRemoveTracksRequest request) throws ServiceException, ServiceTimeoutException {
         return removeTracks(request, (Integer) null);
     }
@@ -260,6 +332,14 @@ public class PlaylistsService extends AbstractService implements Service {
         sendRequest("removeTracks", request, PlaylistModificationResponse.class, messageHandler, timeout);
     }
 
+    public JsonRpcFuture<PlaylistModificationResponse> removeTracksAsync(PlaylistRemoveTracksRequest request) {
+        return removeTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaylistModificationResponse> removeTracksAsync(PlaylistRemoveTracksRequest request, Integer timeout) {
+        return sendServiceRequest("removeTracks", request, PlaylistModificationResponse.class, timeout);
+    }
+
     public PlaylistModificationResponse moveTracks(PlaylistMoveTracksRequest request) throws ServiceException, ServiceTimeoutException {
         return moveTracks(request, (Integer) null);
     }
@@ -281,4 +361,12 @@ public class PlaylistsService extends AbstractService implements Service {
     public void moveTracks(PlaylistMoveTracksRequest request, MessageHandler<PlaylistModificationResponse> messageHandler, Integer timeout) {
         sendRequest("moveTracks", request, PlaylistModificationResponse.class, messageHandler, timeout);
     }
+
+    public JsonRpcFuture<PlaylistModificationResponse> moveTracksAsync(PlaylistMoveTracksRequest request) {
+        return moveTracksAsync(request, (Integer) null);
+    }
+
+    public JsonRpcFuture<PlaylistModificationResponse> moveTracksAsync(PlaylistMoveTracksRequest request, Integer timeout) {
+        return sendServiceRequest("moveTracks", request, PlaylistModificationResponse.class, timeout);
+    }
 }
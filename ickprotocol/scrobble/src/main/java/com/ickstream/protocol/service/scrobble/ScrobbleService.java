@@ -34,6 +34,8 @@ import com.ickstream.protocol.common.exception.ServiceTimeoutException;
 import com.ickstream.protocol.service.AbstractService;
 import org.apache.http.client.HttpClient;
 
+import java.util.concurrent.Executor;
+
 /**
  * Client class for accessing Scrobble service
  * <p>
@@ -96,6 +98,28 @@ public class ScrobbleService extends AbstractService {
         ((HttpMessageSender) getMessageSender()).setMessageLogger(messageLogger);
     }
 
+    /**
+     * Set the executor to use when sending requests asynchronously, see {@link HttpMessageSender#setExecutor(Executor)}
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        ((HttpMessageSender) getMessageSender()).setExecutor(executor);
+    }
+
+    /**
+     * Set the HTTP compression to use, see {@link HttpMessageSender#setAcceptCompressedResponses(Boolean)} and
+     * {@link HttpMessageSender#setRequestCompressionThreshold(Integer)}
+     *
+     * @param acceptCompressedResponses   true if compressed responses should be accepted
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed
+     */
+    public void setCompression(Boolean acceptCompressedResponses, Integer requestCompressionThreshold) {
+        ((HttpMessageSender) getMessageSender()).setAcceptCompressedResponses(acceptCompressedResponses);
+        ((HttpMessageSender) getMessageSender()).setRequestCompressionThreshold(requestCompressionThreshold);
+    }
+
     /**
      * Set access token to use for authorization
      *
@@ -126,4 +150,12 @@ public class ScrobbleService extends AbstractService {
     public void playedTrack(PlayedItem playedItem, MessageHandler<Boolean> messageHandler, Integer timeout) {
         sendRequest("playedTrack", playedItem, Boolean.class, messageHandler, timeout);
     }
+
+    public JsonRpcFuture<Boolean> playedTrackAsync(PlayedItem playedItem) {
+        return playedTrackAsync(playedItem, (Integer) null);
+    }
+
+    public JsonRpcFuture<Boolean> playedTrackAsync(PlayedItem playedItem, Integer timeout) {
+        return sendServiceRequest("playedTrack", playedItem, Boolean.class, timeout);
+    }
 }
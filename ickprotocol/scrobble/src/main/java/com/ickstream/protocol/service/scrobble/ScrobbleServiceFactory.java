@@ -56,6 +56,7 @@ public class ScrobbleServiceFactory extends CoreServiceFactory {
                 ScrobbleService scrobbleService = new ScrobbleService(new DefaultHttpClient(), response.getItems().get(0).getUrl());
                 scrobbleService.setAccessToken(accessToken);
                 scrobbleService.setMessageLogger(messageLogger);
+                scrobbleService.setCompression(getDefaultAcceptCompressedResponses(), getDefaultRequestCompressionThreshold());
                 return scrobbleService;
             }
         } catch (ServiceException e) {
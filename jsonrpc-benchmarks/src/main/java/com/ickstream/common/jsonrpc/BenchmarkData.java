@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service interface, implementation and data objects used by the benchmarks
+ */
+public class BenchmarkData {
+    /**
+     * Service interface exposed by {@link StreamJsonRpcService} in the benchmarks
+     */
+    public static interface EchoService {
+        String echo(@JsonRpcParam(name = "text") String text);
+
+        Item getItem(@JsonRpcParam(name = "itemId") String itemId);
+
+        ItemResponse findItems(@JsonRpcParamStructure ItemRequest request);
+    }
+
+    /**
+     * Service implementation which just returns data without doing any real work
+     */
+    public static class EchoServiceImpl implements EchoService {
+        @Override
+        public String echo(String text) {
+            return text;
+        }
+
+        @Override
+        public Item getItem(String itemId) {
+            return createItem(itemId);
+        }
+
+        @Override
+        public ItemResponse findItems(ItemRequest request) {
+            ItemResponse response = new ItemResponse();
+            response.setOffset(request.getOffset());
+            response.setCount(request.getItems().size());
+            response.setItems(request.getItems());
+            return response;
+        }
+    }
+
+    public static class Item {
+        private String id;
+        private String text;
+        private String type;
+        private String image;
+        private Integer duration;
+        private List<String> genres;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public void setImage(String image) {
+            this.image = image;
+        }
+
+        public Integer getDuration() {
+            return duration;
+        }
+
+        public void setDuration(Integer duration) {
+            this.duration = duration;
+        }
+
+        public List<String> getGenres() {
+            return genres;
+        }
+
+        public void setGenres(List<String> genres) {
+            this.genres = genres;
+        }
+    }
+
+    public static class ItemRequest {
+        private Integer offset;
+        private String contextId;
+        private List<Item> items;
+
+        public Integer getOffset() {
+            return offset;
+        }
+
+        public void setOffset(Integer offset) {
+            this.offset = offset;
+        }
+
+        public String getContextId() {
+            return contextId;
+        }
+
+        public void setContextId(String contextId) {
+            this.contextId = contextId;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+    }
+
+    public static class ItemResponse {
+        private Integer offset;
+        private Integer count;
+        private List<Item> items;
+
+        public Integer getOffset() {
+            return offset;
+        }
+
+        public void setOffset(Integer offset) {
+            this.offset = offset;
+        }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+    }
+
+    public static Item createItem(String id) {
+        Item item = new Item();
+        item.setId(id);
+        item.setText("Some track title " + id);
+        item.setType("track");
+        item.setImage("http://example.org/images/" + id + ".jpg");
+        item.setDuration(215);
+        List<String> genres = new ArrayList<String>();
+        genres.add("Rock");
+        genres.add("Pop");
+        item.setGenres(genres);
+        return item;
+    }
+
+    public static ItemRequest createItemRequest(int size) {
+        ItemRequest request = new ItemRequest();
+        request.setOffset(0);
+        request.setContextId("allMusic");
+        List<Item> items = new ArrayList<Item>();
+        for (int i = 0; i < size; i++) {
+            items.add(createItem("item" + i));
+        }
+        request.setItems(items);
+        return request;
+    }
+
+    /**
+     * Message sender which directly processes sent requests with a {@link StringJsonRpcService} and forwards the
+     * response to a response handler in the calling thread, without any network involved
+     */
+    public static class LoopbackMessageSender implements MessageSender {
+        private final StringJsonRpcService service;
+        private final JsonHelper jsonHelper = new JsonHelper();
+        private JsonRpcResponseHandler responseHandler;
+
+        public LoopbackMessageSender(StringJsonRpcService service) {
+            this.service = service;
+        }
+
+        public void setResponseHandler(JsonRpcResponseHandler responseHandler) {
+            this.responseHandler = responseHandler;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            String response = service.handle(message);
+            if (response != null) {
+                responseHandler.onResponse(jsonHelper.stringToObject(response, JsonRpcResponse.class));
+            }
+        }
+    }
+}
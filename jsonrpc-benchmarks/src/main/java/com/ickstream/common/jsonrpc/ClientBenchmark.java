@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for client side request/response round trips through {@link AsyncJsonRpcClient} and
+ * {@link SyncJsonRpcClient} using an in-memory loopback message sender, so the numbers include request serialization,
+ * server side dispatch, response parsing and correlation but no network.
+ * <p>
+ * The synchronous benchmark runs with 8 concurrent callers by default, use the -t option to run with another
+ * number of callers.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientBenchmark {
+    private AsyncJsonRpcClient asyncClient;
+    private SyncJsonRpcClient syncClient;
+    private BenchmarkData.ItemRequest request = BenchmarkData.createItemRequest(10);
+
+    private static class ResultHandler extends MessageHandlerAdapter<BenchmarkData.Item> {
+        private BenchmarkData.Item result;
+
+        @Override
+        public void onMessage(BenchmarkData.Item message) {
+            result = message;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        StringJsonRpcService service = new StringJsonRpcService(new BenchmarkData.EchoServiceImpl(), BenchmarkData.EchoService.class);
+
+        BenchmarkData.LoopbackMessageSender asyncSender = new BenchmarkData.LoopbackMessageSender(service);
+        asyncClient = new AsyncJsonRpcClient(asyncSender, 10000);
+        asyncSender.setResponseHandler(asyncClient);
+
+        BenchmarkData.LoopbackMessageSender syncSender = new BenchmarkData.LoopbackMessageSender(service);
+        syncClient = new SyncJsonRpcClient(syncSender, 10000);
+        syncSender.setResponseHandler(syncClient);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BenchmarkData.Item asyncRoundTrip() {
+        ResultHandler handler = new ResultHandler();
+        asyncClient.sendRequest("getItem", new ItemId("item1"), BenchmarkData.Item.class, handler);
+        return handler.result;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BenchmarkData.ItemResponse asyncFutureRoundTrip() throws Exception {
+        return asyncClient.sendRequestAsync("findItems", request, BenchmarkData.ItemResponse.class).get();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public BenchmarkData.Item syncConcurrentCallers() throws JsonRpcException, JsonRpcTimeoutException {
+        return syncClient.sendRequest("getItem", new ItemId("item1"), BenchmarkData.Item.class);
+    }
+
+    public static class ItemId {
+        private String itemId;
+
+        public ItemId(String itemId) {
+            this.itemId = itemId;
+        }
+
+        public String getItemId() {
+            return itemId;
+        }
+    }
+}
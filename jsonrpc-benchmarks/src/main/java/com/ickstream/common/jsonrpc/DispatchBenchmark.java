@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import com.fasterxml.jackson.databind.node.IntNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for server side dispatch of JSON-RPC requests in {@link StreamJsonRpcService} and
+ * {@link StringJsonRpcService}, from request parsing to serialized response. The small request has a single string
+ * parameter and the large request contains a structure with 100 items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    private StringJsonRpcService stringService;
+    private StreamJsonRpcService streamService;
+    private String smallRequest;
+    private String largeRequest;
+    private byte[] smallRequestBytes;
+    private byte[] largeRequestBytes;
+    private ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkData.EchoServiceImpl implementation = new BenchmarkData.EchoServiceImpl();
+        stringService = new StringJsonRpcService(implementation, BenchmarkData.EchoService.class);
+        streamService = new StreamJsonRpcService(implementation, BenchmarkData.EchoService.class);
+        smallRequest = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"getItem\",\"params\":{\"itemId\":\"item1\"}}";
+
+        JsonHelper jsonHelper = new JsonHelper();
+        JsonRpcRequest request = new JsonRpcRequest();
+        request.setJsonrpc("2.0");
+        request.setId(IntNode.valueOf(2));
+        request.setMethod("findItems");
+        request.setParams(jsonHelper.objectToJson(BenchmarkData.createItemRequest(100)));
+        largeRequest = jsonHelper.objectToString(request);
+
+        smallRequestBytes = smallRequest.getBytes("UTF-8");
+        largeRequestBytes = largeRequest.getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public String stringSmallParams() {
+        return stringService.handle(smallRequest);
+    }
+
+    @Benchmark
+    public String stringLargeParams() {
+        return stringService.handle(largeRequest);
+    }
+
+    @Benchmark
+    public int streamSmallParams() {
+        output.reset();
+        streamService.handle(new ByteArrayInputStream(smallRequestBytes), output);
+        return output.size();
+    }
+
+    @Benchmark
+    public int streamLargeParams() {
+        output.reset();
+        streamService.handle(new ByteArrayInputStream(largeRequestBytes), output);
+        return output.size();
+    }
+}
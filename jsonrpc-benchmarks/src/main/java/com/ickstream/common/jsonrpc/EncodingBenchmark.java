@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for encoding and decoding of large protocol responses as text JSON and Smile. The encoded size of
+ * each payload is printed when the benchmark is set up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+    @Param({"playbackQueue", "content"})
+    private String payload;
+
+    @Param({"20", "200"})
+    private int size;
+
+    @Param({"JSON", "SMILE"})
+    private MessageEncoding encoding;
+
+    private JsonHelper jsonHelper = new JsonHelper();
+    private Object response;
+    private Class<?> responseClass;
+    private byte[] encodedResponse;
+
+    @Setup
+    public void setup() {
+        if (payload.equals("playbackQueue")) {
+            response = ProtocolData.createPlaybackQueueResponse(size);
+            responseClass = ProtocolData.PlaybackQueueResponse.class;
+        } else {
+            response = ProtocolData.createContentResponse(size);
+            responseClass = ProtocolData.ContentResponse.class;
+        }
+        encodedResponse = jsonHelper.objectToBytes(response, encoding);
+        System.out.println("Encoded size of " + payload + " with " + size + " items as " + encoding + ": " + encodedResponse.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return jsonHelper.objectToBytes(response, encoding);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return jsonHelper.bytesToObject(encodedResponse, responseClass);
+    }
+}
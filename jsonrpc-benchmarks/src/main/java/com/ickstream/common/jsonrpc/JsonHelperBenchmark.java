@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for serialization and deserialization of representative data objects with {@link JsonHelper}
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonHelperBenchmark {
+    @Param({"1", "100"})
+    private int size;
+
+    private JsonHelper jsonHelper = new JsonHelper();
+    private BenchmarkData.ItemRequest request;
+    private String requestString;
+    private JsonNode requestNode;
+
+    @Setup
+    public void setup() {
+        request = BenchmarkData.createItemRequest(size);
+        requestString = jsonHelper.objectToString(request);
+        requestNode = jsonHelper.objectToJson(request);
+    }
+
+    @Benchmark
+    public String objectToString() {
+        return jsonHelper.objectToString(request);
+    }
+
+    @Benchmark
+    public BenchmarkData.ItemRequest stringToObject() {
+        return jsonHelper.stringToObject(requestString, BenchmarkData.ItemRequest.class);
+    }
+
+    @Benchmark
+    public JsonNode objectToJson() {
+        return jsonHelper.objectToJson(request);
+    }
+
+    @Benchmark
+    public BenchmarkData.ItemRequest jsonToObject() {
+        return jsonHelper.jsonToObject(requestNode, BenchmarkData.ItemRequest.class);
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies of the protocol data objects used in the encoding benchmarks, the real classes are part of the ickprotocol
+ * modules which depend on the native ickP2P library. The copies serialize to the same JSON structure.
+ */
+public class ProtocolData {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public static class ChunkedResponse {
+        private Integer offset;
+        private Integer count;
+        private Integer countAll;
+
+        public Integer getOffset() {
+            return offset;
+        }
+
+        public void setOffset(Integer offset) {
+            this.offset = offset;
+        }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+
+        public Integer getCountAll() {
+            return countAll;
+        }
+
+        public void setCountAll(Integer countAll) {
+            this.countAll = countAll;
+        }
+    }
+
+    public static class StreamingReference {
+        private String format;
+        private String url;
+        private Boolean intermediate;
+        private Integer sampleRate;
+        private Integer sampleSize;
+        private Integer channels;
+
+        public String getFormat() {
+            return format;
+        }
+
+        public void setFormat(String format) {
+            this.format = format;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public Boolean getIntermediate() {
+            return intermediate;
+        }
+
+        public void setIntermediate(Boolean intermediate) {
+            this.intermediate = intermediate;
+        }
+
+        public Integer getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(Integer sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Integer getSampleSize() {
+            return sampleSize;
+        }
+
+        public void setSampleSize(Integer sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        public Integer getChannels() {
+            return channels;
+        }
+
+        public void setChannels(Integer channels) {
+            this.channels = channels;
+        }
+    }
+
+    public static class PlaybackQueueItem {
+        private String id;
+        private String text;
+        private String type;
+        private String image;
+        private List<StreamingReference> streamingRefs;
+        private JsonNode itemAttributes;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public void setImage(String image) {
+            this.image = image;
+        }
+
+        public List<StreamingReference> getStreamingRefs() {
+            return streamingRefs;
+        }
+
+        public void setStreamingRefs(List<StreamingReference> streamingRefs) {
+            this.streamingRefs = streamingRefs;
+        }
+
+        public JsonNode getItemAttributes() {
+            return itemAttributes;
+        }
+
+        public void setItemAttributes(JsonNode itemAttributes) {
+            this.itemAttributes = itemAttributes;
+        }
+    }
+
+    public static class PlaybackQueueResponse extends ChunkedResponse {
+        private Long lastChanged;
+        private String playlistId;
+        private String playlistName;
+        private String order;
+        private List<PlaybackQueueItem> items;
+
+        public Long getLastChanged() {
+            return lastChanged;
+        }
+
+        public void setLastChanged(Long lastChanged) {
+            this.lastChanged = lastChanged;
+        }
+
+        public String getPlaylistId() {
+            return playlistId;
+        }
+
+        public void setPlaylistId(String playlistId) {
+            this.playlistId = playlistId;
+        }
+
+        public String getPlaylistName() {
+            return playlistName;
+        }
+
+        public void setPlaylistName(String playlistName) {
+            this.playlistName = playlistName;
+        }
+
+        public String getOrder() {
+            return order;
+        }
+
+        public void setOrder(String order) {
+            this.order = order;
+        }
+
+        public List<PlaybackQueueItem> getItems() {
+            return items;
+        }
+
+        public void setItems(List<PlaybackQueueItem> items) {
+            this.items = items;
+        }
+    }
+
+    public static class ContentItem {
+        private String id;
+        private String parentNode;
+        private String text;
+        private String sortText;
+        private String type;
+        private String image;
+        private List<StreamingReference> streamingRefs;
+        private List<String> preferredChildItems;
+        private String preferredChildRequest;
+        private JsonNode itemAttributes;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getParentNode() {
+            return parentNode;
+        }
+
+        public void setParentNode(String parentNode) {
+            this.parentNode = parentNode;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public String getSortText() {
+            return sortText;
+        }
+
+        public void setSortText(String sortText) {
+            this.sortText = sortText;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public void setImage(String image) {
+            this.image = image;
+        }
+
+        public List<StreamingReference> getStreamingRefs() {
+            return streamingRefs;
+        }
+
+        public void setStreamingRefs(List<StreamingReference> streamingRefs) {
+            this.streamingRefs = streamingRefs;
+        }
+
+        public List<String> getPreferredChildItems() {
+            return preferredChildItems;
+        }
+
+        public void setPreferredChildItems(List<String> preferredChildItems) {
+            this.preferredChildItems = preferredChildItems;
+        }
+
+        public String getPreferredChildRequest() {
+            return preferredChildRequest;
+        }
+
+        public void setPreferredChildRequest(String preferredChildRequest) {
+            this.preferredChildRequest = preferredChildRequest;
+        }
+
+        public JsonNode getItemAttributes() {
+            return itemAttributes;
+        }
+
+        public void setItemAttributes(JsonNode itemAttributes) {
+            this.itemAttributes = itemAttributes;
+        }
+    }
+
+    public static class ContentResponse extends ChunkedResponse {
+        private Long lastChanged;
+        private List<ContentItem> items;
+
+        public Long getLastChanged() {
+            return lastChanged;
+        }
+
+        public void setLastChanged(Long lastChanged) {
+            this.lastChanged = lastChanged;
+        }
+
+        public List<ContentItem> getItems() {
+            return items;
+        }
+
+        public void setItems(List<ContentItem> items) {
+            this.items = items;
+        }
+    }
+
+    private static List<StreamingReference> createStreamingRefs(String id) {
+        StreamingReference reference = new StreamingReference();
+        reference.setFormat("audio/flac");
+        reference.setUrl("http://example.org/stream/" + id + ".flac");
+        reference.setSampleRate(44100);
+        reference.setSampleSize(16);
+        reference.setChannels(2);
+        List<StreamingReference> streamingRefs = new ArrayList<StreamingReference>();
+        streamingRefs.add(reference);
+        return streamingRefs;
+    }
+
+    private static JsonNode createTrackAttributes(int index) {
+        ObjectNode attributes = mapper.createObjectNode();
+        attributes.put("album", mapper.createObjectNode().put("id", "album" + (index / 10)).put("name", "Some album " + (index / 10)).put("year", 1990 + index % 30));
+        attributes.put("mainartists", mapper.createArrayNode().add(mapper.createObjectNode().put("id", "artist" + (index / 50)).put("name", "Some artist " + (index / 50))));
+        attributes.put("duration", 180 + index % 120);
+        attributes.put("trackNumber", index % 10 + 1);
+        attributes.put("genres", mapper.createArrayNode().add("Rock").add("Pop"));
+        return attributes;
+    }
+
+    /**
+     * Create a playback queue response similar to what a player sends when the playback queue is synchronized
+     *
+     * @param size The number of tracks in the queue
+     * @return The response
+     */
+    public static PlaybackQueueResponse createPlaybackQueueResponse(int size) {
+        PlaybackQueueResponse response = new PlaybackQueueResponse();
+        response.setOffset(0);
+        response.setCount(size);
+        response.setCountAll(size);
+        response.setLastChanged(1380000000000L);
+        response.setPlaylistId("playlist1");
+        response.setPlaylistName("Some playlist");
+        response.setOrder("CURRENT");
+        List<PlaybackQueueItem> items = new ArrayList<PlaybackQueueItem>(size);
+        for (int i = 0; i < size; i++) {
+            PlaybackQueueItem item = new PlaybackQueueItem();
+            item.setId("service1:track:" + i);
+            item.setText("Some track title " + i);
+            item.setType("track");
+            item.setImage("http://example.org/images/track" + i + ".jpg");
+            item.setStreamingRefs(createStreamingRefs("track" + i));
+            item.setItemAttributes(createTrackAttributes(i));
+            items.add(item);
+        }
+        response.setItems(items);
+        return response;
+    }
+
+    /**
+     * Create a content response similar to what a content service sends when browsing tracks
+     *
+     * @param size The number of items in the response
+     * @return The response
+     */
+    public static ContentResponse createContentResponse(int size) {
+        ContentResponse response = new ContentResponse();
+        response.setOffset(0);
+        response.setCount(size);
+        response.setCountAll(size * 10);
+        response.setLastChanged(1380000000000L);
+        List<ContentItem> items = new ArrayList<ContentItem>(size);
+        for (int i = 0; i < size; i++) {
+            ContentItem item = new ContentItem();
+            item.setId("service1:track:" + i);
+            item.setParentNode("service1:album:" + (i / 10));
+            item.setText("Some track title " + i);
+            item.setSortText("Some track title " + i);
+            item.setType("track");
+            item.setImage("http://example.org/images/track" + i + ".jpg");
+            item.setStreamingRefs(createStreamingRefs("track" + i));
+            item.setItemAttributes(createTrackAttributes(i));
+            items.add(item);
+        }
+        response.setItems(items);
+        return response;
+    }
+}
@@ -28,9 +28,15 @@
 
 package com.ickstream.common.jsonrpc;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Asynchronous client class for JSON-RPC requests. This class can be used independent of communication protocol
@@ -40,25 +46,187 @@ import java.util.*;
 public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcResponseHandler {
     private MessageSender messageSender;
     private JsonHelper jsonHelper = new JsonHelper();
-    private final Map<String, MessageHandlerEntry> messageHandlers = new HashMap<String, MessageHandlerEntry>();
-    private final Map<String, List<MessageHandlerEntry>> notificationHandlers = new HashMap<String, List<MessageHandlerEntry>>();
+    private final ConcurrentMap<Object, MessageHandlerEntry> messageHandlers = new ConcurrentHashMap<Object, MessageHandlerEntry>();
+    private final ConcurrentMap<String, List<MessageHandlerEntry>> notificationHandlers = new ConcurrentHashMap<String, List<MessageHandlerEntry>>();
     private Integer defaultTimeout;
     private IdProvider idProvider;
+    private volatile Integer batchWindow;
+    private Integer batchSize;
+    private final List<JsonRpcRequest> batchedRequests = new ArrayList<JsonRpcRequest>();
+    private HashedWheelTimer.Timeout batchFlushTimeout;
+    private HashedWheelTimer timer = HashedWheelTimer.getSharedTimer();
+    private volatile Executor timeoutExecutor = HashedWheelTimer.getSharedExecutor();
+    private volatile ClientMetrics metrics;
+    private volatile ResponseCache responseCache;
+    private final Set<String> coalescedMethods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<String, CoalescedRequest> coalescedRequests = new HashMap<String, CoalescedRequest>();
 
     private static class MessageHandlerEntry {
         private Class type;
         private MessageHandler handler;
-        private Timer timer;
+        private volatile HashedWheelTimer.Timeout timeout;
+        private ClientMetrics clientMetrics;
+        private MethodMetrics methodMetrics;
+        private long sent;
+        private String method;
+        private String cacheKey;
+        private long cacheGeneration;
+        private CoalescedRequest coalescedRequest;
+        private Executor executor;
 
         private MessageHandlerEntry(Class type, MessageHandler handler) {
             this.type = type;
             this.handler = handler;
         }
 
-        private MessageHandlerEntry(Class type, MessageHandler handler, Timer timer) {
-            this.type = type;
-            this.handler = handler;
-            this.timer = timer;
+        private void cancelTimeout() {
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+
+    /**
+     * A request sent on behalf of several callers, each caller has its own message handler entry stored under an
+     * identity which is never sent
+     */
+    private static class CoalescedRequest {
+        private final String key;
+        private final ValueNode id;
+        private final List<Object> callers = new ArrayList<Object>();
+
+        private CoalescedRequest(String key, ValueNode id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Message handler of a coalesced request which forwards the response to all callers still waiting for it
+     */
+    private class CoalescedMessageHandler implements MessageHandler<JsonRpcResponse> {
+        private final CoalescedRequest request;
+
+        private CoalescedMessageHandler(CoalescedRequest request) {
+            this.request = request;
+        }
+
+        private List<MessageHandlerEntry> complete() {
+            List<Object> callers;
+            synchronized (coalescedRequests) {
+                if (coalescedRequests.get(request.key) == request) {
+                    coalescedRequests.remove(request.key);
+                }
+                callers = new ArrayList<Object>(request.callers);
+                request.callers.clear();
+            }
+            List<MessageHandlerEntry> entries = new ArrayList<MessageHandlerEntry>(callers.size());
+            for (Object key : callers) {
+                // Callers which have timed out or been cancelled are no longer registered
+                MessageHandlerEntry entry = messageHandlers.remove(key);
+                if (entry != null) {
+                    entry.cancelTimeout();
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public void onMessage(JsonRpcResponse message) {
+            boolean first = true;
+            for (MessageHandlerEntry entry : complete()) {
+                // Callers asking for the response itself must not share the same instance
+                JsonRpcResponse response = first ? message : copyResponse(message);
+                first = false;
+                entry.handler.onMessage(getResult(response, entry.type));
+                entry.handler.onFinished();
+            }
+        }
+
+        @Override
+        public void onError(int code, String message, String data) {
+            for (MessageHandlerEntry entry : complete()) {
+                entry.handler.onError(code, message, data);
+                entry.handler.onFinished();
+            }
+        }
+
+        @Override
+        public void onTimeout() {
+        }
+
+        @Override
+        public void onFinished() {
+        }
+    }
+
+    /**
+     * Metrics of a called method
+     */
+    private static class MethodMetrics {
+        private final MetricsRegistry.Counter calls;
+        private final MetricsRegistry.Counter errors;
+        private final MetricsRegistry.Counter timeouts;
+        private final MetricsRegistry.Histogram roundTripTime;
+
+        private MethodMetrics(MetricsRegistry registry, String prefix) {
+            calls = registry.getCounter(prefix + ".calls");
+            errors = registry.getCounter(prefix + ".errors");
+            timeouts = registry.getCounter(prefix + ".timeouts");
+            roundTripTime = registry.getHistogram(prefix + ".rttMicros");
+        }
+    }
+
+    /**
+     * Metrics of the client, the metrics of a method are created the first time the method is called
+     */
+    private static class ClientMetrics {
+        private final MetricsRegistry registry;
+        private final String prefix;
+        private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<String, MethodMetrics>();
+        private final ConcurrentMap<Integer, MetricsRegistry.Counter> errorCodes = new ConcurrentHashMap<Integer, MetricsRegistry.Counter>();
+        private final MetricsRegistry.Counter calls;
+        private final MetricsRegistry.Counter errors;
+        private final MetricsRegistry.Counter timeouts;
+        private final MetricsRegistry.Counter pending;
+        private final MetricsRegistry.Histogram roundTripTime;
+        private final MetricsRegistry.Histogram sentSize;
+        private final MetricsRegistry.Histogram receivedSize;
+
+        private ClientMetrics(MetricsRegistry registry, String prefix) {
+            this.registry = registry;
+            this.prefix = prefix;
+            calls = registry.getCounter(prefix + ".calls");
+            errors = registry.getCounter(prefix + ".errors");
+            timeouts = registry.getCounter(prefix + ".timeouts");
+            pending = registry.getCounter(prefix + ".pending");
+            roundTripTime = registry.getHistogram(prefix + ".rttMicros");
+            sentSize = registry.getHistogram(prefix + ".sentBytes");
+            receivedSize = registry.getHistogram(prefix + ".receivedBytes");
+        }
+
+        private MethodMetrics getMethod(String method) {
+            MethodMetrics methodMetrics = methods.get(method);
+            if (methodMetrics == null) {
+                methodMetrics = new MethodMetrics(registry, prefix + "." + method);
+                MethodMetrics existing = methods.putIfAbsent(method, methodMetrics);
+                if (existing != null) {
+                    methodMetrics = existing;
+                }
+            }
+            return methodMetrics;
+        }
+
+        private void recordError(MethodMetrics methodMetrics, int code) {
+            methodMetrics.errors.add(1);
+            errors.add(1);
+            MetricsRegistry.Counter counter = errorCodes.get(code);
+            if (counter == null) {
+                counter = registry.getCounter(prefix + ".errors." + code);
+                errorCodes.putIfAbsent(code, counter);
+            }
+            counter.add(1);
         }
     }
 
@@ -123,6 +291,244 @@ public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcRespons
         return messageSender;
     }
 
+    /**
+     * Set the registry to record metrics in. If the message sender is a {@link HttpMessageSender} the metrics are
+     * named "jsonrpc.client.&lt;endpoint&gt;" and the registry is also set on the message sender, else they are named
+     * "jsonrpc.client", see {@link #setMetricsRegistry(MetricsRegistry, String)}
+     *
+     * @param metricsRegistry The registry to use or null if no metrics should be recorded
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        if (messageSender instanceof HttpMessageSender) {
+            HttpMessageSender httpMessageSender = (HttpMessageSender) messageSender;
+            httpMessageSender.setMetricsRegistry(metricsRegistry);
+            setMetricsRegistry(metricsRegistry, "jsonrpc.client." + httpMessageSender.getEndpoint());
+        } else {
+            setMetricsRegistry(metricsRegistry, "jsonrpc.client");
+        }
+    }
+
+    /**
+     * Set the registry to record metrics in. No metrics are recorded by default.
+     * <p>
+     * The following metrics are recorded for each called method, named "&lt;prefix&gt;.&lt;method&gt;.&lt;metric&gt;",
+     * and for all methods together, named "&lt;prefix&gt;.&lt;metric&gt;":
+     * </p>
+     * <ul>
+     * <li>calls - Counter of sent requests and notifications</li>
+     * <li>errors - Counter of received error responses</li>
+     * <li>timeouts - Counter of requests where no response was received within the timeout</li>
+     * <li>rttMicros - Histogram of the time from sending a request until the response was received</li>
+     * </ul>
+     * <p>
+     * The following metrics are only recorded for the client, named "&lt;prefix&gt;.&lt;metric&gt;":
+     * </p>
+     * <ul>
+     * <li>errors.&lt;code&gt; - Counter of received error responses with a specific error code</li>
+     * <li>pending - Counter of requests waiting for a response</li>
+     * <li>sentBytes - Histogram of the size of sent messages, for message senders which aren't a
+     * {@link ByteMessageSender} the number of characters is recorded</li>
+     * <li>receivedBytes - Histogram of the size of messages received with {@link #onMessage(byte[])}</li>
+     * </ul>
+     * <p>
+     * Round trip times and pending requests are only recorded for requests sent with a message handler.
+     * </p>
+     *
+     * @param metricsRegistry The registry to use or null if no metrics should be recorded
+     * @param prefix          The prefix of the metric names
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry, String prefix) {
+        this.metrics = metricsRegistry != null ? new ClientMetrics(metricsRegistry, prefix) : null;
+    }
+
+    /**
+     * Set the cache to answer requests of idempotent methods from, only methods configured in the cache are cached.
+     * Requests answered from the cache aren't sent, the message handler is called directly with a new instance of
+     * the cached result before the request method returns. No cache is used by default.
+     *
+     * @param responseCache The cache to use or null if no results should be cached
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Get the cache used to answer requests of idempotent methods
+     *
+     * @return The cache or null if no results are cached
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Set the executor which calls message handlers of timed out requests and sends batches when the batch window
+     * has expired. By default {@link HashedWheelTimer#getSharedExecutor()} is used, which has a small fixed number of
+     * threads, so handlers which block for a long time should use an executor of their own to not delay the timeout
+     * handlers of other clients.
+     *
+     * @param timeoutExecutor The executor to use
+     */
+    public void setTimeoutExecutor(Executor timeoutExecutor) {
+        this.timeoutExecutor = timeoutExecutor;
+    }
+
+    /**
+     * Enable or disable coalescing of identical requests for a method. When enabled, a request with a message handler
+     * which has the same method and parameters as a request waiting for its response isn't sent, instead the response
+     * of the waiting request is delivered to both message handlers. Each caller keeps its own timeout. Coalescing
+     * should only be enabled for idempotent methods, it's disabled by default.
+     *
+     * @param method   The method
+     * @param coalesce true if identical requests should be coalesced
+     */
+    public void setCoalescing(String method, Boolean coalesce) {
+        if (coalesce) {
+            coalescedMethods.add(method);
+        } else {
+            coalescedMethods.remove(method);
+        }
+    }
+
+    /**
+     * Enable batching of requests, requests sent within the specified time window are collected and sent as a single
+     * JSON-RPC batch request. The batch is sent when the time window has passed since the first request was collected
+     * or when the maximum number of requests has been collected, whatever happens first.
+     * <p>
+     * Batching should only be enabled if both the message sender implementation and the remote side supports JSON-RPC
+     * batch requests, for example when using {@link HttpMessageSender} towards a {@link StreamJsonRpcService}.
+     * </p>
+     *
+     * @param batchWindow The time window in milliseconds to collect requests in, or null to disable batching
+     * @param batchSize   The maximum number of requests in a batch, or null if there is no limit
+     */
+    public void setBatching(Integer batchWindow, Integer batchSize) {
+        List<JsonRpcRequest> requests;
+        synchronized (batchedRequests) {
+            this.batchWindow = batchWindow;
+            this.batchSize = batchSize;
+            requests = drainBatch();
+        }
+        sendBatch(requests);
+    }
+
+    /**
+     * Send all requests collected for the current batch immediately without waiting for the batch window to pass
+     */
+    public void flushBatch() {
+        List<JsonRpcRequest> requests;
+        synchronized (batchedRequests) {
+            requests = drainBatch();
+        }
+        sendBatch(requests);
+    }
+
+    /**
+     * Take all collected requests out of the current batch, must be called while synchronized on the batch
+     *
+     * @return The requests in the current batch
+     */
+    private List<JsonRpcRequest> drainBatch() {
+        if (batchFlushTimeout != null) {
+            batchFlushTimeout.cancel();
+            batchFlushTimeout = null;
+        }
+        List<JsonRpcRequest> requests = new ArrayList<JsonRpcRequest>(batchedRequests);
+        batchedRequests.clear();
+        return requests;
+    }
+
+    private void addToBatch(JsonRpcRequest request) {
+        List<JsonRpcRequest> requests = null;
+        synchronized (batchedRequests) {
+            batchedRequests.add(request);
+            if (batchWindow == null || (batchSize != null && batchedRequests.size() >= batchSize)) {
+                requests = drainBatch();
+            } else if (batchFlushTimeout == null) {
+                batchFlushTimeout = timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Sending might block, so it must not be done in the timer thread
+                        executeExpired(new Runnable() {
+                            @Override
+                            public void run() {
+                                flushBatch();
+                            }
+                        });
+                    }
+                }, batchWindow);
+            }
+        }
+        if (requests != null) {
+            sendBatch(requests);
+        }
+    }
+
+    private void sendBatch(List<JsonRpcRequest> requests) {
+        if (requests.size() == 0) {
+            return;
+        }
+        sendMessage(requests.size() == 1 ? requests.get(0) : requests);
+    }
+
+    /**
+     * Encode a message and send it with the message sender, if the message sender is a {@link ByteMessageSender}
+     * the message is encoded directly to bytes using the encoding selected by the message sender
+     *
+     * @param message The request or list of requests to send
+     */
+    private void sendMessage(Object message) {
+        if (messageSender instanceof ByteMessageSender) {
+            ByteMessageSender byteMessageSender = (ByteMessageSender) messageSender;
+            byte[] requestBytes = jsonHelper.objectToBytes(message, byteMessageSender.getEncoding());
+            if (requestBytes != null) {
+                ClientMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.sentSize.record(requestBytes.length);
+                }
+                byteMessageSender.sendMessage(requestBytes);
+                return;
+            }
+        } else {
+            String requestString = jsonHelper.objectToString(message);
+            if (requestString != null) {
+                ClientMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.sentSize.record(requestString.length());
+                }
+                messageSender.sendMessage(requestString);
+                return;
+            }
+        }
+        throw new RuntimeException("Unable to convert message to JSON");
+    }
+
+    /**
+     * Get the key to use for an identity in the table of pending requests. Integer identities are stored as
+     * {@link Long} so they don't wrap, textual identities containing an integer are treated as the same identity
+     * as the corresponding number.
+     *
+     * @param id The JSON-RPC identity
+     * @return The key to use in the table of pending requests
+     */
+    private static Object getKey(ValueNode id) {
+        if (id.isIntegralNumber() && id.canConvertToLong()) {
+            return id.longValue();
+        }
+        String text = id.asText();
+        int length = text.length();
+        if (length > 0 && length < 19) {
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if ((c < '0' || c > '9') && (i > 0 || c != '-' || length == 1)) {
+                    return text;
+                }
+            }
+            return Long.parseLong(text);
+        }
+        return text;
+    }
+
     /**
      * Send a JSON-RPC request using the specified method and parameters, this method will just ignore the answer to
      * the request so it should only be used for notifications and messages where the response can be ignored
@@ -162,44 +568,213 @@ public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcRespons
      * @return The identity for the request
      */
     public ValueNode sendRequest(String method, Object params, Class messageResponseClass, MessageHandler messageHandler, Integer timeout) {
-        final ValueNode id;
-        synchronized (messageHandlers) {
-            id = idProvider.getNextId();
-            if (messageResponseClass != null && messageHandler != null) {
-                final String idAsText = id.asText();
-                if ((timeout == null && defaultTimeout == null) || (timeout != null && timeout < 0)) {
-                    messageHandlers.put(idAsText, new MessageHandlerEntry(messageResponseClass, messageHandler));
-                } else {
-                    messageHandlers.put(idAsText, new MessageHandlerEntry(messageResponseClass, messageHandler, new Timer()));
-                    messageHandlers.get(idAsText).timer.schedule(new TimerTask() {
-                        @Override
-                        public void run() {
-                            MessageHandlerEntry entry;
-                            synchronized (messageHandlers) {
-                                entry = messageHandlers.remove(idAsText);
-                            }
-                            if (entry != null) {
-                                entry.handler.onTimeout();
-                                entry.handler.onFinished();
-                            }
-                        }
-                    }, timeout != null ? timeout : defaultTimeout);
+        final ValueNode id = idProvider.getNextId();
+        JsonNode paramsJson = params != null ? jsonHelper.objectToJson(params) : null;
+        ResponseCache responseCache = this.responseCache;
+        String cacheKey = null;
+        long cacheGeneration = 0;
+        if (responseCache != null && messageResponseClass != null && messageHandler != null) {
+            cacheKey = responseCache.getKey(method, paramsJson);
+            if (cacheKey != null) {
+                cacheGeneration = responseCache.getGeneration();
+                JsonNode result = responseCache.get(cacheKey);
+                if (result != null) {
+                    JsonRpcResponse response = new JsonRpcResponse("2.0", id);
+                    response.setResult(result);
+                    messageHandler.onMessage(getResult(response, messageResponseClass));
+                    messageHandler.onFinished();
+                    return id;
+                }
+            }
+        }
+        if (messageResponseClass != null && messageHandler != null && coalescedMethods.contains(method)) {
+            String coalescingKey = paramsJson != null ? method + ":" + jsonHelper.jsonToCanonicalString(paramsJson) : method;
+            Object key = getKey(id);
+            MessageHandlerEntry handlerEntry = new MessageHandlerEntry(messageResponseClass, messageHandler);
+            CoalescedRequest request;
+            boolean first = false;
+            synchronized (coalescedRequests) {
+                request = coalescedRequests.get(coalescingKey);
+                if (request == null) {
+                    request = new CoalescedRequest(coalescingKey, idProvider.getNextId());
+                    coalescedRequests.put(coalescingKey, request);
+                    first = true;
                 }
+                // The handler must be registered when the caller joins, else a response delivered before it's
+                // registered would skip the caller
+                handlerEntry.coalescedRequest = request;
+                messageHandlers.put(key, handlerEntry);
+                request.callers.add(key);
+            }
+            scheduleTimeout(key, handlerEntry, timeout);
+            if (first) {
+                // The callers have their own timeouts, the request is removed when the last caller has given up
+                sendRequest(request.id, method, paramsJson, JsonRpcResponse.class, new CoalescedMessageHandler(request), -1, cacheKey, cacheGeneration);
+            }
+            return id;
+        }
+        sendRequest(id, method, paramsJson, messageResponseClass, messageHandler, timeout, cacheKey, cacheGeneration);
+        return id;
+    }
+
+    private void sendRequest(ValueNode id, String method, JsonNode paramsJson, Class messageResponseClass, MessageHandler messageHandler, Integer timeout, String cacheKey, long cacheGeneration) {
+        ClientMetrics metrics = this.metrics;
+        MethodMetrics methodMetrics = null;
+        if (metrics != null) {
+            methodMetrics = metrics.getMethod(method);
+            methodMetrics.calls.add(1);
+            metrics.calls.add(1);
+        }
+        if (messageResponseClass != null && messageHandler != null) {
+            MessageHandlerEntry handlerEntry = new MessageHandlerEntry(messageResponseClass, messageHandler);
+            if (metrics != null) {
+                handlerEntry.clientMetrics = metrics;
+                handlerEntry.methodMetrics = methodMetrics;
+                handlerEntry.sent = System.nanoTime();
+                metrics.pending.add(1);
+            }
+            if (cacheKey != null) {
+                handlerEntry.method = method;
+                handlerEntry.cacheKey = cacheKey;
+                handlerEntry.cacheGeneration = cacheGeneration;
             }
+            addMessageHandler(getKey(id), handlerEntry, timeout);
         }
         JsonRpcRequest jsonRpcRequest = new JsonRpcRequest();
         jsonRpcRequest.setId(id);
         jsonRpcRequest.setMethod(method);
-        if (params != null) {
-            jsonRpcRequest.setParams(jsonHelper.objectToJson(params));
+        if (paramsJson != null) {
+            jsonRpcRequest.setParams(paramsJson);
         }
-        String requestString = jsonHelper.objectToString(jsonRpcRequest);
-        if (requestString != null) {
-            messageSender.sendMessage(requestString);
-            return jsonRpcRequest.getId();
-        } else {
-            throw new RuntimeException("Unable to convert message to JSON");
+        if (batchWindow != null) {
+            addToBatch(jsonRpcRequest);
+            return;
         }
+        sendMessage(jsonRpcRequest);
+    }
+
+    /**
+     * Register the message handler of a request and schedule its timeout
+     *
+     * @param key          The key of the request identity
+     * @param handlerEntry The message handler entry
+     * @param timeout      The timeout in milliseconds, if not specified the default timeout will be used, a negative
+     *                     timeout means that the request never times out
+     */
+    private void addMessageHandler(Object key, MessageHandlerEntry handlerEntry, Integer timeout) {
+        messageHandlers.put(key, handlerEntry);
+        scheduleTimeout(key, handlerEntry, timeout);
+    }
+
+    /**
+     * Schedule the timeout of a registered message handler
+     *
+     * @param key          The key of the request identity
+     * @param handlerEntry The message handler entry
+     * @param timeout      The timeout in milliseconds, if not specified the default timeout will be used, a negative
+     *                     timeout means that the request never times out
+     */
+    private void scheduleTimeout(final Object key, final MessageHandlerEntry handlerEntry, Integer timeout) {
+        if ((timeout != null || defaultTimeout != null) && (timeout == null || timeout >= 0)) {
+            handlerEntry.timeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (messageHandlers.remove(key, handlerEntry)) {
+                        if (handlerEntry.clientMetrics != null) {
+                            handlerEntry.clientMetrics.pending.add(-1);
+                            handlerEntry.clientMetrics.timeouts.add(1);
+                            handlerEntry.methodMetrics.timeouts.add(1);
+                        }
+                        leaveCoalescedRequest(key, handlerEntry);
+                        // The handler might block, so it must not be called in the timer thread
+                        executeExpired(new Runnable() {
+                            @Override
+                            public void run() {
+                                handlerEntry.handler.onTimeout();
+                                handlerEntry.handler.onFinished();
+                            }
+                        });
+                    }
+                }
+            }, timeout != null ? timeout : defaultTimeout);
+        }
+    }
+
+    private void executeExpired(Runnable task) {
+        try {
+            timeoutExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Remove a caller which is no longer waiting from its coalesced request, the request itself is abandoned when
+     * no callers are left
+     *
+     * @param key          The key of the caller's identity
+     * @param handlerEntry The caller's message handler entry
+     */
+    private void leaveCoalescedRequest(Object key, MessageHandlerEntry handlerEntry) {
+        CoalescedRequest request = handlerEntry.coalescedRequest;
+        if (request == null) {
+            return;
+        }
+        boolean abandoned = false;
+        synchronized (coalescedRequests) {
+            if (request.callers.remove(key) && request.callers.isEmpty() && coalescedRequests.get(request.key) == request) {
+                coalescedRequests.remove(request.key);
+                abandoned = true;
+            }
+        }
+        if (abandoned) {
+            removeMessageHandler(request.id);
+        }
+    }
+
+    /**
+     * Send a JSON-RPC request using the specified method and parameters and return a future which is completed when
+     * the response is received. No thread is blocked while waiting for the response.
+     *
+     * @param method               The method to call
+     * @param params               The parameters to the method, this must be possible to serialize to JSON with the {@link JsonHelper} class
+     * @param messageResponseClass The type of the response, must have a default constructor and must be possible to instantiate from JSON using {@link JsonHelper}
+     * @param <T>                  The message response class to use
+     * @return A future which is completed with the response
+     */
+    public <T> JsonRpcFuture<T> sendRequestAsync(String method, Object params, Class<T> messageResponseClass) {
+        return sendRequestAsync(method, params, messageResponseClass, null);
+    }
+
+    /**
+     * Send a JSON-RPC request using the specified method and parameters and return a future which is completed when
+     * the response is received. No thread is blocked while waiting for the response.
+     * The future fails with a {@link JsonRpcTimeoutException} if no response have been received within the timeout
+     * and cancelling the future stops waiting for the response.
+     *
+     * @param method               The method to call
+     * @param params               The parameters to the method, this must be possible to serialize to JSON with the {@link JsonHelper} class
+     * @param messageResponseClass The type of the response, must have a default constructor and must be possible to instantiate from JSON using {@link JsonHelper}
+     * @param timeout              The timeout in millisecond, if not specified the default timeout will be used
+     * @param <T>                  The message response class to use
+     * @return A future which is completed with the response
+     */
+    public <T> JsonRpcFuture<T> sendRequestAsync(String method, Object params, Class<T> messageResponseClass, Integer timeout) {
+        JsonRpcFuture<T> future = new JsonRpcFuture<T>();
+        final ValueNode id;
+        try {
+            id = sendRequest(method, params, messageResponseClass, future, timeout);
+        } catch (RuntimeException e) {
+            future.setFailure(e);
+            return future;
+        }
+        future.setCancelAction(new Runnable() {
+            @Override
+            public void run() {
+                removeMessageHandler(id);
+            }
+        });
+        return future;
     }
 
     /**
@@ -211,11 +786,31 @@ public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcRespons
      * @param <T>                  The type of the parameter data, , this must be a class with a default constructor which can be instantiated from JSON using {@link JsonHelper}
      */
     public <T> void addNotificationListener(String method, Class<T> messageParameterType, MessageHandler<T> messageHandler) {
+        addNotificationListener(method, messageParameterType, messageHandler, null);
+    }
+
+    /**
+     * Add a listener that will be called when a specific notification is received, the listener is called using the
+     * specified executor so a slow listener doesn't block the thread receiving messages. Notifications rejected by
+     * the executor are not delivered to the listener. Use a single threaded executor if the listener must receive
+     * the notifications in order.
+     *
+     * @param method               The method name of the notification
+     * @param messageParameterType The type of the parameter data, this must be a class with a default constructor which can be instantiated from JSON using {@link JsonHelper}
+     * @param messageHandler       The implementation of the listener, this is the class that will be called when the notification is received
+     * @param executor             The executor to call the listener with, or null to call it on the receiving thread
+     * @param <T>                  The type of the parameter data, , this must be a class with a default constructor which can be instantiated from JSON using {@link JsonHelper}
+     */
+    public <T> void addNotificationListener(String method, Class<T> messageParameterType, MessageHandler<T> messageHandler, Executor executor) {
+        MessageHandlerEntry entry = new MessageHandlerEntry(messageParameterType, messageHandler);
+        entry.executor = executor;
         synchronized (notificationHandlers) {
-            if (!notificationHandlers.containsKey(method)) {
-                notificationHandlers.put(method, new ArrayList<MessageHandlerEntry>());
+            List<MessageHandlerEntry> handlers = notificationHandlers.get(method);
+            if (handlers == null) {
+                handlers = new CopyOnWriteArrayList<MessageHandlerEntry>();
+                notificationHandlers.put(method, handlers);
             }
-            notificationHandlers.get(method).add(new MessageHandlerEntry(messageParameterType, messageHandler));
+            handlers.add(entry);
         }
     }
 
@@ -225,8 +820,14 @@ public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcRespons
      * @param id The identity of the JSON-RPC request to remove the message handler for
      */
     protected void removeMessageHandler(ValueNode id) {
-        synchronized (messageHandlers) {
-            messageHandlers.remove(id.asText());
+        Object key = getKey(id);
+        MessageHandlerEntry entry = messageHandlers.remove(key);
+        if (entry != null) {
+            entry.cancelTimeout();
+            if (entry.clientMetrics != null) {
+                entry.clientMetrics.pending.add(-1);
+            }
+            leaveCoalescedRequest(key, entry);
         }
     }
 
@@ -241,50 +842,124 @@ public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcRespons
         synchronized (notificationHandlers) {
             List<MessageHandlerEntry> notificationHandlers = this.notificationHandlers.get(method);
             if (notificationHandlers != null) {
-                MessageHandlerEntry toRemove = null;
                 for (MessageHandlerEntry notificationHandler : notificationHandlers) {
                     if (notificationHandler.handler == messageHandler) {
-                        toRemove = notificationHandler;
+                        notificationHandlers.remove(notificationHandler);
                         break;
                     }
                 }
-                if (toRemove != null) {
-                    notificationHandlers.remove(toRemove);
+                if (notificationHandlers.isEmpty()) {
+                    this.notificationHandlers.remove(method);
                 }
             }
         }
     }
 
+    /**
+     * Process a received UTF-8 or Smile encoded JSON-RPC message. The message is decoded directly from the bytes and
+     * forwarded to {@link #onRequest(JsonRpcRequest)} if it's a request or notification and to
+     * {@link #onResponse(JsonRpcResponse)} if it's a response, each entry of a batch response is forwarded separately.
+     *
+     * @param message The received encoded JSON-RPC message
+     * @return true if the message, or at least one entry of a batch, was handled
+     */
+    public boolean onMessage(byte[] message) {
+        ClientMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.receivedSize.record(message.length);
+        }
+        JsonNode json = jsonHelper.bytesToObject(message, JsonNode.class);
+        if (json == null) {
+            return false;
+        }
+        if (json.isArray()) {
+            boolean handled = false;
+            for (JsonNode entry : json) {
+                handled |= onMessage(entry);
+            }
+            return handled;
+        }
+        return onMessage(json);
+    }
+
+    private boolean onMessage(JsonNode json) {
+        if (!json.isObject()) {
+            return false;
+        } else if (json.has("method")) {
+            JsonRpcRequest request = jsonHelper.jsonToObject(json, JsonRpcRequest.class);
+            return request != null && onRequest(request);
+        } else {
+            JsonRpcResponse response = jsonHelper.jsonToObject(json, JsonRpcResponse.class);
+            return response != null && onResponse(response);
+        }
+    }
+
     /**
      * Process a received JSON-RPC notification by calling any notification handler that has been previously registered
-     * with {@link #addNotificationListener(String, Class, MessageHandler)}.
+     * with {@link #addNotificationListener(String, Class, MessageHandler)}. The parameters are only converted once for
+     * each parameter type, listeners using the same type receive the same instance.
      *
      * @param message The received JSON-RPC message
      * @return true if the message was forwarded to at least one notification handler
      */
     @Override
     public boolean onRequest(JsonRpcRequest message) {
-        List<MessageHandlerEntry> notificationHandlers;
-        synchronized (this.notificationHandlers) {
-            notificationHandlers = this.notificationHandlers.get(message.getMethod());
-        }
-
-        if (notificationHandlers != null) {
-            Object params = null;
-            for (MessageHandlerEntry notificationHandler : notificationHandlers) {
-                if (params == null || !params.getClass().equals(notificationHandler.getClass())) {
-                    if (notificationHandler.type.isInstance(message)) {
-                        params = message;
-                    } else {
-                        params = jsonHelper.jsonToObject(message.getParams(), notificationHandler.type);
-                    }
+        List<MessageHandlerEntry> notificationHandlers = message.getMethod() != null ? this.notificationHandlers.get(message.getMethod()) : null;
+        if (notificationHandlers == null || notificationHandlers.isEmpty()) {
+            return false;
+        }
+
+        // Most notifications only have listeners of a single type, so only use a map if there are several types
+        Class paramsType = null;
+        Object params = null;
+        Map<Class, Object> otherParams = null;
+        for (MessageHandlerEntry notificationHandler : notificationHandlers) {
+            Object handlerParams;
+            if (paramsType == null) {
+                paramsType = notificationHandler.type;
+                params = getParams(message, paramsType);
+                handlerParams = params;
+            } else if (paramsType == notificationHandler.type) {
+                handlerParams = params;
+            } else {
+                if (otherParams == null) {
+                    otherParams = new HashMap<Class, Object>();
+                }
+                if (otherParams.containsKey(notificationHandler.type)) {
+                    handlerParams = otherParams.get(notificationHandler.type);
+                } else {
+                    handlerParams = getParams(message, notificationHandler.type);
+                    otherParams.put(notificationHandler.type, handlerParams);
                 }
-                notificationHandler.handler.onMessage(params);
-                notificationHandler.handler.onFinished();
             }
-            return true;
-        } else {
-            return false;
+            notify(notificationHandler, handlerParams);
+        }
+        return true;
+    }
+
+    private Object getParams(JsonRpcRequest message, Class type) {
+        if (type.isInstance(message)) {
+            return message;
+        }
+        return jsonHelper.jsonToObject(message.getParams(), type);
+    }
+
+    private void notify(final MessageHandlerEntry notificationHandler, final Object params) {
+        if (notificationHandler.executor == null) {
+            notificationHandler.handler.onMessage(params);
+            notificationHandler.handler.onFinished();
+            return;
+        }
+        try {
+            notificationHandler.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    notificationHandler.handler.onMessage(params);
+                    notificationHandler.handler.onFinished();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor is overloaded, the notification is dropped for this listener
         }
     }
 
@@ -299,26 +974,29 @@ public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcRespons
      */
     @Override
     public boolean onResponse(JsonRpcResponse message) {
-        MessageHandlerEntry messageHandler;
-        synchronized (messageHandlers) {
-            messageHandler = messageHandlers.remove(message.getId().asText());
-        }
+        MessageHandlerEntry messageHandler = message.getId() != null ? messageHandlers.remove(getKey(message.getId())) : null;
         if (messageHandler != null) {
-            if (messageHandler.timer != null) {
-                messageHandler.timer.cancel();
-            }
-            Object params = null;
-            if (messageHandler.type != null) {
-                if (messageHandler.type.isInstance(message)) {
-                    params = message;
-                } else if (message.getResult() != null) {
-                    params = jsonHelper.jsonToObject(message.getResult(), messageHandler.type);
+            messageHandler.cancelTimeout();
+            ClientMetrics metrics = messageHandler.clientMetrics;
+            if (metrics != null) {
+                long roundTripTime = (System.nanoTime() - messageHandler.sent) / 1000;
+                metrics.pending.add(-1);
+                metrics.roundTripTime.record(roundTripTime);
+                messageHandler.methodMetrics.roundTripTime.record(roundTripTime);
+                if (message.getError() != null) {
+                    metrics.recordError(messageHandler.methodMetrics, message.getError().getCode());
                 }
             }
             if (message.getError() != null) {
                 messageHandler.handler.onError(message.getError().getCode(), message.getError().getMessage(), message.getError().getData());
             } else {
-                messageHandler.handler.onMessage(params);
+                if (messageHandler.cacheKey != null && message.getResult() != null) {
+                    ResponseCache responseCache = this.responseCache;
+                    if (responseCache != null) {
+                        responseCache.put(messageHandler.cacheKey, messageHandler.method, message.getResult(), messageHandler.cacheGeneration);
+                    }
+                }
+                messageHandler.handler.onMessage(getResult(message, messageHandler.type));
             }
             messageHandler.handler.onFinished();
             return true;
@@ -327,4 +1005,33 @@ public class AsyncJsonRpcClient implements JsonRpcRequestHandler, JsonRpcRespons
         }
     }
 
+    /**
+     * Copy a response for an additional handler of a coalesced request, so handlers never share a mutable result
+     */
+    private static JsonRpcResponse copyResponse(JsonRpcResponse message) {
+        JsonRpcResponse copy = new JsonRpcResponse(message.getJsonrpc(), message.getId());
+        if (message.getResult() != null) {
+            copy.setResult(message.getResult().deepCopy());
+        }
+        copy.setError(message.getError());
+        return copy;
+    }
+
+    /**
+     * Get the result of a response converted to the type expected by a message handler
+     *
+     * @param message The response
+     * @param type    The type expected by the message handler, or null if it doesn't expect a result
+     * @return The result or null if the response doesn't have a result
+     */
+    private Object getResult(JsonRpcResponse message, Class type) {
+        if (type == null) {
+            return null;
+        } else if (type.isInstance(message)) {
+            return message;
+        } else if (message.getResult() != null) {
+            return jsonHelper.jsonToObject(message.getResult(), type);
+        }
+        return null;
+    }
 }
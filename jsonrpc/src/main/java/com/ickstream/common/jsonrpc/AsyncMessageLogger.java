@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Message logger which forwards messages to another message logger in a separate background thread. Messages are
+ * put in a fixed size ring buffer and if the buffer is full the message is dropped, so the thread sending or
+ * receiving the message is never blocked by a slow logger. Lazy messages are converted to strings in the background
+ * thread.
+ */
+public class AsyncMessageLogger implements LazyMessageLogger {
+    private final MessageLogger messageLogger;
+    private final BlockingQueue<Entry> buffer;
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private static class Entry {
+        private boolean incoming;
+        private String device;
+        private LazyMessage message;
+
+        private Entry(boolean incoming, String device, LazyMessage message) {
+            this.incoming = incoming;
+            this.device = device;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Creates a new instance and starts the background thread
+     *
+     * @param messageLogger The message logger to forward messages to
+     * @param bufferSize    The maximum number of messages waiting to be logged
+     */
+    public AsyncMessageLogger(MessageLogger messageLogger, Integer bufferSize) {
+        this.messageLogger = messageLogger;
+        this.buffer = new ArrayBlockingQueue<Entry>(bufferSize);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processMessages();
+            }
+        }, "AsyncMessageLogger");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Get the number of messages which have been dropped because the buffer was full
+     *
+     * @return The number of dropped messages
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Stop the background thread, messages still in the buffer are logged before the thread exits
+     */
+    public void shutdown() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void processMessages() {
+        while (running || !buffer.isEmpty()) {
+            try {
+                Entry entry = running ? buffer.take() : buffer.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.incoming) {
+                    MessageLogging.logIncoming(messageLogger, entry.device, entry.message);
+                } else {
+                    MessageLogging.logOutgoing(messageLogger, entry.device, entry.message);
+                }
+            } catch (InterruptedException e) {
+                // Continue until the buffer is empty
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void add(boolean incoming, String device, LazyMessage message) {
+        if (!buffer.offer(new Entry(incoming, device, message))) {
+            droppedMessages.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean isOutgoingEnabled(String destination) {
+        return running && MessageLogging.isOutgoingEnabled(messageLogger, destination);
+    }
+
+    @Override
+    public boolean isIncomingEnabled(String source) {
+        return running && MessageLogging.isIncomingEnabled(messageLogger, source);
+    }
+
+    @Override
+    public void onOutgoingMessage(String destination, LazyMessage message) {
+        if (isOutgoingEnabled(destination)) {
+            add(false, destination, message);
+        }
+    }
+
+    @Override
+    public void onIncomingMessage(String source, LazyMessage message) {
+        if (isIncomingEnabled(source)) {
+            add(true, source, message);
+        }
+    }
+
+    @Override
+    public void onOutgoingMessage(String destination, String message) {
+        if (isOutgoingEnabled(destination)) {
+            add(false, destination, LazyMessage.fromString(message));
+        }
+    }
+
+    @Override
+    public void onIncomingMessage(String source, String message) {
+        if (isIncomingEnabled(source)) {
+            add(true, source, LazyMessage.fromString(message));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor with a limited number of threads and a limited queue of waiting tasks, used by {@link HttpMessageSender}
+ * to send messages asynchronously without creating a new thread for every message.
+ * <p>
+ * The overflow policy decides what happens when all threads are busy and the queue is full. Tasks implementing
+ * {@link RejectableTask} are notified when they are rejected or dropped so they can report an error to the caller.
+ * </p>
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+    /**
+     * Policy to use when a task is submitted and the queue is full
+     */
+    public static enum OverflowPolicy {
+        /**
+         * Reject the new task
+         */
+        REJECT,
+        /**
+         * Block the calling thread until there is room in the queue
+         */
+        BLOCK,
+        /**
+         * Drop the oldest task in the queue to make room for the new task
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Task which is notified if it's rejected or dropped without being executed
+     */
+    public static interface RejectableTask extends Runnable {
+        /**
+         * Called instead of {@link #run()} when the task is rejected or dropped without being executed
+         */
+        void onRejected();
+    }
+
+    /**
+     * Set while {@link #tryExecute(Runnable)} is executing a task in the calling thread
+     */
+    private static final ThreadLocal<Boolean> nonBlocking = new ThreadLocal<Boolean>();
+
+    /**
+     * Thrown to {@link #tryExecute(Runnable)} instead of blocking when the queue is full
+     */
+    private static class QueueFullException extends RejectedExecutionException {
+    }
+
+    private static class OverflowHandler implements RejectedExecutionHandler {
+        private OverflowPolicy policy;
+
+        private OverflowHandler(OverflowPolicy policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (!executor.isShutdown()) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    if (nonBlocking.get() != null) {
+                        throw new QueueFullException();
+                    }
+                    try {
+                        executor.getQueue().put(task);
+                        return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else if (policy == OverflowPolicy.DROP_OLDEST) {
+                    Runnable oldest = executor.getQueue().poll();
+                    if (oldest != null) {
+                        if (oldest instanceof RejectableTask) {
+                            ((RejectableTask) oldest).onRejected();
+                        }
+                        executor.execute(task);
+                        return;
+                    }
+                }
+            }
+            if (task instanceof RejectableTask) {
+                ((RejectableTask) task).onRejected();
+            } else {
+                throw new RejectedExecutionException("Too many queued tasks");
+            }
+        }
+    }
+
+    static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private String name;
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Creates a new executor, idle threads are stopped after 60 seconds
+     *
+     * @param name        The name prefix of the created threads
+     * @param maxInFlight The maximum number of tasks executing concurrently
+     * @param queueSize   The maximum number of tasks waiting for execution
+     * @param policy      The policy to use when the queue is full
+     */
+    public BoundedExecutor(String name, Integer maxInFlight, Integer queueSize, OverflowPolicy policy) {
+        super(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize) : new SynchronousQueue<Runnable>(),
+                new DaemonThreadFactory(name),
+                new OverflowHandler(policy));
+        allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Execute a task without ever blocking the calling thread. This is the same as {@link #execute(Runnable)}
+     * except that with the {@link OverflowPolicy#BLOCK} policy a full queue doesn't block, the task is then
+     * neither queued nor notified as rejected and the caller can try again later.
+     *
+     * @param task The task to execute
+     * @return true if the task was accepted, false if the queue is full and the policy is {@link OverflowPolicy#BLOCK}
+     */
+    public boolean tryExecute(Runnable task) {
+        nonBlocking.set(Boolean.TRUE);
+        try {
+            execute(task);
+            return true;
+        } catch (QueueFullException e) {
+            return false;
+        } finally {
+            nonBlocking.remove();
+        }
+    }
+}
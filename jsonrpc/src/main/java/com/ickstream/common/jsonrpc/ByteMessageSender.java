@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+/**
+ * A message sender which is able to send JSON-RPC messages already encoded as bytes.
+ * <p>
+ * Clients such as {@link AsyncJsonRpcClient} detect this interface and encode outgoing messages directly to bytes
+ * without creating an intermediate string, the {@link #sendMessage(String)} method is only used by callers that
+ * still produce strings and is typically implemented as an adapter that encodes the string and calls
+ * {@link #sendMessage(byte[])}.
+ * </p>
+ * <p>
+ * The sender also decides the {@link MessageEncoding} used for the encoded messages, a sender should only return
+ * something else than {@link MessageEncoding#JSON} if the receiver is known to support it.
+ * </p>
+ */
+public interface ByteMessageSender extends MessageSender {
+    /**
+     * Send a message
+     *
+     * @param message The message to send, encoded with the encoding returned by {@link #getEncoding()}
+     */
+    void sendMessage(byte[] message);
+
+    /**
+     * Get the encoding which messages sent with {@link #sendMessage(byte[])} should be encoded with
+     *
+     * @return The encoding to use
+     */
+    MessageEncoding getEncoding();
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Circuit breaker which stops requests to a service which is failing, used by {@link HttpMessageSender}.
+ * <p>
+ * The breaker starts closed and keeps the outcome of the most recent calls. When enough calls have been made and
+ * the share of failed calls, or of calls slower than the slow call threshold, reaches its threshold the breaker
+ * opens. While it's open calls are rejected immediately. After the open duration the breaker becomes half open and
+ * lets a limited number of probe calls through, it closes if they all succeed and opens again if any of them fails.
+ * </p>
+ */
+public class CircuitBreaker {
+    /**
+     * The state of a circuit breaker
+     */
+    public enum State {
+        /**
+         * Calls are allowed
+         */
+        CLOSED,
+        /**
+         * Calls are rejected
+         */
+        OPEN,
+        /**
+         * A limited number of probe calls are allowed
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Listener which is called when the state of a circuit breaker changes
+     */
+    public interface Listener {
+        /**
+         * Called after the state has changed
+         *
+         * @param circuitBreaker The circuit breaker
+         * @param state          The new state
+         */
+        void onStateChanged(CircuitBreaker circuitBreaker, State state);
+    }
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private final byte[] outcomes;
+    private final int minimumCalls;
+    private double failureRateThreshold = 0.5;
+    private long slowCallThreshold = -1;
+    private double slowCallRateThreshold = 1.0;
+    private long openDuration = 30000;
+    private int halfOpenCalls = 1;
+    private HashedWheelTimer timer = HashedWheelTimer.getSharedTimer();
+
+    private State state = State.CLOSED;
+    private int calls;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    private int probes;
+    private int successfulProbes;
+    private long openCount;
+
+    /**
+     * Creates a new circuit breaker which considers the last 20 calls and opens when at least half of them failed
+     */
+    public CircuitBreaker() {
+        this(20, 10);
+    }
+
+    /**
+     * Creates a new circuit breaker
+     *
+     * @param windowSize   The number of recent calls to consider
+     * @param minimumCalls The minimum number of calls required before the breaker can open
+     */
+    public CircuitBreaker(Integer windowSize, Integer minimumCalls) {
+        if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid window size " + windowSize + " for " + minimumCalls + " calls");
+        }
+        this.outcomes = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+    }
+
+    /**
+     * Set the share of failed calls which opens the breaker, the default is 0.5
+     *
+     * @param failureRateThreshold The share of failed calls, between 0 and 1
+     */
+    public synchronized void setFailureRateThreshold(Double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * Set when calls are considered slow and the share of slow calls which opens the breaker, slow calls aren't
+     * considered by default
+     *
+     * @param slowCallThreshold     The latency in milliseconds from which a call is slow, null if slow calls shouldn't
+     *                              be considered
+     * @param slowCallRateThreshold The share of slow calls, between 0 and 1
+     */
+    public synchronized void setSlowCallThreshold(Long slowCallThreshold, Double slowCallRateThreshold) {
+        this.slowCallThreshold = slowCallThreshold != null ? slowCallThreshold : -1;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * Set how long the breaker stays open before probe calls are allowed, the default is 30 seconds
+     *
+     * @param openDuration The duration in milliseconds
+     */
+    public synchronized void setOpenDuration(Long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Set the number of successful probe calls required to close a half open breaker, this is also the maximum
+     * number of concurrent probe calls, the default is 1
+     *
+     * @param halfOpenCalls The number of probe calls
+     */
+    public synchronized void setHalfOpenCalls(Integer halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * Add a listener which is called when the state changes, the listener is called from the thread causing the
+     * change so it shouldn't block
+     *
+     * @param listener The listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener previously added with {@link #addListener(Listener)}
+     *
+     * @param listener The listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the current state
+     *
+     * @return The current state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Get if calls are currently allowed
+     *
+     * @return true unless the breaker is open
+     */
+    public boolean isAvailable() {
+        return getState() != State.OPEN;
+    }
+
+    /**
+     * Try to start a call, every successful call must be followed by a call to {@link #onSuccess(long)},
+     * {@link #onFailure()} or {@link #onCancelled()}
+     *
+     * @return true if the call is allowed, false if it should be rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        } else if (state == State.HALF_OPEN && probes < halfOpenCalls - successfulProbes) {
+            probes++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record a successful call
+     *
+     * @param latency The latency of the call in milliseconds
+     */
+    public void onSuccess(long latency) {
+        record(slowCallThreshold >= 0 && latency >= slowCallThreshold ? SLOW : SUCCESS);
+    }
+
+    /**
+     * Record a failed call
+     */
+    public void onFailure() {
+        record(FAILURE);
+    }
+
+    /**
+     * Record a call which was started but never made, it doesn't affect the state
+     */
+    public synchronized void onCancelled() {
+        if (state == State.HALF_OPEN && probes > 0) {
+            probes--;
+        }
+    }
+
+    private void record(byte outcome) {
+        State changed = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                if (probes > 0) {
+                    probes--;
+                }
+                if (outcome != SUCCESS) {
+                    changed = open();
+                } else if (++successfulProbes >= halfOpenCalls) {
+                    changed = close();
+                }
+            } else if (state == State.CLOSED) {
+                if (calls == outcomes.length) {
+                    remove(outcomes[next]);
+                } else {
+                    calls++;
+                }
+                outcomes[next] = outcome;
+                next = (next + 1) % outcomes.length;
+                if (outcome == FAILURE) {
+                    failures++;
+                } else if (outcome == SLOW) {
+                    slowCalls++;
+                }
+                if (calls >= minimumCalls && (failures >= failureRateThreshold * calls || slowCalls >= slowCallRateThreshold * calls)) {
+                    changed = open();
+                }
+            }
+        }
+        if (changed != null) {
+            notifyListeners(changed);
+        }
+    }
+
+    private void remove(byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private State open() {
+        state = State.OPEN;
+        final long opened = ++openCount;
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                boolean changed = false;
+                synchronized (CircuitBreaker.this) {
+                    if (state == State.OPEN && openCount == opened) {
+                        state = State.HALF_OPEN;
+                        probes = 0;
+                        successfulProbes = 0;
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    notifyListeners(State.HALF_OPEN);
+                }
+            }
+        }, openDuration);
+        return state;
+    }
+
+    private State close() {
+        state = State.CLOSED;
+        calls = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+        return state;
+    }
+
+    private void notifyListeners(State state) {
+        for (Listener listener : listeners) {
+            listener.onStateChanged(this, state);
+        }
+    }
+}
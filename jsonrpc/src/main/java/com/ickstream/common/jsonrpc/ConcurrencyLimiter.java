@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+/**
+ * Limits the number of concurrently executing calls, used by {@link StreamJsonRpcService} to keep expensive methods
+ * from starving cheap ones. Calls exceeding the limit wait in a bounded queue until a call completes or the queue
+ * timeout has passed, calls which don't fit in the queue are rejected immediately.
+ * <p>
+ * The limit can be fixed or adaptive, see {@link #setAdaptive(Integer, Integer)}. An adaptive limit is controlled
+ * with additive increase and multiplicative decrease (AIMD): the limit grows slowly while calls complete with a
+ * latency close to the lowest observed latency and the limit is actually used, and shrinks by 10% when calls fail or
+ * their latency grows beyond the lowest observed latency times the latency tolerance, which means that requests are
+ * queueing up somewhere behind the service.
+ * </p>
+ */
+public class ConcurrencyLimiter {
+    private static final double DECREASE_RATIO = 0.9;
+    private static final int LATENCY_WINDOW = 500;
+
+    private final int queueSize;
+    private final long queueTimeout;
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long rejected;
+
+    private boolean adaptive;
+    private int minLimit;
+    private int maxLimit;
+    private double latencyTolerance = 2.0;
+    private long minLatency = Long.MAX_VALUE;
+    private long windowMinLatency = Long.MAX_VALUE;
+    private int windowSamples;
+    private int samplesSinceDecrease;
+
+    /**
+     * Creates a new limiter with a fixed limit which rejects calls exceeding the limit immediately
+     *
+     * @param limit The maximum number of concurrent calls
+     */
+    public ConcurrencyLimiter(Integer limit) {
+        this(limit, 0, 0L);
+    }
+
+    /**
+     * Creates a new limiter with a fixed limit and a queue for calls exceeding the limit
+     *
+     * @param limit        The maximum number of concurrent calls
+     * @param queueSize    The maximum number of calls waiting for the limit
+     * @param queueTimeout The maximum time in milliseconds a call waits for the limit before it's rejected, calls are
+     *                     only queued if this is larger than 0
+     */
+    public ConcurrencyLimiter(Integer limit, Integer queueSize, Long queueTimeout) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        this.limit = limit;
+        this.queueSize = queueSize;
+        this.queueTimeout = queueTimeout;
+    }
+
+    /**
+     * Make the limit adapt to the observed latency of the calls, starting from the current limit
+     *
+     * @param minLimit The lowest limit to use
+     * @param maxLimit The highest limit to use
+     */
+    public synchronized void setAdaptive(Integer minLimit, Integer maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits " + minLimit + "-" + maxLimit);
+        }
+        this.adaptive = true;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(maxLimit, Math.max(minLimit, limit));
+    }
+
+    /**
+     * Set how much higher than the lowest observed latency the latency of a call can be before an adaptive limit is
+     * decreased, the default is 2.0
+     *
+     * @param latencyTolerance The tolerance as a factor of the lowest observed latency
+     */
+    public synchronized void setLatencyTolerance(Double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Acquire a permit to execute a call, if no permit is available the calling thread waits in the queue.
+     * Every successful call must be followed by a call to {@link #release(long, boolean)}.
+     *
+     * @return true if a permit was acquired, false if the call was rejected
+     */
+    public synchronized boolean acquire() {
+        if (inFlight < getLimit()) {
+            inFlight++;
+            return true;
+        }
+        if (waiting >= queueSize || queueTimeout <= 0) {
+            rejected++;
+            return false;
+        }
+        waiting++;
+        try {
+            long deadline = System.currentTimeMillis() + queueTimeout;
+            long remaining = queueTimeout;
+            while (inFlight >= getLimit() && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting--;
+        }
+        if (inFlight < getLimit()) {
+            inFlight++;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * Release a permit acquired with {@link #acquire()} when the call has completed
+     *
+     * @param latency The time in nanoseconds it took to execute the call
+     * @param failed  true if the call failed
+     */
+    public synchronized void release(long latency, boolean failed) {
+        if (adaptive) {
+            adapt(latency, failed);
+        }
+        inFlight--;
+        notify();
+    }
+
+    private void adapt(long latency, boolean failed) {
+        if (!failed) {
+            minLatency = Math.min(minLatency, latency);
+            windowMinLatency = Math.min(windowMinLatency, latency);
+            if (++windowSamples >= LATENCY_WINDOW) {
+                // Forget old samples so the limiter adapts if the service becomes permanently slower
+                minLatency = windowMinLatency;
+                windowMinLatency = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+        samplesSinceDecrease++;
+        if (failed || latency > minLatency * latencyTolerance) {
+            // Only decrease once for the calls that were executing at the same time
+            if (samplesSinceDecrease >= limit) {
+                limit = Math.max(minLimit, limit * DECREASE_RATIO);
+                samplesSinceDecrease = 0;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        if (limit > inFlight) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Get the current limit
+     *
+     * @return The maximum number of concurrent calls
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Get the number of currently executing calls
+     *
+     * @return The number of calls holding a permit
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Get the number of calls waiting in the queue
+     *
+     * @return The number of waiting calls
+     */
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Get the total number of rejected calls
+     *
+     * @return The number of rejected calls
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
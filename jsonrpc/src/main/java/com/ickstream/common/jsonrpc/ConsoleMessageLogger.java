@@ -44,7 +44,7 @@ public class ConsoleMessageLogger implements MessageLogger {
      */
     @Override
     public void onOutgoingMessage(String destination, String message) {
-        System.out.println("Outgoing (" + destination + "): \n" + message + "\n\n");
+        System.out.println("Outgoing (" + destination + "): \n" + prettyPrint(message) + "\n\n");
     }
 
     /**
@@ -55,11 +55,15 @@ public class ConsoleMessageLogger implements MessageLogger {
      */
     @Override
     public void onIncomingMessage(String source, String message) {
+        System.out.println("Incoming (" + source + "): \n" + prettyPrint(message) + "\n\n");
+    }
+
+    private String prettyPrint(String message) {
         JsonNode jsonNode = jsonHelper.stringToObject(message, JsonNode.class);
         if (jsonNode == null) {
-            System.out.println("Incoming (" + source + "): \n" + message + "\n\n");
+            return message;
         } else {
-            System.out.println("Incoming (" + source + "): \n" + jsonHelper.objectToString(jsonNode) + "\n\n");
+            return jsonHelper.objectToPrettyString(jsonNode);
         }
     }
 }
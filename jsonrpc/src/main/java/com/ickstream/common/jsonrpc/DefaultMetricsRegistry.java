@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory metrics registry which records counters as {@link StripedCounter} and histograms as
+ * {@link LogHistogram}, the recorded values can be read with {@link #getCounters()} and {@link #getHistograms()}
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+    private final ConcurrentMap<String, StripedCounter> counters = new ConcurrentHashMap<String, StripedCounter>();
+    private final ConcurrentMap<String, LogHistogram> histograms = new ConcurrentHashMap<String, LogHistogram>();
+
+    @Override
+    public StripedCounter getCounter(String name) {
+        StripedCounter counter = counters.get(name);
+        if (counter == null) {
+            StripedCounter newCounter = new StripedCounter();
+            counter = counters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+                onCounterCreated(name, counter);
+            }
+        }
+        return counter;
+    }
+
+    @Override
+    public LogHistogram getHistogram(String name) {
+        LogHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LogHistogram newHistogram = new LogHistogram();
+            histogram = histograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+                onHistogramCreated(name, histogram);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Get all counters in the registry
+     *
+     * @return The counters sorted by name
+     */
+    public Map<String, StripedCounter> getCounters() {
+        return Collections.unmodifiableMap(new TreeMap<String, StripedCounter>(counters));
+    }
+
+    /**
+     * Get all histograms in the registry
+     *
+     * @return The histograms sorted by name
+     */
+    public Map<String, LogHistogram> getHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<String, LogHistogram>(histograms));
+    }
+
+    /**
+     * Reset all counters and histograms in the registry
+     */
+    public void reset() {
+        for (StripedCounter counter : counters.values()) {
+            counter.reset();
+        }
+        for (LogHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Called when a new counter has been added to the registry
+     *
+     * @param name    The name of the counter
+     * @param counter The counter
+     */
+    protected void onCounterCreated(String name, StripedCounter counter) {
+    }
+
+    /**
+     * Called when a new histogram has been added to the registry
+     *
+     * @param name      The name of the histogram
+     * @param histogram The histogram
+     */
+    protected void onHistogramCreated(String name, LogHistogram histogram) {
+    }
+}
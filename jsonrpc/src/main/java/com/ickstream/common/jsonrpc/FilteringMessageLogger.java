@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Message logger which decides which messages to forward to another message logger. Logging can be enabled
+ * separately for incoming and outgoing messages, limited to a set of devices and sampled so only every N:th
+ * message is logged. Messages which aren't forwarded are never converted to strings.
+ */
+public class FilteringMessageLogger implements LazyMessageLogger {
+    private final MessageLogger messageLogger;
+    private volatile boolean incomingEnabled = true;
+    private volatile boolean outgoingEnabled = true;
+    private volatile Set<String> devices;
+    private volatile int sampleRate = 1;
+    private final AtomicLong incomingCounter = new AtomicLong();
+    private final AtomicLong outgoingCounter = new AtomicLong();
+
+    /**
+     * Creates a new instance which forwards all messages to the specified message logger until configured otherwise
+     *
+     * @param messageLogger The message logger to forward messages to
+     */
+    public FilteringMessageLogger(MessageLogger messageLogger) {
+        this.messageLogger = messageLogger;
+    }
+
+    /**
+     * Enable or disable logging of incoming messages
+     *
+     * @param incomingEnabled true if incoming messages should be logged
+     */
+    public void setIncomingEnabled(Boolean incomingEnabled) {
+        this.incomingEnabled = incomingEnabled;
+    }
+
+    /**
+     * Enable or disable logging of outgoing messages
+     *
+     * @param outgoingEnabled true if outgoing messages should be logged
+     */
+    public void setOutgoingEnabled(Boolean outgoingEnabled) {
+        this.outgoingEnabled = outgoingEnabled;
+    }
+
+    /**
+     * Limit logging to messages sent to or received from the specified devices or endpoints
+     *
+     * @param devices The device identities or endpoints to log messages for, or null to log messages for all devices
+     */
+    public void setDevices(Collection<String> devices) {
+        this.devices = devices != null ? new HashSet<String>(devices) : null;
+    }
+
+    /**
+     * Only log every N:th message in each direction, this makes it possible to keep logging enabled under high load
+     *
+     * @param sampleRate The sample rate, 1 means that all messages are logged
+     */
+    public void setSampleRate(Integer sampleRate) {
+        if (sampleRate == null || sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    private boolean isDeviceEnabled(String device) {
+        Set<String> devices = this.devices;
+        return devices == null || devices.contains(device);
+    }
+
+    private boolean isSampled(AtomicLong counter) {
+        int sampleRate = this.sampleRate;
+        return sampleRate == 1 || counter.getAndIncrement() % sampleRate == 0;
+    }
+
+    @Override
+    public boolean isOutgoingEnabled(String destination) {
+        return outgoingEnabled && isDeviceEnabled(destination) && MessageLogging.isOutgoingEnabled(messageLogger, destination);
+    }
+
+    @Override
+    public boolean isIncomingEnabled(String source) {
+        return incomingEnabled && isDeviceEnabled(source) && MessageLogging.isIncomingEnabled(messageLogger, source);
+    }
+
+    @Override
+    public void onOutgoingMessage(String destination, LazyMessage message) {
+        if (isOutgoingEnabled(destination) && isSampled(outgoingCounter)) {
+            MessageLogging.logOutgoing(messageLogger, destination, message);
+        }
+    }
+
+    @Override
+    public void onIncomingMessage(String source, LazyMessage message) {
+        if (isIncomingEnabled(source) && isSampled(incomingCounter)) {
+            MessageLogging.logIncoming(messageLogger, source, message);
+        }
+    }
+
+    @Override
+    public void onOutgoingMessage(String destination, String message) {
+        if (isOutgoingEnabled(destination) && isSampled(outgoingCounter)) {
+            messageLogger.onOutgoingMessage(destination, message);
+        }
+    }
+
+    @Override
+    public void onIncomingMessage(String source, String message) {
+        if (isIncomingEnabled(source) && isSampled(incomingCounter)) {
+            messageLogger.onIncomingMessage(source, message);
+        }
+    }
+}
@@ -29,21 +29,36 @@
 package com.ickstream.common.jsonrpc;
 
 import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A JSON-RPC identity provider which generates unique identities within this JVM instance
  */
 public class GlobalIdProvider implements IdProvider {
-    private static int id = 0;
-    private final static Object syncObject = new Object();
+    private final static AtomicLong id = new AtomicLong();
 
     /**
      * See {@link com.ickstream.common.jsonrpc.IdProvider#getNextId()}
      */
     @Override
-    public IntNode getNextId() {
-        synchronized (syncObject) {
-            return new IntNode(++id);
+    public ValueNode getNextId() {
+        return createId(id.incrementAndGet());
+    }
+
+    /**
+     * Create an identity node, identities are sent as 32-bit integers as long as they fit and as 64-bit integers after that
+     *
+     * @param id The numeric identity
+     * @return The identity node
+     */
+    static ValueNode createId(long id) {
+        if (id <= Integer.MAX_VALUE) {
+            return IntNode.valueOf((int) id);
+        } else {
+            return LongNode.valueOf(id);
         }
     }
 }
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer implementation which executes delayed tasks using a hashed wheel, all tasks are executed in a single
+ * background thread regardless of how many tasks that are scheduled.
+ * <p>
+ * Scheduling and cancelling a task are both O(1) operations which makes this timer suitable for request timeouts
+ * where most tasks are cancelled before they expire. The precision of the timer is limited to the tick duration,
+ * and since all tasks are executed in the same thread a task should finish quickly.
+ * </p>
+ */
+public class HashedWheelTimer {
+    private static HashedWheelTimer sharedTimer;
+    /**
+     * The number of threads of the executor returned by {@link #getSharedExecutor()}
+     */
+    static final int SHARED_EXECUTOR_THREADS = 2;
+
+    private static Executor sharedExecutor;
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Thread thread;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private volatile boolean running = true;
+
+    /**
+     * A scheduled task which can be cancelled before it has been executed
+     */
+    public static class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final long deadline;
+        private Runnable task;
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout previous;
+        private Bucket bucket;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task, if it hasn't been executed yet it will never be executed
+         *
+         * @return true if the task was cancelled, false if it already has been executed or cancelled
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                // Release the task directly, the timeout itself is removed from the wheel when its bucket is processed
+                task = null;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Check if the task has been cancelled
+         *
+         * @return true if the task has been cancelled
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(WAITING, EXPIRED)) {
+                Runnable task = this.task;
+                this.task = null;
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Linked list of the timeouts in a single slot of the wheel, only accessed from the timer thread
+     */
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.previous != null) {
+                timeout.previous.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        private void expireTimeouts() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    Timeout next = remove(timeout);
+                    timeout.expire();
+                    timeout = next;
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the timer instance shared by all JSON-RPC clients in this JVM instance, it uses a tick duration of 10 ms
+     *
+     * @return The shared timer instance
+     */
+    public static synchronized HashedWheelTimer getSharedTimer() {
+        if (sharedTimer == null) {
+            sharedTimer = new HashedWheelTimer("HashedWheelTimer-shared", 10, 512);
+        }
+        return sharedTimer;
+    }
+
+    /**
+     * Get the executor shared by all JSON-RPC clients in this JVM instance for expired timeouts which call
+     * application code, such as message handlers and future callbacks. Such code might block and must therefore not
+     * run in the timer thread, where it would delay all other timeouts. The executor has a fixed number of
+     * {@link #SHARED_EXECUTOR_THREADS} threads and queues expired timeouts when all of them are busy, so the number
+     * of threads doesn't depend on the number of requests in flight. Idle threads are stopped after 60 seconds.
+     * Applications with handlers that block for a long time should use an executor of their own, see
+     * {@link AsyncJsonRpcClient#setTimeoutExecutor(Executor)}.
+     *
+     * @return The shared executor
+     */
+    public static synchronized Executor getSharedExecutor() {
+        if (sharedExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(SHARED_EXECUTOR_THREADS, SHARED_EXECUTOR_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new BoundedExecutor.DaemonThreadFactory("HashedWheelTimer-shared-executor"));
+            executor.allowCoreThreadTimeOut(true);
+            sharedExecutor = executor;
+        }
+        return sharedExecutor;
+    }
+
+    /**
+     * Creates a new timer and starts its background thread
+     *
+     * @param name          The name of the background thread
+     * @param tickDuration  The duration of a tick in milliseconds, this is the precision of the timer
+     * @param ticksPerWheel The number of slots in the wheel, this is rounded up to the nearest power of two
+     */
+    public HashedWheelTimer(String name, long tickDuration, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWorker();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedule a task for execution after the specified delay
+     *
+     * @param task  The task to execute
+     * @param delay The delay in milliseconds
+     * @return The scheduled timeout which can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        if (!running) {
+            throw new IllegalStateException("Timer has been stopped");
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0)));
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Check if the calling thread is the background thread of this timer, code which might block or call
+     * application code must not run in this thread
+     *
+     * @return true if called from a task executed by this timer
+     */
+    public boolean isTimerThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Stop the timer, tasks which haven't expired yet will never be executed
+     */
+    public void stop() {
+        running = false;
+    }
+
+    private void runWorker() {
+        long tick = 0;
+        while (running) {
+            long sleepTime = tickDuration * (tick + 1) - (System.nanoTime() - startTime);
+            if (sleepTime > 0) {
+                try {
+                    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleepTime), (int) (sleepTime % 1000000));
+                } catch (InterruptedException e) {
+                    // Just continue with the next tick
+                }
+                continue;
+            }
+            transferPendingTimeouts(tick);
+            wheel[(int) (tick & mask)].expireTimeouts();
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts(long tick) {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long calculatedTick = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (calculatedTick - tick) / wheel.length;
+            long targetTick = Math.max(calculatedTick, tick);
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+}
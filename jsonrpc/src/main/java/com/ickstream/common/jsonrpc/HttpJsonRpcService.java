@@ -28,11 +28,17 @@
 
 package com.ickstream.common.jsonrpc;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implementation of a JSON-RPC service, the purpose is to abstract JSON-RPC transport protocol and parsing from the
@@ -41,10 +47,65 @@ import java.io.OutputStream;
  * The communication is handled as {@link HttpServletRequest} and {@link HttpServletResponse} objects.
  * </p>
  * <p>
+ * If an asynchronous executor has been set with {@link #setAsyncExecutor(java.util.concurrent.Executor)} and the
+ * servlet container supports it, requests are processed in Servlet 3.0 asynchronous mode. The container thread is
+ * then released directly, the service method is called in the executor and the response is completed when the result
+ * is available. Service methods which return a {@link JsonRpcFuture} don't hold any thread while waiting for the
+ * result in this mode.
+ * </p>
+ * <p>
  * See {@link StreamJsonRpcService} for more details
  * </p>
  */
 public class HttpJsonRpcService extends StreamJsonRpcService {
+    /**
+     * The content type of Smile encoded requests and responses, see {@link MessageEncoding#SMILE}
+     */
+    public static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+    private Executor asyncExecutor;
+    private Long asyncTimeout;
+
+    /**
+     * Output stream of an asynchronous response which discards everything written after the response has been
+     * completed, the container might then already have recycled the underlying stream for another request
+     */
+    private static class AsyncOutputStream extends OutputStream {
+        private final OutputStream output;
+        private final AtomicBoolean completed;
+
+        private AsyncOutputStream(OutputStream output, AtomicBoolean completed) {
+            this.output = output;
+            this.completed = completed;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!completed.get()) {
+                output.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!completed.get()) {
+                output.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!completed.get()) {
+                output.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!completed.get()) {
+                output.close();
+            }
+        }
+    }
 
     /**
      * @param serviceImplementation The service implementation that implements the service interface
@@ -58,17 +119,47 @@ public class HttpJsonRpcService extends StreamJsonRpcService {
         super(serviceImplementation, serviceInterface, true);
     }
 
+    /**
+     * Set the executor to use to process requests in Servlet 3.0 asynchronous mode. If no executor is set or the
+     * request doesn't support asynchronous processing the request is processed in the servlet container thread.
+     *
+     * @param asyncExecutor The executor to use or null if requests should be processed synchronously
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Set the timeout of asynchronous requests, if not set the default timeout of the servlet container is used.
+     * When the timeout expires the container completes the response and the result of the service method is discarded.
+     *
+     * @param asyncTimeout The timeout in milliseconds, zero or a negative value means no timeout
+     */
+    public void setAsyncTimeout(Long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
     /**
      * Process a JSON-RPC request received as a {@link HttpServletRequest} representing a HTTP POST request and writes
      * the result (if any) to the specified {@link HttpServletResponse}.
+     * <p>
+     * In asynchronous mode this method returns when the request has been handed over to the executor, the response
+     * is completed later through the {@link AsyncContext} of the request.
+     * </p>
      *
      * @param request  The {@link HttpServletRequest} that contains the JSON-RPC request/notification
      * @param response The {@link HttpServletResponse} which the result should be written to
      * @throws java.io.IOException When an error occurrs
      */
     public void handle(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("utf-8");
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith(SMILE_CONTENT_TYPE)) {
+            // Smile encoded requests are answered in Smile, see StreamJsonRpcService
+            response.setContentType(SMILE_CONTENT_TYPE);
+        } else {
+            response.setContentType("application/json");
+            response.setCharacterEncoding("utf-8");
+        }
 
         InputStream input = null;
         OutputStream output = response.getOutputStream();
@@ -79,7 +170,70 @@ public class HttpJsonRpcService extends StreamJsonRpcService {
             throw new IOException(
                     "Invalid request method, only POST is supported");
         }
-        super.handle(input, output);
+        Executor executor = asyncExecutor;
+        if (executor != null && request.isAsyncSupported()) {
+            handleAsync(request, response, input, output, executor);
+        } else {
+            super.handle(input, output);
+        }
+    }
+
+    private void handleAsync(HttpServletRequest request, HttpServletResponse response, final InputStream input, OutputStream responseOutput, Executor executor) {
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        if (asyncTimeout != null) {
+            asyncContext.setTimeout(asyncTimeout > 0 ? asyncTimeout : 0);
+        }
+        final AtomicBoolean completed = new AtomicBoolean(false);
+        // The container completes the response by itself on timeouts and errors, after that nothing must be written
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) throws IOException {
+                completed.set(true);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                completed.set(true);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) throws IOException {
+                completed.set(true);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) throws IOException {
+            }
+        });
+        final OutputStream output = new AsyncOutputStream(responseOutput, completed);
+        final Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                if (completed.compareAndSet(false, true)) {
+                    asyncContext.complete();
+                }
+            }
+        };
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (completed.get()) {
+                    // The request timed out before it was processed
+                    return;
+                }
+                try {
+                    handle(input, output, completion);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    completion.run();
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
     }
 
 }
\ No newline at end of file
@@ -28,21 +28,65 @@
 
 package com.ickstream.common.jsonrpc;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Message sender implementation that sends JSON-RPC message to the specified HTTP endpoint using HTTP POST messages
+ * <p>
+ * A message can either be a single JSON-RPC request or a JSON-RPC batch request, the responses of a batch request
+ * are forwarded one by one to the response handler.
+ * </p>
+ * <p>
+ * Compression is optional in both directions, see {@link #setAcceptCompressedResponses(Boolean)} and
+ * {@link #setRequestCompressionThreshold(Integer)}. Compressed responses are decompressed as a stream directly into
+ * the JSON parser.
+ * </p>
+ * <p>
+ * Failed requests of idempotent methods can be retried and hedged, see {@link #setRetryPolicy(String, RetryPolicy)}.
+ * Requests to an endpoint which keeps failing can be stopped with a circuit breaker, see
+ * {@link #setCircuitBreaker(CircuitBreaker)}.
+ * </p>
  */
 public class HttpMessageSender implements MessageSender {
+    /**
+     * Maximum number of messages sent concurrently by the shared default executor
+     */
+    public static final Integer DEFAULT_MAX_IN_FLIGHT = 20;
+    /**
+     * Maximum number of messages waiting to be sent by the shared default executor
+     */
+    public static final Integer DEFAULT_QUEUE_SIZE = 500;
+    /**
+     * Delay in milliseconds before a retry or hedged attempt is submitted again when the executor is full
+     */
+    private static final long SUBMIT_RETRY_DELAY = 10;
+
     private String endpoint;
     private String accessToken;
     private JsonRpcResponseHandler responseHandler;
@@ -50,6 +94,122 @@ public class HttpMessageSender implements MessageSender {
     private HttpClient httpClient;
     private MessageLogger messageLogger;
     private Boolean asynchronous = false;
+    private Executor executor;
+    private static Executor defaultExecutor;
+    private Boolean acceptCompressedResponses = false;
+    private Integer requestCompressionThreshold;
+    private volatile SenderMetrics metrics;
+    private volatile CircuitBreaker circuitBreaker;
+    private final Map<String, RetryPolicy> retryPolicies = new ConcurrentHashMap<String, RetryPolicy>();
+    private HashedWheelTimer timer = HashedWheelTimer.getSharedTimer();
+
+    /**
+     * Result of a single attempt to send a message
+     */
+    private static class Attempt {
+        private int statusCode;
+        private String reasonPhrase;
+        private JsonNode json;
+        private IOException failure;
+        private long latency;
+
+        private boolean isRetryable() {
+            return failure != null || statusCode >= 500;
+        }
+    }
+
+    /**
+     * A message which can be sent several times because of retries or hedging, only the first final result is
+     * delivered to the response handler
+     */
+    private static class Call {
+        private final HttpClient httpClient;
+        private final HttpEntity entity;
+        private final List<JsonRpcRequest> requests;
+        private final SenderMetrics metrics;
+        private final RetryPolicy retryPolicy;
+        private final CircuitBreaker circuitBreaker;
+        private final long started = System.currentTimeMillis();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private int attempts;
+        private int outstanding;
+
+        private Call(HttpClient httpClient, HttpEntity entity, List<JsonRpcRequest> requests, SenderMetrics metrics, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+            this.httpClient = httpClient;
+            this.entity = entity;
+            this.requests = requests;
+            this.metrics = metrics;
+            this.retryPolicy = retryPolicy;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        private synchronized void begin() {
+            attempts++;
+            outstanding++;
+        }
+
+        private synchronized boolean beginHedge() {
+            if (attempts == 1 && outstanding == 1) {
+                begin();
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized int end() {
+            return --outstanding;
+        }
+
+        private synchronized int getAttempts() {
+            return attempts;
+        }
+    }
+
+    /**
+     * Metrics of the HTTP requests sent to the endpoint
+     */
+    private static class SenderMetrics {
+        private final MetricsRegistry.Counter[] statusClasses = new MetricsRegistry.Counter[6];
+        private final MetricsRegistry.Counter unauthorized;
+        private final MetricsRegistry.Counter ioErrors;
+        private final MetricsRegistry.Counter rejected;
+        private final MetricsRegistry.Counter retries;
+        private final MetricsRegistry.Counter hedges;
+        private final MetricsRegistry.Counter unavailable;
+        private final MetricsRegistry.Counter inFlight;
+        private final MetricsRegistry.Histogram queueTime;
+        private final MetricsRegistry.Histogram executeTime;
+        private final MetricsRegistry.Histogram readTime;
+        private final MetricsRegistry.Histogram requestSize;
+        private final MetricsRegistry.Histogram responseSize;
+
+        private SenderMetrics(MetricsRegistry registry, String prefix) {
+            statusClasses[0] = registry.getCounter(prefix + ".status.other");
+            for (int i = 1; i < statusClasses.length; i++) {
+                statusClasses[i] = registry.getCounter(prefix + ".status." + i + "xx");
+            }
+            unauthorized = registry.getCounter(prefix + ".status.401");
+            ioErrors = registry.getCounter(prefix + ".ioErrors");
+            rejected = registry.getCounter(prefix + ".rejected");
+            retries = registry.getCounter(prefix + ".retries");
+            hedges = registry.getCounter(prefix + ".hedges");
+            unavailable = registry.getCounter(prefix + ".unavailable");
+            inFlight = registry.getCounter(prefix + ".inFlight");
+            queueTime = registry.getHistogram(prefix + ".queueMicros");
+            executeTime = registry.getHistogram(prefix + ".executeMicros");
+            readTime = registry.getHistogram(prefix + ".readMicros");
+            requestSize = registry.getHistogram(prefix + ".requestBytes");
+            responseSize = registry.getHistogram(prefix + ".responseBytes");
+        }
+
+        private void recordStatus(int statusCode) {
+            int statusClass = statusCode / 100;
+            statusClasses[statusClass > 0 && statusClass < statusClasses.length ? statusClass : 0].add(1);
+            if (statusCode == 401) {
+                unauthorized.add(1);
+            }
+        }
+    }
 
     /**
      * Creates a new message sender instance
@@ -123,6 +283,149 @@ public class HttpMessageSender implements MessageSender {
         this.responseHandler = responseHandler;
     }
 
+    /**
+     * Set the executor to use when sending messages asynchronously. If not set, a shared {@link BoundedExecutor} with
+     * {@link #DEFAULT_MAX_IN_FLIGHT} threads and a queue of {@link #DEFAULT_QUEUE_SIZE} messages is used.
+     * If the executor rejects a message, an error response with code {@link JsonRpcError#OVERLOADED} is
+     * sent to the response handler. Retries and hedged attempts are submitted when their delay has expired, a
+     * {@link BoundedExecutor} never blocks them even with the {@link BoundedExecutor.OverflowPolicy#BLOCK} policy,
+     * other executors are called in a thread of {@link HashedWheelTimer#getSharedExecutor()}.
+     *
+     * @param executor The executor to use, or null to use the shared default executor
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Set if the server should be allowed to send gzip or deflate compressed responses. If enabled, the requests
+     * advertise the supported encodings in an Accept-Encoding header.
+     *
+     * @param acceptCompressedResponses true if compressed responses should be accepted, default is false
+     */
+    public void setAcceptCompressedResponses(Boolean acceptCompressedResponses) {
+        this.acceptCompressedResponses = acceptCompressedResponses;
+    }
+
+    /**
+     * Set the size from which request bodies are sent gzip compressed, this should only be set if the server is
+     * known to accept compressed requests
+     *
+     * @param requestCompressionThreshold The minimum size in bytes of a request body to compress, null if requests
+     *                                    should never be compressed which is the default
+     */
+    public void setRequestCompressionThreshold(Integer requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * Set the policy for retrying failed requests of a method. Requests which fail with an I/O error or a HTTP 5xx
+     * status are retried according to the policy, other errors including unauthorized access are reported
+     * immediately. A batch request is only retried if all methods in the batch have a retry policy, the policy of
+     * the first method is used. Retry policies should only be used for idempotent methods.
+     *
+     * @param method      The method
+     * @param retryPolicy The policy to use or null if failed requests shouldn't be retried, which is the default
+     */
+    public void setRetryPolicy(String method, RetryPolicy retryPolicy) {
+        if (retryPolicy != null) {
+            retryPolicies.put(method, retryPolicy);
+        } else {
+            retryPolicies.remove(method);
+        }
+    }
+
+    /**
+     * Set the circuit breaker to use for the endpoint. While the circuit breaker is open requests aren't sent,
+     * instead an error response with code {@link JsonRpcError#SERVICE_UNAVAILABLE} is sent to the response handler.
+     * A message counts as failed for the circuit breaker if it fails with an I/O error or a HTTP 5xx status after any
+     * retries. No circuit breaker is used by default.
+     *
+     * @param circuitBreaker The circuit breaker to use or null if requests should always be sent
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Get the circuit breaker used for the endpoint
+     *
+     * @return The circuit breaker or null if no circuit breaker is used
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private RetryPolicy getRetryPolicy(List<JsonRpcRequest> requests) {
+        if (retryPolicies.isEmpty()) {
+            return null;
+        }
+        RetryPolicy retryPolicy = null;
+        for (JsonRpcRequest request : requests) {
+            RetryPolicy policy = request.getMethod() != null ? retryPolicies.get(request.getMethod()) : null;
+            if (policy == null) {
+                return null;
+            } else if (retryPolicy == null) {
+                retryPolicy = policy;
+            }
+        }
+        return retryPolicy;
+    }
+
+    /**
+     * Set the registry to record metrics in, the metrics are named "jsonrpc.http.&lt;endpoint&gt;.&lt;metric&gt;",
+     * see {@link #setMetricsRegistry(MetricsRegistry, String)}
+     *
+     * @param metricsRegistry The registry to use or null if no metrics should be recorded
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        setMetricsRegistry(metricsRegistry, "jsonrpc.http." + endpoint);
+    }
+
+    /**
+     * Set the registry to record metrics in. No metrics are recorded by default.
+     * <p>
+     * The following metrics are recorded, named "&lt;prefix&gt;.&lt;metric&gt;":
+     * </p>
+     * <ul>
+     * <li>status.1xx to status.5xx - Counters of received HTTP status codes, status.401 also counts unauthorized responses separately</li>
+     * <li>ioErrors - Counter of requests which failed without a HTTP response</li>
+     * <li>rejected - Counter of requests rejected because the executor was overloaded</li>
+     * <li>retries - Counter of requests sent again after a failure, see {@link #setRetryPolicy(String, RetryPolicy)}</li>
+     * <li>hedges - Counter of hedged requests sent because the first attempt was slow</li>
+     * <li>unavailable - Counter of requests rejected because the circuit breaker was open</li>
+     * <li>inFlight - Counter of currently executing HTTP requests</li>
+     * <li>queueMicros - Histogram of the time asynchronous requests wait for a free sender thread</li>
+     * <li>executeMicros - Histogram of the time from executing the request until the response headers are received,
+     * this includes the time to get a connection from the connection pool of the HTTP client</li>
+     * <li>readMicros - Histogram of the time to read and parse the response body</li>
+     * <li>requestBytes - Histogram of the size of the sent request bodies, after compression</li>
+     * <li>responseBytes - Histogram of the size of the received response bodies, before decompression</li>
+     * </ul>
+     *
+     * @param metricsRegistry The registry to use or null if no metrics should be recorded
+     * @param prefix          The prefix of the metric names
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry, String prefix) {
+        this.metrics = metricsRegistry != null ? new SenderMetrics(metricsRegistry, prefix) : null;
+    }
+
+    /**
+     * Get the HTTP endpoint url which messages are sent to
+     *
+     * @return The endpoint url
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = new BoundedExecutor("HttpMessageSender", DEFAULT_MAX_IN_FLIGHT, DEFAULT_QUEUE_SIZE, BoundedExecutor.OverflowPolicy.REJECT);
+        }
+        return defaultExecutor;
+    }
+
     /**
      * Set the message logger implementation that should be used to log message sent and responses received using this
      * message sender
@@ -137,103 +440,404 @@ public class HttpMessageSender implements MessageSender {
         if (responseHandler != null) {
             JsonRpcResponse response = new JsonRpcResponse("2.0", null);
             response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_JSON, "Invalid JSON", message));
-            String errorString = jsonHelper.objectToString(response);
-            if (messageLogger != null) {
-                messageLogger.onIncomingMessage(endpoint, errorString);
-            }
+            MessageLogging.logIncoming(messageLogger, endpoint, response, jsonHelper);
             responseHandler.onResponse(response);
         }
     }
 
+    private static boolean isBatch(String message) {
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '[';
+            }
+        }
+        return false;
+    }
+
     /**
      * Send the specified message using HTTP POST
      *
-     * @param message The message to send
+     * @param message The message to send, either a JSON-RPC request or a JSON-RPC batch request
      */
     @Override
     public void sendMessage(String message) {
-        final JsonRpcRequest request = jsonHelper.stringToObject(message, JsonRpcRequest.class);
-        if (request == null) {
+        final List<JsonRpcRequest> requests;
+        if (isBatch(message)) {
+            JsonRpcRequest[] batch = jsonHelper.stringToObject(message, JsonRpcRequest[].class);
+            requests = batch != null ? Arrays.asList(batch) : null;
+        } else {
+            JsonRpcRequest request = jsonHelper.stringToObject(message, JsonRpcRequest.class);
+            requests = request != null ? Arrays.asList(request) : null;
+        }
+        if (requests == null || requests.contains(null)) {
             reportInvalidJson(message);
             return;
         }
-        final HttpClient httpClient = this.httpClient;
-        final HttpPost httpRequest = new HttpPost(endpoint);
+        HttpEntity entity;
         try {
-            Class.forName("org.apache.http.entity.ContentType");
-            StringEntity stringEntity = new StringEntity(message, ContentType.create("application/json", Charset.forName("utf-8")));
-            httpRequest.setEntity(stringEntity);
-        } catch (ClassNotFoundException e) {
-            try {
-                StringEntity stringEntity = new StringEntity(message, "utf-8");
-                httpRequest.setEntity(stringEntity);
-            } catch (UnsupportedEncodingException e1) {
-                reportInvalidJson(message);
-                return;
+            entity = createEntity(message);
+        } catch (IOException e) {
+            reportInvalidJson(message);
+            return;
+        }
+        if (MessageLogging.isOutgoingEnabled(messageLogger, endpoint)) {
+            MessageLogging.logOutgoing(messageLogger, endpoint, LazyMessage.fromString(message));
+        }
+
+        SenderMetrics metrics = this.metrics;
+        CircuitBreaker circuitBreaker = this.circuitBreaker;
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            if (metrics != null) {
+                metrics.unavailable.add(1);
+            }
+            reportError(requests, JsonRpcError.SERVICE_UNAVAILABLE, "Service unavailable");
+            return;
+        }
+        if (metrics != null) {
+            metrics.requestSize.record(entity.getContentLength());
+        }
+        Call call = new Call(httpClient, entity, requests, metrics, getRetryPolicy(requests), circuitBreaker);
+        call.begin();
+        if (asynchronous) {
+            submit(call);
+        } else {
+            attempt(call);
+        }
+    }
+
+    /**
+     * Execute an attempt of a call with the executor, the attempt must have been started with {@link Call#begin()}.
+     * Retries and hedged attempts are submitted from the timer thread, which must never block. A full
+     * {@link BoundedExecutor} with the {@link BoundedExecutor.OverflowPolicy#BLOCK} policy is then tried again after
+     * {@link #SUBMIT_RETRY_DELAY} ms, and other executors are called in a thread of
+     * {@link HashedWheelTimer#getSharedExecutor()}.
+     *
+     * @param call The call
+     */
+    private void submit(final Call call) {
+        Executor executor = this.executor != null ? this.executor : getDefaultExecutor();
+        boolean timerThread = timer.isTimerThread();
+        if (timerThread && !(executor instanceof BoundedExecutor)) {
+            HashedWheelTimer.getSharedExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    submit(call);
+                }
+            });
+            return;
+        }
+        final long queued = call.metrics != null ? System.nanoTime() : 0;
+        BoundedExecutor.RejectableTask task = new BoundedExecutor.RejectableTask() {
+            @Override
+            public void run() {
+                if (call.metrics != null) {
+                    call.metrics.queueTime.record((System.nanoTime() - queued) / 1000);
+                }
+                attempt(call);
             }
+
+            @Override
+            public void onRejected() {
+                reject(call);
+            }
+        };
+        try {
+            if (timerThread) {
+                if (!((BoundedExecutor) executor).tryExecute(task)) {
+                    timer.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            submit(call);
+                        }
+                    }, SUBMIT_RETRY_DELAY);
+                }
+            } else {
+                executor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            reject(call);
+        }
+    }
+
+    private void reject(final Call call) {
+        if (timer.isTimerThread()) {
+            // The response handler must not be called in the timer thread
+            HashedWheelTimer.getSharedExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    reject(call);
+                }
+            });
+            return;
+        }
+        if (call.metrics != null) {
+            call.metrics.rejected.add(1);
         }
+        if (call.end() == 0 && call.completed.compareAndSet(false, true)) {
+            if (call.circuitBreaker != null) {
+                call.circuitBreaker.onCancelled();
+            }
+            reportError(call.requests, JsonRpcError.OVERLOADED, "Too many outstanding requests");
+        }
+    }
+
+    private HttpPost createHttpRequest(HttpEntity entity) {
+        HttpPost httpRequest = new HttpPost(endpoint);
+        httpRequest.setEntity(entity);
         httpRequest.setHeader("Authorization", "Bearer " + accessToken);
-        if (messageLogger != null) {
-            messageLogger.onOutgoingMessage(endpoint, message);
+        if (acceptCompressedResponses) {
+            httpRequest.setHeader("Accept-Encoding", "gzip, deflate");
+        }
+        return httpRequest;
+    }
+
+    /**
+     * Send an attempt of a call and handle the result, the attempt must have been started with {@link Call#begin()}
+     *
+     * @param call The call
+     */
+    private void attempt(final Call call) {
+        if (call.completed.get()) {
+            // A hedged attempt which is no longer needed
+            call.end();
+            return;
+        }
+        long hedgeDelay = asynchronous && call.retryPolicy != null ? call.retryPolicy.getHedgeDelay() : -1;
+        if (hedgeDelay >= 0 && call.getAttempts() == 1 && call.retryPolicy.getMaxAttempts() > 1) {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!call.completed.get() && call.beginHedge()) {
+                        if (call.metrics != null) {
+                            call.metrics.hedges.add(1);
+                        }
+                        submit(call);
+                    }
+                }
+            }, hedgeDelay);
         }
+        complete(call, processMessage(call.httpClient, createHttpRequest(call.entity), call.metrics));
+    }
 
+    /**
+     * Handle the result of an attempt, the result is either delivered or the call is retried
+     *
+     * @param call    The call
+     * @param attempt The result of the attempt
+     */
+    private void complete(final Call call, final Attempt attempt) {
+        int outstanding = call.end();
+        RetryPolicy retryPolicy = call.retryPolicy;
+        if (retryPolicy != null && !call.completed.get()) {
+            if (!attempt.isRetryable()) {
+                if (attempt.statusCode < 400) {
+                    retryPolicy.recordLatency(attempt.latency);
+                }
+            } else if (outstanding > 0) {
+                // A hedged attempt is still running and might succeed
+                return;
+            } else {
+                long delay = retryPolicy.getBackoff(call.getAttempts());
+                if (call.getAttempts() < retryPolicy.getMaxAttempts() && System.currentTimeMillis() + delay - call.started < retryPolicy.getDeadline()) {
+                    if (call.metrics != null) {
+                        call.metrics.retries.add(1);
+                    }
+                    retry(call, attempt, delay);
+                    return;
+                }
+            }
+        }
+        finish(call, attempt);
+    }
+
+    /**
+     * Deliver the result of an attempt unless a result has already been delivered for the call
+     *
+     * @param call    The call
+     * @param attempt The result of the attempt
+     */
+    private void finish(Call call, Attempt attempt) {
+        if (call.completed.compareAndSet(false, true)) {
+            if (call.circuitBreaker != null) {
+                if (attempt.isRetryable()) {
+                    call.circuitBreaker.onFailure();
+                } else {
+                    call.circuitBreaker.onSuccess(attempt.latency);
+                }
+            }
+            deliver(call.requests, attempt);
+        }
+    }
+
+    private void retry(final Call call, Attempt attempt, long delay) {
         if (asynchronous) {
-            new Thread(new Runnable() {
+            timer.schedule(new Runnable() {
                 @Override
                 public void run() {
-                    processMessage(httpClient, httpRequest, request);
+                    call.begin();
+                    submit(call);
                 }
-            }).start();
+            }, delay);
         } else {
-            processMessage(httpClient, httpRequest, request);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish(call, attempt);
+                return;
+            }
+            call.begin();
+            attempt(call);
         }
     }
 
-    private void processMessage(final HttpClient httpClient, final HttpPost httpRequest, final JsonRpcRequest request) {
+    private HttpEntity createEntity(String message) throws IOException {
+        if (requestCompressionThreshold != null) {
+            byte[] body = message.getBytes("utf-8");
+            if (body.length >= requestCompressionThreshold) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 32);
+                GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                gzip.write(body);
+                gzip.close();
+                ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray());
+                entity.setContentType("application/json; charset=utf-8");
+                entity.setContentEncoding("gzip");
+                return entity;
+            }
+        }
         try {
-            final HttpResponse httpResponse = httpClient.execute(httpRequest);
-            if (httpResponse.getStatusLine().getStatusCode() < 400) {
-                String responseString = EntityUtils.toString(httpResponse.getEntity());
-                if (responseString != null && responseString.length() > 0 && responseHandler != null) {
-                    if (messageLogger != null) {
-                        messageLogger.onIncomingMessage(endpoint, responseString);
-                    }
-                    JsonRpcResponse response = jsonHelper.stringToObject(responseString, JsonRpcResponse.class);
+            Class.forName("org.apache.http.entity.ContentType");
+            return new StringEntity(message, ContentType.create("application/json", Charset.forName("utf-8")));
+        } catch (ClassNotFoundException e) {
+            return new StringEntity(message, "utf-8");
+        }
+    }
+
+    private static InputStream decompress(InputStream content, HttpEntity entity) throws IOException {
+        Header encoding = entity.getContentEncoding();
+        if (encoding != null) {
+            if (encoding.getValue().equalsIgnoreCase("gzip") || encoding.getValue().equalsIgnoreCase("x-gzip")) {
+                return new GZIPInputStream(content);
+            } else if (encoding.getValue().equalsIgnoreCase("deflate")) {
+                return new InflaterInputStream(content);
+            }
+        }
+        return content;
+    }
+
+    private void reportError(List<JsonRpcRequest> requests, int code, String message) {
+        if (responseHandler != null) {
+            for (JsonRpcRequest request : requests) {
+                JsonRpcResponse response = new JsonRpcResponse(request.getJsonrpc(), request.getId());
+                response.setError(new JsonRpcResponse.Error(code, message, null));
+                MessageLogging.logIncoming(messageLogger, endpoint, response, jsonHelper);
+                responseHandler.onResponse(response);
+            }
+        }
+    }
+
+    /**
+     * Forward the result of an attempt to the response handler
+     *
+     * @param requests The sent requests
+     * @param attempt  The result of the attempt
+     */
+    private void deliver(List<JsonRpcRequest> requests, Attempt attempt) {
+        if (attempt.failure != null) {
+            reportError(requests, JsonRpcError.SERVICE_ERROR, attempt.failure.getMessage());
+        } else if (attempt.statusCode == 401) {
+            reportError(requests, JsonRpcError.UNAUTHORIZED, "Unauthorized access");
+        } else if (attempt.statusCode >= 400) {
+            reportError(requests, JsonRpcError.SERVICE_ERROR, attempt.reasonPhrase);
+        } else if (attempt.json != null && responseHandler != null) {
+            JsonNode json = attempt.json;
+            MessageLogging.logIncoming(messageLogger, endpoint, json, jsonHelper);
+            if (json.isArray()) {
+                for (JsonNode node : json) {
+                    JsonRpcResponse response = jsonHelper.jsonToObject(node, JsonRpcResponse.class);
                     if (response != null) {
                         responseHandler.onResponse(response);
                     }
                 }
-            } else if (httpResponse.getStatusLine().getStatusCode() == 401) {
-                if (responseHandler != null) {
-                    JsonRpcResponse response = new JsonRpcResponse(request.getJsonrpc(), request.getId());
-                    response.setError(new JsonRpcResponse.Error(JsonRpcError.UNAUTHORIZED, "Unauthorized access", null));
-                    String errorString = jsonHelper.objectToString(response);
-                    if (messageLogger != null) {
-                        messageLogger.onIncomingMessage(endpoint, errorString);
-                    }
+            } else {
+                JsonRpcResponse response = jsonHelper.jsonToObject(json, JsonRpcResponse.class);
+                if (response != null) {
                     responseHandler.onResponse(response);
                 }
-            } else {
-                if (responseHandler != null) {
-                    JsonRpcResponse response = new JsonRpcResponse(request.getJsonrpc(), request.getId());
-                    response.setError(new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, httpResponse.getStatusLine().getReasonPhrase(), null));
-                    String errorString = jsonHelper.objectToString(response);
-                    if (messageLogger != null) {
-                        messageLogger.onIncomingMessage(endpoint, errorString);
+            }
+        }
+    }
+
+    /**
+     * Execute a HTTP request and read the response
+     *
+     * @param httpClient  The HTTP client to use
+     * @param httpRequest The HTTP request
+     * @param metrics     The metrics to record, null if no metrics are recorded
+     * @return The result of the attempt
+     */
+    private Attempt processMessage(HttpClient httpClient, HttpPost httpRequest, SenderMetrics metrics) {
+        Attempt attempt = new Attempt();
+        long start = System.nanoTime();
+        long attemptStart = start;
+        if (metrics != null) {
+            metrics.inFlight.add(1);
+        }
+        try {
+            final HttpResponse httpResponse = httpClient.execute(httpRequest);
+            attempt.statusCode = httpResponse.getStatusLine().getStatusCode();
+            attempt.reasonPhrase = httpResponse.getStatusLine().getReasonPhrase();
+            if (metrics != null) {
+                long executed = System.nanoTime();
+                metrics.executeTime.record((executed - start) / 1000);
+                metrics.recordStatus(attempt.statusCode);
+                start = executed;
+            }
+            HttpEntity entity = httpResponse.getEntity();
+            if (attempt.statusCode >= 400 || responseHandler == null) {
+                // Release the connection
+                EntityUtils.consume(entity);
+            } else if (entity != null) {
+                InputStream content = entity.getContent();
+                if (content != null) {
+                    CountingInputStream countingContent = null;
+                    if (metrics != null) {
+                        countingContent = new CountingInputStream(content);
+                        content = countingContent;
+                    }
+                    content = decompress(content, entity);
+                    try {
+                        JsonParser parser = jsonHelper.streamToParser(content);
+                        try {
+                            if (parser.nextToken() != null) {
+                                attempt.json = jsonHelper.parserToJson(parser);
+                            }
+                        } finally {
+                            parser.close();
+                        }
+                    } catch (JsonProcessingException e) {
+                        // Invalid responses are ignored, same as empty responses
+                    } finally {
+                        content.close();
+                    }
+                    if (metrics != null) {
+                        metrics.readTime.record((System.nanoTime() - start) / 1000);
+                        metrics.responseSize.record(countingContent.getCount());
                     }
-                    responseHandler.onResponse(response);
                 }
             }
         } catch (IOException e) {
-            if (responseHandler != null) {
-                JsonRpcResponse response = new JsonRpcResponse(request.getJsonrpc(), request.getId());
-                response.setError(new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, e.getMessage(), null));
-                String errorString = jsonHelper.objectToString(response);
-                if (messageLogger != null) {
-                    messageLogger.onIncomingMessage(endpoint, errorString);
-                }
-                responseHandler.onResponse(response);
+            if (metrics != null) {
+                metrics.ioErrors.add(1);
+            }
+            attempt.failure = e;
+        } finally {
+            if (metrics != null) {
+                metrics.inFlight.add(-1);
             }
         }
+        attempt.latency = (System.nanoTime() - attemptStart) / 1000000;
+        return attempt;
     }
 }
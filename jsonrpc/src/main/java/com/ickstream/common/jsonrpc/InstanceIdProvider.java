@@ -28,7 +28,9 @@
 
 package com.ickstream.common.jsonrpc;
 
-import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A JSON-RPC identity provider which generates unique identities within this identity provider instance
@@ -36,16 +38,13 @@ import com.fasterxml.jackson.databind.node.IntNode;
  * to use {@link GlobalIdProvider} than {@link InstanceIdProvider}.
  */
 public class InstanceIdProvider implements IdProvider {
-    private int id = 0;
-    private final Object syncObject = new Object();
+    private final AtomicLong id = new AtomicLong();
 
     /**
      * See {@link com.ickstream.common.jsonrpc.IdProvider#getNextId()}
      */
     @Override
-    public IntNode getNextId() {
-        synchronized (syncObject) {
-            return new IntNode(++id);
-        }
+    public ValueNode getNextId() {
+        return GlobalIdProvider.createId(id.incrementAndGet());
     }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Metrics registry which exposes every counter and histogram as an MBean, so the metrics can be monitored with
+ * JConsole or any other JMX client.
+ * <p>
+ * The MBeans are registered as "&lt;domain&gt;:type=Counter,name=&lt;name&gt;" and
+ * "&lt;domain&gt;:type=Histogram,name=&lt;name&gt;" when the metric is first requested.
+ * </p>
+ */
+public class JmxMetricsRegistry extends DefaultMetricsRegistry {
+    /**
+     * The default domain of the registered MBeans
+     */
+    public static final String DEFAULT_DOMAIN = "com.ickstream.common.jsonrpc";
+
+    private final MBeanServer server;
+    private final String domain;
+    private final List<ObjectName> registeredNames = new CopyOnWriteArrayList<ObjectName>();
+
+    /**
+     * Management interface of a counter
+     */
+    public static interface CounterMBean {
+        long getCount();
+
+        void reset();
+    }
+
+    /**
+     * Management interface of a histogram
+     */
+    public static interface HistogramMBean {
+        long getCount();
+
+        double getMean();
+
+        long getMax();
+
+        long get50thPercentile();
+
+        long get90thPercentile();
+
+        long get99thPercentile();
+
+        long get999thPercentile();
+
+        void reset();
+    }
+
+    private static class CounterBean implements CounterMBean {
+        private final StripedCounter counter;
+
+        private CounterBean(StripedCounter counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public long getCount() {
+            return counter.getCount();
+        }
+
+        @Override
+        public void reset() {
+            counter.reset();
+        }
+    }
+
+    private static class HistogramBean implements HistogramMBean {
+        private final LogHistogram histogram;
+
+        private HistogramBean(LogHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getMean();
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getMax();
+        }
+
+        @Override
+        public long get50thPercentile() {
+            return histogram.getValueAtPercentile(50);
+        }
+
+        @Override
+        public long get90thPercentile() {
+            return histogram.getValueAtPercentile(90);
+        }
+
+        @Override
+        public long get99thPercentile() {
+            return histogram.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long get999thPercentile() {
+            return histogram.getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Creates a new registry which registers the MBeans in the platform MBean server using {@link #DEFAULT_DOMAIN}
+     */
+    public JmxMetricsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer(), DEFAULT_DOMAIN);
+    }
+
+    /**
+     * Creates a new registry which registers the MBeans in the specified MBean server
+     *
+     * @param server The MBean server to register the MBeans in
+     * @param domain The domain to use in the names of the MBeans
+     */
+    public JmxMetricsRegistry(MBeanServer server, String domain) {
+        this.server = server;
+        this.domain = domain;
+    }
+
+    /**
+     * Get the name which the MBean of a metric is registered with
+     *
+     * @param type The type of the metric, "Counter" or "Histogram"
+     * @param name The name of the metric
+     * @return The MBean name
+     * @throws MalformedObjectNameException If the domain isn't valid
+     */
+    public ObjectName getObjectName(String type, String name) throws MalformedObjectNameException {
+        return new ObjectName(domain + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+    @Override
+    protected void onCounterCreated(String name, StripedCounter counter) {
+        register("Counter", name, new StandardMBean(new CounterBean(counter), CounterMBean.class, false));
+    }
+
+    @Override
+    protected void onHistogramCreated(String name, LogHistogram histogram) {
+        register("Histogram", name, new StandardMBean(new HistogramBean(histogram), HistogramMBean.class, false));
+    }
+
+    private void register(String type, String name, StandardMBean bean) {
+        try {
+            ObjectName objectName = getObjectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+            registeredNames.add(objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Unregister all MBeans registered by this registry, the metrics are still recorded but no longer exposed
+     */
+    public void unregister() {
+        for (ObjectName objectName : registeredNames) {
+            try {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        registeredNames.clear();
+    }
+}
@@ -29,27 +29,139 @@
 package com.ickstream.common.jsonrpc;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Utility class that contains methods to convert objects to JSON and vice versa.
+ * <p>
+ * JSON strings and streams are produced in compact form unless the instance has been created with pretty printing
+ * enabled, use {@link #objectToPrettyString(Object)} to produce readable output for logging.
+ * </p>
+ * <p>
+ * Binary data can also be produced in the Smile encoding, see {@link MessageEncoding}, all methods reading binary
+ * data detect Smile encoded data automatically.
+ * </p>
  */
 public class JsonHelper {
-    private static final ObjectMapper mapper = createObjectMapper();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final ObjectMapper mapper = createObjectMapper(new JsonFactory());
+    private static final ObjectMapper smileMapper = createObjectMapper(new SmileFactory());
+    private static final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<Type, ObjectReader>();
+    private static final ConcurrentMap<Type, ObjectReader> smileReaders = new ConcurrentHashMap<Type, ObjectReader>();
+    private static final ConcurrentMap<Class, ObjectWriter> compactWriters = new ConcurrentHashMap<Class, ObjectWriter>();
+    private static final ConcurrentMap<Class, ObjectWriter> prettyWriters = new ConcurrentHashMap<Class, ObjectWriter>();
+    private static final ConcurrentMap<Class, ObjectWriter> smileWriters = new ConcurrentHashMap<Class, ObjectWriter>();
+    private static final ObjectWriter compactWriter = mapper.writer();
+    private static final ObjectWriter prettyWriter = mapper.writerWithDefaultPrettyPrinter();
+    private static final ObjectWriter smileWriter = smileMapper.writer();
+    private final Boolean prettyPrint;
 
-    private static ObjectMapper createObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Creates a new instance which produces compact JSON strings and streams
+     */
+    public JsonHelper() {
+        this(false);
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param prettyPrint true if JSON strings and streams should be pretty printed, else false
+     */
+    public JsonHelper(Boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    private static ObjectMapper createObjectMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         return mapper;
     }
 
+    private static ObjectReader getReader(Type objectType) {
+        return getReader(objectType, MessageEncoding.JSON);
+    }
+
+    private static ObjectReader getReader(Type objectType, MessageEncoding encoding) {
+        ObjectMapper mapper = encoding == MessageEncoding.SMILE ? smileMapper : JsonHelper.mapper;
+        ConcurrentMap<Type, ObjectReader> readers = encoding == MessageEncoding.SMILE ? smileReaders : JsonHelper.readers;
+        ObjectReader reader = readers.get(objectType);
+        if (reader == null) {
+            reader = mapper.reader(mapper.getTypeFactory().constructType(objectType));
+            ObjectReader existingReader = readers.putIfAbsent(objectType, reader);
+            if (existingReader != null) {
+                reader = existingReader;
+            }
+        }
+        return reader;
+    }
+
+    private static ObjectWriter getWriter(Object object, boolean prettyPrint) {
+        return getWriter(object, prettyPrint ? prettyWriters : compactWriters, prettyPrint ? prettyWriter : compactWriter);
+    }
+
+    private static ObjectWriter getWriter(Object object, ConcurrentMap<Class, ObjectWriter> writers, ObjectWriter defaultWriter) {
+        if (object == null) {
+            return defaultWriter;
+        }
+        ObjectWriter writer = writers.get(object.getClass());
+        if (writer == null) {
+            writer = defaultWriter.withType(object.getClass());
+            ObjectWriter existingWriter = writers.putIfAbsent(object.getClass(), writer);
+            if (existingWriter != null) {
+                writer = existingWriter;
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Build the readers, deserializers and serializers of a type in advance, so the first conversion of the type
+     * isn't slower than the following ones. This is optional, they are otherwise built the first time the type
+     * is converted.
+     *
+     * @param type The type to prepare
+     * @return true if the type can be converted both from and to JSON
+     */
+    public boolean prepareType(Type type) {
+        try {
+            JavaType javaType = mapper.getTypeFactory().constructType(type);
+            getReader(type, MessageEncoding.JSON);
+            getReader(type, MessageEncoding.SMILE);
+            boolean readable = mapper.canDeserialize(javaType) & smileMapper.canDeserialize(javaType);
+            boolean writable = mapper.canSerialize(javaType.getRawClass()) & smileMapper.canSerialize(javaType.getRawClass());
+            return readable && writable;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
     /**
      * Convert the specified JSON structure to an instance of the specified Java class
      *
@@ -61,7 +173,7 @@ public class JsonHelper {
     public <T> T jsonToObject(JsonNode json, Class<T> objectClass) {
         if (json != null) {
             try {
-                return mapper.treeToValue(json, objectClass);
+                return getReader(objectClass).readValue(json);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -79,7 +191,7 @@ public class JsonHelper {
     public Object jsonToObject(JsonNode json, Type objectType) {
         if (json != null) {
             try {
-                return mapper.readValue(json.traverse(), mapper.getTypeFactory().constructType(objectType));
+                return getReader(objectType).readValue(json);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -97,7 +209,7 @@ public class JsonHelper {
      */
     public <T> T stringToObject(String text, Class<T> objectClass) {
         try {
-            return mapper.treeToValue(mapper.readTree(text), objectClass);
+            return getReader(objectClass).readValue(text);
         } catch (IOException e) {
             e.printStackTrace();
             System.err.println(text);
@@ -105,6 +217,47 @@ public class JsonHelper {
         return null;
     }
 
+    /**
+     * Convert the specified UTF-8 encoded JSON data to an instance of the specified Java class, the data is decoded
+     * directly by the parser without creating an intermediate string. Smile encoded data is detected automatically.
+     *
+     * @param data        The UTF-8 encoded JSON data to convert
+     * @param objectClass The Java class to convert the JSON structure to, the class must have a default constructor
+     * @param <T>         The Java class to convert the JSON structure to, the class must have a default constructor
+     * @return A new instance of the specified Java class or null if no instance could be created
+     */
+    public <T> T bytesToObject(byte[] data, Class<T> objectClass) {
+        return bytesToObject(data, 0, data.length, objectClass);
+    }
+
+    /**
+     * Convert the remaining UTF-8 encoded JSON data in a {@link ByteBuffer} to an instance of the specified Java
+     * class, the position of the buffer isn't changed. Smile encoded data is detected automatically.
+     *
+     * @param data        The buffer containing the UTF-8 encoded JSON data to convert
+     * @param objectClass The Java class to convert the JSON structure to, the class must have a default constructor
+     * @param <T>         The Java class to convert the JSON structure to, the class must have a default constructor
+     * @return A new instance of the specified Java class or null if no instance could be created
+     */
+    public <T> T bytesToObject(ByteBuffer data, Class<T> objectClass) {
+        if (data.hasArray()) {
+            return bytesToObject(data.array(), data.arrayOffset() + data.position(), data.remaining(), objectClass);
+        }
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        return bytesToObject(copy, 0, copy.length, objectClass);
+    }
+
+    private <T> T bytesToObject(byte[] data, int offset, int length, Class<T> objectClass) {
+        try {
+            return getReader(objectClass, MessageEncoding.detect(data, offset, length)).readValue(data, offset, length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println(new String(data, offset, length, UTF8));
+        }
+        return null;
+    }
+
     /**
      * Convert the JSON data in an {@link InputStream} to an instance of the specified Java class
      *
@@ -115,15 +268,7 @@ public class JsonHelper {
      */
     public <T> T streamToObject(InputStream stream, Class<T> objectClass) {
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-            StringBuilder out = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                out.append(line);
-                out.append('\n');
-            }
-            reader.close();
-            return stringToObject(out.toString(), objectClass);
+            return getReader(objectClass).readValue(stream);
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -136,6 +281,86 @@ public class JsonHelper {
         return null;
     }
 
+    /**
+     * Create a streaming parser that reads the JSON data in an {@link InputStream} without first reading it into a
+     * string or a JSON structure. The parser should be closed by the caller when it's no longer needed.
+     * Smile encoded data is detected automatically, use {@link #getEncoding(JsonParser)} to get the detected encoding.
+     *
+     * @param stream The stream containing the JSON data
+     * @return A new parser positioned before the first token
+     * @throws IOException If the parser couldn't be created
+     */
+    public JsonParser streamToParser(InputStream stream) throws IOException {
+        if (!stream.markSupported()) {
+            stream = new BufferedInputStream(stream);
+        }
+        byte[] header = new byte[3];
+        stream.mark(header.length);
+        int length = 0;
+        int read;
+        while (length < header.length && (read = stream.read(header, length, header.length - length)) > 0) {
+            length += read;
+        }
+        stream.reset();
+        if (MessageEncoding.detect(header, 0, length) == MessageEncoding.SMILE) {
+            return smileMapper.getFactory().createParser(stream);
+        }
+        return mapper.getFactory().createParser(stream);
+    }
+
+    /**
+     * Get the encoding of the data read by a parser created with {@link #streamToParser(InputStream)}
+     *
+     * @param parser The parser
+     * @return The encoding of the data
+     */
+    public MessageEncoding getEncoding(JsonParser parser) {
+        return parser instanceof SmileParser ? MessageEncoding.SMILE : MessageEncoding.JSON;
+    }
+
+    /**
+     * Convert the JSON value at the current token of the specified parser to an instance of the specified Java type.
+     * After the call the parser is positioned at the last token of the value.
+     *
+     * @param parser     The parser positioned at the first token of the value
+     * @param objectType The Java type to convert the JSON value to, the class must have a default constructor
+     * @return A new instance of the specified Java type or null if the value is a JSON null
+     * @throws IOException If the value couldn't be read or converted
+     */
+    public Object parserToObject(JsonParser parser, Type objectType) throws IOException {
+        return getReader(objectType).readValue(parser);
+    }
+
+    /**
+     * Read the JSON value at the current token of the specified parser as a JSON structure.
+     * After the call the parser is positioned at the last token of the value.
+     *
+     * @param parser The parser positioned at the first token of the value
+     * @return The JSON structure, a JSON null value is returned as {@link NullNode}
+     * @throws IOException If the value couldn't be read
+     */
+    public JsonNode parserToJson(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return NullNode.getInstance();
+        }
+        return mapper.readTree(parser);
+    }
+
+    /**
+     * Copy the JSON value at the current token of the specified parser to a token buffer, the value can then be read
+     * any number of times from {@link TokenBuffer#asParser()} without being converted to a JSON structure.
+     * After the call the parser is positioned at the last token of the value.
+     *
+     * @param parser The parser positioned at the first token of the value
+     * @return The buffered tokens of the value
+     * @throws IOException If the value couldn't be read
+     */
+    public TokenBuffer parserToBuffer(JsonParser parser) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(mapper);
+        buffer.copyCurrentStructure(parser);
+        return buffer;
+    }
+
     /**
      * Converts the specified object to JSON structure
      *
@@ -154,7 +379,57 @@ public class JsonHelper {
      */
     public String objectToString(Object object) {
         try {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(object);
+            return getWriter(object, prettyPrint).writeValueAsString(object);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Converts the specified object to UTF-8 encoded JSON data, the data is encoded directly by the generator without
+     * creating an intermediate string
+     *
+     * @param object The object to convert to JSON
+     * @return The UTF-8 encoded JSON data
+     */
+    public byte[] objectToBytes(Object object) {
+        try {
+            return getWriter(object, prettyPrint).writeValueAsBytes(object);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Converts the specified object to JSON data in the specified encoding
+     *
+     * @param object   The object to convert to JSON
+     * @param encoding The encoding to use, {@link MessageEncoding#JSON} produces the same result as {@link #objectToBytes(Object)}
+     * @return The encoded JSON data
+     */
+    public byte[] objectToBytes(Object object, MessageEncoding encoding) {
+        if (encoding != MessageEncoding.SMILE) {
+            return objectToBytes(object);
+        }
+        try {
+            return getWriter(object, smileWriters, smileWriter).writeValueAsBytes(object);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Converts the specified object to a pretty printed JSON string, this is typically used when logging messages
+     *
+     * @param object The object to convert to a JSON string
+     * @return The converted JSON string
+     */
+    public String objectToPrettyString(Object object) {
+        try {
+            return getWriter(object, true).writeValueAsString(object);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -169,7 +444,68 @@ public class JsonHelper {
      * @throws IOException If the result couldn't be written to the stream
      */
     public void objectToStream(OutputStream output, Object object) throws IOException {
-        mapper.writerWithDefaultPrettyPrinter().writeValue(output, object);
+        getWriter(object, prettyPrint).writeValue(output, object);
+    }
+
+    /**
+     * Converts the specified object to JSON in the specified encoding and write it to an {@link OutputStream}
+     *
+     * @param output   The stream to write the result to
+     * @param object   The object to convert to JSON
+     * @param encoding The encoding to use
+     * @throws IOException If the result couldn't be written to the stream
+     */
+    public void objectToStream(OutputStream output, Object object, MessageEncoding encoding) throws IOException {
+        if (encoding == MessageEncoding.SMILE) {
+            getWriter(object, smileWriters, smileWriter).writeValue(output, object);
+        } else {
+            objectToStream(output, object);
+        }
+    }
+
+    /**
+     * Converts the specified JSON structure to a canonical JSON string, the attributes of objects are sorted by name
+     * so structures with the same content always produce the same string
+     *
+     * @param json The JSON structure to convert
+     * @return The canonical JSON string
+     */
+    public String jsonToCanonicalString(JsonNode json) {
+        StringBuilder builder = new StringBuilder();
+        appendCanonical(builder, json);
+        return builder.toString();
+    }
+
+    private static void appendCanonical(StringBuilder builder, JsonNode json) {
+        if (json.isObject()) {
+            List<String> names = new ArrayList<String>();
+            Iterator<String> it = json.fieldNames();
+            while (it.hasNext()) {
+                names.add(it.next());
+            }
+            Collections.sort(names);
+            builder.append('{');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                // Quote the name the same way as text values
+                builder.append(TextNode.valueOf(names.get(i)).toString()).append(':');
+                appendCanonical(builder, json.get(names.get(i)));
+            }
+            builder.append('}');
+        } else if (json.isArray()) {
+            builder.append('[');
+            for (int i = 0; i < json.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                appendCanonical(builder, json.get(i));
+            }
+            builder.append(']');
+        } else {
+            builder.append(json.toString());
+        }
     }
 
     /**
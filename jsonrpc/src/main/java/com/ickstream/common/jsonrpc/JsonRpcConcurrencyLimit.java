@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Annotation limiting how many calls of a method that {@link StreamJsonRpcService} or one of its implementations
+ * executes concurrently. Calls exceeding the limit wait in a bounded queue or are rejected with a
+ * {@link JsonRpcError#OVERLOADED} error, see {@link ConcurrencyLimiter}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface JsonRpcConcurrencyLimit {
+    /**
+     * @return The maximum number of concurrent calls, this is the initial limit if the limit is adaptive
+     */
+    int value();
+
+    /**
+     * @return The maximum number of calls waiting for the limit, 0 if calls exceeding the limit should be rejected immediately
+     */
+    int queueSize() default 0;
+
+    /**
+     * @return The maximum time in milliseconds a call waits for the limit before it's rejected, calls are only queued if
+     *         this is larger than 0
+     */
+    long queueTimeout() default 0;
+
+    /**
+     * @return The name of a group of methods sharing the same limit, all methods annotated with the same group share
+     *         the limiter created from the first of the annotations
+     */
+    String group() default "";
+
+    /**
+     * @return true if the limit should adapt to the observed latency of the calls, between 1 and the specified value
+     */
+    boolean adaptive() default false;
+}
@@ -46,6 +46,14 @@ public @interface JsonRpcError {
      * An internal error has occurred inside the service implementing the processing of the JSON-RPC request
      */
     public final static int SERVICE_ERROR = -32001;
+    /**
+     * The request was rejected because too many requests were already waiting to be processed
+     */
+    public final static int OVERLOADED = -32002;
+    /**
+     * The request was not sent because the service has failed repeatedly and is considered unavailable
+     */
+    public final static int SERVICE_UNAVAILABLE = -32003;
     /**
      * The request contained invalid JSON data
      */
@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Future representing the result of an asynchronous JSON-RPC request, see
+ * {@link AsyncJsonRpcClient#sendRequestAsync(String, Object, Class, Integer)}.
+ * <p>
+ * The future fails with a {@link JsonRpcException} if an error response is received and with a
+ * {@link JsonRpcTimeoutException} if no response is received within the timeout. Callbacks registered with
+ * {@link #addCallback(Callback)} are called in the thread that completes the future, typically the thread that
+ * received the response, so they should not block. Futures failing because of a timeout are completed in a thread
+ * of {@link HashedWheelTimer#getSharedExecutor()}, never in the timer thread itself. Since the future also is a {@link MessageHandler}, it can be
+ * used with any method that takes a message handler as parameter.
+ * </p>
+ *
+ * @param <T> The type of the result
+ */
+public class JsonRpcFuture<T> implements Future<T>, MessageHandler<T> {
+    private static final int PENDING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private int state = PENDING;
+    private T result;
+    private Throwable failure;
+    private List<Callback<? super T>> callbacks = new ArrayList<Callback<? super T>>();
+    private Runnable cancelAction;
+
+    /**
+     * Callback which is called when a future completes
+     *
+     * @param <T> The type of the result
+     */
+    public static interface Callback<T> {
+        /**
+         * Called when the future completes successfully
+         *
+         * @param result The result
+         */
+        void onSuccess(T result);
+
+        /**
+         * Called when the future fails or is cancelled
+         *
+         * @param cause The cause of the failure, a {@link CancellationException} if the future was cancelled
+         */
+        void onFailure(Throwable cause);
+    }
+
+    /**
+     * Function which transforms the result of a future
+     *
+     * @param <T> The type of the result of the original future
+     * @param <R> The type of the transformed result
+     */
+    public static interface Transformer<T, R> {
+        /**
+         * Transform the result
+         *
+         * @param value The result of the original future
+         * @return The transformed result
+         * @throws Exception If the transformation fails, the transformed future will fail with this exception
+         */
+        R transform(T value) throws Exception;
+    }
+
+    /**
+     * Create a future that already has completed successfully
+     *
+     * @param result The result
+     * @param <T>    The type of the result
+     * @return A completed future
+     */
+    public static <T> JsonRpcFuture<T> succeeded(T result) {
+        JsonRpcFuture<T> future = new JsonRpcFuture<T>();
+        future.setResult(result);
+        return future;
+    }
+
+    /**
+     * Create a future that already has failed
+     *
+     * @param cause The cause of the failure
+     * @param <T>   The type of the result
+     * @return A failed future
+     */
+    public static <T> JsonRpcFuture<T> failed(Throwable cause) {
+        JsonRpcFuture<T> future = new JsonRpcFuture<T>();
+        future.setFailure(cause);
+        return future;
+    }
+
+    /**
+     * Set the action to run if the future is cancelled before it's completed
+     *
+     * @param cancelAction The action to run
+     */
+    void setCancelAction(Runnable cancelAction) {
+        boolean cancelled;
+        synchronized (this) {
+            this.cancelAction = cancelAction;
+            cancelled = state == CANCELLED;
+        }
+        if (cancelled) {
+            cancelAction.run();
+        }
+    }
+
+    /**
+     * Complete the future successfully
+     *
+     * @param result The result
+     * @return true if the future was completed by this call, false if it already was completed
+     */
+    public boolean setResult(T result) {
+        return complete(SUCCEEDED, result, null);
+    }
+
+    /**
+     * Complete the future with a failure
+     *
+     * @param cause The cause of the failure
+     * @return true if the future was completed by this call, false if it already was completed
+     */
+    public boolean setFailure(Throwable cause) {
+        return complete(FAILED, null, cause);
+    }
+
+    private boolean complete(int state, T result, Throwable failure) {
+        List<Callback<? super T>> callbacks;
+        synchronized (this) {
+            if (this.state != PENDING) {
+                return false;
+            }
+            this.state = state;
+            this.result = result;
+            this.failure = failure;
+            callbacks = this.callbacks;
+            this.callbacks = null;
+        }
+        completed.countDown();
+        for (Callback<? super T> callback : callbacks) {
+            invokeCallback(callback);
+        }
+        return true;
+    }
+
+    private void invokeCallback(Callback<? super T> callback) {
+        try {
+            if (state == SUCCEEDED) {
+                callback.onSuccess(result);
+            } else {
+                callback.onFailure(failure);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Register a callback which is called when the future completes, if the future already has completed the
+     * callback is called immediately in the calling thread
+     *
+     * @param callback The callback to register
+     * @return This future
+     */
+    public JsonRpcFuture<T> addCallback(Callback<? super T> callback) {
+        synchronized (this) {
+            if (state == PENDING) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        invokeCallback(callback);
+        return this;
+    }
+
+    /**
+     * Create a new future with the transformed result of this future, failures are forwarded to the new future
+     * as they are
+     *
+     * @param transformer The transformer to apply on the result
+     * @param <R>         The type of the transformed result
+     * @return A future with the transformed result, cancelling it also cancels this future
+     */
+    public <R> JsonRpcFuture<R> transform(final Transformer<? super T, ? extends R> transformer) {
+        final JsonRpcFuture<R> future = createDependentFuture();
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                try {
+                    future.setResult(transformer.transform(result));
+                } catch (Exception e) {
+                    future.setFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                future.setFailure(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Create a new future which is completed by the future returned from the transformer, this makes it possible to
+     * chain requests where the next request depends on the result of this request
+     *
+     * @param transformer The transformer which starts the next asynchronous operation
+     * @param <R>         The type of the result of the next operation
+     * @return A future with the result of the next operation, cancelling it also cancels the current operation
+     */
+    public <R> JsonRpcFuture<R> compose(final Transformer<? super T, JsonRpcFuture<R>> transformer) {
+        final JsonRpcFuture<R> future = createDependentFuture();
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                final JsonRpcFuture<R> next;
+                try {
+                    next = transformer.transform(result);
+                } catch (Exception e) {
+                    future.setFailure(e);
+                    return;
+                }
+                future.setCancelAction(new Runnable() {
+                    @Override
+                    public void run() {
+                        next.cancel(false);
+                    }
+                });
+                next.addCallback(new Callback<R>() {
+                    @Override
+                    public void onSuccess(R result) {
+                        future.setResult(result);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable cause) {
+                        future.setFailure(cause);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                future.setFailure(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Fail this future with a {@link JsonRpcTimeoutException} if it hasn't completed within the specified time,
+     * the timeout is handled by the shared {@link HashedWheelTimer} so no thread is blocked while waiting. The
+     * callbacks are then called in a thread of {@link HashedWheelTimer#getSharedExecutor()}.
+     *
+     * @param timeout The timeout in milliseconds
+     * @return This future
+     */
+    public JsonRpcFuture<T> withTimeout(long timeout) {
+        final Runnable expire = new Runnable() {
+            @Override
+            public void run() {
+                if (setFailure(new JsonRpcTimeoutException())) {
+                    runCancelAction();
+                }
+            }
+        };
+        final HashedWheelTimer.Timeout scheduled = HashedWheelTimer.getSharedTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                // Callbacks might block, so they must not be called in the timer thread
+                try {
+                    HashedWheelTimer.getSharedExecutor().execute(expire);
+                } catch (RejectedExecutionException e) {
+                    expire.run();
+                }
+            }
+        }, timeout);
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                scheduled.cancel();
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                scheduled.cancel();
+            }
+        });
+        return this;
+    }
+
+    private <R> JsonRpcFuture<R> createDependentFuture() {
+        JsonRpcFuture<R> future = new JsonRpcFuture<R>();
+        future.setCancelAction(new Runnable() {
+            @Override
+            public void run() {
+                cancel(false);
+            }
+        });
+        return future;
+    }
+
+    private void runCancelAction() {
+        Runnable cancelAction;
+        synchronized (this) {
+            cancelAction = this.cancelAction;
+        }
+        if (cancelAction != null) {
+            cancelAction.run();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (complete(CANCELLED, null, new CancellationException())) {
+            runCancelAction();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        completed.await();
+        return getResult();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!completed.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        if (state == SUCCEEDED) {
+            return result;
+        } else if (state == CANCELLED) {
+            throw (CancellationException) failure;
+        } else {
+            throw new ExecutionException(failure);
+        }
+    }
+
+    @Override
+    public void onMessage(T message) {
+        setResult(message);
+    }
+
+    @Override
+    public void onError(int code, String message, String data) {
+        setFailure(new JsonRpcException(code, message, data));
+    }
+
+    @Override
+    public void onTimeout() {
+        setFailure(new JsonRpcTimeoutException());
+    }
+
+    @Override
+    public void onFinished() {
+        // Do nothing
+    }
+}
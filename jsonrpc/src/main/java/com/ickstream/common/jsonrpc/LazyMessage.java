@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A message to log which isn't converted to a string until a message logger actually needs it, see
+ * {@link LazyMessageLogger}. The string is only created once even if the message is logged by several loggers.
+ */
+public abstract class LazyMessage {
+    private volatile String message;
+
+    /**
+     * Get the message as a string, the string is created the first time this method is called
+     *
+     * @return The message
+     */
+    public String getMessage() {
+        String message = this.message;
+        if (message == null) {
+            message = createMessage();
+            this.message = message;
+        }
+        return message;
+    }
+
+    /**
+     * Create the string representation of the message
+     *
+     * @return The message
+     */
+    protected abstract String createMessage();
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+
+    /**
+     * Create a message from an already available string
+     *
+     * @param message The message
+     * @return A lazy message which just returns the specified string
+     */
+    public static LazyMessage fromString(final String message) {
+        return new LazyMessage() {
+            @Override
+            protected String createMessage() {
+                return message;
+            }
+        };
+    }
+
+    /**
+     * Create a message from raw UTF-8 encoded bytes, the bytes are not copied so the array must not be modified
+     * after the call. Smile encoded messages are converted to text JSON when needed.
+     *
+     * @param message The UTF-8 encoded message
+     * @return A lazy message which decodes the bytes when needed
+     */
+    public static LazyMessage fromBytes(final byte[] message) {
+        return new LazyMessage() {
+            @Override
+            protected String createMessage() {
+                if (MessageEncoding.detect(message, 0, message.length) == MessageEncoding.SMILE) {
+                    JsonNode json = new JsonHelper().bytesToObject(message, JsonNode.class);
+                    return json != null ? json.toString() : null;
+                }
+                try {
+                    return new String(message, "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a message from an object which is serialized to JSON when needed, the object must not be modified
+     * after the call
+     *
+     * @param message    The message object, for example a {@link JsonRpcRequest} or {@link JsonRpcResponse}
+     * @param jsonHelper The JSON helper to serialize the object with
+     * @return A lazy message which serializes the object when needed
+     */
+    public static LazyMessage fromObject(final Object message, final JsonHelper jsonHelper) {
+        return new LazyMessage() {
+            @Override
+            protected String createMessage() {
+                return jsonHelper.objectToString(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+/**
+ * Message logger which can tell in advance if a message will be logged and which receives messages that are
+ * only converted to strings when needed. Code producing messages should use {@link MessageLogging} which takes
+ * care of both plain {@link MessageLogger} and {@link LazyMessageLogger} implementations, so nothing is
+ * serialized unless a logger is attached and enabled.
+ */
+public interface LazyMessageLogger extends MessageLogger {
+    /**
+     * Check if outgoing messages to the specified destination should be logged
+     *
+     * @param destination The destination the message is sent to
+     * @return true if the message should be logged
+     */
+    boolean isOutgoingEnabled(String destination);
+
+    /**
+     * Check if incoming messages from the specified source should be logged
+     *
+     * @param source The source which the message came from
+     * @return true if the message should be logged
+     */
+    boolean isIncomingEnabled(String source);
+
+    /**
+     * Log an outgoing message
+     *
+     * @param destination The destination the message is sent to
+     * @param message     The message sent
+     */
+    void onOutgoingMessage(String destination, LazyMessage message);
+
+    /**
+     * Log an incoming message
+     *
+     * @param source  The source which the message came from
+     * @param message The message received
+     */
+    void onIncomingMessage(String source, LazyMessage message);
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.Collection;
+
+/**
+ * The encodings which can be used to transfer JSON-RPC messages.
+ * <p>
+ * {@link #JSON} is always supported, {@link #SMILE} is the binary JSON format of Jackson which is smaller and
+ * considerably faster to parse and should only be sent to peers that have advertised support for it. Received
+ * messages can always be decoded without knowing the encoding in advance as all Smile messages start with a
+ * fixed header, see {@link #detect(byte[], int, int)}.
+ * </p>
+ */
+public enum MessageEncoding {
+    /**
+     * Standard UTF-8 encoded text JSON
+     */
+    JSON("json"),
+    /**
+     * Binary Smile encoded JSON
+     */
+    SMILE("smile");
+
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final String name;
+
+    private MessageEncoding(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the encoding as advertised between peers
+     *
+     * @return The name of the encoding
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the encoding with the specified name
+     *
+     * @param name The name of the encoding as advertised between peers
+     * @return The encoding or null if the name doesn't correspond to a known encoding
+     */
+    public static MessageEncoding fromName(String name) {
+        for (MessageEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the names of all encodings supported by this implementation, this is what should be advertised to peers
+     *
+     * @return The names of the supported encodings, in order of preference with the least preferred first
+     */
+    public static String[] getSupportedNames() {
+        MessageEncoding[] encodings = values();
+        String[] names = new String[encodings.length];
+        for (int i = 0; i < encodings.length; i++) {
+            names[i] = encodings[i].name;
+        }
+        return names;
+    }
+
+    /**
+     * Select the encoding to use when sending messages to a peer
+     *
+     * @param peerEncodings The names of the encodings advertised by the peer, null if the peer didn't advertise any
+     * @return The most preferred encoding supported by both this implementation and the peer, {@link #JSON} if
+     *         the peer didn't advertise any other supported encoding
+     */
+    public static MessageEncoding negotiate(Collection<String> peerEncodings) {
+        MessageEncoding selected = JSON;
+        if (peerEncodings != null) {
+            for (String peerEncoding : peerEncodings) {
+                MessageEncoding encoding = fromName(peerEncoding);
+                if (encoding != null && encoding.ordinal() > selected.ordinal()) {
+                    selected = encoding;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Detect the encoding of a received message
+     *
+     * @param data   The received message
+     * @param offset The offset of the message in the array
+     * @param length The length of the message
+     * @return {@link #SMILE} if the message starts with a Smile header, else {@link #JSON}
+     */
+    public static MessageEncoding detect(byte[] data, int offset, int length) {
+        if (length < SMILE_HEADER.length) {
+            return JSON;
+        }
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (data[offset + i] != SMILE_HEADER[i]) {
+                return JSON;
+            }
+        }
+        return SMILE;
+    }
+}
@@ -55,6 +55,11 @@ public interface MessageHandler<T> {
     /**
      * Called when a timeout occurs, if this method is called the {@link #onMessage(Object)} method will never be
      * called if the response is received after the onTimeout call has happened.
+     * <p>
+     * This is called in a thread of the timeout executor of the client, see
+     * {@link AsyncJsonRpcClient#setTimeoutExecutor(java.util.concurrent.Executor)}, and so is the following
+     * {@link #onFinished()} call.
+     * </p>
      */
     void onTimeout();
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+/**
+ * Helper methods to log messages with any {@link MessageLogger} implementation. The messages are only converted to
+ * strings if a logger is attached and, for {@link LazyMessageLogger} implementations, if the logger actually needs
+ * the message.
+ */
+public class MessageLogging {
+    private MessageLogging() {
+    }
+
+    /**
+     * Check if outgoing messages to the specified destination should be logged, use this before creating a
+     * {@link LazyMessage} to avoid any allocation when logging is disabled
+     *
+     * @param messageLogger The message logger, may be null
+     * @param destination   The destination the message is sent to
+     * @return true if the message should be logged
+     */
+    public static boolean isOutgoingEnabled(MessageLogger messageLogger, String destination) {
+        if (messageLogger instanceof LazyMessageLogger) {
+            return ((LazyMessageLogger) messageLogger).isOutgoingEnabled(destination);
+        }
+        return messageLogger != null;
+    }
+
+    /**
+     * Check if incoming messages from the specified source should be logged, use this before creating a
+     * {@link LazyMessage} to avoid any allocation when logging is disabled
+     *
+     * @param messageLogger The message logger, may be null
+     * @param source        The source which the message came from
+     * @return true if the message should be logged
+     */
+    public static boolean isIncomingEnabled(MessageLogger messageLogger, String source) {
+        if (messageLogger instanceof LazyMessageLogger) {
+            return ((LazyMessageLogger) messageLogger).isIncomingEnabled(source);
+        }
+        return messageLogger != null;
+    }
+
+    /**
+     * Log an outgoing message
+     *
+     * @param messageLogger The message logger, may be null
+     * @param destination   The destination the message is sent to
+     * @param message       The message sent
+     */
+    public static void logOutgoing(MessageLogger messageLogger, String destination, LazyMessage message) {
+        if (messageLogger instanceof LazyMessageLogger) {
+            ((LazyMessageLogger) messageLogger).onOutgoingMessage(destination, message);
+        } else if (messageLogger != null) {
+            messageLogger.onOutgoingMessage(destination, message.getMessage());
+        }
+    }
+
+    /**
+     * Log an incoming message
+     *
+     * @param messageLogger The message logger, may be null
+     * @param source        The source which the message came from
+     * @param message       The message received
+     */
+    public static void logIncoming(MessageLogger messageLogger, String source, LazyMessage message) {
+        if (messageLogger instanceof LazyMessageLogger) {
+            ((LazyMessageLogger) messageLogger).onIncomingMessage(source, message);
+        } else if (messageLogger != null) {
+            messageLogger.onIncomingMessage(source, message.getMessage());
+        }
+    }
+
+    /**
+     * Log an outgoing message available as UTF-8 encoded bytes, the bytes are only decoded if needed
+     *
+     * @param messageLogger The message logger, may be null
+     * @param destination   The destination the message is sent to
+     * @param message       The UTF-8 encoded message sent, must not be modified after the call
+     */
+    public static void logOutgoing(MessageLogger messageLogger, String destination, byte[] message) {
+        if (isOutgoingEnabled(messageLogger, destination)) {
+            logOutgoing(messageLogger, destination, LazyMessage.fromBytes(message));
+        }
+    }
+
+    /**
+     * Log an incoming message available as UTF-8 encoded bytes, the bytes are only decoded if needed
+     *
+     * @param messageLogger The message logger, may be null
+     * @param source        The source which the message came from
+     * @param message       The UTF-8 encoded message received, must not be modified after the call
+     */
+    public static void logIncoming(MessageLogger messageLogger, String source, byte[] message) {
+        if (isIncomingEnabled(messageLogger, source)) {
+            logIncoming(messageLogger, source, LazyMessage.fromBytes(message));
+        }
+    }
+
+    /**
+     * Log an outgoing message object, the object is only serialized to JSON if needed
+     *
+     * @param messageLogger The message logger, may be null
+     * @param destination   The destination the message is sent to
+     * @param message       The message object sent, must not be modified after the call
+     * @param jsonHelper    The JSON helper to serialize the object with
+     */
+    public static void logOutgoing(MessageLogger messageLogger, String destination, Object message, JsonHelper jsonHelper) {
+        if (isOutgoingEnabled(messageLogger, destination)) {
+            logOutgoing(messageLogger, destination, LazyMessage.fromObject(message, jsonHelper));
+        }
+    }
+
+    /**
+     * Log an incoming message object, the object is only serialized to JSON if needed
+     *
+     * @param messageLogger The message logger, may be null
+     * @param source        The source which the message came from
+     * @param message       The message object received, must not be modified after the call
+     * @param jsonHelper    The JSON helper to serialize the object with
+     */
+    public static void logIncoming(MessageLogger messageLogger, String source, Object message, JsonHelper jsonHelper) {
+        if (isIncomingEnabled(messageLogger, source)) {
+            logIncoming(messageLogger, source, LazyMessage.fromObject(message, jsonHelper));
+        }
+    }
+}
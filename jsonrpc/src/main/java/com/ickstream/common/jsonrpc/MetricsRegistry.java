@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+/**
+ * Registry of the metrics recorded by {@link StreamJsonRpcService}, {@link AsyncJsonRpcClient} and
+ * {@link HttpMessageSender}, implement this interface to forward the metrics to an existing metrics system or use
+ * {@link DefaultMetricsRegistry} or {@link JmxMetricsRegistry}.
+ * <p>
+ * Metrics are looked up by name once when the registry is configured and then recorded from any thread, so the
+ * returned metric instances must be thread safe and should avoid allocating or locking when recording.
+ * </p>
+ */
+public interface MetricsRegistry {
+    /**
+     * A counter which can be increased or decreased, counters which are decreased are used as gauges
+     */
+    public static interface Counter {
+        /**
+         * Add the specified value to the counter
+         *
+         * @param delta The value to add, negative to decrease the counter
+         */
+        void add(long delta);
+    }
+
+    /**
+     * A histogram recording the distribution of a value, for example a latency or a message size
+     */
+    public static interface Histogram {
+        /**
+         * Record a value
+         *
+         * @param value The value to record, negative values are recorded as zero
+         */
+        void record(long value);
+    }
+
+    /**
+     * Get the counter with the specified name, the counter is created if it doesn't exist
+     *
+     * @param name The name of the counter
+     * @return The counter
+     */
+    Counter getCounter(String name);
+
+    /**
+     * Get the histogram with the specified name, the histogram is created if it doesn't exist
+     *
+     * @param name The name of the histogram
+     * @return The histogram
+     */
+    Histogram getHistogram(String name);
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of JSON-RPC results used by {@link AsyncJsonRpcClient} to avoid sending requests for idempotent methods
+ * whose results rarely change. Only methods which have been given a time to live with
+ * {@link #setTimeToLive(String, Long)} are cached and only successful results are stored.
+ * <p>
+ * Results are keyed on the method and the parameters, the parameters are canonicalized so the order of the
+ * attributes in a parameter object doesn't matter. The least recently used results are evicted when the cache
+ * exceeds either the maximum number of entries or the maximum size, the size of a result is estimated from the
+ * lengths of the names and values in its JSON structure.
+ * </p>
+ * <p>
+ * Results are stored as copies and every hit returns a new copy, so callers are free to modify the results they get.
+ * </p>
+ * <p>
+ * A cache can outlive the client using it, for example to keep the results across reconnects, but it should only
+ * be shared between clients talking to the same service since the service itself isn't part of the key.
+ * </p>
+ */
+public class ResponseCache {
+    private final int maxEntries;
+    private final long maxSize;
+    private final Map<String, Long> timeToLive = new ConcurrentHashMap<String, Long>();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final JsonHelper jsonHelper = new JsonHelper();
+    private long size;
+    private long generation;
+    private long hits;
+    private long misses;
+
+    private static class Entry {
+        private final String method;
+        private final JsonNode result;
+        private final long size;
+        private final long expires;
+
+        private Entry(String method, JsonNode result, long size, long expires) {
+            this.method = method;
+            this.result = result;
+            this.size = size;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Creates a new cache
+     *
+     * @param maxEntries The maximum number of results to keep
+     * @param maxSize    The maximum estimated size in bytes of all results, null if only the number of results
+     *                   should be limited
+     */
+    public ResponseCache(Integer maxEntries, Long maxSize) {
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize != null ? maxSize : Long.MAX_VALUE;
+    }
+
+    /**
+     * Set how long the results of a method should be cached
+     *
+     * @param method     The method to cache the results of
+     * @param timeToLive The time in milliseconds to keep results, null if the method shouldn't be cached
+     */
+    public void setTimeToLive(String method, Long timeToLive) {
+        if (timeToLive != null) {
+            this.timeToLive.put(method, timeToLive);
+        } else {
+            this.timeToLive.remove(method);
+            invalidate(method);
+        }
+    }
+
+    /**
+     * Get how long the results of a method are cached
+     *
+     * @param method The method
+     * @return The time in milliseconds results are kept or null if the method isn't cached
+     */
+    public Long getTimeToLive(String method) {
+        return timeToLive.get(method);
+    }
+
+    /**
+     * Get the key of a request, the parameters are serialized with the attributes of objects sorted by name
+     *
+     * @param method The method of the request
+     * @param params The parameters of the request or null if it doesn't have any parameters
+     * @return The key or null if the method isn't cached
+     */
+    String getKey(String method, JsonNode params) {
+        if (!timeToLive.containsKey(method)) {
+            return null;
+        }
+        if (params != null && !params.isNull()) {
+            return method + ":" + jsonHelper.jsonToCanonicalString(params);
+        }
+        return method;
+    }
+
+    /**
+     * Get a cached result
+     *
+     * @param key The key returned by {@link #getKey(String, JsonNode)}
+     * @return The result or null if it isn't cached or has expired
+     */
+    JsonNode get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expires <= System.currentTimeMillis()) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        // The stored result is never modified, so it can be copied without holding the lock
+        return entry.result.deepCopy();
+    }
+
+    /**
+     * Get the current generation of the cache, which changes on every invalidation. The generation is taken when a
+     * request is sent so a result which was requested before an invalidation isn't stored afterwards.
+     *
+     * @return The current generation
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Store a result unless the cache has been invalidated since the request was sent
+     *
+     * @param key        The key returned by {@link #getKey(String, JsonNode)}
+     * @param method     The method of the request
+     * @param result     The result to store
+     * @param generation The generation of the cache when the request was sent
+     */
+    void put(String key, String method, JsonNode result, long generation) {
+        Long timeToLive = this.timeToLive.get(method);
+        if (timeToLive == null) {
+            return;
+        }
+        long entrySize = 2L * (key.length() + estimateLength(result));
+        if (entrySize > maxSize) {
+            return;
+        }
+        result = result.deepCopy();
+        synchronized (this) {
+            if (generation == this.generation) {
+                store(key, method, result, entrySize, timeToLive);
+            }
+        }
+    }
+
+    private void store(String key, String method, JsonNode result, long entrySize, long timeToLive) {
+        remove(key);
+        entries.put(key, new Entry(method, result, entrySize, System.currentTimeMillis() + timeToLive));
+        size += entrySize;
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || size > maxSize) && it.hasNext()) {
+            size -= it.next().size;
+            it.remove();
+        }
+    }
+
+    /**
+     * Estimate the length of the JSON representation of a result without serializing it
+     */
+    private static long estimateLength(JsonNode json) {
+        if (json.isContainerNode()) {
+            long length = 2;
+            Iterator<Map.Entry<String, JsonNode>> fields = json.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                length += field.getKey().length() + 4 + estimateLength(field.getValue());
+            }
+            if (json.isArray()) {
+                for (JsonNode element : json) {
+                    length += 1 + estimateLength(element);
+                }
+            }
+            return length;
+        }
+        return json.isTextual() ? json.textValue().length() + 2 : json.asText().length();
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * Remove all cached results of a method
+     *
+     * @param method The method to remove the results of
+     */
+    public synchronized void invalidate(String method) {
+        generation++;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.method.equals(method)) {
+                size -= entry.size;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove the cached result of a method called with specific parameters
+     *
+     * @param method The method
+     * @param params The parameters, this must be possible to serialize to JSON with the {@link JsonHelper} class
+     */
+    public void invalidate(String method, Object params) {
+        String key = getKey(method, params != null ? jsonHelper.objectToJson(params) : null);
+        if (key != null) {
+            synchronized (this) {
+                generation++;
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached results
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Get the number of cached results
+     *
+     * @return The number of cached results, including expired results which haven't been evicted yet
+     */
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Get the estimated size of the cached results
+     *
+     * @return The estimated size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of requests which were answered from the cache
+     *
+     * @return The number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of requests of cached methods which had to be sent
+     *
+     * @return The number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.util.Random;
+
+/**
+ * Policy for retrying failed requests of idempotent methods, used by {@link HttpMessageSender}. A request is retried
+ * if it fails with an I/O error or a HTTP 5xx status, the delay before each retry grows exponentially from the
+ * initial backoff up to the maximum backoff and is randomized between half and all of the calculated delay so that
+ * clients failing at the same time don't retry at the same time. No retry is started after the deadline.
+ * <p>
+ * Optionally, requests can be hedged: if the first attempt hasn't completed within the 95th percentile of the latency
+ * observed for successful attempts, a second attempt is sent in parallel and whichever answer arrives first is used.
+ * Hedging only starts when enough latencies have been observed and only works with asynchronous message senders.
+ * </p>
+ */
+public class RetryPolicy {
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    private static final int HEDGE_DELAY_UPDATE_INTERVAL = 50;
+    private static final int LATENCY_WINDOW = 1000;
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final long deadline;
+    private double backoffMultiplier = 2.0;
+    private boolean hedged;
+    private final LogHistogram latencies = new LogHistogram();
+    private volatile long hedgeDelay = -1;
+    private final Random random = new Random();
+
+    /**
+     * Creates a new retry policy
+     *
+     * @param maxAttempts    The maximum number of attempts including the first one
+     * @param initialBackoff The delay in milliseconds before the first retry
+     * @param maxBackoff     The maximum delay in milliseconds before a retry
+     * @param deadline       The time in milliseconds after the first attempt after which no more retries are started
+     */
+    public RetryPolicy(Integer maxAttempts, Long initialBackoff, Long maxBackoff, Long deadline) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Set the factor the delay grows with for every retry, the default is 2.0
+     *
+     * @param backoffMultiplier The factor to multiply the previous delay with
+     */
+    public void setBackoffMultiplier(Double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    /**
+     * Enable or disable hedging of requests, hedging is disabled by default
+     *
+     * @param hedged true if a second attempt should be sent when the first attempt is slower than the 95th percentile
+     */
+    public void setHedged(Boolean hedged) {
+        this.hedged = hedged;
+    }
+
+    /**
+     * Get if requests are hedged
+     *
+     * @return true if a second attempt is sent when the first attempt is slow
+     */
+    public Boolean getHedged() {
+        return hedged;
+    }
+
+    /**
+     * Get the maximum number of attempts
+     *
+     * @return The maximum number of attempts including the first one
+     */
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Get the time after the first attempt after which no more retries are started
+     *
+     * @return The deadline in milliseconds
+     */
+    public Long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Get the randomized delay before a retry
+     *
+     * @param attempts The number of attempts made so far
+     * @return The delay in milliseconds
+     */
+    long getBackoff(int attempts) {
+        double backoff = Math.min(maxBackoff, initialBackoff * Math.pow(backoffMultiplier, attempts - 1));
+        double jitter;
+        synchronized (random) {
+            jitter = random.nextDouble();
+        }
+        return (long) (backoff / 2 + jitter * backoff / 2);
+    }
+
+    /**
+     * Record the latency of a successful attempt
+     *
+     * @param latency The latency in milliseconds
+     */
+    void recordLatency(long latency) {
+        latencies.record(latency);
+        long count = latencies.getCount();
+        if (count >= MIN_HEDGE_SAMPLES && count % HEDGE_DELAY_UPDATE_INTERVAL == 0 || count == MIN_HEDGE_SAMPLES) {
+            hedgeDelay = latencies.getValueAtPercentile(95);
+            if (count >= LATENCY_WINDOW) {
+                // Start over so the delay follows permanent changes of the latency
+                latencies.reset();
+            }
+        }
+    }
+
+    /**
+     * Get the delay after which a hedged attempt should be sent
+     *
+     * @return The delay in milliseconds or -1 if requests shouldn't be hedged
+     */
+    long getHedgeDelay() {
+        return hedged ? hedgeDelay : -1;
+    }
+}
@@ -28,16 +28,23 @@
 
 package com.ickstream.common.jsonrpc;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implementation of a JSON-RPC service, the purpose is to abstract JSON-RPC transport protocol and parsing from the
@@ -56,15 +63,458 @@ import java.util.*;
  * </p>
  */
 public class StreamJsonRpcService {
+    private static final Map<Class, Map<String, MethodInvoker[]>> dispatchTableCache = new HashMap<Class, Map<String, MethodInvoker[]>>();
+    private static final Map<Class, Set<String>> implementationMethodNamesCache = new HashMap<Class, Set<String>>();
     private Object serviceImplementation;
     private Class serviceInterface;
     private JsonHelper jsonHelper = new JsonHelper();
-    private static final Map<String, List<Method>> methodCache = new HashMap<String, List<Method>>();
-    static final Map<String, Method> matchedMethodCache = new HashMap<String, Method>();
-    private static final Map<Method, Annotation[][]> methodParameterAnnotationsCache = new HashMap<Method, Annotation[][]>();
+    private final Map<String, MethodInvoker[]> dispatchTable;
+    private final Set<String> implementationMethodNames;
     private Boolean returnOnVoid;
     private Boolean ignoreResponses;
     private MessageLogger messageLogger;
+    private Executor batchExecutor;
+    private volatile ServiceMetrics metrics;
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<String, ConcurrencyLimiter>();
+    private volatile InvocationRoute defaultInvocationRoute;
+    private final Map<String, InvocationRoute> invocationRoutes = new ConcurrentHashMap<String, InvocationRoute>();
+    private final CallerSequencer callerSequencer = new CallerSequencer();
+    private volatile Long warmUpMicros;
+    private volatile Map<String, Long> warmUpMicrosPerMethod = Collections.emptyMap();
+
+    /**
+     * Marker returned by {@link #process(ParsedRequest, ResponseListener)} when the response will be delivered later
+     */
+    private static final JsonRpcResponse DEFERRED_RESPONSE = new JsonRpcResponse("2.0", null);
+
+    /**
+     * Receiver of responses which are completed asynchronously
+     */
+    private static interface ResponseListener {
+        void onResponse(JsonRpcResponse response);
+    }
+
+    /**
+     * Executor which calls of a method are invoked with
+     */
+    private static class InvocationRoute {
+        private final Executor executor;
+        private final boolean ordered;
+
+        private InvocationRoute(Executor executor, boolean ordered) {
+            this.executor = executor;
+            this.ordered = ordered;
+        }
+    }
+
+    /**
+     * Executes the ordered invocations of each caller one at a time in the order they were received, invocations
+     * of different callers are executed concurrently
+     */
+    private static class CallerSequencer {
+        private final Map<Object, LinkedList<Invocation>> waiting = new HashMap<Object, LinkedList<Invocation>>();
+
+        private void execute(Invocation invocation) {
+            synchronized (waiting) {
+                LinkedList<Invocation> invocations = waiting.get(invocation.caller);
+                if (invocations != null) {
+                    invocations.add(invocation);
+                    return;
+                }
+                // An empty list marks that an invocation of the caller is executing
+                waiting.put(invocation.caller, new LinkedList<Invocation>());
+            }
+            invocation.submit();
+        }
+
+        private void next(Object caller) {
+            Invocation next;
+            synchronized (waiting) {
+                LinkedList<Invocation> invocations = waiting.get(caller);
+                next = invocations != null ? invocations.poll() : null;
+                if (next == null) {
+                    waiting.remove(caller);
+                }
+            }
+            if (next != null) {
+                next.submit();
+            }
+        }
+    }
+
+    /**
+     * Pre-resolved binding between a parameter of an exposed method and the JSON-RPC request parameters
+     */
+    private static class ParamBinder {
+        private static final int NONE = 0;
+        private static final int NAMED = 1;
+        private static final int STRUCTURE = 2;
+        private static final int ARRAY = 3;
+
+        private static final int NUMBER = 0;
+        private static final int STRING = 1;
+        private static final int BOOLEAN = 2;
+        private static final int COLLECTION = 3;
+        private static final int DATE = 4;
+        private static final int OBJECT = 5;
+
+        private static final int FOUND = 0;
+        private static final int OPTIONAL = 1;
+        private static final int MISSING = 2;
+
+        private final int kind;
+        private final String name;
+        private final boolean optional;
+        private final int valueType;
+        private final Type type;
+
+        private ParamBinder(Annotation[] annotations, Class cls, Type type) {
+            int kind = NONE;
+            String name = null;
+            boolean optional = false;
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof JsonRpcParam) {
+                    kind = NAMED;
+                    name = ((JsonRpcParam) annotation).name();
+                    optional = ((JsonRpcParam) annotation).optional();
+                    break;
+                } else if (annotation instanceof JsonRpcParamStructure) {
+                    kind = STRUCTURE;
+                    optional = true;
+                } else if (annotation instanceof JsonRpcParamArray) {
+                    kind = ARRAY;
+                    optional = ((JsonRpcParamArray) annotation).optional();
+                }
+            }
+            this.kind = kind;
+            this.name = name;
+            this.optional = optional;
+            this.type = type;
+            if (Number.class.isAssignableFrom(cls)) {
+                valueType = NUMBER;
+            } else if (String.class.isAssignableFrom(cls)) {
+                valueType = STRING;
+            } else if (Boolean.class.isAssignableFrom(cls)) {
+                valueType = BOOLEAN;
+            } else if (Collection.class.isAssignableFrom(cls)) {
+                valueType = COLLECTION;
+            } else if (Date.class.isAssignableFrom(cls)) {
+                valueType = DATE;
+            } else {
+                valueType = OBJECT;
+            }
+        }
+
+        /**
+         * Check if this parameter can be filled with data from the specified request parameters
+         *
+         * @param paramsNode The request parameters
+         * @return {@link #FOUND}, {@link #OPTIONAL} if the parameter isn't available but can be skipped or {@link #MISSING}
+         */
+        private int match(JsonNode paramsNode) {
+            switch (kind) {
+                case NAMED:
+                    JsonNode value = paramsNode != null ? paramsNode.get(name) : null;
+                    if (value != null && !value.isNull()) {
+                        return matchesValueType(value) ? FOUND : MISSING;
+                    }
+                    return optional ? OPTIONAL : MISSING;
+                case STRUCTURE:
+                    return OPTIONAL;
+                case ARRAY:
+                    if (paramsNode != null && !paramsNode.isNull()) {
+                        return valueType == COLLECTION && paramsNode.isArray() ? FOUND : MISSING;
+                    }
+                    return optional ? OPTIONAL : MISSING;
+                default:
+                    return MISSING;
+            }
+        }
+
+        /**
+         * Check if the value at the current token of the parser can be used to fill this parameter, this must give
+         * the same result as {@link #matchesValueType(JsonNode)} for the same value
+         *
+         * @param parser The parser positioned at the first token of the value
+         * @return true if the value can be used
+         * @throws IOException If the value couldn't be read
+         */
+        private boolean matchesValueType(JsonParser parser) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            switch (valueType) {
+                case NUMBER:
+                    return token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT;
+                case STRING:
+                    return token == JsonToken.VALUE_STRING;
+                case BOOLEAN:
+                    return token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE;
+                case COLLECTION:
+                    return token == JsonToken.START_ARRAY;
+                case DATE:
+                    return token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.LONG;
+                default:
+                    return token == JsonToken.START_OBJECT;
+            }
+        }
+
+        private boolean matchesValueType(JsonNode value) {
+            switch (valueType) {
+                case NUMBER:
+                    return value.isNumber();
+                case STRING:
+                    return value.isTextual();
+                case BOOLEAN:
+                    return value.isBoolean();
+                case COLLECTION:
+                    return value.isArray();
+                case DATE:
+                    return value.isLong();
+                default:
+                    return value.isObject();
+            }
+        }
+
+        /**
+         * Get the part of the request parameters which should be used to fill this parameter
+         *
+         * @param paramsNode The request parameters
+         * @param jsonHelper The JSON helper to use if an empty structure needs to be created
+         * @return The JSON data for this parameter or null if it should be null
+         */
+        private JsonNode bind(JsonNode paramsNode, JsonHelper jsonHelper) {
+            switch (kind) {
+                case NAMED:
+                    return paramsNode != null ? paramsNode.get(name) : null;
+                case STRUCTURE:
+                    return paramsNode != null ? paramsNode : jsonHelper.createObject();
+                case ARRAY:
+                    return paramsNode;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Pre-resolved invoker of an exposed method, contains everything needed to call the method and build the response
+     */
+    private static class MethodInvoker {
+        private final Method method;
+        private final ParamBinder[] binders;
+        private final String resultName;
+        private final JsonRpcError[] errorMappings;
+        private final boolean voidResult;
+        private final int dateParameters;
+        private final boolean namedParametersOnly;
+
+        private MethodInvoker(Method method) {
+            this.method = method;
+            Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+            Class[] parameterTypes = method.getParameterTypes();
+            Type[] genericParameterTypes = method.getGenericParameterTypes();
+            binders = new ParamBinder[parameterTypes.length];
+            int dateParameters = 0;
+            boolean namedParametersOnly = true;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                binders[i] = new ParamBinder(parameterAnnotations[i], parameterTypes[i], genericParameterTypes[i]);
+                if (binders[i].valueType == ParamBinder.DATE) {
+                    dateParameters++;
+                }
+                if (binders[i].kind != ParamBinder.NAMED) {
+                    namedParametersOnly = false;
+                }
+            }
+            this.dateParameters = dateParameters;
+            this.namedParametersOnly = namedParametersOnly;
+            JsonRpcResult result = method.getAnnotation(JsonRpcResult.class);
+            if (result != null && result.value() != null && result.value().length() > 0) {
+                resultName = result.value();
+            } else {
+                resultName = null;
+            }
+            JsonRpcErrors errors = method.getAnnotation(JsonRpcErrors.class);
+            errorMappings = errors != null ? errors.value() : new JsonRpcError[0];
+            voidResult = method.getReturnType().getName().equals("void");
+        }
+
+        /**
+         * Build the JSON readers and serializers of all parameter types and the result type in advance
+         *
+         * @param jsonHelper The JSON helper which will convert the parameters and result
+         */
+        private void prepare(JsonHelper jsonHelper) {
+            for (ParamBinder binder : binders) {
+                if (binder.kind != ParamBinder.NONE) {
+                    jsonHelper.prepareType(binder.type);
+                }
+            }
+            if (!voidResult) {
+                Type resultType = method.getGenericReturnType();
+                // The result of methods returning futures is the value of the future
+                if (resultType instanceof ParameterizedType && Future.class.isAssignableFrom(method.getReturnType())) {
+                    resultType = ((ParameterizedType) resultType).getActualTypeArguments()[0];
+                }
+                jsonHelper.prepareType(resultType);
+            }
+        }
+
+        private int indexOf(String name) {
+            for (int i = 0; i < binders.length; i++) {
+                if (name.equals(binders[i].name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Object[] bind(JsonNode paramsNode, JsonHelper jsonHelper) {
+            Object[] arguments = new Object[binders.length];
+            for (int i = 0; i < binders.length; i++) {
+                JsonNode param = binders[i].bind(paramsNode, jsonHelper);
+                if (param != null) {
+                    arguments[i] = jsonHelper.jsonToObject(param, binders[i].type);
+                }
+            }
+            return arguments;
+        }
+
+        private Object invoke(Object serviceImplementation, Object[] arguments) throws InvocationTargetException, IllegalAccessException {
+            return method.invoke(serviceImplementation, arguments);
+        }
+
+        private JsonNode wrapResult(JsonNode result, JsonHelper jsonHelper) {
+            if (resultName != null) {
+                return jsonHelper.createObject(resultName, result);
+            }
+            return result;
+        }
+
+        private int getErrorCode(Throwable e) {
+            for (JsonRpcError jsonRpcError : errorMappings) {
+                if (jsonRpcError.exception().isInstance(e)) {
+                    return jsonRpcError.code();
+                }
+            }
+            return JsonRpcError.SERVICE_ERROR;
+        }
+
+        private JsonRpcResponse.Error createError(Throwable e) {
+            for (JsonRpcError jsonRpcError : errorMappings) {
+                if (jsonRpcError.exception().isInstance(e)) {
+                    if (!jsonRpcError.data().equals("")) {
+                        return new JsonRpcResponse.Error(jsonRpcError.code(), jsonRpcError.message(), jsonRpcError.data());
+                    } else if (e.getMessage() != null && e.getMessage().length() > 0) {
+                        return new JsonRpcResponse.Error(jsonRpcError.code(), jsonRpcError.message(), e.getMessage());
+                    } else {
+                        return new JsonRpcResponse.Error(jsonRpcError.code(), jsonRpcError.message());
+                    }
+                }
+            }
+            if (e.getMessage() == null) {
+                return new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, e.getMessage(), e.getClass().getName());
+            } else {
+                StringWriter stringWriter = new StringWriter();
+                PrintWriter writer = new PrintWriter(stringWriter);
+                e.printStackTrace(writer);
+                return new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, stringWriter.toString(), e.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * A request read from a stream, if the parameters could be bound to the method arguments while the request was
+     * parsed the invoker and arguments are set and the request itself doesn't contain any parameters
+     */
+    private static class ParsedRequest {
+        private final JsonRpcRequest request = new JsonRpcRequest();
+        private MethodInvoker invoker;
+        private Object[] arguments;
+        private TokenBuffer receivedParams;
+        private boolean invalid;
+        private long parseNanos;
+        private Object caller;
+    }
+
+    /**
+     * Metrics of an exposed method, all metrics are looked up when the registry is set so recording only
+     * updates already existing counters and histograms
+     */
+    private static class MethodMetrics {
+        private final MetricsRegistry.Counter calls;
+        private final MetricsRegistry.Counter errors;
+        private final MetricsRegistry.Counter otherErrors;
+        private final MetricsRegistry.Counter inFlight;
+        private final int[] errorCodes;
+        private final MetricsRegistry.Counter[] errorCounters;
+        private final MetricsRegistry.Histogram parseTime;
+        private final MetricsRegistry.Histogram dispatchTime;
+        private final MetricsRegistry.Histogram queueTime;
+        private final MetricsRegistry.Histogram invokeTime;
+        private final MetricsRegistry.Histogram serializeTime;
+
+        private MethodMetrics(MetricsRegistry registry, String prefix, MethodInvoker[] invokers) {
+            calls = registry.getCounter(prefix + ".calls");
+            errors = registry.getCounter(prefix + ".errors");
+            otherErrors = registry.getCounter(prefix + ".errors.other");
+            inFlight = registry.getCounter(prefix + ".inFlight");
+            parseTime = registry.getHistogram(prefix + ".parseMicros");
+            dispatchTime = registry.getHistogram(prefix + ".dispatchMicros");
+            queueTime = registry.getHistogram(prefix + ".queueMicros");
+            invokeTime = registry.getHistogram(prefix + ".invokeMicros");
+            serializeTime = registry.getHistogram(prefix + ".serializeMicros");
+
+            Set<Integer> codes = new TreeSet<Integer>(Arrays.asList(JsonRpcError.INVALID_PARAMS, JsonRpcError.UNAUTHORIZED, JsonRpcError.SERVICE_ERROR, JsonRpcError.OVERLOADED));
+            for (MethodInvoker invoker : invokers) {
+                for (JsonRpcError errorMapping : invoker.errorMappings) {
+                    codes.add(errorMapping.code());
+                }
+            }
+            errorCodes = new int[codes.size()];
+            errorCounters = new MetricsRegistry.Counter[codes.size()];
+            int i = 0;
+            for (Integer code : codes) {
+                errorCodes[i] = code;
+                errorCounters[i] = registry.getCounter(prefix + ".errors." + code);
+                i++;
+            }
+        }
+
+        private void recordError(int code) {
+            errors.add(1);
+            for (int i = 0; i < errorCodes.length; i++) {
+                if (errorCodes[i] == code) {
+                    errorCounters[i].add(1);
+                    return;
+                }
+            }
+            otherErrors.add(1);
+        }
+    }
+
+    /**
+     * Metrics of the service and all its exposed methods
+     */
+    private static class ServiceMetrics {
+        private final Map<String, MethodMetrics> methods = new HashMap<String, MethodMetrics>();
+        private final MetricsRegistry.Counter inFlight;
+        private final MetricsRegistry.Counter invalidRequests;
+        private final MetricsRegistry.Counter unknownMethods;
+        private final MetricsRegistry.Histogram requestSize;
+        private final MetricsRegistry.Histogram responseSize;
+        private final MetricsRegistry.Histogram writeTime;
+
+        private ServiceMetrics(MetricsRegistry registry, String prefix, Map<String, MethodInvoker[]> dispatchTable) {
+            for (Map.Entry<String, MethodInvoker[]> entry : dispatchTable.entrySet()) {
+                methods.put(entry.getKey(), new MethodMetrics(registry, prefix + "." + entry.getKey(), entry.getValue()));
+            }
+            inFlight = registry.getCounter(prefix + ".inFlight");
+            invalidRequests = registry.getCounter(prefix + ".invalidRequests");
+            unknownMethods = registry.getCounter(prefix + ".unknownMethods");
+            requestSize = registry.getHistogram(prefix + ".requestBytes");
+            responseSize = registry.getHistogram(prefix + ".responseBytes");
+            writeTime = registry.getHistogram(prefix + ".writeMicros");
+        }
+    }
 
     /**
      * Creates a new instance which expose the specified service interface and implements it using the specified
@@ -101,396 +551,1231 @@ public class StreamJsonRpcService {
         this(serviceImplementation, serviceInterface, returnOnVoid, true);
     }
 
-    /**
-     * Creates a new instance which expose the specified service interface and implements it using the specified
-     * service implementation
-     *
-     * @param serviceImplementation The service implementation that implements the service interface
-     * @param serviceInterface      The service interface to expose
-     * @param returnOnVoid          true if void methods should return a JSON-RPC response, else false
-     * @param ignoreResponses       true if response message should be completely ignored
-     * @param <T>                   The service implementation to use
-     * @param <I>                   The service interface to expose
-     */
-    public <I, T extends I> StreamJsonRpcService(T serviceImplementation, Class<I> serviceInterface, Boolean returnOnVoid, Boolean ignoreResponses) {
-        this.serviceImplementation = serviceImplementation;
-        this.serviceInterface = serviceInterface;
-        this.returnOnVoid = returnOnVoid;
-        this.ignoreResponses = ignoreResponses;
+    /**
+     * Creates a new instance which expose the specified service interface and implements it using the specified
+     * service implementation
+     * <p>
+     * All methods of the service interface are resolved when the instance is created, so no reflection is needed
+     * when requests are processed
+     * </p>
+     *
+     * @param serviceImplementation The service implementation that implements the service interface
+     * @param serviceInterface      The service interface to expose
+     * @param returnOnVoid          true if void methods should return a JSON-RPC response, else false
+     * @param ignoreResponses       true if response message should be completely ignored
+     * @param <T>                   The service implementation to use
+     * @param <I>                   The service interface to expose
+     */
+    public <I, T extends I> StreamJsonRpcService(T serviceImplementation, Class<I> serviceInterface, Boolean returnOnVoid, Boolean ignoreResponses) {
+        this(serviceImplementation, serviceInterface, returnOnVoid, ignoreResponses, false);
+    }
+
+    /**
+     * Creates a new instance which expose the specified service interface and implements it using the specified
+     * service implementation
+     * <p>
+     * If warm up is enabled the JSON conversion of all parameter and result types are prepared when the instance is
+     * created instead of when each method is called the first time, see {@link #warmUp()}
+     * </p>
+     *
+     * @param serviceImplementation The service implementation that implements the service interface
+     * @param serviceInterface      The service interface to expose
+     * @param returnOnVoid          true if void methods should return a JSON-RPC response, else false
+     * @param ignoreResponses       true if response message should be completely ignored
+     * @param warmUp                true if the JSON conversion should be prepared when the instance is created
+     * @param <T>                   The service implementation to use
+     * @param <I>                   The service interface to expose
+     */
+    public <I, T extends I> StreamJsonRpcService(T serviceImplementation, Class<I> serviceInterface, Boolean returnOnVoid, Boolean ignoreResponses, Boolean warmUp) {
+        this.serviceImplementation = serviceImplementation;
+        this.serviceInterface = serviceInterface;
+        this.returnOnVoid = returnOnVoid;
+        this.ignoreResponses = ignoreResponses;
+        this.dispatchTable = getDispatchTable(serviceInterface);
+        this.implementationMethodNames = getImplementationMethodNames(serviceImplementation.getClass());
+        createConcurrencyLimiters(serviceInterface);
+        if (warmUp) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Prepare the JSON conversion of the parameter and result types of all exposed methods, so the first call of
+     * each method doesn't have to build the Jackson readers and serializers it needs. Use {@link #getWarmUpMicros()}
+     * to see how long the warm up took.
+     * <p>
+     * Everything is otherwise prepared the first time it's needed, so calling this is optional. It can also be called
+     * from a background thread after the service has been created to avoid delaying the startup.
+     * </p>
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
+        jsonHelper.prepareType(JsonRpcRequest.class);
+        jsonHelper.prepareType(JsonRpcResponse.class);
+        Map<String, Long> methodMicros = new HashMap<String, Long>();
+        for (Map.Entry<String, MethodInvoker[]> entry : dispatchTable.entrySet()) {
+            long methodStart = System.nanoTime();
+            for (MethodInvoker invoker : entry.getValue()) {
+                invoker.prepare(jsonHelper);
+            }
+            methodMicros.put(entry.getKey(), micros(System.nanoTime() - methodStart));
+        }
+        warmUpMicrosPerMethod = Collections.unmodifiableMap(methodMicros);
+        warmUpMicros = micros(System.nanoTime() - start);
+    }
+
+    /**
+     * Get the time the last call to {@link #warmUp()} took, this is the time added to the startup of the service
+     *
+     * @return The time in microseconds or null if the service hasn't been warmed up
+     */
+    public Long getWarmUpMicros() {
+        return warmUpMicros;
+    }
+
+    /**
+     * Get the time the last call to {@link #warmUp()} spent on each method. This is the latency the first call of
+     * each method is saved from, types shared by several methods are only counted for the first method that prepared
+     * them and types already prepared by another service aren't counted at all.
+     *
+     * @return The time in microseconds for each method name, empty if the service hasn't been warmed up
+     */
+    public Map<String, Long> getWarmUpMicrosPerMethod() {
+        return warmUpMicrosPerMethod;
+    }
+
+    /**
+     * Create the limiters declared with {@link JsonRpcConcurrencyLimit} annotations in the service interface
+     */
+    private void createConcurrencyLimiters(Class serviceInterface) {
+        Map<String, ConcurrencyLimiter> groups = new HashMap<String, ConcurrencyLimiter>();
+        for (Method method : serviceInterface.getMethods()) {
+            JsonRpcConcurrencyLimit annotation = method.getAnnotation(JsonRpcConcurrencyLimit.class);
+            if (annotation == null || concurrencyLimiters.containsKey(method.getName())) {
+                continue;
+            }
+            ConcurrencyLimiter limiter = annotation.group().length() > 0 ? groups.get(annotation.group()) : null;
+            if (limiter == null) {
+                limiter = new ConcurrencyLimiter(annotation.value(), annotation.queueSize(), annotation.queueTimeout());
+                if (annotation.adaptive()) {
+                    limiter.setAdaptive(1, annotation.value());
+                }
+                if (annotation.group().length() > 0) {
+                    groups.put(annotation.group(), limiter);
+                }
+            }
+            concurrencyLimiters.put(method.getName(), limiter);
+        }
+    }
+
+    /**
+     * Set the message logger implementation to use to log incoming and outgoing messages handled by this service
+     *
+     * @param messageLogger The message logger implementation
+     */
+    public void setMessageLogger(MessageLogger messageLogger) {
+        this.messageLogger = messageLogger;
+    }
+
+    /**
+     * Set the executor to use to process the entries of a JSON-RPC batch request concurrently.
+     * If no executor is set the entries of a batch request are processed one after another in the calling thread.
+     * An executor should only be set if the service implementation is thread safe and doesn't depend on the order
+     * of the calls within a batch request.
+     *
+     * @param batchExecutor The executor to use or null if batch entries should be processed sequentially
+     */
+    public void setBatchExecutor(Executor batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    /**
+     * Set the limiter to use for a method, replacing any limiter declared with a {@link JsonRpcConcurrencyLimit}
+     * annotation. Calls which are rejected by the limiter get a {@link JsonRpcError#OVERLOADED} error response.
+     * Use the same limiter for several methods to let them share a limit.
+     *
+     * @param method  The name of the method
+     * @param limiter The limiter to use or null if the number of concurrent calls shouldn't be limited
+     */
+    public void setConcurrencyLimiter(String method, ConcurrencyLimiter limiter) {
+        if (limiter != null) {
+            concurrencyLimiters.put(method, limiter);
+        } else {
+            concurrencyLimiters.remove(method);
+        }
+    }
+
+    /**
+     * Get the limiter used for a method
+     *
+     * @param method The name of the method
+     * @return The limiter or null if the number of concurrent calls isn't limited
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter(String method) {
+        return concurrencyLimiters.get(method);
+    }
+
+    /**
+     * Set the executor to invoke all methods with, unless another executor has been set for the method with
+     * {@link #setInvocationExecutor(String, Executor)}. By default methods are invoked in the thread that handles
+     * the request.
+     * <p>
+     * The thread handling the request is only released while the method executes if the request is handled with a
+     * completion callback, see {@link #handle(InputStream, OutputStream, Runnable)}, else it waits for the response.
+     * String based transports must use {@link StringJsonRpcService#handle(String, StringJsonRpcService.ResponseCallback)}
+     * for the same reason.
+     * Calls which are rejected by the executor get a {@link JsonRpcError#OVERLOADED} error response.
+     * </p>
+     *
+     * @param executor The executor to use or null if methods should be invoked in the thread that handles the request
+     */
+    public void setInvocationExecutor(Executor executor) {
+        this.defaultInvocationRoute = executor != null ? new InvocationRoute(executor, false) : null;
+    }
+
+    /**
+     * Set the executor to invoke a method with, see {@link #setInvocationExecutor(Executor)}.
+     * A {@link BoundedExecutor} with a single thread can be used as a dedicated lane for a slow method and a
+     * {@link VirtualThreadExecutor} can be used on runtimes which support virtual threads.
+     *
+     * @param method   The name of the method
+     * @param executor The executor to use or null if the method should be invoked in the thread that handles the request
+     */
+    public void setInvocationExecutor(String method, Executor executor) {
+        setInvocationExecutor(method, executor, false);
+    }
+
+    /**
+     * Set the executor to invoke a method with, see {@link #setInvocationExecutor(Executor)}.
+     * <p>
+     * Ordered calls from the same caller, as specified with {@link #handle(InputStream, OutputStream, Runnable, Object)},
+     * are invoked one at a time in the order they were received and their responses are completed in the same order.
+     * This applies to all ordered methods of the service, calls of different callers are still invoked concurrently.
+     * </p>
+     *
+     * @param method   The name of the method
+     * @param executor The executor to use or null if the method should be invoked in the thread that handles the request
+     * @param ordered  true if the calls of each caller should be invoked in the order they were received
+     */
+    public void setInvocationExecutor(String method, Executor executor, Boolean ordered) {
+        invocationRoutes.put(method, new InvocationRoute(executor, ordered));
+    }
+
+    /**
+     * Set the registry to record metrics in, the metrics are named "jsonrpc.&lt;service interface&gt;.&lt;method&gt;.&lt;metric&gt;",
+     * see {@link #setMetricsRegistry(MetricsRegistry, String)}
+     *
+     * @param metricsRegistry The registry to use or null if no metrics should be recorded
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        setMetricsRegistry(metricsRegistry, "jsonrpc." + serviceInterface.getSimpleName());
+    }
+
+    /**
+     * Set the registry to record metrics in. No metrics are recorded by default.
+     * <p>
+     * The following metrics are recorded for each exposed method, named "&lt;prefix&gt;.&lt;method&gt;.&lt;metric&gt;":
+     * </p>
+     * <ul>
+     * <li>calls - Counter of received requests</li>
+     * <li>errors - Counter of error responses, "errors.&lt;code&gt;" counts each known error code and "errors.other" all other codes</li>
+     * <li>inFlight - Counter of currently executing calls</li>
+     * <li>parseMicros - Histogram of the time to parse the request</li>
+     * <li>dispatchMicros - Histogram of the time to resolve the method and bind its parameters</li>
+     * <li>queueMicros - Histogram of the time calls wait for their invocation executor, see {@link #setInvocationExecutor(String, Executor)}</li>
+     * <li>invokeMicros - Histogram of the time spent in the method, including the time until a returned future completes</li>
+     * <li>serializeMicros - Histogram of the time to convert the result to a response</li>
+     * </ul>
+     * <p>
+     * The following metrics are recorded for the service, named "&lt;prefix&gt;.&lt;metric&gt;":
+     * </p>
+     * <ul>
+     * <li>inFlight - Counter of currently executing calls of all methods</li>
+     * <li>invalidRequests - Counter of requests with invalid JSON or which aren't valid JSON-RPC requests</li>
+     * <li>unknownMethods - Counter of requests for methods which aren't exposed</li>
+     * <li>requestBytes - Histogram of the size of received messages</li>
+     * <li>responseBytes - Histogram of the size of sent messages</li>
+     * <li>writeMicros - Histogram of the time to write the response messages</li>
+     * </ul>
+     *
+     * @param metricsRegistry The registry to use or null if no metrics should be recorded
+     * @param prefix          The prefix of the metric names
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry, String prefix) {
+        this.metrics = metricsRegistry != null ? new ServiceMetrics(metricsRegistry, prefix, dispatchTable) : null;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    /**
+     * Process a JSON-RPC request received on an input stream and write the result (if any) to the specified output
+     * stream.
+     * <p>
+     * The input stream can contain either a single request or a batch request represented as an array of requests,
+     * in the later case the responses are written as an array where notifications have been omitted.
+     * </p>
+     * <p>
+     * Requests can be encoded either as text JSON or Smile, the responses are written in the same encoding as the
+     * request, see {@link MessageEncoding}.
+     * </p>
+     *
+     * @param input The input stream that contains the JSON-RPC request
+     * @param ops   The output stream where the JSON-RPC response should be written
+     */
+    protected void handle(InputStream input, OutputStream ops) {
+        handle(input, ops, null);
+    }
+
+    /**
+     * Process a JSON-RPC request received on an input stream and write the result (if any) to the specified output
+     * stream, without blocking on service methods that return a {@link JsonRpcFuture}.
+     * <p>
+     * If a completion callback is specified, the method might return before the response has been written, the
+     * response is then written from the thread that completes the future and the completion callback is called when
+     * the response has been written. If no completion callback is specified, this method behaves exactly as
+     * {@link #handle(InputStream, OutputStream)}.
+     * </p>
+     *
+     * @param input      The input stream that contains the JSON-RPC request
+     * @param ops        The output stream where the JSON-RPC response should be written
+     * @param completion The callback to call when the request has been processed and the response written,
+     *                   null if the request should be processed synchronously
+     */
+    protected void handle(InputStream input, final OutputStream ops, final Runnable completion) {
+        handle(input, ops, completion, null);
+    }
+
+    /**
+     * Process a JSON-RPC request received on an input stream from a specific caller, see
+     * {@link #handle(InputStream, OutputStream, Runnable)}.
+     * <p>
+     * The caller is used to keep the order of calls to methods which have been set up as ordered with
+     * {@link #setInvocationExecutor(String, Executor, Boolean)}, typically the transport uses the identity of the
+     * device or connection which sent the request.
+     * </p>
+     *
+     * @param input      The input stream that contains the JSON-RPC request
+     * @param ops        The output stream where the JSON-RPC response should be written
+     * @param completion The callback to call when the request has been processed and the response written,
+     *                   null if the request should be processed synchronously
+     * @param caller     The identity of the caller, null if calls shouldn't be ordered
+     */
+    protected void handle(InputStream input, final OutputStream ops, final Runnable completion, Object caller) {
+        List<ParsedRequest> requests = new ArrayList<ParsedRequest>();
+        boolean batch = false;
+        MessageEncoding requestEncoding = MessageEncoding.JSON;
+        ServiceMetrics metrics = this.metrics;
+        CountingInputStream countingInput = null;
+        if (metrics != null) {
+            countingInput = new CountingInputStream(input);
+            input = countingInput;
+        }
+        JsonParser parser = null;
+        try {
+            parser = jsonHelper.streamToParser(input);
+            requestEncoding = jsonHelper.getEncoding(parser);
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                requests.add(readRequest(parser, metrics != null));
+            } else if (token == JsonToken.START_ARRAY) {
+                batch = true;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_OBJECT) {
+                        requests.add(readRequest(parser, metrics != null));
+                    } else if (token == null) {
+                        throw new EOFException("Unexpected end of batch request");
+                    } else {
+                        parser.skipChildren();
+                        ParsedRequest invalidRequest = new ParsedRequest();
+                        invalidRequest.invalid = true;
+                        requests.add(invalidRequest);
+                    }
+                }
+            } else {
+                requests = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            requests = null;
+        } finally {
+            try {
+                if (parser != null) {
+                    parser.close();
+                }
+                input.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (metrics != null) {
+            metrics.requestSize.record(countingInput.getCount());
+        }
+        if (caller != null && requests != null) {
+            for (ParsedRequest request : requests) {
+                request.caller = caller;
+            }
+        }
+
+        // Responses are always written in the same encoding as the request
+        final MessageEncoding encoding = requestEncoding;
+        if (requests == null || (!batch && requests.get(0).invalid)) {
+            if (metrics != null) {
+                metrics.invalidRequests.add(1);
+            }
+            JsonRpcResponse response = new JsonRpcResponse("2.0", null);
+            response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_JSON, "Invalid JSON"));
+            complete(ops, encoding, response, completion);
+        } else if (!batch) {
+            ResponseListener listener = null;
+            if (completion != null) {
+                listener = new ResponseListener() {
+                    @Override
+                    public void onResponse(JsonRpcResponse response) {
+                        complete(ops, encoding, response, completion);
+                    }
+                };
+            }
+            JsonRpcResponse response = process(requests.get(0), listener);
+            if (response != DEFERRED_RESPONSE) {
+                complete(ops, encoding, response, completion);
+            }
+        } else if (requests.size() == 0) {
+            if (metrics != null) {
+                metrics.invalidRequests.add(1);
+            }
+            JsonRpcResponse response = new JsonRpcResponse("2.0", null);
+            response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_REQUEST, "Invalid Request"));
+            complete(ops, encoding, response, completion);
+        } else if (completion != null) {
+            processBatch(requests, ops, encoding, completion);
+        } else {
+            List<JsonRpcResponse> responses = processBatch(requests);
+            if (responses.size() > 0) {
+                writeResponse(ops, encoding, responses);
+            }
+        }
+    }
+
+    /**
+     * Write the response (if any) and call the completion callback (if any)
+     */
+    private void complete(OutputStream ops, MessageEncoding encoding, Object response, Runnable completion) {
+        try {
+            if (response != null) {
+                writeResponse(ops, encoding, response);
+            }
+        } finally {
+            if (completion != null) {
+                completion.run();
+            }
+        }
+    }
+
+    /**
+     * Process a JSON-RPC batch request without blocking on deferred responses, the responses are written and the
+     * completion callback called when the last entry of the batch has completed
+     */
+    private void processBatch(final List<ParsedRequest> requests, final OutputStream ops, final MessageEncoding encoding, final Runnable completion) {
+        final JsonRpcResponse[] results = new JsonRpcResponse[requests.size()];
+        final AtomicInteger remaining = new AtomicInteger(requests.size());
+        Executor executor = batchExecutor;
+        for (int i = 0; i < requests.size(); i++) {
+            final int index = i;
+            final ResponseListener listener = new ResponseListener() {
+                @Override
+                public void onResponse(JsonRpcResponse response) {
+                    synchronized (results) {
+                        results[index] = response;
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        List<JsonRpcResponse> responses = new ArrayList<JsonRpcResponse>(results.length);
+                        synchronized (results) {
+                            for (JsonRpcResponse result : results) {
+                                if (result != null) {
+                                    responses.add(result);
+                                }
+                            }
+                        }
+                        complete(ops, encoding, responses.size() > 0 ? responses : null, completion);
+                    }
+                }
+            };
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    JsonRpcResponse response;
+                    try {
+                        response = process(requests.get(index), listener);
+                    } catch (RuntimeException e) {
+                        response = createServiceErrorResponse(requests.get(index), e);
+                    }
+                    if (response != DEFERRED_RESPONSE) {
+                        listener.onResponse(response);
+                    }
+                }
+            };
+            if (executor != null && requests.size() > 1) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    task.run();
+                }
+            } else {
+                task.run();
+            }
+        }
+    }
+
+    private List<JsonRpcResponse> processBatch(List<ParsedRequest> requests) {
+        List<JsonRpcResponse> responses = new ArrayList<JsonRpcResponse>(requests.size());
+        Executor executor = batchExecutor;
+        if (executor == null || requests.size() == 1) {
+            for (ParsedRequest request : requests) {
+                JsonRpcResponse response = process(request);
+                if (response != null) {
+                    responses.add(response);
+                }
+            }
+            return responses;
+        }
+
+        List<FutureTask<JsonRpcResponse>> tasks = new ArrayList<FutureTask<JsonRpcResponse>>(requests.size());
+        for (final ParsedRequest request : requests) {
+            FutureTask<JsonRpcResponse> task = new FutureTask<JsonRpcResponse>(new Callable<JsonRpcResponse>() {
+                @Override
+                public JsonRpcResponse call() throws Exception {
+                    return process(request);
+                }
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            JsonRpcResponse response;
+            try {
+                response = tasks.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response = createServiceErrorResponse(requests.get(i), e);
+            } catch (ExecutionException e) {
+                response = createServiceErrorResponse(requests.get(i), e.getCause());
+            }
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    private JsonRpcResponse createServiceErrorResponse(ParsedRequest parsedRequest, Throwable e) {
+        JsonRpcRequest request = parsedRequest.request;
+        if (request.getId() == null) {
+            return null;
+        }
+        JsonRpcResponse response = new JsonRpcResponse(request.getJsonrpc(), request.getId());
+        response.setError(new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, e.getMessage(), e.getClass().getName()));
+        return response;
     }
 
     /**
-     * Set the message logger implementation to use to log incoming and outgoing messages handled by this service
+     * Process a single JSON-RPC request
      *
-     * @param messageLogger The message logger implementation
+     * @param parsedRequest The request to process
+     * @return The response to send or null if no response should be sent
      */
-    public void setMessageLogger(MessageLogger messageLogger) {
-        this.messageLogger = messageLogger;
+    private JsonRpcResponse process(ParsedRequest parsedRequest) {
+        return process(parsedRequest, null);
     }
 
     /**
-     * Process a JSON-RPC request received on an input stream and write the result (if any) to the specified output
-     * stream
+     * Process a single JSON-RPC request
+     * <p>
+     * If a listener is specified and the called method returns a {@link JsonRpcFuture}, the method returns
+     * without waiting for the future and the response is instead delivered to the listener when the future completes.
+     * Methods returning any other {@link Future} are always waited for in the calling thread.
+     * </p>
      *
-     * @param input The input stream that contains the JSON-RPC request
-     * @param ops   The output stream where the JSON-RPC response should be written
+     * @param parsedRequest The request to process
+     * @param listener      The listener which deferred responses should be delivered to, null if the response should
+     *                      be waited for
+     * @return The response to send, null if no response should be sent or {@link #DEFERRED_RESPONSE} if the response
+     *         will be delivered to the listener
      */
-    protected void handle(InputStream input, OutputStream ops) {
-        ValueNode id = null;
-        String version = null;
-
-        JsonRpcRequest request = jsonHelper.streamToObject(input, JsonRpcRequest.class);
-        if (request == null) {
-            JsonRpcResponse response = new JsonRpcResponse("2.0", null);
-            response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_JSON, "Invalid JSON"));
-            if (messageLogger != null) {
-                messageLogger.onOutgoingMessage(null, jsonHelper.objectToString(response));
+    private JsonRpcResponse process(ParsedRequest parsedRequest, final ResponseListener listener) {
+        final ServiceMetrics serviceMetrics = this.metrics;
+        if (parsedRequest.invalid) {
+            if (serviceMetrics != null) {
+                serviceMetrics.invalidRequests.add(1);
             }
-            try {
-                jsonHelper.objectToStream(ops, response);
-            } catch (IOException e2) {
-                e2.printStackTrace();
-                throw new RuntimeException(e2);
-            }
-            return;
+            JsonRpcResponse response = new JsonRpcResponse("2.0", null);
+            response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_REQUEST, "Invalid Request"));
+            return response;
         }
-        JsonRpcResponse.Error error = null;
-        JsonNode result = null;
+        JsonRpcRequest request = parsedRequest.request;
 
-        if (messageLogger != null) {
-            messageLogger.onIncomingMessage(null, jsonHelper.objectToString(request));
+        if (MessageLogging.isIncomingEnabled(messageLogger, null)) {
+            MessageLogging.logIncoming(messageLogger, null, createLoggedRequest(parsedRequest));
         }
         if (StringUtils.isEmpty(request.getJsonrpc()) || StringUtils.isEmpty(request.getMethod())) {
             if (ignoreResponses && StringUtils.isEmpty(request.getMethod())) {
                 // Just ignore responses which doesn't have a "method" attribute
-                return;
+                return null;
+            }
+            if (serviceMetrics != null) {
+                serviceMetrics.invalidRequests.add(1);
             }
             JsonRpcResponse response = new JsonRpcResponse(
                     !StringUtils.isEmpty(request.getJsonrpc()) ? request.getJsonrpc() : "2.0",
                     (request.getId() != null && !StringUtils.isEmpty(request.getId().asText())) ? request.getId() : null
             );
             response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_REQUEST, "Invalid Request"));
-            if (messageLogger != null) {
-                messageLogger.onOutgoingMessage(null, jsonHelper.objectToString(response));
-            }
-            try {
-                jsonHelper.objectToStream(ops, response);
-            } catch (IOException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
-            }
-            return;
+            return response;
         }
 
-        version = request.getJsonrpc();
+        final String version = request.getJsonrpc();
         String methodName = request.getMethod();
-        id = request.getId();
+        final ValueNode id = request.getId();
         JsonNode paramsNode = request.getParams();
 
-        List<Method> methods = getMethods(methodName, serviceInterface, true);
+        MethodInvoker[] candidates = dispatchTable.get(methodName);
 
-        if (methods.size() == 0) {
+        if (candidates == null) {
+            if (serviceMetrics != null) {
+                serviceMetrics.unknownMethods.add(1);
+            }
             if (id == null) {
                 // This is a notification, let's ignore unknown notifications
-                return;
+                return null;
             }
             JsonRpcResponse response = new JsonRpcResponse(version, id);
-            if (getMethods(methodName, serviceImplementation.getClass(), false).size() == 0) {
+            if (!implementationMethodNames.contains(methodName)) {
                 response.setError(new JsonRpcResponse.Error(JsonRpcError.METHOD_NOT_FOUND, "Method not found"));
             } else {
                 response.setError(new JsonRpcResponse.Error(JsonRpcError.UNAUTHORIZED, "Unauthroized access"));
             }
-            if (messageLogger != null) {
-                messageLogger.onOutgoingMessage(null, jsonHelper.objectToString(response));
+            return response;
+        }
+
+        final MethodMetrics methodMetrics = serviceMetrics != null ? serviceMetrics.methods.get(methodName) : null;
+        long dispatchStart = 0;
+        if (methodMetrics != null) {
+            methodMetrics.calls.add(1);
+            methodMetrics.parseTime.record(micros(parsedRequest.parseNanos));
+            dispatchStart = System.nanoTime();
+        }
+        MethodInvoker invoker = parsedRequest.invoker;
+        Object[] arguments = parsedRequest.arguments;
+        if (invoker == null) {
+            invoker = resolve(candidates, paramsNode);
+            if (invoker != null) {
+                arguments = invoker.bind(paramsNode, jsonHelper);
             }
-            try {
-                jsonHelper.objectToStream(ops, response);
-            } catch (IOException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
+        }
+        if (invoker == null) {
+            if (methodMetrics != null) {
+                methodMetrics.recordError(JsonRpcError.INVALID_PARAMS);
             }
-            return;
+            JsonRpcResponse response = new JsonRpcResponse(version, id);
+            response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_PARAMS, "Invalid parameter list for method " + methodName, paramsNode != null ? paramsNode.toString() : null));
+            return response;
+        }
+        if (methodMetrics != null) {
+            methodMetrics.dispatchTime.record(micros(System.nanoTime() - dispatchStart));
         }
+        InvocationRoute route = invocationRoutes.isEmpty() ? defaultInvocationRoute : getInvocationRoute(methodName);
+        if (route != null && route.executor != null) {
+            return dispatch(route, parsedRequest.caller, serviceMetrics, methodMetrics, methodName, invoker, arguments, version, id, listener);
+        }
+        return invoke(serviceMetrics, methodMetrics, methodName, invoker, arguments, version, id, listener);
+    }
 
-        Method matchedMethod = null;
+    private InvocationRoute getInvocationRoute(String methodName) {
+        InvocationRoute route = invocationRoutes.get(methodName);
+        return route != null ? route : defaultInvocationRoute;
+    }
 
-        StringBuilder sb = new StringBuilder(200);
-        sb.append(serviceImplementation.getClass().getName()).append(".").append(methodName).append(":");
-        if (paramsNode != null && !paramsNode.isNull()) {
-            Iterator<String> iterator = paramsNode.fieldNames();
-            while (iterator.hasNext()) {
-                sb.append(iterator.next());
-                sb.append(",");
+    /**
+     * Hand over the invocation of a method to the executor of its route
+     *
+     * @return The response if the request is processed synchronously, else {@link #DEFERRED_RESPONSE}
+     */
+    private JsonRpcResponse dispatch(InvocationRoute route, Object caller, ServiceMetrics serviceMetrics, MethodMetrics methodMetrics, String methodName, MethodInvoker invoker, Object[] arguments, String version, ValueNode id, ResponseListener listener) {
+        BlockingResponseListener blockingListener = null;
+        if (listener == null) {
+            blockingListener = new BlockingResponseListener();
+            listener = blockingListener;
+        }
+        Invocation invocation = new Invocation(route.executor, route.ordered ? caller : null, serviceMetrics, methodMetrics, methodName, invoker, arguments, version, id, listener);
+        if (invocation.caller != null) {
+            callerSequencer.execute(invocation);
+        } else {
+            invocation.submit();
+        }
+        if (blockingListener == null) {
+            return DEFERRED_RESPONSE;
+        }
+        try {
+            return blockingListener.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (id == null) {
+                return null;
             }
+            JsonRpcResponse response = new JsonRpcResponse(version, id);
+            response.setError(new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, e.getMessage(), e.getClass().getName()));
+            return response;
         }
-        String matchedMethodKey = sb.toString();
-        synchronized (matchedMethodCache) {
-            matchedMethod = matchedMethodCache.get(matchedMethodKey);
+    }
+
+    /**
+     * Receiver of a response which a thread processing a request synchronously waits for
+     */
+    private static class BlockingResponseListener implements ResponseListener {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private JsonRpcResponse response;
+
+        @Override
+        public void onResponse(JsonRpcResponse response) {
+            this.response = response;
+            done.countDown();
         }
-        if (matchedMethod == null) {
-            Method matchingMethodWithOptionalParameters = null;
-            for (Method method : methods) {
-                boolean match = true;
-                boolean exactMatch = true;
-                int i = 0;
-                for (Annotation[] annotations : method.getParameterAnnotations()) {
-                    boolean foundParameter = false;
-                    boolean optionalParameter = false;
-                    for (Annotation annotation : annotations) {
-                        if (annotation instanceof JsonRpcParam) {
-                            String name = ((JsonRpcParam) annotation).name();
-                            if (paramsNode != null && paramsNode.has(name) && !paramsNode.get(name).isNull()) {
-                                Class cls = method.getParameterTypes()[i];
-                                if (Number.class.isAssignableFrom(cls)) {
-                                    if (paramsNode.get(name).isNumber()) {
-                                        foundParameter = true;
-                                    }
-                                } else if (String.class.isAssignableFrom(cls)) {
-                                    if (paramsNode.get(name).isTextual()) {
-                                        foundParameter = true;
-                                    }
-                                } else if (Boolean.class.isAssignableFrom(cls)) {
-                                    if (paramsNode.get(name).isBoolean()) {
-                                        foundParameter = true;
-                                    }
-                                } else if (Collection.class.isAssignableFrom(cls)) {
-                                    if (paramsNode.get(name).isArray()) {
-                                        foundParameter = true;
-                                    }
-                                } else if (Date.class.isAssignableFrom(cls)) {
-                                    if (paramsNode.get(name).isLong()) {
-                                        foundParameter = true;
-                                    }
-                                } else {
-                                    if (paramsNode.get(name).isObject()) {
-                                        foundParameter = true;
-                                    }
-                                }
 
-                            } else {
-                                foundParameter = false;
-                                if (((JsonRpcParam) annotation).optional()) {
-                                    optionalParameter = true;
-                                }
-                            }
-                            break;
-                        } else if (annotation instanceof JsonRpcParamStructure) {
-                            foundParameter = false;
-                            optionalParameter = true;
-                        } else if (annotation instanceof JsonRpcParamArray) {
-                            if (paramsNode != null && !paramsNode.isNull()) {
-                                Class cls = method.getParameterTypes()[i];
-                                if (Collection.class.isAssignableFrom(cls)) {
-                                    if (paramsNode.isArray()) {
-                                        foundParameter = true;
-                                    }
-                                }
-                            } else {
-                                foundParameter = false;
-                                if (((JsonRpcParamArray) annotation).optional()) {
-                                    optionalParameter = true;
-                                }
-                            }
-                        }
-                    }
-                    if (!foundParameter) {
-                        if (!optionalParameter) {
-                            match = false;
-                            break;
-                        }
-                        exactMatch = false;
-                    }
-                    i++;
-                }
-                if (exactMatch && match) {
-                    if ((matchedMethod == null || method.getParameterTypes().length > matchedMethod.getParameterTypes().length)) {
-                        if ((paramsNode == null && method.getParameterTypes().length == 0) || (method.getParameterTypes().length == paramsNode.size())) {
-                            matchedMethod = method;
-                        } else {
-                            exactMatch = false;
-                        }
-                    }
-                }
-                if (!exactMatch && match) {
-                    if (matchingMethodWithOptionalParameters == null || method.getParameterTypes().length > matchingMethodWithOptionalParameters.getParameterTypes().length) {
-                        matchingMethodWithOptionalParameters = method;
-                    }
-                }
-            }
-            if (matchedMethod == null && matchingMethodWithOptionalParameters != null) {
-                matchedMethod = matchingMethodWithOptionalParameters;
+        private JsonRpcResponse await() throws InterruptedException {
+            done.await();
+            return response;
+        }
+    }
+
+    /**
+     * Call of a method which is invoked by an invocation executor, the response is delivered to the listener
+     */
+    private class Invocation implements BoundedExecutor.RejectableTask {
+        private final Executor executor;
+        private final Object caller;
+        private final ServiceMetrics serviceMetrics;
+        private final MethodMetrics methodMetrics;
+        private final String methodName;
+        private final MethodInvoker invoker;
+        private final Object[] arguments;
+        private final String version;
+        private final ValueNode id;
+        private final ResponseListener listener;
+        private final long created = System.nanoTime();
+
+        private Invocation(Executor executor, Object caller, ServiceMetrics serviceMetrics, MethodMetrics methodMetrics, String methodName, MethodInvoker invoker, Object[] arguments, String version, ValueNode id, ResponseListener listener) {
+            this.executor = executor;
+            this.caller = caller;
+            this.serviceMetrics = serviceMetrics;
+            this.methodMetrics = methodMetrics;
+            this.methodName = methodName;
+            this.invoker = invoker;
+            this.arguments = arguments;
+            this.version = version;
+            this.id = id;
+            this.listener = listener;
+        }
+
+        private void submit() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                onRejected();
             }
+        }
 
-            if (matchedMethod != null) {
-                synchronized (matchedMethodCache) {
-                    matchedMethodCache.put(matchedMethodKey, matchedMethod);
+        @Override
+        public void run() {
+            try {
+                if (methodMetrics != null) {
+                    methodMetrics.queueTime.record(micros(System.nanoTime() - created));
+                }
+                // Ordered calls wait for returned futures so the next call of the caller isn't started before this completes
+                JsonRpcResponse response = invoke(serviceMetrics, methodMetrics, methodName, invoker, arguments, version, id, caller != null ? null : listener);
+                if (response != DEFERRED_RESPONSE) {
+                    listener.onResponse(response);
+                }
+            } finally {
+                if (caller != null) {
+                    callerSequencer.next(caller);
                 }
             }
         }
-        Class returnType = null;
-        if (matchedMethod != null) {
-            returnType = matchedMethod.getReturnType();
-            List<JsonNode> parameters = getInputAgumentsForMethod(matchedMethod, paramsNode);
+
+        @Override
+        public void onRejected() {
             try {
-                result = invokeMethod(matchedMethod, parameters);
-                if (id == null) {
-                    // This is a notification, let's ignore the result
-                    return;
+                if (methodMetrics != null) {
+                    methodMetrics.recordError(JsonRpcError.OVERLOADED);
                 }
-                JsonRpcResult resultName = matchedMethod.getAnnotation(JsonRpcResult.class);
-                if (resultName != null && resultName.value() != null && resultName.value().length() > 0) {
-                    result = jsonHelper.createObject(resultName.value(), result);
+                JsonRpcResponse response = null;
+                if (id != null) {
+                    response = new JsonRpcResponse(version, id);
+                    response.setError(new JsonRpcResponse.Error(JsonRpcError.OVERLOADED, "Too many queued calls", methodName));
                 }
+                listener.onResponse(response);
+            } finally {
+                if (caller != null) {
+                    callerSequencer.next(caller);
+                }
+            }
+        }
+    }
 
-            } catch (Throwable e) {
-                if (InvocationTargetException.class.isInstance(e)) {
-                    e = InvocationTargetException.class.cast(e).getTargetException();
-                }
-                if (matchedMethod.isAnnotationPresent(JsonRpcErrors.class)) {
-                    JsonRpcErrors errorMappings = matchedMethod.getAnnotation(JsonRpcErrors.class);
-                    for (JsonRpcError jsonRpcError : errorMappings.value()) {
-                        if (jsonRpcError.exception().isInstance(e)) {
-                            if (!jsonRpcError.data().equals("")) {
-                                error = new JsonRpcResponse.Error(jsonRpcError.code(), jsonRpcError.message(), jsonRpcError.data());
-                            } else if (e.getMessage() != null && e.getMessage().length() > 0) {
-                                error = new JsonRpcResponse.Error(jsonRpcError.code(), jsonRpcError.message(), e.getMessage());
-                            } else {
-                                error = new JsonRpcResponse.Error(jsonRpcError.code(), jsonRpcError.message());
-                            }
-                            break;
-                        }
+    /**
+     * Invoke a resolved method, unless the concurrency limit of the method has been reached
+     *
+     * @param serviceMetrics The metrics of the service, null if no metrics are recorded
+     * @param methodMetrics  The metrics of the method, null if no metrics are recorded
+     * @param methodName     The name of the method
+     * @param invoker        The invoker of the method
+     * @param arguments      The arguments to call the method with
+     * @param version        The JSON-RPC version of the request
+     * @param id             The identity of the request, null if it was a notification
+     * @param listener       The listener which deferred responses should be delivered to, null if the response should
+     *                       be waited for
+     * @return The response to send, null if no response should be sent or {@link #DEFERRED_RESPONSE} if the response
+     *         will be delivered to the listener
+     */
+    private JsonRpcResponse invoke(final ServiceMetrics serviceMetrics, final MethodMetrics methodMetrics, String methodName, MethodInvoker invoker, Object[] arguments, final String version, final ValueNode id, final ResponseListener listener) {
+        final ConcurrencyLimiter limiter = concurrencyLimiters.isEmpty() ? null : concurrencyLimiters.get(methodName);
+        if (limiter != null && !limiter.acquire()) {
+            if (methodMetrics != null) {
+                methodMetrics.recordError(JsonRpcError.OVERLOADED);
+            }
+            if (id == null) {
+                return null;
+            }
+            JsonRpcResponse response = new JsonRpcResponse(version, id);
+            response.setError(new JsonRpcResponse.Error(JsonRpcError.OVERLOADED, "Too many concurrent calls", methodName));
+            return response;
+        }
+        long invokeStart = 0;
+        if (methodMetrics != null || limiter != null) {
+            invokeStart = System.nanoTime();
+        }
+        if (methodMetrics != null) {
+            methodMetrics.inFlight.add(1);
+            serviceMetrics.inFlight.add(1);
+        }
+        Object value;
+        try {
+            value = invoker.invoke(serviceImplementation, arguments);
+            if (value instanceof JsonRpcFuture && listener != null) {
+                final MethodInvoker futureInvoker = invoker;
+                final long futureInvokeStart = invokeStart;
+                ((JsonRpcFuture<?>) value).addCallback(new JsonRpcFuture.Callback<Object>() {
+                    @Override
+                    public void onSuccess(Object result) {
+                        listener.onResponse(createResponse(serviceMetrics, methodMetrics, limiter, futureInvokeStart, futureInvoker, version, id, result, null));
                     }
-                }
-                if (error == null) {
-                    if (e.getMessage() == null) {
-                        error = new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, e.getMessage(), e.getClass().getName());
-                    } else {
-                        StringWriter stringWriter = new StringWriter();
-                        PrintWriter writer = new PrintWriter(stringWriter);
-                        e.printStackTrace(writer);
-                        error = new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, stringWriter.toString(), e.getClass().getName());
+
+                    @Override
+                    public void onFailure(Throwable cause) {
+                        listener.onResponse(createResponse(serviceMetrics, methodMetrics, limiter, futureInvokeStart, futureInvoker, version, id, null, cause));
                     }
+                });
+                return DEFERRED_RESPONSE;
+            } else if (value instanceof Future) {
+                value = ((Future<?>) value).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return createResponse(serviceMetrics, methodMetrics, limiter, invokeStart, invoker, version, id, null, e);
+        } catch (Throwable e) {
+            return createResponse(serviceMetrics, methodMetrics, limiter, invokeStart, invoker, version, id, null, e);
+        }
+        return createResponse(serviceMetrics, methodMetrics, limiter, invokeStart, invoker, version, id, value, null);
+    }
+
+    /**
+     * Create the response of an invoked method, record the metrics of the call and release its concurrency permit
+     *
+     * @param serviceMetrics The metrics of the service, null if no metrics are recorded
+     * @param methodMetrics  The metrics of the method, null if no metrics are recorded
+     * @param limiter        The limiter which the call acquired a permit from, null if the method isn't limited
+     * @param invokeStart    The time when the method was invoked, as returned by {@link System#nanoTime()}
+     * @param invoker        The invoker of the method
+     * @param version        The JSON-RPC version of the request
+     * @param id             The identity of the request, null if it was a notification
+     * @param value          The value returned by the method
+     * @param failure        The exception thrown by the method or null if it completed successfully
+     * @return The response to send or null if no response should be sent
+     */
+    private JsonRpcResponse createResponse(ServiceMetrics serviceMetrics, MethodMetrics methodMetrics, ConcurrencyLimiter limiter, long invokeStart, MethodInvoker invoker, String version, ValueNode id, Object value, Throwable failure) {
+        if (limiter != null) {
+            limiter.release(System.nanoTime() - invokeStart, failure != null);
+        }
+        if (methodMetrics == null) {
+            return createResponse(invoker, version, id, value, failure);
+        }
+        long invoked = System.nanoTime();
+        methodMetrics.invokeTime.record(micros(invoked - invokeStart));
+        methodMetrics.inFlight.add(-1);
+        serviceMetrics.inFlight.add(-1);
+        JsonRpcResponse response = createResponse(invoker, version, id, value, failure);
+        methodMetrics.serializeTime.record(micros(System.nanoTime() - invoked));
+        if (response != null && response.getError() != null) {
+            methodMetrics.recordError(response.getError().getCode());
+        } else if (response == null && failure != null) {
+            methodMetrics.recordError(invoker.getErrorCode(unwrap(failure)));
+        }
+        return response;
+    }
+
+    /**
+     * Create the response of an invoked method
+     *
+     * @param invoker The invoker of the method
+     * @param version The JSON-RPC version of the request
+     * @param id      The identity of the request, null if it was a notification
+     * @param value   The value returned by the method
+     * @param failure The exception thrown by the method or null if it completed successfully
+     * @return The response to send or null if no response should be sent
+     */
+    private JsonRpcResponse createResponse(MethodInvoker invoker, String version, ValueNode id, Object value, Throwable failure) {
+        if (id == null) {
+            //This is a notification, let's ignore the result
+            return null;
+        }
+        JsonNode result = null;
+        if (failure == null) {
+            try {
+                result = invoker.wrapResult(jsonHelper.objectToJson(value), jsonHelper);
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+        JsonRpcResponse response = new JsonRpcResponse(version, id);
+        if (failure != null) {
+            response.setError(invoker.createError(unwrap(failure)));
+        } else if (result != null || !invoker.voidResult || returnOnVoid) {
+            response.setResult(result);
+        } else {
+            response = null;
+        }
+        return response;
+    }
+
+    /**
+     * Get the exception thrown by the method itself from an exception thrown by reflection or a future
+     */
+    private static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof InvocationTargetException || failure instanceof ExecutionException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Read a JSON-RPC request object in a single pass and measure the time it takes
+     *
+     * @param parser  The parser positioned at the start of the request object
+     * @param measure true if the time to parse the request should be measured
+     * @return The parsed request, it's marked as invalid if the object isn't a valid JSON-RPC request
+     * @throws IOException If the request couldn't be parsed
+     */
+    private ParsedRequest readRequest(JsonParser parser, boolean measure) throws IOException {
+        if (!measure) {
+            return readRequest(parser);
+        }
+        long start = System.nanoTime();
+        ParsedRequest parsedRequest = readRequest(parser);
+        parsedRequest.parseNanos = System.nanoTime() - start;
+        return parsedRequest;
+    }
+
+    /**
+     * Read a JSON-RPC request object in a single pass.
+     * <p>
+     * If the method is known when the parameters are reached and it isn't overloaded the parameters are bound
+     * directly to the method arguments without building a JSON structure, else the parameters are read as a
+     * JSON structure and resolved by {@link #process(ParsedRequest)}.
+     * </p>
+     *
+     * @param parser The parser positioned at the start of the request object
+     * @return The parsed request, it's marked as invalid if the object isn't a valid JSON-RPC request
+     * @throws IOException If the request couldn't be parsed
+     */
+    private ParsedRequest readRequest(JsonParser parser) throws IOException {
+        ParsedRequest parsedRequest = new ParsedRequest();
+        JsonRpcRequest request = parsedRequest.request;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("jsonrpc".equals(field)) {
+                request.setJsonrpc((String) jsonHelper.parserToObject(parser, String.class));
+            } else if ("id".equals(field)) {
+                JsonNode id = jsonHelper.parserToJson(parser);
+                if (id instanceof ValueNode) {
+                    request.setId((ValueNode) id);
+                } else {
+                    parsedRequest.invalid = true;
                 }
+            } else if ("method".equals(field)) {
+                request.setMethod((String) jsonHelper.parserToObject(parser, String.class));
+            } else if ("params".equals(field)) {
+                readParams(parser, parsedRequest);
+            } else {
+                parser.skipChildren();
             }
-            if (id == null) {
-                //This is a notification, let's ignore the result
-                return;
+        }
+        if (parser.getCurrentToken() != JsonToken.END_OBJECT) {
+            throw new EOFException("Unexpected end of request");
+        }
+        return parsedRequest;
+    }
+
+    private void readParams(JsonParser parser, ParsedRequest parsedRequest) throws IOException {
+        JsonRpcRequest request = parsedRequest.request;
+        MethodInvoker invoker = null;
+        if (request.getMethod() != null && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            MethodInvoker[] candidates = dispatchTable.get(request.getMethod());
+            if (candidates != null && candidates.length == 1 && candidates[0].namedParametersOnly) {
+                invoker = candidates[0];
+            }
+        }
+        if (invoker == null) {
+            request.setParams(jsonHelper.parserToJson(parser));
+            return;
+        }
+
+        if (MessageLogging.isIncomingEnabled(messageLogger, null)) {
+            // The logged request must contain the parameters as received, so they are bound from a copy of the tokens
+            TokenBuffer params = jsonHelper.parserToBuffer(parser);
+            JsonParser paramsParser = params.asParser();
+            try {
+                paramsParser.nextToken();
+                bindParams(paramsParser, parsedRequest, invoker);
+            } finally {
+                paramsParser.close();
+            }
+            if (parsedRequest.invoker != null) {
+                parsedRequest.receivedParams = params;
+            } else {
+                request.setParams(jsonHelper.parserToJson(params.asParser()));
             }
         } else {
-            error = new JsonRpcResponse.Error(JsonRpcError.INVALID_PARAMS, "Invalid parameter list for method " + methodName, paramsNode != null ? paramsNode.toString() : null);
+            bindParams(parser, parsedRequest, invoker);
         }
-        JsonRpcResponse response = new JsonRpcResponse(version, id);
-        if (error == null) {
-            if (result != null || !returnType.getName().equals("void") || returnOnVoid) {
-                response.setResult(result);
+    }
+
+    /**
+     * Bind the parameters of a request directly from the stream to the arguments of a method. If the parameters
+     * don't match the method, the parameters of the request are set so it can be reported as invalid. Binding stops at
+     * the first mismatching parameter, so it and all following parameters are reported as received, while arguments
+     * bound before the mismatch was detected are converted back to JSON.
+     *
+     * @param parser        The parser positioned at the start of the parameters object
+     * @param parsedRequest The request to bind the parameters of
+     * @param invoker       The method to bind the parameters for
+     * @throws IOException If the parameters couldn't be read
+     */
+    private void bindParams(JsonParser parser, ParsedRequest parsedRequest, MethodInvoker invoker) throws IOException {
+        Object[] arguments = new Object[invoker.binders.length];
+        boolean[] bound = new boolean[invoker.binders.length];
+        ObjectNode unbound = null;
+        boolean match = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            int index = invoker.indexOf(name);
+            if (match && index >= 0 && token != JsonToken.VALUE_NULL && invoker.binders[index].matchesValueType(parser)) {
+                arguments[index] = jsonHelper.parserToObject(parser, invoker.binders[index].type);
+                bound[index] = true;
             } else {
-                response = null;
+                if (index >= 0 && token != JsonToken.VALUE_NULL) {
+                    match = false;
+                }
+                if (unbound == null) {
+                    unbound = (ObjectNode) jsonHelper.createObject();
+                }
+                unbound.put(name, jsonHelper.parserToJson(parser));
+            }
+        }
+        for (int i = 0; i < bound.length && match; i++) {
+            if (!bound[i] && !invoker.binders[i].optional) {
+                match = false;
             }
-        } else if (error != null) {
-            response.setError(error);
         }
+        if (match) {
+            parsedRequest.invoker = invoker;
+            parsedRequest.arguments = arguments;
+        } else {
+            parsedRequest.request.setParams(restoreParams(invoker, arguments, unbound));
+        }
+    }
 
-        if (response != null) {
-            if (messageLogger != null) {
-                messageLogger.onOutgoingMessage(null, jsonHelper.objectToString(response));
+    /**
+     * Restore the JSON parameters of a request where the parameters have been bound directly from the stream
+     *
+     * @param invoker   The method which the parameters were bound for
+     * @param arguments The bound arguments, null for parameters which weren't bound
+     * @param unbound   Parameters as received which weren't bound, or null if there were none
+     * @return The parameters of the request
+     */
+    private ObjectNode restoreParams(MethodInvoker invoker, Object[] arguments, ObjectNode unbound) {
+        ObjectNode params = (ObjectNode) jsonHelper.createObject();
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] != null) {
+                params.put(invoker.binders[i].name, jsonHelper.objectToJson(arguments[i]));
             }
-            // write it
+        }
+        if (unbound != null) {
+            params.putAll(unbound);
+        }
+        return params;
+    }
+
+    /**
+     * Create the message to log for an incoming request, parameters which have been bound directly from the stream
+     * are restored before the method is invoked so the logged message never changes with the bound arguments. They are
+     * restored from the received tokens, which are kept when incoming messages are logged, or else converted back
+     * from the arguments if logging was enabled after the request was parsed.
+     *
+     * @param parsedRequest The incoming request
+     * @return The message to log
+     */
+    private LazyMessage createLoggedRequest(ParsedRequest parsedRequest) {
+        JsonRpcRequest request = parsedRequest.request;
+        if (request.getParams() != null || parsedRequest.arguments == null) {
+            return LazyMessage.fromObject(request, jsonHelper);
+        }
+        JsonRpcRequest loggedRequest = new JsonRpcRequest();
+        loggedRequest.setJsonrpc(request.getJsonrpc());
+        loggedRequest.setId(request.getId());
+        loggedRequest.setMethod(request.getMethod());
+        if (parsedRequest.receivedParams != null) {
             try {
-                jsonHelper.objectToStream(ops, response);
+                loggedRequest.setParams(jsonHelper.parserToJson(parsedRequest.receivedParams.asParser()));
             } catch (IOException e) {
                 e.printStackTrace();
-                throw new RuntimeException(e);
             }
+        } else {
+            loggedRequest.setParams(restoreParams(parsedRequest.invoker, parsedRequest.arguments, null));
         }
+        return LazyMessage.fromObject(loggedRequest, jsonHelper);
     }
 
-    private List<JsonNode> getInputAgumentsForMethod(Method method, JsonNode paramsNode) {
-        Annotation[][] parameterAnnotations;
-        synchronized (methodParameterAnnotationsCache) {
-            parameterAnnotations = methodParameterAnnotationsCache.get(method);
-            if (parameterAnnotations == null) {
-                parameterAnnotations = method.getParameterAnnotations();
-                methodParameterAnnotationsCache.put(method, parameterAnnotations);
+    private void writeResponse(OutputStream ops, MessageEncoding encoding, Object response) {
+        MessageLogging.logOutgoing(messageLogger, null, response, jsonHelper);
+        ServiceMetrics metrics = this.metrics;
+        try {
+            if (metrics != null) {
+                long start = System.nanoTime();
+                CountingOutputStream countingOutput = new CountingOutputStream(ops);
+                jsonHelper.objectToStream(countingOutput, response, encoding);
+                metrics.writeTime.record(micros(System.nanoTime() - start));
+                metrics.responseSize.record(countingOutput.getCount());
+            } else {
+                jsonHelper.objectToStream(ops, response, encoding);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
         }
-        List<JsonNode> params = new ArrayList<JsonNode>();
-        int i = 0;
-        for (Annotation[] annotations : parameterAnnotations) {
-            String name = null;
-            boolean structure = false;
-            boolean array = false;
-            for (Annotation annotation : annotations) {
-                if (annotation instanceof JsonRpcParam) {
-                    name = ((JsonRpcParam) annotation).name();
-                } else if (annotation instanceof JsonRpcParamStructure) {
-                    structure = true;
-                } else if (annotation instanceof JsonRpcParamArray) {
-                    array = true;
+    }
+
+    /**
+     * Find the method that best matches the specified request parameters, methods where all parameters are available
+     * is preferred over methods where optional parameters are missing and methods with more parameters are preferred
+     * over methods with fewer parameters.
+     *
+     * @param candidates The methods available with the requested method name
+     * @param paramsNode The request parameters
+     * @return The matching method or null if no method matches the parameters
+     */
+    private static MethodInvoker resolve(MethodInvoker[] candidates, JsonNode paramsNode) {
+        MethodInvoker matchedMethod = null;
+        MethodInvoker matchingMethodWithOptionalParameters = null;
+        for (MethodInvoker candidate : candidates) {
+            boolean match = true;
+            boolean exactMatch = true;
+            for (ParamBinder binder : candidate.binders) {
+                int state = binder.match(paramsNode);
+                if (state == ParamBinder.MISSING) {
+                    match = false;
+                    break;
+                } else if (state == ParamBinder.OPTIONAL) {
+                    exactMatch = false;
                 }
             }
-            if (name != null && paramsNode != null && paramsNode.has(name)) {
-                params.add(paramsNode.get(name));
-            } else if (structure) {
-                if (paramsNode != null) {
-                    params.add(paramsNode);
-                } else {
-                    params.add(jsonHelper.createObject());
+            int length = candidate.binders.length;
+            if (exactMatch && match) {
+                if (matchedMethod == null || length > matchedMethod.binders.length) {
+                    if ((paramsNode == null && length == 0) || (paramsNode != null && length == paramsNode.size())) {
+                        matchedMethod = candidate;
+                    } else {
+                        exactMatch = false;
+                    }
                 }
-            } else if (array) {
-                if (paramsNode != null) {
-                    params.add(paramsNode);
-                } else {
-                    params.add(null);
+            }
+            if (!exactMatch && match) {
+                if (matchingMethodWithOptionalParameters == null || length > matchingMethodWithOptionalParameters.binders.length) {
+                    matchingMethodWithOptionalParameters = candidate;
                 }
-            } else {
-                params.add(null);
             }
-            i++;
-
         }
-        return params;
+        if (matchedMethod == null) {
+            return matchingMethodWithOptionalParameters;
+        }
+        return matchedMethod;
     }
 
-    private JsonNode invokeMethod(Method method, List<JsonNode> params) throws IOException, InvocationTargetException, IllegalAccessException {
-        Object[] convertedParams = new Object[params.size()];
-        Type[] parameterTypes = method.getGenericParameterTypes();
-
-        for (int i = 0; i < parameterTypes.length; i++) {
-            if (params.get(i) != null) {
-                convertedParams[i] = jsonHelper.jsonToObject(params.get(i), parameterTypes[i]);
-            } else {
-                convertedParams[i] = null;
+    private static Map<String, MethodInvoker[]> getDispatchTable(Class serviceInterface) {
+        synchronized (dispatchTableCache) {
+            Map<String, MethodInvoker[]> dispatchTable = dispatchTableCache.get(serviceInterface);
+            if (dispatchTable == null) {
+                dispatchTable = createDispatchTable(serviceInterface);
+                dispatchTableCache.put(serviceInterface, dispatchTable);
             }
+            return dispatchTable;
         }
-
-        Object result = method.invoke(serviceImplementation, convertedParams);
-        return (method.getGenericReturnType() != null) ? jsonHelper.objectToJson(result) : null;
     }
 
-    private List<Method> getMethods(String name, Class serviceInterface, Boolean cached) {
-        if (cached) {
-            synchronized (methodCache) {
-                String cacheKey = serviceImplementation.getClass().getName() + "." + serviceInterface.getName() + "." + name;
-                List<Method> methods = methodCache.get(cacheKey);
-                if (methods == null) {
-                    methods = new ArrayList<Method>();
-                    for (Method method : serviceInterface.getMethods()) {
-                        if (method.getName().equals(name)) {
-                            methods.add(method);
-                        }
-                    }
-                    methodCache.put(cacheKey, methods);
-                }
-                return methods;
+    private static Map<String, MethodInvoker[]> createDispatchTable(Class serviceInterface) {
+        Map<String, List<MethodInvoker>> methods = new HashMap<String, List<MethodInvoker>>();
+        for (Method method : serviceInterface.getMethods()) {
+            List<MethodInvoker> invokers = methods.get(method.getName());
+            if (invokers == null) {
+                invokers = new ArrayList<MethodInvoker>();
+                methods.put(method.getName(), invokers);
             }
-        } else {
-            List<Method> methods = new ArrayList<Method>();
-            for (Method method : serviceInterface.getMethods()) {
-                if (method.getName().equals(name)) {
-                    methods.add(method);
+            invokers.add(new MethodInvoker(method));
+        }
+        Map<String, MethodInvoker[]> dispatchTable = new HashMap<String, MethodInvoker[]>();
+        for (Map.Entry<String, List<MethodInvoker>> entry : methods.entrySet()) {
+            List<MethodInvoker> invokers = entry.getValue();
+            // A long value can be both a number and a date, make sure number parameters always get precedence
+            // regardless of in which order the methods are returned by reflection
+            Collections.sort(invokers, new Comparator<MethodInvoker>() {
+                @Override
+                public int compare(MethodInvoker o1, MethodInvoker o2) {
+                    return o1.dateParameters - o2.dateParameters;
+                }
+            });
+            dispatchTable.put(entry.getKey(), invokers.toArray(new MethodInvoker[invokers.size()]));
+        }
+        return Collections.unmodifiableMap(dispatchTable);
+    }
+
+    private static Set<String> getImplementationMethodNames(Class serviceImplementationClass) {
+        synchronized (implementationMethodNamesCache) {
+            Set<String> methodNames = implementationMethodNamesCache.get(serviceImplementationClass);
+            if (methodNames == null) {
+                methodNames = new HashSet<String>();
+                for (Method method : serviceImplementationClass.getMethods()) {
+                    methodNames.add(method.getName());
                 }
+                methodNames = Collections.unmodifiableSet(methodNames);
+                implementationMethodNamesCache.put(serviceImplementationClass, methodNames);
             }
-            return methods;
+            return methodNames;
         }
     }
 }
@@ -32,7 +32,10 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.WriterOutputStream;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.util.concurrent.Executor;
 
 /**
  * Implementation of a JSON-RPC service, the purpose is to abstract JSON-RPC transport protocol and parsing from the
@@ -47,6 +50,18 @@ import java.io.StringWriter;
  * </p>
  */
 public class StringJsonRpcService extends StreamJsonRpcService {
+    /**
+     * Callback which receives the response of a request handled with {@link #handle(String, ResponseCallback)}
+     */
+    public static interface ResponseCallback {
+        /**
+         * Called when the request has been processed
+         *
+         * @param response The JSON-RPC response as a String or null if no response is generated
+         */
+        void onResponse(String response);
+    }
+
     /**
      * @param serviceImplementation The service implementation that implements the service interface
      * @param serviceInterface      The service interface to expose
@@ -86,9 +101,29 @@ public class StringJsonRpcService extends StreamJsonRpcService {
         super(serviceImplementation, serviceInterface, returnOnVoid, ignoreResponses);
     }
 
+    /**
+     * @param serviceImplementation The service implementation that implements the service interface
+     * @param serviceInterface      The service interface to expose
+     * @param returnOnVoid          true if void methods should return a JSON-RPC response, else false
+     * @param ignoreResponses       true if response message should be completely ignored
+     * @param warmUp                true if the JSON conversion should be prepared when the instance is created
+     * @param <T>                   The service implementation to use
+     * @param <I>                   The service interface to expose
+     *
+     * See {@link StreamJsonRpcService#StreamJsonRpcService(Object, Class, Boolean, Boolean, Boolean)} for more information
+     */
+    public <I, T extends I> StringJsonRpcService(T serviceImplementation, Class<I> serviceInterface, Boolean returnOnVoid, Boolean ignoreResponses, Boolean warmUp) {
+        super(serviceImplementation, serviceInterface, returnOnVoid, ignoreResponses, warmUp);
+    }
+
     /**
      * Process a JSON-RPC request received as a {@link String} and produce the response as a {@link String}, it's the
-     * caller responsibility to read/write the strings to the appropriate communication channel
+     * caller responsibility to read/write the strings to the appropriate communication channel.
+     * <p>
+     * This method waits for the response, also when methods are invoked with an executor set with
+     * {@link #setInvocationExecutor(Executor)}. Transports whose receiving thread must not be blocked by slow
+     * methods should use {@link #handle(String, ResponseCallback)} instead.
+     * </p>
      *
      * @param request The JSON-RPC request/notification as a string
      * @return The JSON-RPC response as a String or null if no response is generated
@@ -99,10 +134,63 @@ public class StringJsonRpcService extends StreamJsonRpcService {
             super.handle(IOUtils.toInputStream(request, "UTF-8"), new WriterOutputStream(writer, "UTF-8"));
         } catch (IOException e) {
             e.printStackTrace();
-            JsonRpcResponse response = new JsonRpcResponse("2.0", null);
-            response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_JSON, "Invalid JSON"));
-            return new JsonHelper().objectToString(response);
+            return createInvalidJsonResponse();
         }
+        return toResponse(writer);
+    }
+
+    /**
+     * Process a JSON-RPC request received as a {@link String} without waiting for the response, see
+     * {@link #handle(String, ResponseCallback, Object)}
+     *
+     * @param request  The JSON-RPC request/notification as a string
+     * @param callback The callback which receives the response
+     */
+    public void handle(String request, ResponseCallback callback) {
+        handle(request, callback, null);
+    }
+
+    /**
+     * Process a JSON-RPC request received as a {@link String} from a specific caller without waiting for the
+     * response.
+     * <p>
+     * Methods invoked with an executor set with {@link #setInvocationExecutor(Executor)} and methods returning a
+     * {@link JsonRpcFuture} don't block the calling thread, the callback is then called from the thread that completes
+     * the method. Otherwise the callback is called before this method returns. The caller is used to keep the order of
+     * ordered methods, see {@link #setInvocationExecutor(String, Executor, Boolean)}.
+     * </p>
+     *
+     * @param request  The JSON-RPC request/notification as a string
+     * @param callback The callback which receives the response
+     * @param caller   The identity of the caller, null if calls shouldn't be ordered
+     */
+    public void handle(String request, final ResponseCallback callback, Object caller) {
+        final StringWriter writer = new StringWriter();
+        InputStream input;
+        OutputStream output;
+        try {
+            input = IOUtils.toInputStream(request, "UTF-8");
+            output = new WriterOutputStream(writer, "UTF-8");
+        } catch (IOException e) {
+            e.printStackTrace();
+            callback.onResponse(createInvalidJsonResponse());
+            return;
+        }
+        super.handle(input, output, new Runnable() {
+            @Override
+            public void run() {
+                callback.onResponse(toResponse(writer));
+            }
+        }, caller);
+    }
+
+    private String createInvalidJsonResponse() {
+        JsonRpcResponse response = new JsonRpcResponse("2.0", null);
+        response.setError(new JsonRpcResponse.Error(JsonRpcError.INVALID_JSON, "Invalid JSON"));
+        return new JsonHelper().objectToString(response);
+    }
+
+    private static String toResponse(StringWriter writer) {
         String result = writer.toString();
         if (result != null && result.length() > 0) {
             return result;
@@ -28,12 +28,7 @@
 
 package com.ickstream.common.jsonrpc;
 
-import com.fasterxml.jackson.databind.node.ValueNode;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Synchronous client class for JSON-RPC requests. This class can be used independent of communication protocol
@@ -41,8 +36,6 @@ import java.util.concurrent.TimeUnit;
  * is wanted, use the {@link AsyncJsonRpcClient} class instead.
  */
 public class SyncJsonRpcClient extends AsyncJsonRpcClient {
-    private Integer defaultTimeout = null;
-
     /**
      * Creates a new instance which uses the specified message sender class to send messages.
      * The created instance will use the identity provider provided by {@link AsyncJsonRpcClient} to generate unique
@@ -87,40 +80,6 @@ public class SyncJsonRpcClient extends AsyncJsonRpcClient {
      */
     public SyncJsonRpcClient(MessageSender messageSender, IdProvider idProvider, Integer defaultTimeout) {
         super(messageSender, idProvider, defaultTimeout);
-        this.defaultTimeout = null;
-    }
-
-    private static class SynchronizedMessageHandler<T> implements MessageHandler<T> {
-        private Semaphore semaphore;
-        private List<T> results;
-        private List<JsonRpcResponse.Error> errors;
-
-        public SynchronizedMessageHandler(Semaphore semaphore, List<T> results, List<JsonRpcResponse.Error> errors) {
-            this.semaphore = semaphore;
-            this.results = results;
-            this.errors = errors;
-        }
-
-        @Override
-        public void onMessage(T message) {
-            results.add(message);
-            semaphore.release();
-        }
-
-        @Override
-        public void onError(int code, String message, String data) {
-            errors.add(new JsonRpcResponse.Error(code, message, data));
-            semaphore.release();
-        }
-
-        @Override
-        public void onTimeout() {
-        }
-
-        @Override
-        public void onFinished() {
-            // Do nothing
-        }
     }
 
     /**
@@ -137,36 +96,21 @@ public class SyncJsonRpcClient extends AsyncJsonRpcClient {
      * @throws JsonRpcException        if the operation fails due to a JSON-RPC error received form the remote side
      */
     public <T> T sendRequest(String method, Object params, Class<T> messageResponseClass, Integer timeout) throws JsonRpcException, JsonRpcTimeoutException {
-        List<T> results = new ArrayList<T>();
-        List<JsonRpcResponse.Error> errors = new ArrayList<JsonRpcResponse.Error>();
-        Semaphore semaphore = new Semaphore(0);
-        MessageHandler<T> messageHandler = new SynchronizedMessageHandler<T>(semaphore, results, errors);
-
-        ValueNode id = super.sendRequest(method, params, messageResponseClass, messageHandler);
+        JsonRpcFuture<T> future = sendRequestAsync(method, params, messageResponseClass, timeout);
         try {
-            boolean acquired;
-            if ((timeout == null && defaultTimeout == null) || (timeout != null && timeout < 0)) {
-                semaphore.acquire();
-                acquired = true;
-            } else {
-                acquired = semaphore.tryAcquire(timeout != null ? timeout : defaultTimeout, TimeUnit.MILLISECONDS);
-            }
-            if (acquired) {
-                if (results.size() > 0) {
-                    return results.get(0);
-                } else {
-                    if (errors.size() > 0 && errors.get(0) != null) {
-                        throw new JsonRpcException(errors.get(0).getCode(), errors.get(0).getMessage(), errors.get(0).getData());
-                    } else {
-                        throw new JsonRpcException();
-                    }
-                }
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JsonRpcException) {
+                throw (JsonRpcException) e.getCause();
+            } else if (e.getCause() instanceof JsonRpcTimeoutException) {
+                throw (JsonRpcTimeoutException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             } else {
-                removeMessageHandler(id);
-                throw new JsonRpcTimeoutException();
+                throw new JsonRpcException();
             }
         } catch (InterruptedException e) {
-            removeMessageHandler(id);
+            future.cancel(false);
             throw new JsonRpcTimeoutException();
         }
     }
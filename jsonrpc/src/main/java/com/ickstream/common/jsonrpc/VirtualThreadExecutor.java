@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executor which runs every task in a new virtual thread on runtimes which support virtual threads, typically
+ * used as invocation executor of a {@link StreamJsonRpcService} so blocking service methods don't need a thread pool.
+ * <p>
+ * Virtual threads are created through reflection so this class can be used on older runtimes, on those the
+ * tasks are instead executed by the fallback executor.
+ * </p>
+ */
+public class VirtualThreadExecutor implements Executor {
+    private static final Method ofVirtual;
+    private static final Method builderName;
+    private static final Method builderFactory;
+    private static final Method newThreadPerTaskExecutor;
+
+    static {
+        Method ofVirtualMethod = null;
+        Method nameMethod = null;
+        Method factoryMethod = null;
+        Method executorMethod = null;
+        try {
+            Class builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            nameMethod = builderClass.getMethod("name", String.class, long.class);
+            factoryMethod = builderClass.getMethod("factory");
+            executorMethod = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (Exception e) {
+            // Virtual threads aren't supported by this runtime
+            ofVirtualMethod = null;
+        }
+        ofVirtual = ofVirtualMethod;
+        builderName = nameMethod;
+        builderFactory = factoryMethod;
+        newThreadPerTaskExecutor = executorMethod;
+    }
+
+    private final ExecutorService virtualExecutor;
+    private final Executor fallback;
+
+    /**
+     * Creates a new executor
+     *
+     * @param name     The name prefix of the created threads
+     * @param fallback The executor to use if virtual threads aren't supported, null if tasks should be rejected
+     */
+    public VirtualThreadExecutor(String name, Executor fallback) {
+        this.fallback = fallback;
+        ExecutorService executor = null;
+        if (ofVirtual != null) {
+            try {
+                Object builder = builderName.invoke(ofVirtual.invoke(null), name + "-", 1L);
+                executor = (ExecutorService) newThreadPerTaskExecutor.invoke(null, builderFactory.invoke(builder));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        this.virtualExecutor = executor;
+    }
+
+    /**
+     * Check if the runtime supports virtual threads
+     *
+     * @return true if virtual threads are supported
+     */
+    public static boolean isSupported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Check if tasks are executed in virtual threads or by the fallback executor
+     *
+     * @return true if tasks are executed in virtual threads
+     */
+    public boolean isVirtual() {
+        return virtualExecutor != null;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (virtualExecutor != null) {
+            virtualExecutor.execute(task);
+        } else if (fallback != null) {
+            fallback.execute(task);
+        } else {
+            throw new RejectedExecutionException("Virtual threads are not supported");
+        }
+    }
+
+    /**
+     * Stop accepting new tasks, already started tasks are allowed to complete. The fallback executor isn't affected.
+     */
+    public void shutdown() {
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+        }
+    }
+}
@@ -30,18 +30,29 @@ package com.ickstream.common.jsonrpc;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 import junit.framework.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class AsyncJsonRpcClientTest extends AbstractJsonRpcTest {
     ObjectMapper mapper = new ObjectMapper();
 
     private static class MessageSenderImpl implements MessageSender {
-        private String message;
+        private volatile String message;
 
         @Override
         public void sendMessage(String message) {
@@ -49,6 +60,27 @@ public class AsyncJsonRpcClientTest extends AbstractJsonRpcTest {
         }
     }
 
+    private static class ByteMessageSenderImpl implements ByteMessageSender {
+        private byte[] message;
+        private int stringMessages;
+        private MessageEncoding encoding = MessageEncoding.JSON;
+
+        @Override
+        public void sendMessage(String message) {
+            stringMessages++;
+        }
+
+        @Override
+        public void sendMessage(byte[] message) {
+            this.message = message;
+        }
+
+        @Override
+        public MessageEncoding getEncoding() {
+            return encoding;
+        }
+    }
+
     private static enum EnumValue {
         ON,
         OFF
@@ -134,6 +166,128 @@ public class AsyncJsonRpcClientTest extends AbstractJsonRpcTest {
         Assert.assertTrue(validated[1]);
     }
 
+    @Test
+    public void testRequestResponseBytes() throws IOException {
+        ByteMessageSenderImpl sender = new ByteMessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        final boolean[] validated = {false, false};
+        ValueNode id = client.sendRequest("someMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                Assert.assertEquals("value3", message.getAttr1());
+                Assert.assertEquals(Integer.valueOf(4), message.getAttr2());
+                validated[0] = true;
+            }
+        });
+        client.addNotificationListener("someNotification", TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                Assert.assertEquals("value5", message.getAttr1());
+                validated[1] = true;
+            }
+        });
+
+        Assert.assertEquals(0, sender.stringMessages);
+        String request = new String(sender.message, "UTF-8");
+        Assert.assertEquals(id, getParamFromJson(request, "id"));
+        Assert.assertEquals("value1", getParamFromJson(request, "params.attr1"));
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", id);
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        Assert.assertTrue(client.onMessage(mapper.writeValueAsBytes(response)));
+        Assert.assertTrue(validated[0]);
+        Assert.assertFalse(client.onMessage(mapper.writeValueAsBytes(response)));
+
+        JsonRpcRequest notification = new JsonRpcRequest();
+        notification.setMethod("someNotification");
+        notification.setParams(mapper.valueToTree(new TestData("value5", 6, false, EnumValue.OFF)));
+        Assert.assertTrue(client.onMessage(mapper.writeValueAsBytes(notification)));
+        Assert.assertTrue(validated[1]);
+    }
+
+    @Test
+    public void testRequestResponseSmile() throws IOException {
+        ByteMessageSenderImpl sender = new ByteMessageSenderImpl();
+        sender.encoding = MessageEncoding.SMILE;
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        final boolean[] validated = {false};
+        ValueNode id = client.sendRequest("someMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                Assert.assertEquals("value3", message.getAttr1());
+                Assert.assertEquals(EnumValue.OFF, message.getAttr4());
+                validated[0] = true;
+            }
+        });
+
+        JsonHelper jsonHelper = new JsonHelper();
+        Assert.assertEquals(MessageEncoding.SMILE, MessageEncoding.detect(sender.message, 0, sender.message.length));
+        JsonRpcRequest request = jsonHelper.bytesToObject(sender.message, JsonRpcRequest.class);
+        Assert.assertEquals(id, request.getId());
+        Assert.assertEquals("value1", request.getParams().get("attr1").asText());
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", id);
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.OFF)));
+        Assert.assertTrue(client.onMessage(jsonHelper.objectToBytes(response, MessageEncoding.SMILE)));
+        Assert.assertTrue(validated[0]);
+    }
+
+    @Test
+    public void testNegotiateEncoding() {
+        Assert.assertEquals(MessageEncoding.JSON, MessageEncoding.negotiate(null));
+        Assert.assertEquals(MessageEncoding.JSON, MessageEncoding.negotiate(Arrays.asList("json", "cbor")));
+        Assert.assertEquals(MessageEncoding.SMILE, MessageEncoding.negotiate(Arrays.asList("smile", "json")));
+    }
+
+    @Test
+    public void testBatchedRequests() throws IOException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        client.setBatching(10000, 2);
+        final boolean[] validated = {false, false};
+        ValueNode id1 = client.sendRequest("someMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                Assert.assertEquals("value3", message.getAttr1());
+                validated[0] = true;
+            }
+        });
+        Assert.assertNull(sender.message);
+        ValueNode id2 = client.sendRequest("someOtherMethod", new TestData("value2", 2, true, EnumValue.ON), TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                Assert.assertEquals("value4", message.getAttr1());
+                validated[1] = true;
+            }
+        });
+
+        Assert.assertEquals(id1.toString(), getParamFromJson(sender.message, "0.id"));
+        Assert.assertEquals("someMethod", getParamFromJson(sender.message, "0.method"));
+        Assert.assertEquals(id2.toString(), getParamFromJson(sender.message, "1.id"));
+        Assert.assertEquals("value2", getParamFromJson(sender.message, "1.params.attr1"));
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", id2);
+        response.setResult(mapper.valueToTree(new TestData("value4", 4, false, EnumValue.ON)));
+        client.onResponse(response);
+        response = new JsonRpcResponse("2.0", id1);
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        client.onResponse(response);
+        Assert.assertTrue(validated[0]);
+        Assert.assertTrue(validated[1]);
+    }
+
+    @Test
+    public void testBatchedRequestsWindow() throws IOException, InterruptedException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        client.setBatching(100, null);
+        ValueNode id = client.sendRequest("someMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, new MessageHandlerAdapter<TestData>());
+        Assert.assertNull(sender.message);
+        Thread.sleep(500);
+        Assert.assertEquals(id, getParamFromJson(sender.message, "id"));
+        Assert.assertEquals("value1", getParamFromJson(sender.message, "params.attr1"));
+    }
+
     @Test
     public void testRequestResponseWithoutTimeoutTriggered() throws IOException, InterruptedException {
         MessageSenderImpl sender = new MessageSenderImpl();
@@ -214,6 +368,479 @@ public class AsyncJsonRpcClientTest extends AbstractJsonRpcTest {
         Assert.assertTrue(validated[2]);
     }
 
+    @Test
+    public void testMetrics() throws IOException, InterruptedException {
+        ByteMessageSenderImpl sender = new ByteMessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        client.setMetricsRegistry(registry, "test");
+
+        ValueNode id1 = client.sendRequest("someMethod", null, TestData.class, new MessageHandlerAdapter<TestData>());
+        int sentBytes = sender.message.length;
+        ValueNode id2 = client.sendRequest("someMethod", null, TestData.class, new MessageHandlerAdapter<TestData>());
+        client.sendRequest("otherMethod", null, TestData.class, new MessageHandlerAdapter<TestData>(), 100);
+        client.sendRequest("someNotification", null);
+        Assert.assertEquals(3, registry.getCounter("test.pending").getCount());
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", id1);
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        byte[] responseBytes = mapper.writeValueAsBytes(response);
+        client.onMessage(responseBytes);
+        JsonRpcResponse errorResponse = new JsonRpcResponse("2.0", id2);
+        errorResponse.setError(new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, "Error"));
+        client.onResponse(errorResponse);
+        Thread.sleep(1000);
+
+        Assert.assertEquals(4, registry.getCounter("test.calls").getCount());
+        Assert.assertEquals(2, registry.getCounter("test.someMethod.calls").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.someNotification.calls").getCount());
+        Assert.assertEquals(0, registry.getCounter("test.pending").getCount());
+        Assert.assertEquals(2, registry.getHistogram("test.someMethod.rttMicros").getCount());
+        Assert.assertEquals(2, registry.getHistogram("test.rttMicros").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.someMethod.errors").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.errors." + JsonRpcError.SERVICE_ERROR).getCount());
+        Assert.assertEquals(1, registry.getCounter("test.otherMethod.timeouts").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.timeouts").getCount());
+        Assert.assertEquals(0, registry.getHistogram("test.otherMethod.rttMicros").getCount());
+        Assert.assertEquals(4, registry.getHistogram("test.sentBytes").getCount());
+        Assert.assertTrue(registry.getHistogram("test.sentBytes").getMax() >= sentBytes);
+        Assert.assertEquals(1, registry.getHistogram("test.receivedBytes").getCount());
+        Assert.assertEquals(responseBytes.length, registry.getHistogram("test.receivedBytes").getSum());
+    }
+
+    @Test
+    public void testManyRequestsWithTimeoutShareTimerThread() throws IOException, InterruptedException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender, 100);
+        final int[] counters = {0, 0};
+        for (int i = 0; i < 1000; i++) {
+            ValueNode id = client.sendRequest("someMethod", null, TestData.class, new MessageHandlerAdapter<TestData>() {
+                @Override
+                public void onMessage(TestData message) {
+                    synchronized (counters) {
+                        counters[0]++;
+                    }
+                }
+
+                @Override
+                public void onTimeout() {
+                    synchronized (counters) {
+                        counters[1]++;
+                    }
+                }
+            });
+            if (i % 2 == 0) {
+                JsonRpcResponse response = new JsonRpcResponse("2.0", id);
+                response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+                client.onResponse(response);
+            }
+        }
+        Thread.sleep(1000);
+
+        synchronized (counters) {
+            Assert.assertEquals(500, counters[0]);
+            Assert.assertEquals(500, counters[1]);
+        }
+        // All timeouts have expired, the timer and its executor must not have started a thread per request
+        Assert.assertEquals(1, countThreads("HashedWheelTimer-shared"));
+        Assert.assertTrue(countThreads("HashedWheelTimer-shared-executor-") <= HashedWheelTimer.SHARED_EXECUTOR_THREADS);
+    }
+
+    private int countThreads(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.endsWith("-") ? thread.getName().startsWith(name) : thread.getName().equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testRequestResponseWithLongId() throws IOException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender, new IdProvider() {
+            @Override
+            public ValueNode getNextId() {
+                return LongNode.valueOf(Integer.MAX_VALUE + 10L);
+            }
+        });
+        final int[] received = {0};
+        ValueNode id = client.sendRequest("someMethod", null, TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                Assert.assertEquals("value3", message.getAttr1());
+                received[0]++;
+            }
+        });
+        Assert.assertEquals(Integer.MAX_VALUE + 10L, ((JsonNode) getParamFromJson(sender.message, "id")).longValue());
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", new TextNode(id.asText()));
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        Assert.assertTrue(client.onResponse(response));
+        Assert.assertFalse(client.onResponse(response));
+        Assert.assertEquals(1, received[0]);
+    }
+
+    @Test
+    public void testRequestFuture() throws Exception {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        JsonRpcFuture<TestData> future = client.sendRequestAsync("someMethod", null, TestData.class);
+        final ValueNode firstId = (ValueNode) getParamFromJson(sender.message, "id");
+        final String[] secondMethod = {null};
+        final MessageSenderImpl secondSender = new MessageSenderImpl();
+        final AsyncJsonRpcClient secondClient = new AsyncJsonRpcClient(secondSender);
+        JsonRpcFuture<String> composed = future.compose(new JsonRpcFuture.Transformer<TestData, JsonRpcFuture<TestData>>() {
+            @Override
+            public JsonRpcFuture<TestData> transform(TestData value) throws Exception {
+                return secondClient.sendRequestAsync("otherMethod", value, TestData.class);
+            }
+        }).transform(new JsonRpcFuture.Transformer<TestData, String>() {
+            @Override
+            public String transform(TestData value) throws Exception {
+                return value.getAttr1();
+            }
+        });
+        Assert.assertFalse(composed.isDone());
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", firstId);
+        response.setResult(mapper.valueToTree(new TestData("value1", 2, false, EnumValue.ON)));
+        client.onResponse(response);
+        Assert.assertEquals("value1", future.get().getAttr1());
+        Assert.assertEquals("otherMethod", getParamFromJson(secondSender.message, "method"));
+        Assert.assertEquals("value1", getParamFromJson(secondSender.message, "params.attr1"));
+        Assert.assertFalse(composed.isDone());
+
+        response = new JsonRpcResponse("2.0", (ValueNode) getParamFromJson(secondSender.message, "id"));
+        response.setError(new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, "Failed", null));
+        secondClient.onResponse(response);
+        Assert.assertTrue(composed.isDone());
+        try {
+            composed.get();
+            Assert.fail("Expected failure");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof JsonRpcException);
+            Assert.assertEquals(JsonRpcError.SERVICE_ERROR, ((JsonRpcException) e.getCause()).getCode());
+        }
+    }
+
+    @Test
+    public void testRequestFutureTimeoutAndCancel() throws Exception {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        final Throwable[] failure = {null};
+        final CountDownLatch failed = new CountDownLatch(1);
+        JsonRpcFuture<TestData> future = client.sendRequestAsync("someMethod", null, TestData.class, 50);
+        future.addCallback(new JsonRpcFuture.Callback<TestData>() {
+            @Override
+            public void onSuccess(TestData result) {
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                failure[0] = cause;
+                failed.countDown();
+            }
+        });
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected timeout");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof JsonRpcTimeoutException);
+        }
+        Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(failure[0] instanceof JsonRpcTimeoutException);
+
+        future = client.sendRequestAsync("someMethod", null, TestData.class);
+        ValueNode id = (ValueNode) getParamFromJson(sender.message, "id");
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertTrue(future.isCancelled());
+        JsonRpcResponse response = new JsonRpcResponse("2.0", id);
+        response.setResult(mapper.valueToTree(new TestData("value1", 2, false, EnumValue.ON)));
+        Assert.assertFalse(client.onResponse(response));
+    }
+
+    @Test
+    public void testResponseCache() throws IOException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        ResponseCache cache = new ResponseCache(10, null);
+        cache.setTimeToLive("cachedMethod", 60000L);
+        client.setResponseCache(cache);
+        final List<TestData> results = new ArrayList<TestData>();
+        MessageHandler<TestData> handler = new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                results.add(message);
+            }
+        };
+
+        ValueNode id = client.sendRequest("cachedMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, handler);
+        JsonRpcResponse response = new JsonRpcResponse("2.0", id);
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        Assert.assertTrue(client.onResponse(response));
+        Assert.assertEquals(1, results.size());
+
+        sender.message = null;
+        client.sendRequest("cachedMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, handler);
+        Assert.assertNull(sender.message);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("value3", results.get(1).getAttr1());
+        Assert.assertNotSame(results.get(0), results.get(1));
+        Assert.assertEquals(1, cache.getHits());
+
+        client.sendRequest("cachedMethod", new TestData("value2", 2, true, EnumValue.ON), TestData.class, handler);
+        Assert.assertNotNull(sender.message);
+        Assert.assertEquals(2, results.size());
+
+        sender.message = null;
+        client.sendRequest("otherMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, handler);
+        Assert.assertNotNull(sender.message);
+
+        cache.invalidate("cachedMethod", new TestData("value1", 2, true, EnumValue.ON));
+        sender.message = null;
+        id = client.sendRequest("cachedMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, handler);
+        Assert.assertNotNull(sender.message);
+
+        response = new JsonRpcResponse("2.0", id);
+        response.setError(new JsonRpcResponse.Error(JsonRpcError.SERVICE_ERROR, "Failed"));
+        Assert.assertTrue(client.onResponse(response));
+        Assert.assertEquals(0, cache.getEntries());
+    }
+
+    @Test
+    public void testResponseCacheCopies() throws IOException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        ResponseCache cache = new ResponseCache(10, null);
+        cache.setTimeToLive("cachedMethod", 60000L);
+        client.setResponseCache(cache);
+        client.setCoalescing("cachedMethod", true);
+        final List<JsonRpcResponse> results = new ArrayList<JsonRpcResponse>();
+        MessageHandler<JsonRpcResponse> handler = new MessageHandlerAdapter<JsonRpcResponse>() {
+            @Override
+            public void onMessage(JsonRpcResponse message) {
+                results.add(message);
+                // Callers are free to modify what they receive
+                ((ObjectNode) message.getResult()).put("attr1", "modified");
+            }
+        };
+
+        client.sendRequest("cachedMethod", null, JsonRpcResponse.class, handler);
+        String request = sender.message;
+        client.sendRequest("cachedMethod", null, JsonRpcResponse.class, handler);
+        JsonRpcResponse response = new JsonRpcResponse("2.0", new JsonHelper().stringToObject(request, JsonRpcRequest.class).getId());
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        Assert.assertTrue(client.onResponse(response));
+        Assert.assertEquals(2, results.size());
+        Assert.assertNotSame(results.get(0).getResult(), results.get(1).getResult());
+
+        client.sendRequest("cachedMethod", null, JsonRpcResponse.class, handler);
+        client.sendRequest("cachedMethod", null, JsonRpcResponse.class, handler);
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertNotSame(results.get(2).getResult(), results.get(3).getResult());
+        Assert.assertEquals("modified", results.get(3).getResult().get("attr1").asText());
+    }
+
+    @Test
+    public void testResponseCacheSize() throws IOException {
+        ResponseCache cache = new ResponseCache(10, 200L);
+        cache.setTimeToLive("method", 60000L);
+        cache.put(cache.getKey("method", null), "method", mapper.valueToTree(new TestData("value1", 2, true, EnumValue.ON)), cache.getGeneration());
+        Assert.assertEquals(1, cache.getEntries());
+        long size = cache.getSize();
+        long jsonLength = mapper.writeValueAsString(new TestData("value1", 2, true, EnumValue.ON)).length();
+        Assert.assertTrue(size >= 2 * jsonLength && size <= 2 * (jsonLength + 20));
+
+        // Results larger than the cache are never stored
+        List<TestData> large = new ArrayList<TestData>();
+        for (int i = 0; i < 10; i++) {
+            large.add(new TestData("value" + i, i, true, EnumValue.ON));
+        }
+        cache.put(cache.getKey("method", mapper.valueToTree(1)), "method", mapper.valueToTree(large), cache.getGeneration());
+        Assert.assertEquals(1, cache.getEntries());
+    }
+
+    @Test
+    public void testResponseCacheEviction() throws IOException {
+        ResponseCache cache = new ResponseCache(2, null);
+        cache.setTimeToLive("method", 60000L);
+        Assert.assertEquals(cache.getKey("method", mapper.readTree("{\"b\":1,\"a\":[1,\"x\"]}")),
+                cache.getKey("method", mapper.readTree("{\"a\":[1,\"x\"],\"b\":1}")));
+        Assert.assertFalse(cache.getKey("method", mapper.readTree("{\"a\":\"1\"}")).equals(cache.getKey("method", mapper.readTree("{\"a\":1}"))));
+        Assert.assertNull(cache.getKey("otherMethod", null));
+
+        cache.put("method:1", "method", TextNode.valueOf("1"), cache.getGeneration());
+        cache.put("method:2", "method", TextNode.valueOf("2"), cache.getGeneration());
+        Assert.assertNotNull(cache.get("method:1"));
+        cache.put("method:3", "method", TextNode.valueOf("3"), cache.getGeneration());
+        Assert.assertEquals(2, cache.getEntries());
+        Assert.assertNotNull(cache.get("method:1"));
+        Assert.assertNull(cache.get("method:2"));
+
+        long generation = cache.getGeneration();
+        cache.invalidate("method");
+        Assert.assertEquals(0, cache.getEntries());
+        Assert.assertEquals(0, cache.getSize());
+        cache.put("method:1", "method", TextNode.valueOf("1"), generation);
+        Assert.assertNull(cache.get("method:1"));
+
+        ResponseCache smallCache = new ResponseCache(10, 100L);
+        smallCache.setTimeToLive("method", 60000L);
+        for (int i = 0; i < 10; i++) {
+            smallCache.put("method:" + i, "method", TextNode.valueOf("value" + i), smallCache.getGeneration());
+        }
+        Assert.assertTrue(smallCache.getSize() <= 100);
+        Assert.assertNotNull(smallCache.get("method:9"));
+        Assert.assertNull(smallCache.get("method:0"));
+
+        ResponseCache expiringCache = new ResponseCache(10, null);
+        expiringCache.setTimeToLive("method", 0L);
+        expiringCache.put("method:1", "method", TextNode.valueOf("1"), expiringCache.getGeneration());
+        Assert.assertNull(expiringCache.get("method:1"));
+    }
+
+    @Test
+    public void testBlockingTimeoutHandler() throws Exception {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch timedOut = new CountDownLatch(1);
+
+        client.sendRequest("someMethod", null, TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onTimeout() {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 10);
+        try {
+            Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+            // A blocking timeout handler doesn't delay the timeouts of other requests
+            client.sendRequest("someMethod", null, TestData.class, new MessageHandlerAdapter<TestData>() {
+                @Override
+                public void onTimeout() {
+                    timedOut.countDown();
+                }
+            }, 10);
+            Assert.assertTrue(timedOut.await(2, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws IOException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        client.setCoalescing("someMethod", true);
+        final List<TestData> results = new ArrayList<TestData>();
+        MessageHandler<TestData> handler = new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                results.add(message);
+            }
+        };
+
+        client.sendRequest("someMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, handler);
+        String request = sender.message;
+        sender.message = null;
+        client.sendRequest("someMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, handler);
+        Assert.assertNull(sender.message);
+        client.sendRequest("someMethod", new TestData("value2", 2, true, EnumValue.ON), TestData.class, handler);
+        Assert.assertNotNull(sender.message);
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", new JsonHelper().stringToObject(request, JsonRpcRequest.class).getId());
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        Assert.assertTrue(client.onResponse(response));
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("value3", results.get(0).getAttr1());
+        Assert.assertEquals("value3", results.get(1).getAttr1());
+        Assert.assertNotSame(results.get(0), results.get(1));
+
+        // The response has been delivered so the next request is sent again
+        sender.message = null;
+        client.sendRequest("someMethod", new TestData("value1", 2, true, EnumValue.ON), TestData.class, handler);
+        Assert.assertNotNull(sender.message);
+    }
+
+    @Test
+    public void testCoalescingJoinWhileDelivering() throws Exception {
+        final MessageSenderImpl sender = new MessageSenderImpl();
+        final AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        client.setCoalescing("someMethod", true);
+
+        for (int i = 0; i < 200; i++) {
+            JsonRpcFuture<TestData> firstFuture = client.sendRequestAsync("someMethod", null, TestData.class);
+            final String request = sender.message;
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread responder = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    JsonRpcResponse response = new JsonRpcResponse("2.0", new JsonHelper().stringToObject(request, JsonRpcRequest.class).getId());
+                    response.setResult(mapper.valueToTree(new TestData("value1", 2, true, EnumValue.ON)));
+                    client.onResponse(response);
+                }
+            };
+            responder.start();
+            start.countDown();
+            JsonRpcFuture<TestData> joinedFuture = client.sendRequestAsync("someMethod", null, TestData.class);
+            responder.join();
+
+            // A caller joining after the response was delivered sends a new request
+            if (!joinedFuture.isDone() && !request.equals(sender.message)) {
+                JsonRpcResponse response = new JsonRpcResponse("2.0", new JsonHelper().stringToObject(sender.message, JsonRpcRequest.class).getId());
+                response.setResult(mapper.valueToTree(new TestData("value1", 2, true, EnumValue.ON)));
+                client.onResponse(response);
+            }
+            Assert.assertEquals("value1", firstFuture.get(1, TimeUnit.SECONDS).getAttr1());
+            Assert.assertEquals("value1", joinedFuture.get(1, TimeUnit.SECONDS).getAttr1());
+        }
+    }
+
+    @Test
+    public void testCoalescingTimeout() throws Exception {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+        client.setCoalescing("someMethod", true);
+
+        JsonRpcFuture<TestData> shortFuture = client.sendRequestAsync("someMethod", null, TestData.class, 50);
+        String request = sender.message;
+        JsonRpcFuture<TestData> longFuture = client.sendRequestAsync("someMethod", null, TestData.class, 10000);
+        try {
+            shortFuture.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected timeout");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof JsonRpcTimeoutException);
+        }
+        Assert.assertFalse(longFuture.isDone());
+
+        JsonRpcResponse response = new JsonRpcResponse("2.0", new JsonHelper().stringToObject(request, JsonRpcRequest.class).getId());
+        response.setResult(mapper.valueToTree(new TestData("value3", 4, false, EnumValue.ON)));
+        Assert.assertTrue(client.onResponse(response));
+        Assert.assertEquals("value3", longFuture.get(5, TimeUnit.SECONDS).getAttr1());
+
+        // The request is abandoned when all callers have given up
+        JsonRpcFuture<TestData> cancelledFuture = client.sendRequestAsync("someMethod", null, TestData.class);
+        request = sender.message;
+        cancelledFuture.cancel(false);
+        response = new JsonRpcResponse("2.0", new JsonHelper().stringToObject(request, JsonRpcRequest.class).getId());
+        Assert.assertFalse(client.onResponse(response));
+    }
+
     @Test
     public void testRequestFullResponseData() throws IOException {
         MessageSenderImpl sender = new MessageSenderImpl();
@@ -558,6 +1185,97 @@ public class AsyncJsonRpcClientTest extends AbstractJsonRpcTest {
         Assert.assertTrue(validated[1]);
     }
 
+    @Test
+    public void testNotificationsConvertedOncePerType() throws IOException {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+
+        final List<Object> received = new ArrayList<Object>();
+        MessageHandlerAdapter<TestData> dataHandler = new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                received.add(message);
+            }
+        };
+        MessageHandlerAdapter<JsonNode> jsonHandler = new MessageHandlerAdapter<JsonNode>() {
+            @Override
+            public void onMessage(JsonNode message) {
+                received.add(message);
+            }
+        };
+        client.addNotificationListener("someNotification", TestData.class, dataHandler);
+        client.addNotificationListener("someNotification", JsonNode.class, jsonHandler);
+        client.addNotificationListener("someNotification", TestData.class, new MessageHandlerAdapter<TestData>() {
+            @Override
+            public void onMessage(TestData message) {
+                received.add(message);
+            }
+        });
+        client.addNotificationListener("someNotification", JsonNode.class, new MessageHandlerAdapter<JsonNode>() {
+            @Override
+            public void onMessage(JsonNode message) {
+                received.add(message);
+            }
+        });
+
+        JsonRpcRequest request = new JsonRpcRequest("2.0");
+        request.setMethod("someNotification");
+        request.setParams(mapper.valueToTree(new TestData("value1", 1, true, EnumValue.ON)));
+        Assert.assertTrue(client.onRequest(request));
+
+        Assert.assertEquals(4, received.size());
+        Assert.assertTrue(received.get(0) instanceof TestData);
+        Assert.assertTrue(received.get(1) instanceof JsonNode);
+        Assert.assertSame(received.get(0), received.get(2));
+        Assert.assertSame(received.get(1), received.get(3));
+
+        client.removeNotificationListener("someNotification", dataHandler);
+        client.removeNotificationListener("someNotification", jsonHandler);
+        received.clear();
+        Assert.assertTrue(client.onRequest(request));
+        Assert.assertEquals(2, received.size());
+    }
+
+    @Test
+    public void testNotificationsWithExecutor() throws Exception {
+        MessageSenderImpl sender = new MessageSenderImpl();
+        AsyncJsonRpcClient client = new AsyncJsonRpcClient(sender);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(2);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            client.addNotificationListener("someNotification", TestData.class, new MessageHandlerAdapter<TestData>() {
+                @Override
+                public void onMessage(TestData message) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    received.add(message.getAttr2());
+                    delivered.countDown();
+                }
+            }, executor);
+
+            for (int i = 1; i <= 2; i++) {
+                JsonRpcRequest request = new JsonRpcRequest("2.0");
+                request.setMethod("someNotification");
+                request.setParams(mapper.valueToTree(new TestData("value", i, true, EnumValue.ON)));
+                Assert.assertTrue(client.onRequest(request));
+            }
+
+            // The slow listener doesn't block the receiving thread
+            Assert.assertEquals(0, received.size());
+            release.countDown();
+            Assert.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList(1, 2), received);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testNotificationsMultipleListenersDifferentNotificationSameType() throws IOException {
         MessageSenderImpl sender = new MessageSenderImpl();
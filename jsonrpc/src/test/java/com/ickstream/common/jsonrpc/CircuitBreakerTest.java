@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import junit.framework.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpenOnFailures() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(10, 4);
+        circuitBreaker.setOpenDuration(50L);
+        final List<CircuitBreaker.State> states = new ArrayList<CircuitBreaker.State>();
+        circuitBreaker.addListener(new CircuitBreaker.Listener() {
+            @Override
+            public void onStateChanged(CircuitBreaker circuitBreaker, CircuitBreaker.State state) {
+                synchronized (states) {
+                    states.add(state);
+                }
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(circuitBreaker.tryAcquire());
+            circuitBreaker.onFailure();
+        }
+        // Not enough calls yet
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess(10);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+        Assert.assertFalse(circuitBreaker.isAvailable());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (circuitBreaker.getState() == CircuitBreaker.State.OPEN && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        // Only one probe at a time
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess(10);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        synchronized (states) {
+            Assert.assertEquals(3, states.size());
+            Assert.assertEquals(CircuitBreaker.State.OPEN, states.get(0));
+            Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, states.get(1));
+            Assert.assertEquals(CircuitBreaker.State.CLOSED, states.get(2));
+        }
+    }
+
+    @Test
+    public void testFailedProbe() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, 2);
+        circuitBreaker.setOpenDuration(20L);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (circuitBreaker.getState() == CircuitBreaker.State.OPEN && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onCancelled();
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testSlowCalls() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(4, 4);
+        circuitBreaker.setSlowCallThreshold(100L, 0.75);
+        circuitBreaker.onSuccess(500);
+        circuitBreaker.onSuccess(10);
+        circuitBreaker.onSuccess(500);
+        circuitBreaker.onSuccess(10);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        // The first slow call falls out of the window
+        circuitBreaker.onSuccess(500);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        // The first fast call falls out of the window
+        circuitBreaker.onSuccess(500);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+}
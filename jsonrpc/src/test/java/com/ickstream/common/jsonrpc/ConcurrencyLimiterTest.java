@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import junit.framework.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testReject() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertFalse(limiter.acquire());
+        Assert.assertEquals(1, limiter.getRejected());
+
+        limiter.release(1000, false);
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void testQueue() throws InterruptedException {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 5000L);
+        Assert.assertTrue(limiter.acquire());
+
+        final AtomicBoolean acquired = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acquired.set(limiter.acquire());
+                done.countDown();
+            }
+        }).start();
+        while (limiter.getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+
+        // The queue is full
+        Assert.assertFalse(limiter.acquire());
+
+        limiter.release(1000, false);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(acquired.get());
+        Assert.assertEquals(1, limiter.getInFlight());
+        Assert.assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    public void testQueueTimeout() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 50L);
+        Assert.assertTrue(limiter.acquire());
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(limiter.acquire());
+        Assert.assertTrue(System.currentTimeMillis() - start >= 40);
+        Assert.assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    public void testAdaptive() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10);
+        limiter.setAdaptive(1, 20);
+
+        // Calls completing with low latency while the limit is used increase the limit
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < limiter.getLimit(); j++) {
+                limiter.acquire();
+            }
+            while (limiter.getInFlight() > 0) {
+                limiter.release(1000, false);
+            }
+        }
+        Assert.assertEquals(20, limiter.getLimit());
+
+        // Slow calls decrease the limit
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(10000, false);
+        }
+        Assert.assertTrue(limiter.getLimit() < 20);
+
+        // Failures decrease the limit down to the minimum
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire();
+            limiter.release(1000, true);
+        }
+        Assert.assertEquals(1, limiter.getLimit());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import junit.framework.Assert;
+import org.apache.commons.io.IOUtils;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class HttpJsonRpcServiceTest extends AbstractJsonRpcTest {
+
+    private HttpServletRequest createRequest(String body, boolean asyncSupported) throws IOException {
+        final InputStream input = IOUtils.toInputStream(body);
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getMethod()).thenReturn("POST");
+        Mockito.when(request.isAsyncSupported()).thenReturn(asyncSupported);
+        Mockito.when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return input.read();
+            }
+        });
+        return request;
+    }
+
+    private HttpServletResponse createResponse(final ByteArrayOutputStream output) throws IOException {
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                output.write(b);
+            }
+        });
+        return response;
+    }
+
+    @Test
+    public void testSynchronous() throws IOException {
+        HttpJsonRpcService service = new HttpJsonRpcService(new StreamJsonRpcServiceTest.FutureMethodsImpl(), StreamJsonRpcServiceTest.FutureMethods.class);
+        HttpServletRequest request = createRequest(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"completed\"}"), true);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        service.handle(request, createResponse(output));
+
+        Mockito.verify(request, Mockito.never()).startAsync(Mockito.any(HttpServletRequest.class), Mockito.any(HttpServletResponse.class));
+        Assert.assertEquals("testMethodFuture_completed", getParamFromJson(output.toString("utf-8"), "result.result1"));
+    }
+
+    @Test
+    public void testAsynchronous() throws IOException, InterruptedException {
+        StreamJsonRpcServiceTest.FutureMethodsImpl serviceImplementation = new StreamJsonRpcServiceTest.FutureMethodsImpl();
+        HttpJsonRpcService service = new HttpJsonRpcService(serviceImplementation, StreamJsonRpcServiceTest.FutureMethods.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        service.setAsyncExecutor(executor);
+        try {
+            HttpServletRequest request = createRequest(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"pending\"}"), true);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            HttpServletResponse response = createResponse(output);
+            final CountDownLatch completed = new CountDownLatch(1);
+            AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+            Mockito.doAnswer(new Answer<Object>() {
+                @Override
+                public Object answer(InvocationOnMock invocation) throws Throwable {
+                    completed.countDown();
+                    return null;
+                }
+            }).when(asyncContext).complete();
+            Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+            service.handle(request, response);
+
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, serviceImplementation.pending.size());
+            Assert.assertEquals(1, completed.getCount());
+
+            serviceImplementation.pending.get(0).setResult("deferred");
+
+            Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+            Mockito.verify(asyncContext, Mockito.times(1)).complete();
+            Assert.assertEquals("deferred", getParamFromJson(output.toString("utf-8"), "result.result1"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsynchronousTimeout() throws IOException, InterruptedException {
+        StreamJsonRpcServiceTest.FutureMethodsImpl serviceImplementation = new StreamJsonRpcServiceTest.FutureMethodsImpl();
+        HttpJsonRpcService service = new HttpJsonRpcService(serviceImplementation, StreamJsonRpcServiceTest.FutureMethods.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        service.setAsyncExecutor(executor);
+        service.setAsyncTimeout(100L);
+        try {
+            HttpServletRequest request = createRequest(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"pending\"}"), true);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            HttpServletResponse response = createResponse(output);
+            AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+            Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+            service.handle(request, response);
+
+            Mockito.verify(asyncContext).setTimeout(100L);
+            ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+            Mockito.verify(asyncContext).addListener(listener.capture());
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, serviceImplementation.pending.size());
+
+            // The container completes the response when the timeout expires
+            listener.getValue().onTimeout(new AsyncEvent(asyncContext));
+            serviceImplementation.pending.get(0).setResult("deferred");
+
+            Assert.assertEquals(0, output.size());
+            Mockito.verify(asyncContext, Mockito.never()).complete();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
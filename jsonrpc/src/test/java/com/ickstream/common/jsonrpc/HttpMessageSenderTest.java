@@ -35,11 +35,25 @@ import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class HttpMessageSenderTest {
     private static final String ENDPOINT = "http://example.org/jsonrpc";
@@ -126,6 +140,98 @@ public class HttpMessageSenderTest {
         Assert.assertTrue(executed[0]);
     }
 
+    @Test
+    public void testLazyMessageLogger() {
+        String jsonResponse = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}";
+        HttpMessageSender sender = new HttpMessageSender(createClient(ENDPOINT, jsonResponse, 200, null), ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                return true;
+            }
+        });
+        final List<LazyMessage> outgoing = new ArrayList<LazyMessage>();
+        sender.setMessageLogger(new LazyMessageLogger() {
+            @Override
+            public boolean isOutgoingEnabled(String destination) {
+                return true;
+            }
+
+            @Override
+            public boolean isIncomingEnabled(String source) {
+                return false;
+            }
+
+            @Override
+            public void onOutgoingMessage(String destination, LazyMessage message) {
+                Assert.assertEquals(ENDPOINT, destination);
+                outgoing.add(message);
+            }
+
+            @Override
+            public void onIncomingMessage(String source, LazyMessage message) {
+                Assert.fail("Incoming messages are disabled");
+            }
+
+            @Override
+            public void onOutgoingMessage(String destination, String message) {
+                Assert.fail("Messages must be logged lazily");
+            }
+
+            @Override
+            public void onIncomingMessage(String source, String message) {
+                Assert.fail("Messages must be logged lazily");
+            }
+        });
+
+        String request = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}";
+        sender.sendMessage(request);
+        Assert.assertEquals(1, outgoing.size());
+        Assert.assertEquals(request, outgoing.get(0).getMessage());
+    }
+
+    @Test
+    public void testSuccessBatch() {
+        String jsonRequest = "[" +
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\",\"params\":{}}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"someMethod\",\"params\":{}}" +
+                "]";
+        String jsonResponse = "[" +
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"result\":\"43\"}" +
+                "]";
+        final int[] executed = {0};
+        new HttpMessageSender(createClient(ENDPOINT, jsonResponse, 200, jsonResponse), ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                Assert.assertNull(response.getError());
+                Assert.assertEquals(String.valueOf(41 + response.getId().asInt()), response.getResult().asText());
+                executed[0]++;
+                return true;
+            }
+        }).sendMessage(jsonRequest);
+        Assert.assertEquals(2, executed[0]);
+    }
+
+    @Test
+    public void testFailureBatch() {
+        String jsonRequest = "[" +
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\",\"params\":{}}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"someMethod\",\"params\":{}}" +
+                "]";
+        final int[] executed = {0};
+        new HttpMessageSender(createClient(ENDPOINT, null, 500, "Internal Server Error"), ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                Assert.assertNotNull(response.getError());
+                Assert.assertEquals(JsonRpcError.SERVICE_ERROR, response.getError().getCode());
+                Assert.assertEquals(executed[0] + 1, response.getId().asInt());
+                executed[0]++;
+                return true;
+            }
+        }).sendMessage(jsonRequest);
+        Assert.assertEquals(2, executed[0]);
+    }
+
     @Test
     public void testSuccessAsynchronous() throws InterruptedException {
         String jsonRequest = "" +
@@ -282,4 +388,418 @@ public class HttpMessageSenderTest {
         }).sendMessage(jsonRequest);
         Assert.assertTrue(executed[0]);
     }
+
+    @Test
+    public void testAsynchronousOverloaded() throws IOException, InterruptedException {
+        String jsonResponse = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}";
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        HttpClient client = createClient(ENDPOINT, jsonResponse, 200, jsonResponse);
+        final HttpResponse response = client.execute(new HttpPost(ENDPOINT));
+        Mockito.when(client.execute(Mockito.any(HttpPost.class))).thenAnswer(new Answer<HttpResponse>() {
+            @Override
+            public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return response;
+            }
+        });
+        final List<Integer> errors = new ArrayList<Integer>();
+        final CountDownLatch finished = new CountDownLatch(2);
+        HttpMessageSender sender = new HttpMessageSender(client, ENDPOINT, true, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                synchronized (errors) {
+                    errors.add(response.getError() != null ? response.getError().getCode() : null);
+                }
+                finished.countDown();
+                return true;
+            }
+        });
+        sender.setExecutor(new BoundedExecutor("test", 1, 1, BoundedExecutor.OverflowPolicy.DROP_OLDEST));
+
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}");
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        // Queued and then dropped by the third message
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"someMethod\"}");
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"someMethod\"}");
+        synchronized (errors) {
+            Assert.assertEquals(1, errors.size());
+            Assert.assertEquals(Integer.valueOf(JsonRpcError.OVERLOADED), errors.get(0));
+        }
+
+        release.countDown();
+        Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAsynchronousRejected() throws InterruptedException {
+        final boolean[] executed = {false};
+        HttpMessageSender sender = new HttpMessageSender(createClient(ENDPOINT, null, 200, null), ENDPOINT, true, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                Assert.assertNotNull(response.getError());
+                Assert.assertEquals(JsonRpcError.OVERLOADED, response.getError().getCode());
+                executed[0] = true;
+                return true;
+            }
+        });
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1, BoundedExecutor.OverflowPolicy.REJECT);
+        executor.shutdown();
+        sender.setExecutor(executor);
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}");
+        Assert.assertTrue(executed[0]);
+    }
+
+    private HttpResponse createResponse(String result, int statusCode) throws IOException {
+        HttpResponse response = Mockito.mock(HttpResponse.class);
+        if (result != null) {
+            Mockito.when(response.getEntity()).thenReturn(new StringEntity(result));
+        }
+        StatusLine statusLine = Mockito.mock(StatusLine.class);
+        Mockito.when(statusLine.getStatusCode()).thenReturn(statusCode);
+        Mockito.when(statusLine.getReasonPhrase()).thenReturn("Status " + statusCode);
+        Mockito.when(response.getStatusLine()).thenReturn(statusLine);
+        return response;
+    }
+
+    @Test
+    public void testRetry() throws IOException {
+        HttpClient client = Mockito.mock(HttpClient.class);
+        Mockito.when(client.execute(Mockito.any(HttpPost.class)))
+                .thenThrow(new IOException("Connection reset"))
+                .thenReturn(createResponse(null, 503))
+                .thenReturn(createResponse("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}", 200));
+        final List<JsonRpcResponse> responses = new ArrayList<JsonRpcResponse>();
+        HttpMessageSender sender = new HttpMessageSender(client, ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                responses.add(response);
+                return true;
+            }
+        });
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        sender.setMetricsRegistry(registry, "http");
+        sender.setRetryPolicy("someMethod", new RetryPolicy(3, 1L, 10L, 5000L));
+
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}");
+        Assert.assertEquals(1, responses.size());
+        Assert.assertEquals("42", responses.get(0).getResult().asText());
+        Assert.assertEquals(2, registry.getCounter("http.retries").getCount());
+        Mockito.verify(client, Mockito.times(3)).execute(Mockito.any(HttpPost.class));
+    }
+
+    @Test
+    public void testRetryGivesUp() throws IOException {
+        HttpClient client = createClient(ENDPOINT, null, 500, "Internal server error");
+        final List<JsonRpcResponse> responses = new ArrayList<JsonRpcResponse>();
+        HttpMessageSender sender = new HttpMessageSender(client, ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                responses.add(response);
+                return true;
+            }
+        });
+        sender.setRetryPolicy("someMethod", new RetryPolicy(2, 1L, 10L, 5000L));
+
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}");
+        Assert.assertEquals(1, responses.size());
+        Assert.assertEquals(JsonRpcError.SERVICE_ERROR, responses.get(0).getError().getCode());
+        Mockito.verify(client, Mockito.times(2)).execute(Mockito.any(HttpPost.class));
+
+        // Methods without a retry policy and unauthorized requests are not retried
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"otherMethod\"}");
+        Mockito.verify(client, Mockito.times(3)).execute(Mockito.any(HttpPost.class));
+        sender = new HttpMessageSender(createClient(ENDPOINT, null, 401, "Unauthorized"), ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                responses.add(response);
+                return true;
+            }
+        });
+        sender.setRetryPolicy("someMethod", new RetryPolicy(2, 1L, 10L, 5000L));
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"someMethod\"}");
+        Assert.assertEquals(JsonRpcError.UNAUTHORIZED, responses.get(2).getError().getCode());
+    }
+
+    @Test
+    public void testRetryBlockingExecutorFull() throws IOException, InterruptedException {
+        final CountDownLatch failFirst = new CountDownLatch(1);
+        final CountDownLatch secondStarted = new CountDownLatch(1);
+        final CountDownLatch releaseSecond = new CountDownLatch(1);
+        final HttpResponse failure = createResponse(null, 503);
+        final HttpResponse success = createResponse("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}", 200);
+        final int[] attempts = {0};
+        HttpClient client = Mockito.mock(HttpClient.class);
+        Mockito.when(client.execute(Mockito.any(HttpPost.class))).thenAnswer(new Answer<HttpResponse>() {
+            @Override
+            public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                int attempt;
+                synchronized (attempts) {
+                    attempt = ++attempts[0];
+                }
+                if (attempt == 1) {
+                    failFirst.await(5, TimeUnit.SECONDS);
+                    return failure;
+                } else if (attempt == 2) {
+                    secondStarted.countDown();
+                    releaseSecond.await(5, TimeUnit.SECONDS);
+                }
+                return success;
+            }
+        });
+        final List<String> threads = new ArrayList<String>();
+        final CountDownLatch finished = new CountDownLatch(3);
+        HttpMessageSender sender = new HttpMessageSender(client, ENDPOINT, true, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                Assert.assertNull(response.getError());
+                synchronized (threads) {
+                    threads.add(Thread.currentThread().getName());
+                }
+                finished.countDown();
+                return true;
+            }
+        });
+        sender.setExecutor(new BoundedExecutor("test", 1, 1, BoundedExecutor.OverflowPolicy.BLOCK));
+        sender.setRetryPolicy("someMethod", new RetryPolicy(2, 400L, 400L, 5000L));
+
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}");
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"otherMethod\"}");
+        // The first attempt fails and its retry is scheduled while the second message is waiting in the queue
+        failFirst.countDown();
+        Assert.assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+        // The only thread is busy and the queue is full when the retry is due
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"otherMethod\"}");
+        Thread.sleep(500);
+
+        // The retry must not block the timer thread while waiting for room in the queue
+        final CountDownLatch timerRunning = new CountDownLatch(1);
+        HashedWheelTimer.getSharedTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                timerRunning.countDown();
+            }
+        }, 0);
+        Assert.assertTrue(timerRunning.await(1, TimeUnit.SECONDS));
+
+        releaseSecond.countDown();
+        Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Mockito.verify(client, Mockito.times(4)).execute(Mockito.any(HttpPost.class));
+        synchronized (threads) {
+            Assert.assertFalse(threads.contains("HashedWheelTimer-shared"));
+        }
+    }
+
+    @Test
+    public void testHedged() throws IOException, InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final HttpResponse slowResponse = createResponse("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"slow\"}", 200);
+        final HttpResponse fastResponse = createResponse("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"fast\"}", 200);
+        final int[] attempts = {0};
+        HttpClient client = Mockito.mock(HttpClient.class);
+        Mockito.when(client.execute(Mockito.any(HttpPost.class))).thenAnswer(new Answer<HttpResponse>() {
+            @Override
+            public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                synchronized (attempts) {
+                    if (attempts[0]++ > 0) {
+                        return fastResponse;
+                    }
+                }
+                release.await(5, TimeUnit.SECONDS);
+                return slowResponse;
+            }
+        });
+        final List<String> results = new ArrayList<String>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        HttpMessageSender sender = new HttpMessageSender(client, ENDPOINT, true, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                synchronized (results) {
+                    results.add(response.getResult().asText());
+                }
+                finished.countDown();
+                return true;
+            }
+        });
+        RetryPolicy retryPolicy = new RetryPolicy(2, 1L, 10L, 5000L);
+        retryPolicy.setHedged(true);
+        for (int i = 0; i < 20; i++) {
+            retryPolicy.recordLatency(5);
+        }
+        Assert.assertEquals(5, retryPolicy.getHedgeDelay());
+        sender.setRetryPolicy("someMethod", retryPolicy);
+
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}");
+        Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        Thread.sleep(100);
+        synchronized (results) {
+            Assert.assertEquals(1, results.size());
+            Assert.assertEquals("fast", results.get(0));
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() throws IOException {
+        HttpClient client = createClient(ENDPOINT, null, 500, "Internal server error");
+        final List<JsonRpcResponse> responses = new ArrayList<JsonRpcResponse>();
+        HttpMessageSender sender = new HttpMessageSender(client, ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                responses.add(response);
+                return true;
+            }
+        });
+        sender.setCircuitBreaker(new CircuitBreaker(2, 2));
+
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}");
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"someMethod\"}");
+        Assert.assertEquals(CircuitBreaker.State.OPEN, sender.getCircuitBreaker().getState());
+        sender.sendMessage("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"someMethod\"}");
+
+        Assert.assertEquals(3, responses.size());
+        Assert.assertEquals(JsonRpcError.SERVICE_ERROR, responses.get(1).getError().getCode());
+        Assert.assertEquals(JsonRpcError.SERVICE_UNAVAILABLE, responses.get(2).getError().getCode());
+        Assert.assertEquals(3, responses.get(2).getId().asInt());
+        Mockito.verify(client, Mockito.times(2)).execute(Mockito.any(HttpPost.class));
+    }
+
+    @Test
+    public void testRetryPolicyBackoff() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, 100L, 300L, 5000L);
+        for (int i = 0; i < 10; i++) {
+            long backoff = retryPolicy.getBackoff(1);
+            Assert.assertTrue(backoff >= 50 && backoff <= 100);
+            backoff = retryPolicy.getBackoff(2);
+            Assert.assertTrue(backoff >= 100 && backoff <= 200);
+            backoff = retryPolicy.getBackoff(4);
+            Assert.assertTrue(backoff >= 150 && backoff <= 300);
+        }
+        Assert.assertEquals(-1, retryPolicy.getHedgeDelay());
+    }
+
+    private HttpClient createCompressedClient(final String result, final String encoding, final List<HttpPost> requests) {
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(compressed) : new DeflaterOutputStream(compressed);
+            out.write(result.getBytes("utf-8"));
+            out.close();
+            ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray());
+            entity.setContentEncoding(encoding);
+
+            HttpClient client = Mockito.mock(HttpClient.class);
+            final HttpResponse response = Mockito.mock(HttpResponse.class);
+            Mockito.when(response.getEntity()).thenReturn(entity);
+            StatusLine statusLine = Mockito.mock(StatusLine.class);
+            Mockito.when(statusLine.getStatusCode()).thenReturn(200);
+            Mockito.when(response.getStatusLine()).thenReturn(statusLine);
+            Mockito.when(client.execute(Mockito.any(HttpPost.class))).thenAnswer(new Answer<HttpResponse>() {
+                @Override
+                public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                    requests.add((HttpPost) invocation.getArguments()[0]);
+                    return response;
+                }
+            });
+            return client;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String readContent(HttpPost request) throws IOException {
+        InputStream in = request.getEntity().getContent();
+        if (request.getEntity().getContentEncoding() != null && request.getEntity().getContentEncoding().getValue().equals("gzip")) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("utf-8");
+    }
+
+    @Test
+    public void testCompressedResponse() {
+        String jsonRequest = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\",\"params\":{}}";
+        String jsonResponse = "[" +
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"result\":\"43\"}" +
+                "]";
+        for (String encoding : new String[]{"gzip", "deflate"}) {
+            final int[] executed = {0};
+            List<HttpPost> requests = new ArrayList<HttpPost>();
+            HttpMessageSender sender = new HttpMessageSender(createCompressedClient(jsonResponse, encoding, requests), ENDPOINT, null, new JsonRpcResponseHandler() {
+                @Override
+                public boolean onResponse(JsonRpcResponse response) {
+                    Assert.assertNull(response.getError());
+                    Assert.assertEquals(String.valueOf(41 + response.getId().asInt()), response.getResult().asText());
+                    executed[0]++;
+                    return true;
+                }
+            });
+            sender.setAcceptCompressedResponses(true);
+            sender.sendMessage(jsonRequest);
+            Assert.assertEquals(2, executed[0]);
+            Assert.assertEquals(1, requests.size());
+            Assert.assertEquals("gzip, deflate", requests.get(0).getFirstHeader("Accept-Encoding").getValue());
+        }
+    }
+
+    @Test
+    public void testCompressedRequest() throws IOException {
+        String smallRequest = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}";
+        StringBuilder largeRequest = new StringBuilder("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"someMethod\",\"params\":{\"text\":\"");
+        for (int i = 0; i < 200; i++) {
+            largeRequest.append("some text ");
+        }
+        largeRequest.append("\"}}");
+        List<HttpPost> requests = new ArrayList<HttpPost>();
+        HttpMessageSender sender = new HttpMessageSender(createCompressedClient("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}", "gzip", requests), ENDPOINT);
+        sender.setRequestCompressionThreshold(1024);
+        sender.sendMessage(smallRequest);
+        sender.sendMessage(largeRequest.toString());
+
+        Assert.assertEquals(2, requests.size());
+        Assert.assertNull(requests.get(0).getFirstHeader("Accept-Encoding"));
+        Assert.assertNull(requests.get(0).getEntity().getContentEncoding());
+        Assert.assertEquals(smallRequest, readContent(requests.get(0)));
+        Assert.assertEquals("gzip", requests.get(1).getEntity().getContentEncoding().getValue());
+        Assert.assertTrue(requests.get(1).getEntity().getContentLength() < largeRequest.length());
+        Assert.assertEquals(largeRequest.toString(), readContent(requests.get(1)));
+    }
+
+    @Test
+    public void testMetrics() {
+        String jsonResponse = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"42\"}";
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        HttpMessageSender sender = new HttpMessageSender(createClient(ENDPOINT, jsonResponse, 200, null), ENDPOINT, null, new JsonRpcResponseHandler() {
+            @Override
+            public boolean onResponse(JsonRpcResponse response) {
+                return true;
+            }
+        });
+        sender.setMetricsRegistry(registry, "test");
+        String jsonRequest = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"someMethod\"}";
+        sender.sendMessage(jsonRequest);
+
+        HttpMessageSender failingSender = new HttpMessageSender(createClient(ENDPOINT, null, 401, "Unauthorized"), ENDPOINT);
+        failingSender.setMetricsRegistry(registry, "test");
+        failingSender.sendMessage(jsonRequest);
+        failingSender = new HttpMessageSender(createClientFails(ENDPOINT, new ClientProtocolException("Some error")), ENDPOINT);
+        failingSender.setMetricsRegistry(registry, "test");
+        failingSender.sendMessage(jsonRequest);
+
+        Assert.assertEquals(1, registry.getCounter("test.status.2xx").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.status.4xx").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.status.401").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.ioErrors").getCount());
+        Assert.assertEquals(0, registry.getCounter("test.inFlight").getCount());
+        Assert.assertEquals(2, registry.getHistogram("test.executeMicros").getCount());
+        Assert.assertEquals(1, registry.getHistogram("test.readMicros").getCount());
+        Assert.assertEquals(3 * jsonRequest.length(), registry.getHistogram("test.requestBytes").getSum());
+        Assert.assertEquals(jsonResponse.length(), registry.getHistogram("test.responseBytes").getSum());
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013-2014, ickStream GmbH
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   * Neither the name of ickStream nor the names of its contributors
+ *     may be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ickstream.common.jsonrpc;
+
+import junit.framework.Assert;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testCounterConcurrent() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment();
+                    }
+                    counter.add(-5);
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(8 * (10000 - 5), counter.getCount());
+        counter.reset();
+        Assert.assertEquals(0, counter.getCount());
+    }
+
+    @Test
+    public void testHistogram() {
+        LogHistogram histogram = new LogHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500, histogram.getSum());
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(500.5, histogram.getMean(), 0.001);
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+        Assert.assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertWithinPrecision(500, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(990, histogram.getValueAtPercentile(99));
+
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(LogHistogram.MAX_VALUE, histogram.getMax());
+        Assert.assertEquals(LogHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+    }
+
+    private void assertWithinPrecision(long expected, long actual) {
+        Assert.assertTrue("Expected " + expected + " but was " + actual, actual >= expected && actual <= expected + expected / 16);
+    }
+
+    @Test
+    public void testRegistry() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        Assert.assertSame(registry.getCounter("counter"), registry.getCounter("counter"));
+        Assert.assertSame(registry.getHistogram("histogram"), registry.getHistogram("histogram"));
+        registry.getCounter("counter").add(2);
+        registry.getHistogram("histogram").record(10);
+        Assert.assertEquals(1, registry.getCounters().size());
+        Assert.assertEquals(1, registry.getHistograms().size());
+        registry.reset();
+        Assert.assertEquals(0, registry.getCounter("counter").getCount());
+        Assert.assertEquals(0, registry.getHistogram("histogram").getCount());
+    }
+
+    @Test
+    public void testJmxRegistry() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        JmxMetricsRegistry registry = new JmxMetricsRegistry(server, "test");
+        registry.getCounter("service.method.calls").add(3);
+        registry.getHistogram("service.method.invokeMicros").record(100);
+
+        ObjectName counterName = registry.getObjectName("Counter", "service.method.calls");
+        ObjectName histogramName = registry.getObjectName("Histogram", "service.method.invokeMicros");
+        Assert.assertEquals(3L, server.getAttribute(counterName, "Count"));
+        Assert.assertEquals(1L, server.getAttribute(histogramName, "Count"));
+        Assert.assertEquals(100L, server.getAttribute(histogramName, "Max"));
+
+        registry.unregister();
+        Assert.assertFalse(server.isRegistered(counterName));
+        Assert.assertFalse(server.isRegistered(histogramName));
+    }
+}
@@ -31,18 +31,24 @@ package com.ickstream.common.jsonrpc;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 import junit.framework.Assert;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.WriterOutputStream;
 import org.apache.commons.lang.StringUtils;
-import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
     public static class SomeException extends Exception {
@@ -153,6 +159,8 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         String testMethod(@JsonRpcParam(name = "param1") String param1);
 
         String testMethod(@JsonRpcParam(name = "param1", optional = true) String param1, @JsonRpcParam(name = "param2") String param2);
+
+        String testMethodStructure(@JsonRpcParam(name = "param1") ExtraParameters param1, @JsonRpcParam(name = "param2") String param2);
     }
 
     public static interface ParameterStructureMethods {
@@ -264,6 +272,65 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         List<JsonNode> jsonArrayMethod() throws IOException;
     }
 
+    public static interface FutureMethods {
+        @JsonRpcErrors({
+                @JsonRpcError(exception = SomeException.class, code = -32050, message = "Some error")
+        })
+        @JsonRpcResult("result1")
+        JsonRpcFuture<String> testMethodFuture(@JsonRpcParam(name = "param1") String param1);
+    }
+
+    public static class FutureMethodsImpl implements FutureMethods {
+        final List<JsonRpcFuture<String>> pending = Collections.synchronizedList(new ArrayList<JsonRpcFuture<String>>());
+
+        @Override
+        public JsonRpcFuture<String> testMethodFuture(String param1) {
+            if (param1.equals("completed")) {
+                return JsonRpcFuture.succeeded("testMethodFuture_" + param1);
+            }
+            JsonRpcFuture<String> future = new JsonRpcFuture<String>();
+            pending.add(future);
+            return future;
+        }
+    }
+
+    public static interface LimitedMethods {
+        @JsonRpcConcurrencyLimit(1)
+        @JsonRpcResult("result1")
+        JsonRpcFuture<String> testMethodFuture(@JsonRpcParam(name = "param1") String param1);
+    }
+
+    public static class LimitedMethodsImpl extends FutureMethodsImpl implements LimitedMethods {
+    }
+
+    public static interface SlowMethods {
+        String slowMethod(@JsonRpcParam(name = "param1") String param1);
+
+        String fastMethod(@JsonRpcParam(name = "param1") String param1);
+    }
+
+    public static class SlowMethodsImpl implements SlowMethods {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> invoked = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public String slowMethod(String param1) {
+            invoked.add(param1);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slowMethod_" + param1;
+        }
+
+        @Override
+        public String fastMethod(String param1) {
+            invoked.add(param1);
+            return "fastMethod_" + param1;
+        }
+    }
+
     public static class SimpleTypeMethodsImpl implements SimpleTypeMethods {
         @Override
         public String testMethod(@JsonRpcParam(name = "param1") String param1) {
@@ -386,6 +453,12 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         public String testMethod(@JsonRpcParam(name = "param1", optional = true) String param1, @JsonRpcParam(name = "param2") String param2) {
             return "testMethodParam1Param2";
         }
+
+        @Override
+        public String testMethodStructure(@JsonRpcParam(name = "param1") ExtraParameters param1, @JsonRpcParam(name = "param2") String param2) {
+            param1.setParam2("changed");
+            return "testMethodStructure";
+        }
     }
 
     public static class ParameterStructureMethodsImpl implements ParameterStructureMethods {
@@ -598,12 +671,6 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         }
     }
 
-    @BeforeMethod
-    public void resetCache() {
-        // This is only needed because method parameters aren't cached with type information
-        StreamJsonRpcService.matchedMethodCache.clear();
-    }
-
     @Test
     public void testInvalidJson() throws IOException {
         StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
@@ -622,6 +689,534 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         Assert.assertEquals("-32700", getParamFromJson(outputString.toString(), "error.code"));
     }
 
+    @Test
+    public void testMetrics() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new ExceptionMethodsImpl(), ExceptionMethods.class);
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        service.setMetricsRegistry(registry, "test");
+
+        String jsonRequest = "[" +
+                createJsonRequest("1", "testMethod", "{\"param1\":\"value1\"}") + "," +
+                createJsonRequest("2", "testMethod", "{\"param1\":\"some\"}") + "," +
+                createJsonRequest("3", "testMethod", null) + "," +
+                createJsonNotification("testMethod", "{\"param1\":\"someOther\"}") + "," +
+                createJsonRequest("4", "unknownMethod", null) +
+                "]";
+        service.handle(IOUtils.toInputStream(jsonRequest), new ByteArrayOutputStream());
+        service.handle(IOUtils.toInputStream("{"), new ByteArrayOutputStream());
+
+        Assert.assertEquals(4, registry.getCounter("test.testMethod.calls").getCount());
+        Assert.assertEquals(3, registry.getCounter("test.testMethod.errors").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.testMethod.errors.-32050").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.testMethod.errors.-32051").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.testMethod.errors." + JsonRpcError.SERVICE_ERROR).getCount());
+        Assert.assertEquals(0, registry.getCounter("test.testMethod.errors.other").getCount());
+        Assert.assertEquals(0, registry.getCounter("test.testMethod.inFlight").getCount());
+        Assert.assertEquals(0, registry.getCounter("test.inFlight").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.unknownMethods").getCount());
+        Assert.assertEquals(1, registry.getCounter("test.invalidRequests").getCount());
+        for (String phase : new String[]{"parseMicros", "dispatchMicros", "invokeMicros", "serializeMicros"}) {
+            Assert.assertEquals(4, registry.getHistogram("test.testMethod." + phase).getCount());
+        }
+        Assert.assertEquals(2, registry.getHistogram("test.requestBytes").getCount());
+        Assert.assertEquals(jsonRequest.length() + 1, registry.getHistogram("test.requestBytes").getSum());
+        Assert.assertEquals(2, registry.getHistogram("test.responseBytes").getCount());
+        Assert.assertTrue(registry.getHistogram("test.responseBytes").getMax() > 0);
+    }
+
+    @Test
+    public void testMetricsDeferred() throws IOException {
+        FutureMethodsImpl serviceImplementation = new FutureMethodsImpl();
+        StreamJsonRpcService service = new StreamJsonRpcService(serviceImplementation, FutureMethods.class);
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        service.setMetricsRegistry(registry);
+        String prefix = "jsonrpc." + FutureMethods.class.getSimpleName() + ".testMethodFuture";
+
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"pending\"}")), new ByteArrayOutputStream(), new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        Assert.assertEquals(1, registry.getCounter(prefix + ".calls").getCount());
+        Assert.assertEquals(1, registry.getCounter(prefix + ".inFlight").getCount());
+        Assert.assertEquals(0, registry.getHistogram(prefix + ".invokeMicros").getCount());
+
+        serviceImplementation.pending.get(0).setFailure(new SomeException());
+        Assert.assertEquals(0, registry.getCounter(prefix + ".inFlight").getCount());
+        Assert.assertEquals(1, registry.getHistogram(prefix + ".invokeMicros").getCount());
+        Assert.assertEquals(1, registry.getCounter(prefix + ".errors.-32050").getCount());
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws IOException {
+        LimitedMethodsImpl serviceImplementation = new LimitedMethodsImpl();
+        StreamJsonRpcService service = new StreamJsonRpcService(serviceImplementation, LimitedMethods.class);
+        Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"pending\"}")), new ByteArrayOutputStream(), completion);
+        Assert.assertEquals(1, service.getConcurrencyLimiter("testMethodFuture").getInFlight());
+
+        StringWriter outputString = new StringWriter();
+        service.handle(IOUtils.toInputStream(createJsonRequest("2", "testMethodFuture", "{\"param1\":\"completed\"}")), new WriterOutputStream(outputString));
+        Assert.assertEquals("2", getParamFromJson(outputString.toString(), "id"));
+        Assert.assertEquals(String.valueOf(JsonRpcError.OVERLOADED), getParamFromJson(outputString.toString(), "error.code"));
+        Assert.assertEquals(1, service.getConcurrencyLimiter("testMethodFuture").getRejected());
+
+        serviceImplementation.pending.get(0).setResult("done");
+        Assert.assertEquals(0, service.getConcurrencyLimiter("testMethodFuture").getInFlight());
+
+        outputString = new StringWriter();
+        service.handle(IOUtils.toInputStream(createJsonRequest("3", "testMethodFuture", "{\"param1\":\"completed\"}")), new WriterOutputStream(outputString));
+        Assert.assertEquals("testMethodFuture_completed", getParamFromJson(outputString.toString(), "result.result1"));
+    }
+
+    @Test
+    public void testConcurrencyLimiterOverride() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new LimitedMethodsImpl(), LimitedMethods.class);
+        service.setConcurrencyLimiter("testMethodFuture", null);
+        Assert.assertNull(service.getConcurrencyLimiter("testMethodFuture"));
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        service.setConcurrencyLimiter("testMethodFuture", limiter);
+        Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"pending\"}")), new ByteArrayOutputStream(), completion);
+        service.handle(IOUtils.toInputStream(createJsonRequest("2", "testMethodFuture", "{\"param1\":\"pending\"}")), new ByteArrayOutputStream(), completion);
+        Assert.assertEquals(2, limiter.getInFlight());
+        Assert.assertEquals(0, limiter.getRejected());
+    }
+
+    private static class ResponseCollector {
+        final List<String> responses = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch completed;
+
+        private ResponseCollector(int expected) {
+            completed = new CountDownLatch(expected);
+        }
+
+        private void handle(StreamJsonRpcService service, String request, Object caller) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            service.handle(IOUtils.toInputStream(request), output, new Runnable() {
+                @Override
+                public void run() {
+                    responses.add(new String(output.toByteArray()));
+                    completed.countDown();
+                }
+            }, caller);
+        }
+    }
+
+    @Test
+    public void testInvocationExecutor() throws Exception {
+        SlowMethodsImpl serviceImplementation = new SlowMethodsImpl();
+        StreamJsonRpcService service = new StreamJsonRpcService(serviceImplementation, SlowMethods.class);
+        BoundedExecutor lane = new BoundedExecutor("slow", 1, 10, BoundedExecutor.OverflowPolicy.REJECT);
+        try {
+            service.setInvocationExecutor("slowMethod", lane);
+
+            ResponseCollector collector = new ResponseCollector(2);
+            collector.handle(service, createJsonRequest("1", "slowMethod", "{\"param1\":\"a\"}"), null);
+            collector.handle(service, createJsonRequest("2", "fastMethod", "{\"param1\":\"b\"}"), null);
+
+            // The fast method isn't blocked by the slow method
+            Assert.assertEquals(1, collector.responses.size());
+            Assert.assertEquals("fastMethod_b", getParamFromJson(collector.responses.get(0), "result"));
+
+            serviceImplementation.release.countDown();
+            Assert.assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals("slowMethod_a", getParamFromJson(collector.responses.get(1), "result"));
+
+            // Requests handled synchronously wait for the executor
+            StringWriter outputString = new StringWriter();
+            service.handle(IOUtils.toInputStream(createJsonRequest("3", "slowMethod", "{\"param1\":\"c\"}")), new WriterOutputStream(outputString));
+            Assert.assertEquals("slowMethod_c", getParamFromJson(outputString.toString(), "result"));
+        } finally {
+            lane.shutdown();
+        }
+    }
+
+    @Test
+    public void testStringInvocationExecutor() throws Exception {
+        SlowMethodsImpl serviceImplementation = new SlowMethodsImpl();
+        StringJsonRpcService service = new StringJsonRpcService(serviceImplementation, SlowMethods.class);
+        BoundedExecutor lane = new BoundedExecutor("slow", 1, 10, BoundedExecutor.OverflowPolicy.REJECT);
+        try {
+            service.setInvocationExecutor("slowMethod", lane);
+
+            final List<String> responses = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch completed = new CountDownLatch(2);
+            StringJsonRpcService.ResponseCallback callback = new StringJsonRpcService.ResponseCallback() {
+                @Override
+                public void onResponse(String response) {
+                    responses.add(response);
+                    completed.countDown();
+                }
+            };
+            // The calling thread isn't blocked by the slow method
+            service.handle(createJsonRequest("1", "slowMethod", "{\"param1\":\"a\"}"), callback);
+            service.handle(createJsonRequest("2", "fastMethod", "{\"param1\":\"b\"}"), callback);
+            Assert.assertEquals(1, responses.size());
+            Assert.assertEquals("fastMethod_b", getParamFromJson(responses.get(0), "result"));
+
+            serviceImplementation.release.countDown();
+            Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals("slowMethod_a", getParamFromJson(responses.get(1), "result"));
+        } finally {
+            lane.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvocationExecutorRejected() throws Exception {
+        SlowMethodsImpl serviceImplementation = new SlowMethodsImpl();
+        StreamJsonRpcService service = new StreamJsonRpcService(serviceImplementation, SlowMethods.class);
+        BoundedExecutor lane = new BoundedExecutor("slow", 1, 0, BoundedExecutor.OverflowPolicy.REJECT);
+        try {
+            service.setInvocationExecutor(lane);
+
+            ResponseCollector collector = new ResponseCollector(2);
+            collector.handle(service, createJsonRequest("1", "slowMethod", "{\"param1\":\"a\"}"), null);
+            collector.handle(service, createJsonRequest("2", "fastMethod", "{\"param1\":\"b\"}"), null);
+
+            Assert.assertEquals(1, collector.responses.size());
+            Assert.assertEquals("2", getParamFromJson(collector.responses.get(0), "id"));
+            Assert.assertEquals(String.valueOf(JsonRpcError.OVERLOADED), getParamFromJson(collector.responses.get(0), "error.code"));
+
+            serviceImplementation.release.countDown();
+            Assert.assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+        } finally {
+            lane.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvocationExecutorOrdered() throws Exception {
+        SlowMethodsImpl serviceImplementation = new SlowMethodsImpl();
+        StreamJsonRpcService service = new StreamJsonRpcService(serviceImplementation, SlowMethods.class);
+        BoundedExecutor pool = new BoundedExecutor("pool", 4, 10, BoundedExecutor.OverflowPolicy.REJECT);
+        try {
+            service.setInvocationExecutor("slowMethod", pool, true);
+            service.setInvocationExecutor("fastMethod", pool, true);
+
+            ResponseCollector collector = new ResponseCollector(4);
+            collector.handle(service, createJsonRequest("1", "slowMethod", "{\"param1\":\"a1\"}"), "callerA");
+            collector.handle(service, createJsonRequest("2", "fastMethod", "{\"param1\":\"a2\"}"), "callerA");
+            collector.handle(service, createJsonRequest("3", "fastMethod", "{\"param1\":\"b1\"}"), "callerB");
+            collector.handle(service, createJsonRequest("4", "fastMethod", "{\"param1\":\"c1\"}"), null);
+
+            // Only the calls waiting for the slow call of the same caller are delayed
+            long timeout = System.currentTimeMillis() + 5000;
+            while (collector.responses.size() < 2 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+            Assert.assertEquals(2, collector.responses.size());
+            Assert.assertFalse(serviceImplementation.invoked.contains("a2"));
+
+            serviceImplementation.release.countDown();
+            Assert.assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals("slowMethod_a1", getParamFromJson(collector.responses.get(2), "result"));
+            Assert.assertEquals("fastMethod_a2", getParamFromJson(collector.responses.get(3), "result"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadExecutor() throws Exception {
+        final CountDownLatch executed = new CountDownLatch(1);
+        ExecutorService fallback = Executors.newSingleThreadExecutor();
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("virtual", fallback);
+        try {
+            Assert.assertEquals(VirtualThreadExecutor.isSupported(), executor.isVirtual());
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    executed.countDown();
+                }
+            });
+            Assert.assertTrue(executed.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+            fallback.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        StringWriter outputString = new StringWriter();
+
+        String jsonRequest = "[" +
+                createJsonRequest("1", "testMethod", null) + "," +
+                createJsonNotification("testMethod", null) + "," +
+                createJsonRequest("2", "testMethod", "{\"param1\":\"value1\"}") + "," +
+                "1" +
+                "]";
+
+        service.handle(IOUtils.toInputStream(jsonRequest), new WriterOutputStream(outputString));
+
+        Assert.assertEquals("1", getParamFromJson(outputString.toString(), "0.id"));
+        Assert.assertEquals("testMethod", getParamFromJson(outputString.toString(), "0.result"));
+        Assert.assertEquals("2", getParamFromJson(outputString.toString(), "1.id"));
+        Assert.assertEquals("testMethodParam1", getParamFromJson(outputString.toString(), "1.result"));
+        Assert.assertEquals("-32600", getParamFromJson(outputString.toString(), "2.error.code"));
+        Assert.assertNull(getParamFromJson(outputString.toString(), "3"));
+    }
+
+    @Test
+    public void testBatchWithExecutor() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        service.setBatchExecutor(executor);
+        StringWriter outputString = new StringWriter();
+
+        String jsonRequest = "[" +
+                createJsonRequest("1", "testMethod", null) + "," +
+                createJsonRequest("2", "testMethod", "{\"param1\":\"value1\"}") + "," +
+                createJsonRequest("3", "testMethodOther", "{\"other\":\"value1\"}") +
+                "]";
+
+        try {
+            service.handle(IOUtils.toInputStream(jsonRequest), new WriterOutputStream(outputString));
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals("testMethod", getParamFromJson(outputString.toString(), "0.result"));
+        Assert.assertEquals("testMethodParam1", getParamFromJson(outputString.toString(), "1.result"));
+        Assert.assertEquals("testMethodOther", getParamFromJson(outputString.toString(), "2.result"));
+    }
+
+    @Test
+    public void testBatchOnlyNotifications() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        StringWriter outputString = new StringWriter();
+
+        String jsonRequest = "[" +
+                createJsonNotification("testMethod", null) + "," +
+                createJsonNotification("testMethod", "{\"param1\":\"value1\"}") +
+                "]";
+
+        service.handle(IOUtils.toInputStream(jsonRequest), new WriterOutputStream(outputString));
+
+        Assert.assertEquals("", outputString.toString());
+    }
+
+    @Test
+    public void testBatchEmpty() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        StringWriter outputString = new StringWriter();
+
+        service.handle(IOUtils.toInputStream("[]"), new WriterOutputStream(outputString));
+
+        Assert.assertEquals("-32600", getParamFromJson(outputString.toString(), "error.code"));
+    }
+
+    @Test
+    public void testMessageLoggerSampling() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        final List<String> incoming = new ArrayList<String>();
+        final List<String> outgoing = new ArrayList<String>();
+        FilteringMessageLogger messageLogger = new FilteringMessageLogger(new MessageLogger() {
+            @Override
+            public void onOutgoingMessage(String destination, String message) {
+                outgoing.add(message);
+            }
+
+            @Override
+            public void onIncomingMessage(String source, String message) {
+                incoming.add(message);
+            }
+        });
+        messageLogger.setSampleRate(2);
+        messageLogger.setOutgoingEnabled(false);
+        service.setMessageLogger(messageLogger);
+
+        for (int i = 0; i < 4; i++) {
+            StringWriter outputString = new StringWriter();
+            service.handle(IOUtils.toInputStream(createJsonRequest("" + i, "testMethod", "{\"param1\":\"value" + i + "\"}")), new WriterOutputStream(outputString));
+            Assert.assertEquals("testMethodParam1", getParamFromJson(outputString.toString(), "result"));
+        }
+
+        Assert.assertEquals(0, outgoing.size());
+        Assert.assertEquals(2, incoming.size());
+        Assert.assertEquals("value0", getParamFromJson(incoming.get(0), "params.param1"));
+        Assert.assertEquals("value2", getParamFromJson(incoming.get(1), "params.param1"));
+    }
+
+    @Test
+    public void testLazyMessageLoggerModifiedParameters() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        final List<LazyMessage> incoming = new ArrayList<LazyMessage>();
+        service.setMessageLogger(new LazyMessageLogger() {
+            @Override
+            public boolean isOutgoingEnabled(String destination) {
+                return false;
+            }
+
+            @Override
+            public boolean isIncomingEnabled(String source) {
+                return true;
+            }
+
+            @Override
+            public void onOutgoingMessage(String destination, LazyMessage message) {
+            }
+
+            @Override
+            public void onIncomingMessage(String source, LazyMessage message) {
+                incoming.add(message);
+            }
+
+            @Override
+            public void onOutgoingMessage(String destination, String message) {
+            }
+
+            @Override
+            public void onIncomingMessage(String source, String message) {
+            }
+        });
+        StringWriter outputString = new StringWriter();
+
+        String params = "{\"param2\":\"value2\",\"param1\":{\"param3\":null,\"param2\":\"value1\"}}";
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodStructure", params)), new WriterOutputStream(outputString));
+
+
+        Assert.assertEquals("testMethodStructure", getParamFromJson(outputString.toString(), "result"));
+        Assert.assertEquals(1, incoming.size());
+        // The message is only serialized now, after the method has modified its parameters
+        Assert.assertEquals(params, getParamFromJson(incoming.get(0).getMessage(), "params"));
+    }
+
+    @Test
+    public void testAsyncMessageLogger() throws IOException, InterruptedException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch logged = new CountDownLatch(2);
+        AsyncMessageLogger messageLogger = new AsyncMessageLogger(new MessageLogger() {
+            @Override
+            public void onOutgoingMessage(String destination, String message) {
+                messages.add(message);
+                logged.countDown();
+            }
+
+            @Override
+            public void onIncomingMessage(String source, String message) {
+                messages.add(message);
+                logged.countDown();
+            }
+        }, 10);
+        service.setMessageLogger(messageLogger);
+        try {
+            StringWriter outputString = new StringWriter();
+            service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethod", "{\"param1\":\"value1\"}")), new WriterOutputStream(outputString));
+
+            Assert.assertTrue(logged.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals("value1", getParamFromJson(messages.get(0), "params.param1"));
+            Assert.assertEquals("testMethodParam1", getParamFromJson(messages.get(1), "result"));
+            Assert.assertEquals(0, messageLogger.getDroppedMessages());
+        } finally {
+            messageLogger.shutdown();
+        }
+    }
+
+    @Test
+    public void testFutureResultSynchronous() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new FutureMethodsImpl(), FutureMethods.class);
+        StringWriter outputString = new StringWriter();
+
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"completed\"}")), new WriterOutputStream(outputString));
+
+        Assert.assertEquals("testMethodFuture_completed", getParamFromJson(outputString.toString(), "result.result1"));
+    }
+
+    @Test
+    public void testFutureResultDeferred() throws IOException {
+        FutureMethodsImpl serviceImplementation = new FutureMethodsImpl();
+        StreamJsonRpcService service = new StreamJsonRpcService(serviceImplementation, FutureMethods.class);
+        final CountDownLatch completed = new CountDownLatch(2);
+        Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                completed.countDown();
+            }
+        };
+
+        StringWriter outputString1 = new StringWriter();
+        WriterOutputStream output1 = new WriterOutputStream(outputString1);
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"pending\"}")), output1, completion);
+        StringWriter outputString2 = new StringWriter();
+        WriterOutputStream output2 = new WriterOutputStream(outputString2);
+        service.handle(IOUtils.toInputStream(createJsonRequest("2", "testMethodFuture", "{\"param1\":\"pending\"}")), output2, completion);
+
+        Assert.assertEquals(2, serviceImplementation.pending.size());
+        Assert.assertEquals(2, completed.getCount());
+
+        serviceImplementation.pending.get(0).setResult("deferred");
+        serviceImplementation.pending.get(1).setFailure(new SomeException());
+        output1.flush();
+        output2.flush();
+
+        Assert.assertEquals(0, completed.getCount());
+        Assert.assertEquals("deferred", getParamFromJson(outputString1.toString(), "result.result1"));
+        Assert.assertEquals("-32050", getParamFromJson(outputString2.toString(), "error.code"));
+    }
+
+    @Test
+    public void testFutureResultDeferredBatch() throws IOException {
+        FutureMethodsImpl serviceImplementation = new FutureMethodsImpl();
+        StreamJsonRpcService service = new StreamJsonRpcService(serviceImplementation, FutureMethods.class);
+        final CountDownLatch completed = new CountDownLatch(1);
+        StringWriter outputString = new StringWriter();
+        WriterOutputStream output = new WriterOutputStream(outputString);
+
+        service.handle(IOUtils.toInputStream("[" +
+                createJsonRequest("1", "testMethodFuture", "{\"param1\":\"pending\"}") + "," +
+                createJsonRequest("2", "testMethodFuture", "{\"param1\":\"completed\"}") + "]"), output, new Runnable() {
+            @Override
+            public void run() {
+                completed.countDown();
+            }
+        });
+
+        Assert.assertEquals(1, completed.getCount());
+        serviceImplementation.pending.get(0).setResult("deferred");
+        output.flush();
+
+        Assert.assertEquals(0, completed.getCount());
+        JsonNode responses = new ObjectMapper().readTree(outputString.toString());
+        Assert.assertEquals(2, responses.size());
+        Assert.assertEquals("deferred", responses.get(0).get("result").get("result1").asText());
+        Assert.assertEquals("testMethodFuture_completed", responses.get(1).get("result").get("result1").asText());
+    }
+
+    @Test
+    public void testSmileRequest() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        JsonHelper jsonHelper = new JsonHelper();
+        JsonRpcRequest request = new JsonRpcRequest();
+        request.setId(new TextNode("1"));
+        request.setMethod("testMethod");
+        request.setParams(new ObjectMapper().readTree("{\"param1\":\"value1\"}"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        service.handle(new ByteArrayInputStream(jsonHelper.objectToBytes(request, MessageEncoding.SMILE)), output);
+
+        byte[] responseBytes = output.toByteArray();
+        Assert.assertEquals(MessageEncoding.SMILE, MessageEncoding.detect(responseBytes, 0, responseBytes.length));
+        JsonRpcResponse response = jsonHelper.bytesToObject(responseBytes, JsonRpcResponse.class);
+        Assert.assertEquals("1", response.getId().asText());
+        Assert.assertEquals("testMethodParam1", response.getResult().asText());
+    }
+
     @Test
     public void testWithoutMethodNotAllowed() throws IOException {
         StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class, true, false);
@@ -826,6 +1421,51 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         Assert.assertEquals("testMethodParam1OnlyString", getParamFromJson(outputString.toString(), "result"));
     }
 
+    @Test
+    public void testWithStringParameterOnlyMethodParamsBeforeMethod() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleTypeMethodsImpl(), SimpleTypeMethods.class);
+        StringWriter outputString = new StringWriter();
+
+        service.handle(IOUtils.toInputStream("{\"params\":{\"param1\":\"1\"},\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"testMethodOnlyString\"}"), new WriterOutputStream(outputString));
+
+
+        Assert.assertEquals("testMethodParam1OnlyString", getParamFromJson(outputString.toString(), "result"));
+        Assert.assertEquals("1", getParamFromJson(outputString.toString(), "id"));
+    }
+
+    @Test
+    public void testWithStringParameterOnlyMethodNotExistingErrorData() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleTypeMethodsImpl(), SimpleTypeMethods.class);
+        StringWriter outputString = new StringWriter();
+
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodOnlyString", "{\"param1\":1,\"other\":\"value\"}")), new WriterOutputStream(outputString));
+
+
+        Assert.assertEquals("-32602", getParamFromJson(outputString.toString(), "error.code"));
+        Assert.assertEquals("{\"param1\":1,\"other\":\"value\"}", getParamFromJson(outputString.toString(), "error.data"));
+    }
+
+    @Test
+    public void testWithStructureParameterOnlyMethodInvalidErrorData() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleParameterMethodsImpl(), SimpleParameterMethods.class);
+        StringWriter outputString = new StringWriter();
+
+        String params = "{\"param2\":1,\"param1\":{\"param3\":null,\"unknown\":\"2013-01-01T00:00:00Z\",\"param2\":\"value\"}}";
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodStructure", params)), new WriterOutputStream(outputString));
+
+
+        Assert.assertEquals("-32602", getParamFromJson(outputString.toString(), "error.code"));
+        Assert.assertEquals(params, getParamFromJson(outputString.toString(), "error.data"));
+
+        // Arguments bound before the mismatch are converted back to JSON
+        outputString = new StringWriter();
+        params = "{\"param1\":{\"param2\":\"value\"},\"other\":null,\"param2\":1}";
+        service.handle(IOUtils.toInputStream(createJsonRequest("2", "testMethodStructure", params)), new WriterOutputStream(outputString));
+
+        Assert.assertEquals("-32602", getParamFromJson(outputString.toString(), "error.code"));
+        Assert.assertEquals(params, getParamFromJson(outputString.toString(), "error.data"));
+    }
+
     @Test
     public void testWithStringParameterOnlyMethodNullValue() throws IOException {
         StreamJsonRpcService service = new StreamJsonRpcService(new SimpleTypeMethodsWithNullImpl(), SimpleTypeNullMethods.class);
@@ -903,6 +1543,23 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         Assert.assertEquals("testMethodParam1Boolean", getParamFromJson(outputString.toString(), "result"));
     }
 
+    @Test
+    public void testWithDifferentParameterTypesSameService() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new SimpleTypeMethodsImpl(), SimpleTypeMethods.class);
+
+        StringWriter outputString = new StringWriter();
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethod", "{\"param1\":true}")), new WriterOutputStream(outputString));
+        Assert.assertEquals("testMethodParam1Boolean", getParamFromJson(outputString.toString(), "result"));
+
+        outputString = new StringWriter();
+        service.handle(IOUtils.toInputStream(createJsonRequest("2", "testMethod", "{\"param1\":\"value1\"}")), new WriterOutputStream(outputString));
+        Assert.assertEquals("testMethodParam1String", getParamFromJson(outputString.toString(), "result"));
+
+        outputString = new StringWriter();
+        service.handle(IOUtils.toInputStream(createJsonRequest("3", "testMethod", "{\"param1\":1}")), new WriterOutputStream(outputString));
+        Assert.assertEquals("testMethodParam1Number", getParamFromJson(outputString.toString(), "result"));
+    }
+
     @Test
     public void testWithDateParameter_ShouldPreferNumber() throws IOException {
         StreamJsonRpcService service = new StreamJsonRpcService(new SimpleTypeMethodsImpl(), SimpleTypeMethods.class);
@@ -1180,6 +1837,36 @@ public class StreamJsonRpcServiceTest extends AbstractJsonRpcTest {
         Assert.assertEquals("4", getParamFromJson(outputString.toString(), "result.resultJson.attr2"));
     }
 
+    @Test
+    public void testWarmUp() throws IOException {
+        StreamJsonRpcService service = new StreamJsonRpcService(new ComplexResultMethodsImpl(), ComplexResultMethods.class);
+        Assert.assertNull(service.getWarmUpMicros());
+        Assert.assertTrue(service.getWarmUpMicrosPerMethod().isEmpty());
+
+        service = new StreamJsonRpcService(new ComplexResultMethodsImpl(), ComplexResultMethods.class, false, true, true);
+        Assert.assertNotNull(service.getWarmUpMicros());
+        Assert.assertTrue(service.getWarmUpMicrosPerMethod().containsKey("filledMethod"));
+        Assert.assertTrue(service.getWarmUpMicrosPerMethod().containsKey("voidMethod"));
+
+        StringWriter outputString = new StringWriter();
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "filledMethod", "{}")), new WriterOutputStream(outputString));
+        Assert.assertEquals("1", getParamFromJson(outputString.toString(), "result.resultInteger"));
+        Assert.assertEquals("3", getParamFromJson(outputString.toString(), "result.resultJson.attr1"));
+    }
+
+    @Test
+    public void testWarmUpFutureMethods() throws IOException {
+        Assert.assertTrue(new JsonHelper().prepareType(ExtraParameters.class));
+
+        StreamJsonRpcService service = new StreamJsonRpcService(new FutureMethodsImpl(), FutureMethods.class);
+        service.warmUp();
+        Assert.assertEquals(1, service.getWarmUpMicrosPerMethod().size());
+
+        StringWriter outputString = new StringWriter();
+        service.handle(IOUtils.toInputStream(createJsonRequest("1", "testMethodFuture", "{\"param1\":\"completed\"}")), new WriterOutputStream(outputString));
+        Assert.assertEquals("testMethodFuture_completed", getParamFromJson(outputString.toString(), "result.result1"));
+    }
+
     @Test
     public void testComplexNamedFilledResult() throws IOException {
         StreamJsonRpcService service = new StreamJsonRpcService(new ComplexResultMethodsImpl(), ComplexResultMethods.class);
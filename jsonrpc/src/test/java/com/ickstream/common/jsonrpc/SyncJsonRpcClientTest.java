@@ -273,6 +273,23 @@ public class SyncJsonRpcClientTest extends AbstractJsonRpcTest {
         Assert.assertEquals("1", getParamFromJson(sender.message, "params"));
     }
 
+    @Test
+    public void testRequestWithDelayedResponseDefaultTimeout() throws IOException, JsonRpcException {
+        JsonRpcResponse response = new JsonRpcResponse("2.0", null);
+        response.setResult(mapper.valueToTree(new Integer("2")));
+
+        DelayedMessageSenderImpl sender = new DelayedMessageSenderImpl(response, 2000);
+        SyncJsonRpcClient client = new SyncJsonRpcClient(sender, 500);
+        sender.setResponseHandler(client);
+
+        try {
+            client.sendRequest("someMethod", 1, Integer.class);
+            Assert.assertTrue(false);
+        } catch (JsonRpcTimeoutException e) {
+            //Ok, this is the expected path
+        }
+    }
+
     @Test
     public void testRequestWithDelayedResponseNoTimeout() throws IOException, JsonRpcException, JsonRpcTimeoutException {
         JsonRpcResponse response = new JsonRpcResponse("2.0", null);